@@ -0,0 +1,24 @@
+package com.batterymonitor.app;
+
+import android.app.Application;
+import android.util.Log;
+
+import com.batterymonitor.app.utils.Logger;
+
+/**
+ * 應用程式進入點
+ * 核心模組的日誌經 Logger 輸出，程序啟動時先接到 Logcat，服務與 Activity 的日誌才不會遺失。
+ */
+public class BatteryMonitorApplication extends Application {
+    
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Logger.setSink((priority, tag, message, throwable) -> {
+            if (throwable != null) {
+                message = message + '\n' + Log.getStackTraceString(throwable);
+            }
+            Log.println(priority, tag, message);
+        });
+    }
+}
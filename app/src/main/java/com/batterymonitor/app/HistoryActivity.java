@@ -1,32 +1,49 @@
 package com.batterymonitor.app;
 
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.widget.LinearLayout;
-import android.widget.TextView;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.batterymonitor.app.adapter.TestResultAdapter;
+import com.batterymonitor.app.adapter.TestResultItem;
 import com.batterymonitor.app.model.TestResult;
 import com.batterymonitor.app.utils.PreferenceManager;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class HistoryActivity extends AppCompatActivity {
     
     private static final String TAG = "HistoryActivity";
     
+    // 每頁載入筆數
+    private static final int PAGE_SIZE = 50;
+    // 距離列表底部多少項時預先載入下一頁
+    private static final int PREFETCH_DISTANCE = 10;
+    
     // UI 組件
     private RecyclerView recyclerHistory;
     private LinearLayout layoutNoData;
     
     // 適配器和數據
     private TestResultAdapter adapter;
+    private LinearLayoutManager layoutManager;
     private PreferenceManager preferenceManager;
     
+    // 分頁載入狀態（僅在主執行緒存取）
+    private final List<TestResultItem> loadedItems = new ArrayList<>();
+    private ExecutorService loadExecutor;
+    private boolean isLoading = false;
+    private boolean hasMore = true;
+    
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -41,7 +58,15 @@ public class HistoryActivity extends AppCompatActivity {
         initializeComponents();
         initializeViews();
         setupRecyclerView();
-        loadData();
+        loadNextPage();
+    }
+    
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (loadExecutor != null) {
+            loadExecutor.shutdownNow();
+        }
     }
     
     @Override
@@ -52,6 +77,11 @@ public class HistoryActivity extends AppCompatActivity {
     
     private void initializeComponents() {
         preferenceManager = new PreferenceManager(this);
+        loadExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "HistoryLoader");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
     }
     
     private void initializeViews() {
@@ -60,27 +90,77 @@ public class HistoryActivity extends AppCompatActivity {
     }
     
     private void setupRecyclerView() {
-        recyclerHistory.setLayoutManager(new LinearLayoutManager(this));
+        layoutManager = new LinearLayoutManager(this);
+        recyclerHistory.setLayoutManager(layoutManager);
+        recyclerHistory.setHasFixedSize(true);
         adapter = new TestResultAdapter();
         recyclerHistory.setAdapter(adapter);
+        
+        // 捲動接近底部時載入下一頁
+        recyclerHistory.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0 || isLoading || !hasMore) {
+                    return;
+                }
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
     }
     
-    private void loadData() {
-        // 載入測試歷史
-        List<TestResult> history = preferenceManager.getTestHistory();
+    /**
+     * 在背景執行緒讀取下一頁並預先格式化，完成後交由差異計算更新列表
+     */
+    private void loadNextPage() {
+        if (isLoading || !hasMore) {
+            return;
+        }
+        isLoading = true;
+        final int offset = loadedItems.size();
         
-        if (history.isEmpty()) {
+        try {
+            loadExecutor.execute(() -> {
+                List<TestResultItem> page = new ArrayList<>();
+                try {
+                    List<TestResult> results = preferenceManager.getTestHistory(offset, PAGE_SIZE);
+                    for (TestResult result : results) {
+                        page.add(TestResultItem.from(result));
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Error loading history page at " + offset, e);
+                }
+                runOnUiThread(() -> onPageLoaded(page));
+            });
+        } catch (Exception e) {
+            // 執行器已關閉（Activity 正在銷毀）
+            isLoading = false;
+        }
+    }
+    
+    private void onPageLoaded(List<TestResultItem> page) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        
+        hasMore = page.size() == PAGE_SIZE;
+        loadedItems.addAll(page);
+        
+        if (loadedItems.isEmpty()) {
             // 顯示無數據提示
+            isLoading = false;
             recyclerHistory.setVisibility(View.GONE);
             layoutNoData.setVisibility(View.VISIBLE);
-        } else {
-            // 顯示歷史記錄
-            recyclerHistory.setVisibility(View.VISIBLE);
-            layoutNoData.setVisibility(View.GONE);
-            
-            // 更新適配器數據
-            adapter.setTestResults(history);
+            return;
         }
+        
+        // 顯示歷史記錄
+        recyclerHistory.setVisibility(View.VISIBLE);
+        layoutNoData.setVisibility(View.GONE);
+        
+        // AsyncListDiffer 需要新的列表實例，差異套用後才允許載入下一頁
+        adapter.submitItems(new ArrayList<>(loadedItems), () -> isLoading = false);
     }
 }
-
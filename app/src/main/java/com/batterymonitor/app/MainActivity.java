@@ -1,36 +1,68 @@
 package com.batterymonitor.app;
 
+import android.Manifest;
 import android.app.Activity;
+import android.content.ClipData;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
+import androidx.core.content.FileProvider;
 
+import com.batterymonitor.app.data.HistoryExporter;
+import com.batterymonitor.app.data.PersistenceQueue;
+import com.batterymonitor.app.data.SampleLog;
+import com.batterymonitor.app.data.SampleLogRecovery;
 import com.batterymonitor.app.dialog.AboutDialog;
 import com.batterymonitor.app.dialog.TestResultDialog;
+import com.batterymonitor.app.dialog.TestSubjectDialog;
 import com.batterymonitor.app.manager.BatteryMonitor;
 import com.batterymonitor.app.manager.TestManager;
 import com.batterymonitor.app.model.TestResult;
 import com.batterymonitor.app.service.FloatingWindowService;
+import com.batterymonitor.app.service.MonitorService;
+import com.batterymonitor.app.utils.AndroidClock;
 import com.batterymonitor.app.utils.PreferenceManager;
 
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class MainActivity extends AppCompatActivity {
     
     private static final String TAG = "MainActivity";
     private static final int REQUEST_OVERLAY_PERMISSION = 1001;
+    private static final int REQUEST_NOTIFICATION_PERMISSION = 1002;
+    private static final String EXPORT_DIRECTORY = "exports";
+    // 導出進度更新介面的最短間隔
+    private static final long EXPORT_PROGRESS_INTERVAL_MS = 200;
+    
+    // 中斷測試的恢復在整個程序中同一時間只執行一次
+    private static final AtomicBoolean RECOVERY_RUNNING = new AtomicBoolean(false);
     
     private TextView tvPermissionStatus;
     private Button btnStartFloating;
+    private Button btnStartNotificationOnly;
     private Button btnCheckPermissions;
     private Button btnHistory;
     
@@ -61,11 +93,15 @@ public class MainActivity extends AppCompatActivity {
         
         // 檢查是否需要顯示測試結果
         checkAndShowTestResult();
+        
+        // 恢復上次被中斷的測試
+        recoverInterruptedRuns();
     }
     
     private void initializeViews() {
         tvPermissionStatus = findViewById(R.id.tv_permission_status);
         btnStartFloating = findViewById(R.id.btn_start_floating);
+        btnStartNotificationOnly = findViewById(R.id.btn_start_notification_only);
         btnCheckPermissions = findViewById(R.id.btn_check_permissions);
         btnHistory = findViewById(R.id.btn_history);
         
@@ -83,12 +119,13 @@ public class MainActivity extends AppCompatActivity {
     
     private void initializeManagers() {
         batteryMonitor = new BatteryMonitor(this);
-        testManager = new TestManager(this, batteryMonitor);
+        testManager = TestManager.getInstance(getFilesDir(), AndroidClock.INSTANCE);
         preferenceManager = new PreferenceManager(this);
     }
     
     private void setupClickListeners() {
         btnStartFloating.setOnClickListener(v -> startFloatingWindow());
+        btnStartNotificationOnly.setOnClickListener(v -> startNotificationOnlyTest());
         btnCheckPermissions.setOnClickListener(v -> checkAndRequestPermissions());
         btnHistory.setOnClickListener(v -> openHistory());
         
@@ -156,6 +193,9 @@ public class MainActivity extends AppCompatActivity {
             int endBattery = intent.getIntExtra("test_end_battery", 0);
             long duration = intent.getLongExtra("test_duration", 0);
             String testSubject = intent.getStringExtra("test_subject");
+            double chargeMah = intent.getDoubleExtra("test_charge_mah", 0);
+            double energyMwh = intent.getDoubleExtra("test_energy_mwh", 0);
+            int levelSteps = intent.getIntExtra("test_level_steps", 0);
             
             if (startTime > 0 && endTime > 0) {
                 // 創建TestResult對象
@@ -166,6 +206,17 @@ public class MainActivity extends AppCompatActivity {
                 result.setEndBatteryLevel(endBattery);
                 result.setDuration(duration);
                 result.setTestSubject(testSubject);
+                result.setChargeConsumedMah(chargeMah);
+                result.setEnergyMilliwattHours(energyMwh);
+                result.setAveragePowerMilliwatts(intent.getDoubleExtra("test_average_power_mw", 0));
+                result.setPeakPowerMilliwatts(intent.getDoubleExtra("test_peak_power_mw", 0));
+                if (levelSteps >= 2) {
+                    result.setLevelStepEstimate(levelSteps,
+                        intent.getDoubleExtra("test_estimated_consumption", 0),
+                        intent.getDoubleExtra("test_estimated_consumption_error", Double.NaN),
+                        intent.getDoubleExtra("test_estimated_rate", 0),
+                        intent.getDoubleExtra("test_estimated_rate_error", Double.NaN));
+                }
                 
                 // 顯示測試結果對話框
                 TestResultDialog dialog = new TestResultDialog(this, result);
@@ -174,6 +225,60 @@ public class MainActivity extends AppCompatActivity {
         }
     }
     
+    private void recoverInterruptedRuns() {
+        final File runsDir = new File(getFilesDir(), SampleLog.RUNS_DIRECTORY);
+        if (!runsDir.isDirectory()) {
+            return;
+        }
+        
+        // 服務正在執行或仍可繼續的測試不由日誌匯入，可繼續的測試交由監測服務恢復
+        // 是否執行中由服務本身判斷：日誌可能建立失敗，系統時間調整後也可能不再可恢復
+        long activeRunId = MonitorService.getHostedRunId();
+        if (activeRunId != SampleLogRecovery.NO_RUN) {
+            Log.d(TAG, "Run " + activeRunId + " is hosted by the monitor service");
+        } else if (testManager.isResumable()) {
+            activeRunId = testManager.getRunId();
+            ContextCompat.startForegroundService(this, new Intent(this, MonitorService.class));
+            if (checkFloatingPermission()) {
+                startService(new Intent(this, FloatingWindowService.class));
+            }
+        } else {
+            testManager.abandon();
+        }
+        
+        // 旋轉等重新建立時上一次的恢復可能仍在進行，同一時間只執行一次
+        if (!RECOVERY_RUNNING.compareAndSet(false, true)) {
+            return;
+        }
+        final long skipRunId = activeRunId;
+        new Thread(() -> {
+            // 逐筆寫入不同步，全部完成後只同步一次；保存或同步失敗時日誌不會被標記，下次啟動再恢復
+            int recovered;
+            try {
+                recovered = SampleLogRecovery.recoverAll(runsDir, skipRunId, new SampleLogRecovery.Callback() {
+                    @Override
+                    public void onRecovered(TestResult result) throws Exception {
+                        if (preferenceManager.saveRecoveredTestResult(result)) {
+                            Log.d(TAG, "Recovered interrupted test: " + result);
+                        }
+                    }
+                    
+                    @Override
+                    public void onCommit() throws Exception {
+                        preferenceManager.syncTestHistory();
+                    }
+                });
+            } finally {
+                RECOVERY_RUNNING.set(false);
+            }
+            
+            if (recovered > 0) {
+                runOnUiThread(() -> Toast.makeText(this,
+                    "已恢復 " + recovered + " 筆中斷的測試記錄", Toast.LENGTH_LONG).show());
+            }
+        }, "RunRecovery").start();
+    }
+    
     private void startFloatingWindow() {
         if (checkFloatingPermission()) {
             Intent intent = new Intent(this, FloatingWindowService.class);
@@ -184,6 +289,41 @@ public class MainActivity extends AppCompatActivity {
         }
     }
     
+    /**
+     * 不顯示浮動窗口開始測試，避免浮動窗口的繪製成本影響量測
+     * 測試狀態與停止按鈕在常駐通知中
+     */
+    private void startNotificationOnlyTest() {
+        if (testManager.isInProgress()) {
+            Toast.makeText(this, "已有進行中的測試", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
+        // Android 13 以上需要通知權限才會顯示常駐通知，拒絕時測試仍會進行
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            requestPermissions(new String[] { Manifest.permission.POST_NOTIFICATIONS },
+                REQUEST_NOTIFICATION_PERMISSION);
+        }
+        
+        // 關閉浮動窗口
+        stopService(new Intent(this, FloatingWindowService.class));
+        
+        new TestSubjectDialog(this).show(new TestSubjectDialog.OnTestSubjectSelectedListener() {
+            @Override
+            public void onTestSubjectSelected(String testSubject) {
+                ContextCompat.startForegroundService(MainActivity.this,
+                    MonitorService.createStartIntent(MainActivity.this, testSubject));
+            }
+            
+            @Override
+            public void onCancelled() {
+                Log.d(TAG, "Test subject selection cancelled");
+            }
+        });
+    }
+    
     private boolean checkFloatingPermission() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
             return Settings.canDrawOverlays(this);
@@ -265,19 +405,150 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private void exportData() {
+        String[] options = {
+            "CSV（僅測試記錄）",
+            "CSV（含取樣數據）",
+            "CSV（含每分鐘功率摘要）",
+            "JSON Lines（僅測試記錄）",
+            "JSON Lines（含取樣數據）",
+            "JSON Lines（含每分鐘功率摘要）"
+        };
+        
+        new AlertDialog.Builder(this)
+            .setTitle("導出數據")
+            .setItems(options, (dialog, which) -> startExport(
+                which < 3 ? HistoryExporter.FORMAT_CSV : HistoryExporter.FORMAT_JSON_LINES,
+                which % 3 != 0, which % 3 == 2))
+            .setNegativeButton("取消", null)
+            .show();
+    }
+    
+    /**
+     * 在背景執行緒串流導出測試記錄，完成後以分享意圖交出檔案
+     */
+    private void startExport(int format, boolean includeSamples, boolean powerSummary) {
+        // 進度對話框
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        int padding = (int) (24 * getResources().getDisplayMetrics().density);
+        layout.setPadding(padding, padding, padding, 0);
+        final ProgressBar progressBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setIndeterminate(true);
+        final TextView tvProgress = new TextView(this);
+        tvProgress.setText("準備導出...");
+        layout.addView(progressBar);
+        layout.addView(tvProgress);
+        
+        final File exportDir = new File(getCacheDir(), EXPORT_DIRECTORY);
+        final String settingsJson = preferenceManager.exportSettings();
+        final HistoryExporter[] exporter = new HistoryExporter[1];
+        
+        final AlertDialog progressDialog = new AlertDialog.Builder(this)
+            .setTitle("導出數據")
+            .setView(layout)
+            .setCancelable(false)
+            .setNegativeButton("取消", (dialog, which) -> {
+                synchronized (exporter) {
+                    if (exporter[0] != null) {
+                        exporter[0].cancel();
+                    }
+                }
+            })
+            .show();
+        
+        new Thread(() -> {
+            try {
+                // 清除上次導出的檔案
+                File[] oldFiles = exportDir.listFiles();
+                if (oldFiles != null) {
+                    for (File file : oldFiles) {
+                        file.delete();
+                    }
+                }
+                
+                HistoryExporter historyExporter = new HistoryExporter(preferenceManager.getRunStore(),
+                    new File(getFilesDir(), SampleLog.RUNS_DIRECTORY), format, includeSamples);
+                historyExporter.setSettingsJson(settingsJson);
+                historyExporter.setPowerSummary(powerSummary);
+                synchronized (exporter) {
+                    exporter[0] = historyExporter;
+                }
+                
+                String baseName = "battery_history_"
+                    + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+                final List<File> files = historyExporter.export(exportDir, baseName,
+                    new HistoryExporter.ProgressListener() {
+                        private long lastUpdate = -EXPORT_PROGRESS_INTERVAL_MS;
+                        
+                        @Override
+                        public void onProgress(int runsExported, int totalRuns, long samplesExported) {
+                            // 進度回調可能每秒數百次，只在間隔到達時才投遞到主執行緒
+                            long now = SystemClock.elapsedRealtime();
+                            if (now - lastUpdate < EXPORT_PROGRESS_INTERVAL_MS) {
+                                return;
+                            }
+                            lastUpdate = now;
+                            runOnUiThread(() -> {
+                                progressBar.setIndeterminate(false);
+                                progressBar.setMax(Math.max(1, totalRuns));
+                                progressBar.setProgress(runsExported);
+                                tvProgress.setText(includeSamples
+                                    ? String.format(Locale.getDefault(), "已導出 %d / %d 筆測試，%d 筆取樣",
+                                        runsExported, totalRuns, samplesExported)
+                                    : String.format(Locale.getDefault(), "已導出 %d / %d 筆測試",
+                                        runsExported, totalRuns));
+                            });
+                        }
+                    });
+                
+                runOnUiThread(() -> {
+                    progressDialog.dismiss();
+                    shareExportedFiles(files, format);
+                });
+            } catch (InterruptedIOException e) {
+                Log.d(TAG, "Export cancelled");
+                runOnUiThread(() -> Toast.makeText(this, "已取消導出", Toast.LENGTH_SHORT).show());
+            } catch (Exception e) {
+                Log.e(TAG, "Error exporting history", e);
+                runOnUiThread(() -> {
+                    progressDialog.dismiss();
+                    Toast.makeText(this, "導出過程中發生錯誤", Toast.LENGTH_SHORT).show();
+                });
+            }
+        }, "HistoryExport").start();
+    }
+    
+    private void shareExportedFiles(List<File> files, int format) {
         try {
-            String data = preferenceManager.exportSettings();
-            if (data != null) {
-                new AlertDialog.Builder(this)
-                    .setTitle("導出數據")
-                    .setMessage("數據導出功能將在後續版本中實現")
-                    .setPositiveButton("確定", null)
-                    .show();
+            String authority = getPackageName() + ".fileprovider";
+            ArrayList<Uri> uris = new ArrayList<>();
+            for (File file : files) {
+                uris.add(FileProvider.getUriForFile(this, authority, file));
+            }
+            
+            Intent intent;
+            if (uris.size() == 1) {
+                intent = new Intent(Intent.ACTION_SEND);
+                intent.putExtra(Intent.EXTRA_STREAM, uris.get(0));
+                intent.setType(format == HistoryExporter.FORMAT_CSV ? "text/csv" : "application/x-ndjson");
             } else {
-                Toast.makeText(this, "導出失敗", Toast.LENGTH_SHORT).show();
+                intent = new Intent(Intent.ACTION_SEND_MULTIPLE);
+                intent.putParcelableArrayListExtra(Intent.EXTRA_STREAM, uris);
+                intent.setType("text/*");
             }
+            
+            // 透過 ClipData 授權接收端讀取所有檔案
+            ClipData clipData = ClipData.newRawUri(files.get(0).getName(), uris.get(0));
+            for (int i = 1; i < uris.size(); i++) {
+                clipData.addItem(new ClipData.Item(uris.get(i)));
+            }
+            intent.setClipData(clipData);
+            intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            
+            startActivity(Intent.createChooser(intent, "分享導出檔案"));
         } catch (Exception e) {
-            Toast.makeText(this, "導出過程中發生錯誤", Toast.LENGTH_SHORT).show();
+            Log.e(TAG, "Error sharing exported files", e);
+            Toast.makeText(this, "無法分享導出檔案", Toast.LENGTH_SHORT).show();
         }
     }
     
@@ -291,12 +562,25 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private void clearData() {
-        try {
-            preferenceManager.clearTestHistory();
-            Toast.makeText(this, "數據已清除", Toast.LENGTH_SHORT).show();
-        } catch (Exception e) {
-            Toast.makeText(this, "清除數據時發生錯誤", Toast.LENGTH_SHORT).show();
+        // 進行中或可繼續的測試仍在使用自己的取樣目錄
+        long activeRunId = SampleLogRecovery.NO_RUN;
+        if (testManager.isInProgress()) {
+            activeRunId = testManager.getRunId();
         }
+        
+        preferenceManager.clearTestHistoryAsync(activeRunId, new PersistenceQueue.ClearCallback() {
+            @Override
+            public void onCleared(int deletedRuns) {
+                Log.d(TAG, "Test history cleared, deleted " + deletedRuns + " run directories");
+                runOnUiThread(() -> Toast.makeText(MainActivity.this, "數據已清除", Toast.LENGTH_SHORT).show());
+            }
+            
+            @Override
+            public void onFailed(Exception e) {
+                Log.e(TAG, "Error clearing test history", e);
+                runOnUiThread(() -> Toast.makeText(MainActivity.this, "清除數據時發生錯誤", Toast.LENGTH_SHORT).show());
+            }
+        });
     }
     
     private void openBrightnessCalibration() {
@@ -342,4 +626,12 @@ public class MainActivity extends AppCompatActivity {
         super.onResume();
         updateUI();
     }
+    
+    @Override
+    protected void onDestroy() {
+        if (batteryMonitor != null) {
+            batteryMonitor.release();
+        }
+        super.onDestroy();
+    }
 }
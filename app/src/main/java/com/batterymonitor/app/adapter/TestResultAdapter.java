@@ -7,6 +7,8 @@ import android.widget.Button;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.batterymonitor.app.R;
@@ -18,7 +20,21 @@ import java.util.List;
 
 public class TestResultAdapter extends RecyclerView.Adapter<TestResultAdapter.ViewHolder> {
     
-    private List<TestResult> testResults = new ArrayList<>();
+    // 以記錄 ID 判斷是否為同一項目，差異計算在背景執行緒進行
+    private static final DiffUtil.ItemCallback<TestResultItem> DIFF_CALLBACK =
+        new DiffUtil.ItemCallback<TestResultItem>() {
+            @Override
+            public boolean areItemsTheSame(@NonNull TestResultItem oldItem, @NonNull TestResultItem newItem) {
+                return oldItem.id == newItem.id;
+            }
+            
+            @Override
+            public boolean areContentsTheSame(@NonNull TestResultItem oldItem, @NonNull TestResultItem newItem) {
+                return oldItem.hasSameContents(newItem);
+            }
+        };
+    
+    private final AsyncListDiffer<TestResultItem> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private OnItemClickListener onItemClickListener;
     private OnCopyClickListener onCopyClickListener;
     
@@ -30,44 +46,77 @@ public class TestResultAdapter extends RecyclerView.Adapter<TestResultAdapter.Vi
         void onCopyClick(TestResult testResult);
     }
     
+    public TestResultAdapter() {
+        setHasStableIds(true);
+    }
+    
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
             .inflate(R.layout.item_test_result, parent, false);
-        return new ViewHolder(view);
-    }
-    
-    @Override
-    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        TestResult result = testResults.get(position);
-        holder.bind(result);
+        final ViewHolder holder = new ViewHolder(view);
         
         holder.itemView.setOnClickListener(v -> {
-            if (onItemClickListener != null) {
-                onItemClickListener.onItemClick(result);
+            if (onItemClickListener != null && holder.item != null) {
+                onItemClickListener.onItemClick(holder.item.result);
             }
         });
         
         holder.btnCopyResult.setOnClickListener(v -> {
+            if (holder.item == null) {
+                return;
+            }
             if (onCopyClickListener != null) {
-                onCopyClickListener.onCopyClick(result);
+                onCopyClickListener.onCopyClick(holder.item.result);
             } else {
                 // 默認複製行為
                 ClipboardManager clipboardManager = new ClipboardManager(v.getContext());
-                clipboardManager.copyTestResult(result);
+                clipboardManager.copyTestResult(holder.item.result);
             }
         });
+        
+        return holder;
+    }
+    
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        holder.bind(differ.getCurrentList().get(position));
     }
     
     @Override
     public int getItemCount() {
-        return testResults.size();
+        return differ.getCurrentList().size();
     }
     
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).id;
+    }
+    
+    /**
+     * 提交新的項目列表，差異計算完成後才更新畫面
+     * 每次都必須傳入新的列表實例
+     */
+    public void submitItems(List<TestResultItem> items, Runnable commitCallback) {
+        differ.submitList(items, commitCallback);
+    }
+    
+    public void submitItems(List<TestResultItem> items) {
+        differ.submitList(items);
+    }
+    
+    /**
+     * 直接以測試結果設定列表（在呼叫執行緒上建立顯示模型）
+     */
     public void setTestResults(List<TestResult> testResults) {
-        this.testResults = testResults != null ? testResults : new ArrayList<>();
-        notifyDataSetChanged();
+        List<TestResultItem> items = new ArrayList<>();
+        if (testResults != null) {
+            for (TestResult result : testResults) {
+                items.add(TestResultItem.from(result));
+            }
+        }
+        submitItems(items);
     }
     
     public void setOnItemClickListener(OnItemClickListener listener) {
@@ -88,6 +137,8 @@ public class TestResultAdapter extends RecyclerView.Adapter<TestResultAdapter.Vi
         private TextView tvTimeRange;
         private Button btnCopyResult;
         
+        private TestResultItem item;
+        
         public ViewHolder(@NonNull View itemView) {
             super(itemView);
             
@@ -101,36 +152,24 @@ public class TestResultAdapter extends RecyclerView.Adapter<TestResultAdapter.Vi
             btnCopyResult = itemView.findViewById(R.id.btn_copy_result);
         }
         
-        public void bind(TestResult result) {
-            // 設置測試日期
-            tvTestDate.setText(result.getFormattedStartTime().substring(0, 10)); // 只顯示日期部分
+        public void bind(TestResultItem item) {
+            this.item = item;
+            
+            tvTestDate.setText(item.dateText);
             
             // 設置測試主題
-            String testSubject = result.getTestSubject();
-            if (testSubject != null && !testSubject.trim().isEmpty()) {
-                tvTestSubject.setText(testSubject);
+            if (item.subjectText != null) {
+                tvTestSubject.setText(item.subjectText);
                 tvTestSubject.setVisibility(View.VISIBLE);
             } else {
                 tvTestSubject.setVisibility(View.GONE);
             }
             
-            // 設置電量消耗
-            tvBatteryConsumed.setText("-" + result.getBatteryConsumed() + "%");
-            
-            // 設置持續時間
-            tvDuration.setText(result.getFormattedDuration());
-            
-            // 設置電量變化範圍
-            tvBatteryRange.setText(String.format("%d%% → %d%%", 
-                result.getStartBatteryLevel(), result.getEndBatteryLevel()));
-            
-            // 設置消耗率
-            tvConsumptionRate.setText(result.getFormattedConsumptionRate());
-            
-            // 設置時間範圍
-            tvTimeRange.setText(String.format("%s - %s", 
-                result.getFormattedStartTimeShort(), result.getFormattedEndTimeShort()));
+            tvBatteryConsumed.setText(item.consumedText);
+            tvDuration.setText(item.durationText);
+            tvBatteryRange.setText(item.batteryRangeText);
+            tvConsumptionRate.setText(item.consumptionRateText);
+            tvTimeRange.setText(item.timeRangeText);
         }
     }
 }
-
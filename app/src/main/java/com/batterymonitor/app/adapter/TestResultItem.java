@@ -0,0 +1,67 @@
+package com.batterymonitor.app.adapter;
+
+import com.batterymonitor.app.format.DateFormats;
+import com.batterymonitor.app.model.TestResult;
+
+/**
+ * 歷史記錄列表項目的顯示模型
+ * 所有文字在背景執行緒預先格式化，onBindViewHolder 只需設定文字
+ */
+public final class TestResultItem {
+    
+    final long id;
+    final TestResult result;
+    final String dateText;
+    final String subjectText;
+    final String consumedText;
+    final String durationText;
+    final String batteryRangeText;
+    final String consumptionRateText;
+    final String timeRangeText;
+    
+    private TestResultItem(TestResult result) {
+        this.id = result.getId();
+        this.result = result;
+        this.dateText = DateFormats.formatDate(result.getStartTime());
+        
+        String subject = result.getTestSubject();
+        this.subjectText = subject != null && !subject.trim().isEmpty() ? subject : null;
+        
+        this.consumedText = "-" + result.getBatteryConsumed() + "%";
+        this.durationText = result.getFormattedDuration();
+        this.batteryRangeText = String.format("%d%% → %d%%",
+            result.getStartBatteryLevel(), result.getEndBatteryLevel());
+        this.consumptionRateText = result.getFormattedConsumptionRate();
+        this.timeRangeText = String.format("%s - %s",
+            result.getFormattedStartTimeShort(), result.getFormattedEndTimeShort());
+    }
+    
+    /**
+     * 建立顯示模型，應在背景執行緒呼叫
+     */
+    public static TestResultItem from(TestResult result) {
+        return new TestResultItem(result);
+    }
+    
+    public long getId() {
+        return id;
+    }
+    
+    public TestResult getResult() {
+        return result;
+    }
+    
+    boolean hasSameContents(TestResultItem other) {
+        return equalsNullable(subjectText, other.subjectText)
+            && dateText.equals(other.dateText)
+            && consumedText.equals(other.consumedText)
+            && durationText.equals(other.durationText)
+            && batteryRangeText.equals(other.batteryRangeText)
+            && consumptionRateText.equals(other.consumptionRateText)
+            && timeRangeText.equals(other.timeRangeText);
+    }
+    
+    private static boolean equalsNullable(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -2,28 +2,70 @@ package com.batterymonitor.app.dialog;
 
 import android.app.AlertDialog;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.Button;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import androidx.core.content.ContextCompat;
+
 import com.batterymonitor.app.R;
+import com.batterymonitor.app.analysis.Lttb;
+import com.batterymonitor.app.analysis.PowerEnvelope;
+import com.batterymonitor.app.data.PowerPyramid;
+import com.batterymonitor.app.data.PowerTrace;
+import com.batterymonitor.app.data.SampleLog;
 import com.batterymonitor.app.model.TestResult;
 import com.batterymonitor.app.utils.ClipboardManager;
 import com.batterymonitor.app.utils.DeviceInfoManager;
+import com.batterymonitor.app.utils.PreferenceManager;
+import com.batterymonitor.app.view.PowerChartView;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class TestResultDialog {
     
+    private static final String TAG = "TestResultDialog";
+    
+    // 等待寫入佇列完成剛結束測試的日誌關閉
+    private static final long PERSISTENCE_WAIT_MS = 3000;
+    
+    // 趨勢折線每隔幾個像素一個點
+    private static final int LINE_POINT_SPACING_PX = 4;
+    
     private Context context;
     private TestResult testResult;
     private ClipboardManager clipboardManager;
     private DeviceInfoManager deviceInfoManager;
     
+    // 功率曲線：在背景讀取摘要快取，縮放時在背景重新抽取包絡
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private ExecutorService chartExecutor;
+    private PowerChartView chartPower;
+    private File logFile;
+    private PowerPyramid powerPyramid;
+    
+    // 放大到 1 秒以下時讀入的原始取樣，只在 chartExecutor 上存取
+    private PowerTrace windowTrace;
+    private long windowFromNanos;
+    private long windowToNanos;
+    private PowerEnvelope backgroundEnvelope;
+    private long[] lineTimestamps;
+    private float[] linePowers;
+    private final Lttb lttb = new Lttb(1024);
+    private boolean isDecimating = false;
+    private boolean hasPendingDecimation = false;
+    private boolean isDismissed = false;
+    private long pendingFromNanos;
+    private long pendingToNanos;
+    private int pendingBucketCount;
+    
     public TestResultDialog(Context context, TestResult testResult) {
         this.context = context;
         this.testResult = testResult;
@@ -58,7 +100,10 @@ public class TestResultDialog {
             dialog.dismiss();
         });
         
+        dialog.setOnDismissListener(d -> releaseChart());
+        
         dialog.show();
+        loadPowerTrace();
     }
     
     private void initViews(View dialogView) {
@@ -71,6 +116,13 @@ public class TestResultDialog {
         TextView tvBatteryChange = dialogView.findViewById(R.id.tv_battery_change);
         TextView tvConsumption = dialogView.findViewById(R.id.tv_consumption);
         TextView tvConsumptionRate = dialogView.findViewById(R.id.tv_consumption_rate);
+        TextView tvChargeConsumed = dialogView.findViewById(R.id.tv_charge_consumed);
+        LinearLayout layoutChargeConsumed = dialogView.findViewById(R.id.layout_charge_consumed);
+        TextView tvPower = dialogView.findViewById(R.id.tv_power);
+        LinearLayout layoutPower = dialogView.findViewById(R.id.layout_power);
+        TextView tvWakeLock = dialogView.findViewById(R.id.tv_wakelock);
+        LinearLayout layoutWakeLock = dialogView.findViewById(R.id.layout_wakelock);
+        chartPower = dialogView.findViewById(R.id.chart_power);
         
         // 設置標題
         tvTitle.setText("📊 測試完成");
@@ -79,10 +131,7 @@ public class TestResultDialog {
         tvDeviceInfo.setText(deviceInfoManager.getDeviceModel());
         
         // 設置時間範圍
-        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-        String startTime = timeFormat.format(new Date(testResult.getStartTime()));
-        String endTime = timeFormat.format(new Date(testResult.getEndTime()));
-        tvTimeRange.setText(startTime + " - " + endTime);
+        tvTimeRange.setText(testResult.getFormattedStartTimeShort() + " - " + testResult.getFormattedEndTimeShort());
         
         // 設置測試主題
         String testSubject = testResult.getTestSubject();
@@ -105,11 +154,205 @@ public class TestResultDialog {
         // 設置電量變化
         tvBatteryChange.setText(testResult.getStartBatteryLevel() + "% → " + testResult.getEndBatteryLevel() + "%");
         
-        // 設置消耗量
-        tvConsumption.setText(testResult.getBatteryConsumed() + "%");
+        // 設置消耗量（有跳變估計時附上小數級估計）
+        if (testResult.hasLevelStepEstimate()) {
+            tvConsumption.setText(testResult.getBatteryConsumed() + "%（估計 "
+                + testResult.getFormattedEstimatedConsumption() + "）");
+        } else {
+            tvConsumption.setText(testResult.getBatteryConsumed() + "%");
+        }
+        
+        // 設置消耗電荷與能量（僅在有取樣數據時顯示）
+        if (testResult.hasHighResolutionData()) {
+            tvChargeConsumed.setText(testResult.getFormattedChargeConsumed());
+            layoutChargeConsumed.setVisibility(View.VISIBLE);
+        } else {
+            layoutChargeConsumed.setVisibility(View.GONE);
+        }
+        
+        // 設置平均與峰值功率（僅在有電壓 × 電流積分時顯示）
+        if (testResult.hasPowerData()) {
+            tvPower.setText(testResult.getFormattedPower());
+            layoutPower.setVisibility(View.VISIBLE);
+        } else {
+            layoutPower.setVisibility(View.GONE);
+        }
+        
+        // 設置螢幕常亮持有時間（租約中斷時提示結果可能受影響）
+        if (testResult.hasWakeLockData()) {
+            tvWakeLock.setText(testResult.getFormattedWakeLock());
+            layoutWakeLock.setVisibility(View.VISIBLE);
+        } else {
+            layoutWakeLock.setVisibility(View.GONE);
+        }
         
         // 設置消耗率
         tvConsumptionRate.setText(String.format("%.1f%%/小時", testResult.getConsumptionRate()));
+        
+        // 功率曲線在取樣日誌讀取完成後才顯示
+        chartPower.setZoomEnabled(true);
+        chartPower.setShowsLabels(true);
+        chartPower.setChartColor(ContextCompat.getColor(context, R.color.primary_color));
+        chartPower.setOnViewportChangeListener(this::requestDecimation);
+    }
+    
+    /**
+     * 在背景載入這次測試的功率數據（只有高解析度取樣的測試才有）
+     * 曲線由測試結束時寫入的多解析度摘要快取繪製，不讀取整個取樣日誌；放大到 1 秒以下時才讀取視窗內的原始取樣
+     */
+    private void loadPowerTrace() {
+        if (!testResult.hasPowerData()) {
+            return;
+        }
+        File runDir = SampleLog.getRunDirectory(context.getFilesDir(), testResult.getStartTime());
+        logFile = new File(runDir, SampleLog.FILE_NAME);
+        final File pyramidFile = new File(runDir, PowerPyramid.FILE_NAME);
+        
+        chartExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "PowerChartLoader");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        chartExecutor.execute(() -> {
+            // 剛結束的測試，日誌關閉與摘要寫入可能還在寫入佇列中
+            PreferenceManager.getPersistenceQueue().awaitDurable(PERSISTENCE_WAIT_MS);
+            
+            PowerPyramid pyramid = null;
+            if (pyramidFile.exists()) {
+                try {
+                    pyramid = PowerPyramid.readFrom(pyramidFile);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error reading power pyramid from " + pyramidFile, e);
+                }
+            }
+            
+            // 沒有可用的快取（例如由崩潰恢復匯入的測試）時掃描一次日誌建立並補寫，下次開啟直接使用
+            if (pyramid == null && logFile.exists()) {
+                try {
+                    pyramid = PowerPyramid.fromSampleLog(logFile);
+                    if (!pyramid.isEmpty()) {
+                        PreferenceManager.getPersistenceQueue().savePowerPyramid(pyramid, pyramidFile);
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Error building power pyramid from " + logFile, e);
+                }
+            }
+            
+            if (pyramid != null) {
+                final PowerPyramid loaded = pyramid;
+                mainHandler.post(() -> onPowerPyramidLoaded(loaded));
+            }
+        });
+    }
+    
+    private void onPowerPyramidLoaded(PowerPyramid pyramid) {
+        if (isDismissed || pyramid.isEmpty()) {
+            return;
+        }
+        powerPyramid = pyramid;
+        showChart(pyramid.getFirstTimestamp(), pyramid.getLastTimestamp());
+    }
+    
+    private void showChart(long fromNanos, long toNanos) {
+        chartPower.setVisibility(View.VISIBLE);
+        // 尚未排版時寬度為 0，會在 onSizeChanged 後請求第一次抽取
+        chartPower.setDataRange(fromNanos, toNanos);
+    }
+    
+    /**
+     * 視窗改變時重新抽取包絡
+     * 同一時間只有一個抽取在背景執行，期間的請求只保留最新一個
+     */
+    private void requestDecimation(long fromNanos, long toNanos, int bucketCount) {
+        pendingFromNanos = fromNanos;
+        pendingToNanos = toNanos;
+        pendingBucketCount = bucketCount;
+        hasPendingDecimation = true;
+        if (!isDecimating) {
+            startDecimation();
+        }
+    }
+    
+    private void startDecimation() {
+        if (isDismissed || powerPyramid == null || !hasPendingDecimation) {
+            return;
+        }
+        final PowerPyramid pyramid = powerPyramid;
+        final long fromNanos = pendingFromNanos;
+        final long toNanos = pendingToNanos;
+        final int bucketCount = pendingBucketCount;
+        final int pointCount = Math.max(3, bucketCount / LINE_POINT_SPACING_PX);
+        if (backgroundEnvelope == null || backgroundEnvelope.capacity() < bucketCount) {
+            backgroundEnvelope = new PowerEnvelope(bucketCount);
+            lineTimestamps = new long[bucketCount];
+            linePowers = new float[bucketCount];
+        }
+        final PowerEnvelope envelope = backgroundEnvelope;
+        final long[] timestamps = lineTimestamps;
+        final float[] powers = linePowers;
+        hasPendingDecimation = false;
+        isDecimating = true;
+        
+        try {
+            chartExecutor.execute(() -> {
+                // 包絡顯示峰值範圍，LTTB 折線顯示趨勢，兩者的成本都與像素數同量級
+                // 每個像素至少涵蓋 1 秒時摘要已足夠，更細時才讀取視窗內的原始取樣
+                PowerTrace trace = pyramid.levelFor(fromNanos, toNanos, bucketCount) < 0
+                    ? loadWindow(pyramid, fromNanos, toNanos) : null;
+                final int lineCount;
+                if (trace != null) {
+                    trace.decimate(fromNanos, toNanos, bucketCount, envelope);
+                    lineCount = trace.downsample(fromNanos, toNanos, pointCount, lttb, timestamps, powers);
+                } else {
+                    pyramid.decimate(fromNanos, toNanos, bucketCount, envelope);
+                    lineCount = pyramid.downsample(fromNanos, toNanos, pointCount, lttb, timestamps, powers);
+                }
+                mainHandler.post(() -> {
+                    // 結果已複製到圖表，下一次抽取可以重複使用
+                    isDecimating = false;
+                    if (isDismissed) {
+                        return;
+                    }
+                    chartPower.setEnvelope(envelope);
+                    chartPower.setLine(timestamps, powers, lineCount);
+                    startDecimation();
+                });
+            });
+        } catch (Exception e) {
+            // 執行器已關閉（對話框正在關閉）
+            isDecimating = false;
+        }
+    }
+    
+    /**
+     * 讀取涵蓋視窗的原始取樣，只在 chartExecutor 上呼叫
+     * 左右各多讀一個視窗寬度，小幅平移時沿用上一次的結果；讀取失敗時回傳 null，改用最細的摘要層
+     */
+    private PowerTrace loadWindow(PowerPyramid pyramid, long fromNanos, long toNanos) {
+        if (windowTrace != null && fromNanos >= windowFromNanos && toNanos <= windowToNanos) {
+            return windowTrace;
+        }
+        if (!logFile.exists()) {
+            return null;
+        }
+        long span = toNanos - fromNanos;
+        windowTrace = null;
+        try {
+            windowTrace = PowerTrace.loadRange(logFile, fromNanos - span, toNanos + span, pyramid);
+            windowFromNanos = fromNanos - span;
+            windowToNanos = toNanos + span;
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading power samples from " + logFile, e);
+        }
+        return windowTrace;
+    }
+    
+    private void releaseChart() {
+        isDismissed = true;
+        powerPyramid = null;
+        if (chartExecutor != null) {
+            chartExecutor.shutdownNow();
+        }
     }
 }
 
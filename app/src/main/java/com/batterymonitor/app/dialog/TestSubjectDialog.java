@@ -1,5 +1,6 @@
 package com.batterymonitor.app.dialog;
 
+import android.app.Activity;
 import android.app.Dialog;
 import android.content.Context;
 import android.graphics.PixelFormat;
@@ -101,7 +102,10 @@ public class TestSubjectDialog {
         // 設定視窗參數
         WindowManager.LayoutParams params = new WindowManager.LayoutParams();
         
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+        if (context instanceof Activity) {
+            // 從 Activity 開啟時附加在 Activity 視窗上，不需要浮動窗口權限
+            params.type = WindowManager.LayoutParams.TYPE_APPLICATION;
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             params.type = WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY;
         } else {
             params.type = WindowManager.LayoutParams.TYPE_PHONE;
@@ -0,0 +1,38 @@
+package com.batterymonitor.app.manager;
+
+import android.content.Context;
+import android.os.BatteryManager;
+
+/**
+ * 經由 BatteryManager 讀取電流與計數器，作為 sysfs 不可讀時的回退來源
+ * 其他欄位回傳 UNSUPPORTED，由 BatterySampler 改用最近的電池快照。
+ */
+public final class BatteryManagerSource implements BatterySource {
+    
+    private final BatteryManager batteryManager;
+    
+    public BatteryManagerSource(Context context) {
+        this.batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+    }
+    
+    @Override
+    public long read(int field) {
+        switch (field) {
+            case FIELD_CURRENT_NOW:
+                return fromInt(batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CURRENT_NOW));
+            case FIELD_CURRENT_AVERAGE:
+                return fromInt(batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CURRENT_AVERAGE));
+            case FIELD_CHARGE_COUNTER:
+                return fromInt(batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CHARGE_COUNTER));
+            case FIELD_ENERGY_COUNTER:
+                // 不支援時回傳 Long.MIN_VALUE，與 UNSUPPORTED 相同
+                return batteryManager.getLongProperty(BatteryManager.BATTERY_PROPERTY_ENERGY_COUNTER);
+            default:
+                return UNSUPPORTED;
+        }
+    }
+    
+    private static long fromInt(int value) {
+        return value == Integer.MIN_VALUE ? UNSUPPORTED : value;
+    }
+}
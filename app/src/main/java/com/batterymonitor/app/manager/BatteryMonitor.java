@@ -3,60 +3,86 @@ package com.batterymonitor.app.manager;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.os.BatteryManager;
 import android.util.Log;
 
-public class BatteryMonitor {
+import com.batterymonitor.app.model.BatterySnapshot;
+import com.batterymonitor.app.receiver.BatteryReceiver;
+
+/**
+ * 電池監測器
+ * 以一個長期註冊的 BatteryReceiver 接收電池廣播，並將最新狀態發布為不可變的 BatterySnapshot。
+ * 所有 getter 只讀取快照欄位，不再每次向系統查詢。
+ */
+public class BatteryMonitor extends BatteryStatus {
     
     private static final String TAG = "BatteryMonitor";
     
-    private Context context;
-    private int currentBatteryLevel = 100;
-    private boolean isCharging = false;
+    private final Context context;
+    private final BatteryReceiver batteryReceiver = new BatteryReceiver();
+    
+    private boolean isRegistered = false;
     
     public BatteryMonitor(Context context) {
-        this.context = context;
-        updateBatteryInfo();
+        this.context = context.getApplicationContext();
+        registerReceiver();
     }
     
-    public void updateBatteryInfo() {
+    private void registerReceiver() {
         try {
             IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
-            Intent batteryStatus = context.registerReceiver(null, filter);
+            filter.addAction(Intent.ACTION_BATTERY_LOW);
+            filter.addAction(Intent.ACTION_BATTERY_OKAY);
             
-            if (batteryStatus != null) {
-                int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
-                int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
-                
-                if (level >= 0 && scale > 0) {
-                    currentBatteryLevel = (int) ((level / (float) scale) * 100);
-                }
-                
-                int status = batteryStatus.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
-                isCharging = (status == BatteryManager.BATTERY_STATUS_CHARGING ||
-                             status == BatteryManager.BATTERY_STATUS_FULL);
+            batteryReceiver.setBatteryChangeListener(this);
+            Intent stickyStatus = context.registerReceiver(batteryReceiver, filter);
+            isRegistered = true;
+            
+            // 註冊時取得的黏性廣播即為目前狀態
+            if (stickyStatus != null) {
+                publish(BatteryReceiver.parseSnapshot(stickyStatus));
             }
         } catch (Exception e) {
-            Log.e(TAG, "Error updating battery info", e);
+            Log.e(TAG, "Error registering battery receiver", e);
         }
     }
     
-    public int getCurrentBatteryLevel() {
-        updateBatteryInfo();
-        return currentBatteryLevel;
-    }
-    
-    public boolean isCharging() {
-        updateBatteryInfo();
-        return isCharging;
+    /**
+     * 主動向系統讀取一次電池狀態
+     * 一般不需要呼叫，快照會隨廣播自動更新
+     */
+    public void updateBatteryInfo() {
+        try {
+            Intent batteryStatus = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            if (batteryStatus != null) {
+                publish(BatteryReceiver.parseSnapshot(batteryStatus));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating battery info", e);
+        }
     }
     
     public String getBatteryStatusDescription() {
-        updateBatteryInfo();
-        if (isCharging) {
-            return currentBatteryLevel + "% (充電中)";
+        BatterySnapshot current = getSnapshot();
+        if (current.isCharging()) {
+            return current.getPercent() + "% (充電中)";
         } else {
-            return currentBatteryLevel + "%";
+            return current.getPercent() + "%";
+        }
+    }
+    
+    /**
+     * 註銷廣播接收器並清除所有監聽器
+     */
+    public void release() {
+        try {
+            if (isRegistered) {
+                context.unregisterReceiver(batteryReceiver);
+                isRegistered = false;
+            }
+            batteryReceiver.removeBatteryChangeListener();
+            clearListeners();
+        } catch (Exception e) {
+            Log.e(TAG, "Error releasing battery monitor", e);
         }
     }
 }
@@ -0,0 +1,120 @@
+package com.batterymonitor.app.manager;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * 測試結束時間的精確排程
+ * 截止時間以 SystemClock.elapsedRealtime 的絕對值表示，不會像相對延遲那樣逐次累積漂移：
+ * - 主執行緒 Handler 在截止時間檢查（程序醒著時，不需要每秒輪詢）
+ * - AlarmManager 以 ELAPSED_REALTIME_WAKEUP 鬧鐘在裝置休眠時喚醒，送出 alarmIntent，收到後呼叫 check()
+ * 先到者觸發 Listener，之後的觸發被忽略。
+ * Android 12 以上未獲得精確鬧鐘權限時改用非精確鬧鐘，螢幕亮起時的 check() 會補上延遲。
+ */
+public class TestDeadline {
+    
+    private static final String TAG = "TestDeadline";
+    
+    public interface Listener {
+        /** 到達截止時間，在主執行緒上呼叫 */
+        void onDeadline();
+    }
+    
+    private final AlarmManager alarmManager;
+    private final Handler handler;
+    private final PendingIntent alarmIntent;
+    private final Listener listener;
+    private final Runnable checkRunnable = this::check;
+    
+    private long deadlineElapsed = 0;  // 0 表示未排程
+    
+    /**
+     * @param alarmIntent 鬧鐘觸發時送出的 Intent，接收端應在主執行緒呼叫 check()
+     */
+    public TestDeadline(Context context, Handler handler, PendingIntent alarmIntent, Listener listener) {
+        this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        this.handler = handler;
+        this.alarmIntent = alarmIntent;
+        this.listener = listener;
+    }
+    
+    /**
+     * 設定截止時間（elapsedRealtime 毫秒），取代之前的排程
+     */
+    public void schedule(long deadlineElapsedRealtime) {
+        cancel();
+        deadlineElapsed = deadlineElapsedRealtime;
+        postCheck();
+        
+        if (alarmManager == null) {
+            return;
+        }
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+                alarmManager.setAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, deadlineElapsed, alarmIntent);
+                Log.w(TAG, "Exact alarms not permitted, using inexact alarm");
+            } else {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, deadlineElapsed, alarmIntent);
+            }
+        } catch (SecurityException e) {
+            Log.e(TAG, "Error scheduling deadline alarm", e);
+            alarmManager.setAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, deadlineElapsed, alarmIntent);
+        }
+        Log.d(TAG, "Deadline scheduled in " + getRemainingMillis() + "ms");
+    }
+    
+    /**
+     * 取消排程
+     */
+    public void cancel() {
+        deadlineElapsed = 0;
+        handler.removeCallbacks(checkRunnable);
+        if (alarmManager != null) {
+            alarmManager.cancel(alarmIntent);
+        }
+    }
+    
+    public boolean isScheduled() {
+        return deadlineElapsed > 0;
+    }
+    
+    /**
+     * 距離截止時間的毫秒數，未排程時回傳 Long.MAX_VALUE
+     */
+    public long getRemainingMillis() {
+        if (deadlineElapsed <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, deadlineElapsed - SystemClock.elapsedRealtime());
+    }
+    
+    /**
+     * 檢查是否已到截止時間，到期時觸發 Listener 並回傳 true
+     * 可在鬧鐘 Intent、螢幕亮起等任何時機於主執行緒呼叫
+     */
+    public boolean check() {
+        if (deadlineElapsed <= 0) {
+            return false;
+        }
+        
+        if (SystemClock.elapsedRealtime() < deadlineElapsed) {
+            // Handler 以 uptime 計時，休眠期間不前進，因此只會晚到不會早到；仍未到期時重新排程
+            postCheck();
+            return false;
+        }
+        
+        cancel();
+        listener.onDeadline();
+        return true;
+    }
+    
+    private void postCheck() {
+        handler.removeCallbacks(checkRunnable);
+        handler.postAtTime(checkRunnable, SystemClock.uptimeMillis() + getRemainingMillis());
+    }
+}
@@ -0,0 +1,139 @@
+package com.batterymonitor.app.manager;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * 介面刷新計時器
+ * 只在有內容需要定時刷新（active）、介面可見（visible）且螢幕亮著時執行，其他時候不喚醒主執行緒。
+ * 每次刷新對齊 origin + k × period 的 elapsedRealtime 刻度，回呼延遲不會累積成漂移；
+ * 開始執行（例如螢幕亮起、介面重新可見）時立即刷新一次。
+ */
+public class UiTicker {
+    
+    private static final String TAG = "UiTicker";
+    
+    private final Context context;
+    private final Handler handler;
+    private final long periodMs;
+    private final Runnable tick;
+    private final PowerManager powerManager;
+    
+    private boolean isActive = false;
+    private boolean isVisible = false;
+    private boolean isScreenOn = true;
+    private boolean isRunning = false;
+    private boolean isReceiverRegistered = false;
+    private long originElapsed = 0;
+    
+    private final Runnable tickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            tick.run();
+            // tick 中可能停止了計時器
+            if (isRunning) {
+                scheduleNext();
+            }
+        }
+    };
+    
+    private final BroadcastReceiver screenReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            isScreenOn = Intent.ACTION_SCREEN_ON.equals(intent.getAction());
+            update();
+        }
+    };
+    
+    /**
+     * @param tick 在 handler 的執行緒上呼叫
+     */
+    public UiTicker(Context context, Handler handler, long periodMs, Runnable tick) {
+        this.context = context;
+        this.handler = handler;
+        this.periodMs = periodMs;
+        this.tick = tick;
+        this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    }
+    
+    /**
+     * 開始追蹤螢幕狀態
+     */
+    public void start() {
+        if (isReceiverRegistered) {
+            return;
+        }
+        
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        try {
+            context.registerReceiver(screenReceiver, filter);
+            isReceiverRegistered = true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error registering screen receiver", e);
+        }
+        isScreenOn = powerManager == null || powerManager.isInteractive();
+        update();
+    }
+    
+    /**
+     * 停止計時並註銷螢幕監聽
+     */
+    public void release() {
+        isActive = false;
+        update();
+        if (isReceiverRegistered) {
+            try {
+                context.unregisterReceiver(screenReceiver);
+            } catch (Exception e) {
+                Log.e(TAG, "Error unregistering screen receiver", e);
+            }
+            isReceiverRegistered = false;
+        }
+    }
+    
+    /**
+     * 設定是否需要定時刷新
+     * @param originElapsedRealtime 刻度的起點（elapsedRealtime 毫秒）
+     */
+    public void setActive(boolean active, long originElapsedRealtime) {
+        isActive = active;
+        originElapsed = originElapsedRealtime;
+        update();
+    }
+    
+    /**
+     * 設定介面是否可見
+     */
+    public void setVisible(boolean visible) {
+        isVisible = visible;
+        update();
+    }
+    
+    public boolean isRunning() {
+        return isRunning;
+    }
+    
+    private void update() {
+        boolean shouldRun = isActive && isVisible && isScreenOn;
+        handler.removeCallbacks(tickRunnable);
+        isRunning = shouldRun;
+        if (shouldRun) {
+            handler.post(tickRunnable);
+        }
+    }
+    
+    private void scheduleNext() {
+        long now = SystemClock.elapsedRealtime();
+        long elapsed = Math.max(0, now - originElapsed);
+        long next = originElapsed + (elapsed / periodMs + 1) * periodMs;
+        handler.postAtTime(tickRunnable, SystemClock.uptimeMillis() + (next - now));
+    }
+}
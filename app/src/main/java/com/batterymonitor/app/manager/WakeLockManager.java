@@ -1,25 +1,105 @@
 package com.batterymonitor.app.manager;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 螢幕常亮 WakeLock 的租約管理
+ * WakeLock 以較短的租約取得，在到期前續約，直到計劃測試時長（加上寬限時間）結束，
+ * 因此任何時長的測試都能維持常亮，而忘記釋放時最多在寬限時間後自動失效。
+ * 每次取得、續約、釋放以及發現租約已失效都以 elapsedRealtime 記錄，
+ * 並累計實際持有時間與中斷（缺口），供測試結果標記螢幕條件是否完整維持。
+ */
 public class WakeLockManager {
     
     private static final String TAG = "WakeLockManager";
     private static final String WAKE_LOCK_TAG = "BatteryMonitor:ScreenOn";
     
+    // 單次租約長度與提前續約的時間
+    private static final long LEASE_MS = 10 * 60 * 1000L;
+    private static final long RENEW_MARGIN_MS = 60 * 1000L;
+    
+    // 計劃時長結束後仍維持的寬限時間（截止檢查延遲時仍保持常亮）
+    private static final long GRACE_MS = 5 * 60 * 1000L;
+    
+    // 未指定計劃時長時的預設值
+    private static final long DEFAULT_PLANNED_DURATION_MS = 30 * 60 * 1000L;
+    
+    private static final int MAX_EVENTS = 256;
+    
+    // 事件類型
+    public static final int EVENT_ACQUIRE = 0;
+    public static final int EVENT_RENEW = 1;
+    public static final int EVENT_RELEASE = 2;
+    public static final int EVENT_EXPIRED = 3;   // 發現租約已失效（時間為推定的失效時間）
+    
+    /**
+     * 續約後回調（主執行緒），可在此寫入統計檢查點
+     */
+    public interface RenewListener {
+        void onRenewed(WakeLockManager manager);
+    }
+    
+    /**
+     * WakeLock 事件
+     */
+    public static final class Event {
+        public final int type;
+        public final long elapsedRealtime;
+        
+        Event(int type, long elapsedRealtime) {
+            this.type = type;
+            this.elapsedRealtime = elapsedRealtime;
+        }
+        
+        @Override
+        public String toString() {
+            String[] names = { "acquire", "renew", "release", "expired" };
+            return names[type] + "@" + elapsedRealtime;
+        }
+    }
+    
     private Context context;
     private PowerManager powerManager;
     private PowerManager.WakeLock wakeLock;
     private boolean isWakeLockHeld = false;
     
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable renewRunnable = this::renew;
+    private final List<Event> events = new ArrayList<>();
+    private long acquiredElapsed;
+    private long releasedElapsed;
+    private long leaseEndElapsed;
+    private long finalEndElapsed;
+    private int gapCount;
+    private long gapMillis;
+    
+    // 同一測試在服務重啟前的統計，由 carryOver() 設定
+    private long priorHeldMillis;
+    private int priorGapCount;
+    private long priorGapMillis;
+    private RenewListener renewListener;
+    
     public WakeLockManager(Context context) {
         this.context = context;
         this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
     }
     
     public void acquireWakeLock() {
+        acquireWakeLock(DEFAULT_PLANNED_DURATION_MS);
+    }
+    
+    /**
+     * 取得 WakeLock，並在計劃時長內持續續約
+     */
+    public void acquireWakeLock(long plannedDurationMs) {
         try {
             if (powerManager != null && !isWakeLockHeld) {
                 // 使用SCREEN_BRIGHT_WAKE_LOCK來完全防止螢幕變暗
@@ -29,9 +109,25 @@ public class WakeLockManager {
                 );
                 
                 if (wakeLock != null) {
-                    wakeLock.acquire(30 * 60 * 1000L);
+                    // 非引用計數：續約時再次 acquire 只會更新逾時
+                    wakeLock.setReferenceCounted(false);
+                    
+                    long now = SystemClock.elapsedRealtime();
+                    events.clear();
+                    gapCount = 0;
+                    gapMillis = 0;
+                    priorHeldMillis = 0;
+                    priorGapCount = 0;
+                    priorGapMillis = 0;
+                    acquiredElapsed = now;
+                    releasedElapsed = 0;
+                    finalEndElapsed = now + Math.max(0, plannedDurationMs) + GRACE_MS;
+                    
+                    takeLease(now);
                     isWakeLockHeld = true;
-                    Log.d(TAG, "WakeLock acquired - screen will stay bright");
+                    record(EVENT_ACQUIRE, now);
+                    scheduleRenewal(now);
+                    Log.d(TAG, "WakeLock acquired - screen will stay bright, planned: " + plannedDurationMs + "ms");
                 }
             }
         } catch (Exception e) {
@@ -39,19 +135,101 @@ public class WakeLockManager {
         }
     }
     
+    private void takeLease(long now) {
+        long lease = Math.min(LEASE_MS, finalEndElapsed - now);
+        wakeLock.acquire(lease);
+        leaseEndElapsed = now + lease;
+    }
+    
+    private void scheduleRenewal(long now) {
+        handler.removeCallbacks(renewRunnable);
+        // 最後一段租約直接到寬限結束，不再續約
+        if (leaseEndElapsed >= finalEndElapsed) {
+            return;
+        }
+        long delay = Math.max(0, leaseEndElapsed - RENEW_MARGIN_MS - now);
+        handler.postAtTime(renewRunnable, SystemClock.uptimeMillis() + delay);
+    }
+    
+    private void renew() {
+        try {
+            if (!isWakeLockHeld || wakeLock == null) {
+                return;
+            }
+            
+            long now = SystemClock.elapsedRealtime();
+            checkExpired(now);
+            takeLease(now);
+            record(EVENT_RENEW, now);
+            scheduleRenewal(now);
+            Log.d(TAG, "WakeLock renewed until +" + (leaseEndElapsed - now) + "ms");
+            if (renewListener != null) {
+                renewListener.onRenewed(this);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error renewing WakeLock", e);
+        }
+    }
+    
+    /**
+     * 租約已失效（例如續約因系統休眠而延遲）時記錄缺口：從租約到期到現在
+     */
+    private void checkExpired(long now) {
+        if (wakeLock.isHeld()) {
+            return;
+        }
+        long gapStart = Math.min(leaseEndElapsed, now);
+        gapCount++;
+        gapMillis += now - gapStart;
+        record(EVENT_EXPIRED, gapStart);
+        Log.w(TAG, "WakeLock lease had expired, gap: " + (now - gapStart) + "ms");
+    }
+    
     public void releaseWakeLock() {
         try {
             if (wakeLock != null && isWakeLockHeld) {
-                wakeLock.release();
+                handler.removeCallbacks(renewRunnable);
+                long now = SystemClock.elapsedRealtime();
+                checkExpired(now);
+                if (wakeLock.isHeld()) {
+                    wakeLock.release();
+                }
                 isWakeLockHeld = false;
                 wakeLock = null;
-                Log.d(TAG, "WakeLock released - screen can sleep");
+                releasedElapsed = now;
+                record(EVENT_RELEASE, now);
+                Log.d(TAG, "WakeLock released - screen can sleep, held: " + getHeldMillis()
+                    + "ms, gaps: " + gapCount + " (" + gapMillis + "ms)");
             }
         } catch (Exception e) {
             Log.e(TAG, "Error releasing WakeLock", e);
         }
     }
     
+    public void setRenewListener(RenewListener renewListener) {
+        this.renewListener = renewListener;
+    }
+    
+    /**
+     * 恢復測試時併入服務重啟前的統計，在 acquireWakeLock() 之後呼叫
+     * @param heldMillis 重啟前實際持有的時間
+     * @param gapCount 重啟前的缺口次數，包含服務未執行的期間
+     * @param gapMillis 重啟前的缺口總時間，包含服務未執行的期間
+     */
+    public void carryOver(long heldMillis, int gapCount, long gapMillis) {
+        priorHeldMillis = Math.max(0, heldMillis);
+        priorGapCount = Math.max(0, gapCount);
+        priorGapMillis = Math.max(0, gapMillis);
+        Log.d(TAG, "WakeLock stats carried over: held " + priorHeldMillis + "ms, gaps: " + priorGapCount
+            + " (" + priorGapMillis + "ms)");
+    }
+    
+    private void record(int type, long elapsedRealtime) {
+        if (events.size() < MAX_EVENTS) {
+            events.add(new Event(type, elapsedRealtime));
+        }
+    }
+    
     public boolean isWakeLockHeld() {
         return isWakeLockHeld && wakeLock != null && wakeLock.isHeld();
     }
@@ -64,6 +242,38 @@ public class WakeLockManager {
         }
     }
     
+    /**
+     * 最近一次取得以來實際持有的時間 (ms)，已扣除缺口，包含併入的重啟前統計
+     */
+    public long getHeldMillis() {
+        if (acquiredElapsed == 0) {
+            return 0;
+        }
+        long end = releasedElapsed > 0 ? releasedElapsed : SystemClock.elapsedRealtime();
+        return priorHeldMillis + Math.max(0, end - acquiredElapsed - gapMillis);
+    }
+    
+    /**
+     * 最近一次取得以來租約失效的次數，包含併入的重啟前統計
+     */
+    public int getGapCount() {
+        return priorGapCount + gapCount;
+    }
+    
+    /**
+     * 最近一次取得以來租約失效的總時間 (ms)，包含併入的重啟前統計
+     */
+    public long getGapMillis() {
+        return priorGapMillis + gapMillis;
+    }
+    
+    /**
+     * 最近一次取得以來的事件記錄（副本）
+     */
+    public List<Event> getEvents() {
+        return new ArrayList<>(events);
+    }
+    
     public void cleanup() {
         releaseWakeLock();
     }
@@ -0,0 +1,96 @@
+package com.batterymonitor.app.probe;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CPU 頻率探針：讀取各 cpufreq 政策（叢集）目前的頻率 (kHz)
+ * 優先使用 cpufreq/policyN，舊核心沒有政策目錄時改為逐核心讀取；通道名稱為 "cpufreq.<policyN|cpuN>"。
+ */
+public final class CpuFreqProbe implements Probe {
+    
+    public static final File DEFAULT_ROOT = new File("/sys/devices/system/cpu");
+    
+    private static final long PREFERRED_PERIOD_MS = 1000;
+    private static final String FREQ_NODE = "scaling_cur_freq";
+    
+    private final SysfsNode[] nodes;
+    private final String[] channelNames;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(SysfsNode.BUFFER_SIZE);
+    
+    public CpuFreqProbe() {
+        this(DEFAULT_ROOT);
+    }
+    
+    public CpuFreqProbe(File root) {
+        List<SysfsNode> freqNodes = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        
+        File[] policies = new File(root, "cpufreq").listFiles((dir, name) -> name.startsWith("policy"));
+        if (policies != null && policies.length > 0) {
+            Arrays.sort(policies);
+            for (File policy : policies) {
+                addNode(new File(policy, FREQ_NODE), policy.getName(), freqNodes, names);
+            }
+        } else {
+            for (int cpu = 0; cpu < Runtime.getRuntime().availableProcessors(); cpu++) {
+                String name = "cpu" + cpu;
+                addNode(new File(new File(new File(root, name), "cpufreq"), FREQ_NODE), name, freqNodes, names);
+            }
+        }
+        
+        nodes = freqNodes.toArray(new SysfsNode[0]);
+        channelNames = names.toArray(new String[0]);
+    }
+    
+    private static void addNode(File file, String name, List<SysfsNode> freqNodes, List<String> names) {
+        if (file.canRead()) {
+            freqNodes.add(new SysfsNode(file));
+            names.add("cpufreq." + name);
+        }
+    }
+    
+    @Override
+    public String getName() {
+        return "cpufreq";
+    }
+    
+    @Override
+    public int getCost() {
+        return nodes.length > 4 ? COST_MEDIUM : COST_LOW;
+    }
+    
+    @Override
+    public long getPreferredPeriodMs() {
+        return PREFERRED_PERIOD_MS;
+    }
+    
+    @Override
+    public String[] getChannelNames() {
+        return channelNames.clone();
+    }
+    
+    @Override
+    public void open() {
+    }
+    
+    @Override
+    public void sample(long timestampNanos, ProbeSink sink) {
+        for (int i = 0; i < nodes.length; i++) {
+            long value = nodes[i].readLong(buffer);
+            if (value != SysfsNode.INVALID) {
+                sink.write(i, timestampNanos, value);
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        for (SysfsNode node : nodes) {
+            node.close();
+        }
+    }
+}
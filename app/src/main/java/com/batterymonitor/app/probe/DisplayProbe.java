@@ -0,0 +1,67 @@
+package com.batterymonitor.app.probe;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.PowerManager;
+import android.provider.Settings;
+
+/**
+ * 螢幕探針：螢幕是否亮起 (0/1) 與亮度設定值 (0-255)
+ * 兩者都經由 binder 查詢，因此成本為中等。
+ */
+public final class DisplayProbe implements Probe {
+    
+    public static final int CHANNEL_INTERACTIVE = 0;
+    public static final int CHANNEL_BRIGHTNESS = 1;
+    
+    private static final long PREFERRED_PERIOD_MS = 2000;
+    private static final String[] CHANNEL_NAMES = { "display.interactive", "display.brightness" };
+    
+    private final PowerManager powerManager;
+    private final ContentResolver contentResolver;
+    
+    public DisplayProbe(Context context) {
+        this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        this.contentResolver = context.getContentResolver();
+    }
+    
+    @Override
+    public String getName() {
+        return "display";
+    }
+    
+    @Override
+    public int getCost() {
+        return COST_MEDIUM;
+    }
+    
+    @Override
+    public long getPreferredPeriodMs() {
+        return PREFERRED_PERIOD_MS;
+    }
+    
+    @Override
+    public String[] getChannelNames() {
+        return CHANNEL_NAMES.clone();
+    }
+    
+    @Override
+    public void open() {
+    }
+    
+    @Override
+    public void sample(long timestampNanos, ProbeSink sink) {
+        if (powerManager != null) {
+            sink.write(CHANNEL_INTERACTIVE, timestampNanos, powerManager.isInteractive() ? 1 : 0);
+        }
+        
+        int brightness = Settings.System.getInt(contentResolver, Settings.System.SCREEN_BRIGHTNESS, -1);
+        if (brightness >= 0) {
+            sink.write(CHANNEL_BRIGHTNESS, timestampNanos, brightness);
+        }
+    }
+    
+    @Override
+    public void close() {
+    }
+}
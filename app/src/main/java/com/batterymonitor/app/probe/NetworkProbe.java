@@ -0,0 +1,57 @@
+package com.batterymonitor.app.probe;
+
+import android.net.TrafficStats;
+
+/**
+ * 網路流量探針：開機以來的全系統接收與傳送位元組數
+ * 讀取 TrafficStats 的累計計數，用量由相鄰取樣的差值得出。
+ */
+public final class NetworkProbe implements Probe {
+    
+    public static final int CHANNEL_RX_BYTES = 0;
+    public static final int CHANNEL_TX_BYTES = 1;
+    
+    private static final long PREFERRED_PERIOD_MS = 1000;
+    private static final String[] CHANNEL_NAMES = { "net.rx_bytes", "net.tx_bytes" };
+    
+    @Override
+    public String getName() {
+        return "network";
+    }
+    
+    @Override
+    public int getCost() {
+        return COST_LOW;
+    }
+    
+    @Override
+    public long getPreferredPeriodMs() {
+        return PREFERRED_PERIOD_MS;
+    }
+    
+    @Override
+    public String[] getChannelNames() {
+        return CHANNEL_NAMES.clone();
+    }
+    
+    @Override
+    public void open() {
+    }
+    
+    @Override
+    public void sample(long timestampNanos, ProbeSink sink) {
+        long rx = TrafficStats.getTotalRxBytes();
+        if (rx != TrafficStats.UNSUPPORTED) {
+            sink.write(CHANNEL_RX_BYTES, timestampNanos, rx);
+        }
+        
+        long tx = TrafficStats.getTotalTxBytes();
+        if (tx != TrafficStats.UNSUPPORTED) {
+            sink.write(CHANNEL_TX_BYTES, timestampNanos, tx);
+        }
+    }
+    
+    @Override
+    public void close() {
+    }
+}
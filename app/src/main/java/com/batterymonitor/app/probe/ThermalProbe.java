@@ -0,0 +1,106 @@
+package com.batterymonitor.app.probe;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 溫度探針：讀取 /sys/class/thermal 下各溫度區的 temp 節點 (m°C)
+ * 溫度區在建構時列舉一次，無法讀取的區域略過；通道名稱為 "thermal.<type>"。
+ */
+public final class ThermalProbe implements Probe {
+    
+    public static final File DEFAULT_ROOT = new File("/sys/class/thermal");
+    
+    private static final long PREFERRED_PERIOD_MS = 5000;
+    // 部分設備有數十個溫度區，只取前幾個避免單次取樣過久
+    private static final int MAX_ZONES = 8;
+    
+    private final SysfsNode[] nodes;
+    private final String[] channelNames;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(SysfsNode.BUFFER_SIZE);
+    
+    public ThermalProbe() {
+        this(DEFAULT_ROOT);
+    }
+    
+    public ThermalProbe(File root) {
+        List<SysfsNode> zoneNodes = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        
+        File[] zones = root.listFiles((dir, name) -> name.startsWith("thermal_zone"));
+        if (zones != null) {
+            Arrays.sort(zones);
+            for (File zone : zones) {
+                if (zoneNodes.size() >= MAX_ZONES) {
+                    break;
+                }
+                File temp = new File(zone, "temp");
+                if (!temp.canRead()) {
+                    continue;
+                }
+                String type = readType(new File(zone, "type"));
+                zoneNodes.add(new SysfsNode(temp));
+                names.add("thermal." + (type != null ? type : zone.getName()));
+            }
+        }
+        
+        nodes = zoneNodes.toArray(new SysfsNode[0]);
+        channelNames = names.toArray(new String[0]);
+    }
+    
+    private static String readType(File file) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            return line != null && !line.trim().isEmpty() ? line.trim() : null;
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+    
+    @Override
+    public String getName() {
+        return "thermal";
+    }
+    
+    @Override
+    public int getCost() {
+        return COST_MEDIUM;
+    }
+    
+    @Override
+    public long getPreferredPeriodMs() {
+        return PREFERRED_PERIOD_MS;
+    }
+    
+    @Override
+    public String[] getChannelNames() {
+        return channelNames.clone();
+    }
+    
+    @Override
+    public void open() {
+    }
+    
+    @Override
+    public void sample(long timestampNanos, ProbeSink sink) {
+        for (int i = 0; i < nodes.length; i++) {
+            long value = nodes[i].readLong(buffer);
+            if (value != SysfsNode.INVALID) {
+                sink.write(i, timestampNanos, value);
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        for (SysfsNode node : nodes) {
+            node.close();
+        }
+    }
+}
@@ -4,19 +4,17 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.BatteryManager;
+import android.os.SystemClock;
 import android.util.Log;
 
+import com.batterymonitor.app.manager.BatteryListener;
+import com.batterymonitor.app.model.BatterySnapshot;
+
 public class BatteryReceiver extends BroadcastReceiver {
     
     private static final String TAG = "BatteryReceiver";
     
-    private BatteryChangeListener listener;
-    
-    public interface BatteryChangeListener {
-        void onBatteryLevelChanged(int level, boolean isCharging);
-        void onBatteryLow();
-        void onBatteryOkay();
-    }
+    private BatteryListener listener;
     
     @Override
     public void onReceive(Context context, Intent intent) {
@@ -25,8 +23,6 @@ public class BatteryReceiver extends BroadcastReceiver {
         String action = intent.getAction();
         if (action == null) return;
         
-        Log.d(TAG, "Received battery broadcast: " + action);
-        
         switch (action) {
             case Intent.ACTION_BATTERY_CHANGED:
                 handleBatteryChanged(intent);
@@ -42,21 +38,30 @@ public class BatteryReceiver extends BroadcastReceiver {
         }
     }
     
+    /**
+     * 將 ACTION_BATTERY_CHANGED 廣播解析為電池快照
+     */
+    public static BatterySnapshot parseSnapshot(Intent intent) {
+        return new BatterySnapshot(
+            intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1),
+            intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1),
+            intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1),
+            intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0),
+            intent.getIntExtra(BatteryManager.EXTRA_VOLTAGE, 0),
+            intent.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, 0),
+            intent.getIntExtra(BatteryManager.EXTRA_HEALTH, -1),
+            SystemClock.elapsedRealtime()
+        );
+    }
+    
     private void handleBatteryChanged(Intent intent) {
         try {
-            int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
-            int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
-            int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+            BatterySnapshot snapshot = parseSnapshot(intent);
             
-            if (level != -1 && scale != -1) {
-                int batteryPct = Math.round((level / (float) scale) * 100);
-                boolean isCharging = status == BatteryManager.BATTERY_STATUS_CHARGING ||
-                                   status == BatteryManager.BATTERY_STATUS_FULL;
-                
-                Log.d(TAG, String.format("Battery level: %d%%, Charging: %b", batteryPct, isCharging));
-                
+            if (snapshot.getLevel() != -1 && snapshot.getScale() != -1) {
                 if (listener != null) {
-                    listener.onBatteryLevelChanged(batteryPct, isCharging);
+                    listener.onBatterySnapshotChanged(snapshot);
+                    listener.onBatteryLevelChanged(snapshot.getPercent(), snapshot.isCharging());
                 }
             }
             
@@ -84,7 +89,7 @@ public class BatteryReceiver extends BroadcastReceiver {
     /**
      * 設置電量變化監聽器
      */
-    public void setBatteryChangeListener(BatteryChangeListener listener) {
+    public void setBatteryChangeListener(BatteryListener listener) {
         this.listener = listener;
     }
     
@@ -95,4 +100,3 @@ public class BatteryReceiver extends BroadcastReceiver {
         this.listener = null;
     }
 }
-
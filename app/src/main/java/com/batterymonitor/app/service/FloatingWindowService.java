@@ -1,42 +1,58 @@
 package com.batterymonitor.app.service;
 
 import android.app.Service;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.graphics.PixelFormat;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.core.content.ContextCompat;
+
 import com.batterymonitor.app.MainActivity;
 import com.batterymonitor.app.R;
-import com.batterymonitor.app.dialog.TestResultDialog;
+import com.batterymonitor.app.data.SampleBuffer;
 import com.batterymonitor.app.dialog.TestSubjectDialog;
-import com.batterymonitor.app.manager.BatteryMonitor;
-import com.batterymonitor.app.manager.FeedbackManager;
-import com.batterymonitor.app.manager.WakeLockManager;
-import com.batterymonitor.app.model.TestResult;
-import com.batterymonitor.app.utils.PreferenceManager;
+import com.batterymonitor.app.format.TextBuffer;
+import com.batterymonitor.app.format.TextSlot;
+import com.batterymonitor.app.manager.UiTicker;
+import com.batterymonitor.app.view.PowerChartView;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 
+/**
+ * 浮動窗口
+ * 只負責顯示與操作，測試由 MonitorService 執行；關閉浮動窗口不會停止進行中的測試。
+ */
 public class FloatingWindowService extends Service {
     
     private static final String TAG = "FloatingWindowService";
     
+    // 浮動窗口只顯示已測試分鐘數，每分鐘刷新一次即可
+    private static final long UI_TICK_PERIOD_MS = 60 * 1000L;
+    
+    // 功率縮圖顯示最近 10 分鐘，每 5 秒由即時取樣緩衝重新抽取
+    private static final long CHART_TICK_PERIOD_MS = 5 * 1000L;
+    private static final long CHART_WINDOW_NANOS = 10 * 60 * 1_000_000_000L;
+    
     private WindowManager windowManager;
     private View floatingView;
     private WindowManager.LayoutParams layoutParams;
@@ -46,22 +62,75 @@ public class FloatingWindowService extends Service {
     private Button btnAction;
     private Button btnSettings;
     private Button btnClose;
+    private PowerChartView chartPower;
     
-    private BatteryMonitor batteryMonitor;
-    private WakeLockManager wakeLockManager;
-    private PreferenceManager preferenceManager;
-    private FeedbackManager feedbackManager;
+    // 要顯示的狀態與已顯示的狀態，只更新有變化的 View
+    private final OverlayViewState pendingState = new OverlayViewState();
+    private final OverlayViewState renderedState = new OverlayViewState();
+    
+    // 刷新時重複使用的顯示文字，刷新過程不配置物件
+    private final TextSlot batteryLevelText = new TextSlot(8);
+    private final TextSlot statusText = new TextSlot(16);
+    
+    // 拖曳時的窗口位置更新合併到下一個 vsync，每個畫格最多一次 updateViewLayout
+    private final Choreographer.FrameCallback dragFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            isDragFrameScheduled = false;
+            applyWindowPosition();
+        }
+    };
+    private boolean isDragFrameScheduled = false;
+    private int pendingX;
+    private int pendingY;
+    
+    // 浮動窗口的繪製成本，可用 dumpsys activity service FloatingWindowService 查看
+    private long drawCount;
+    private long layoutCount;
+    private long viewUpdateCount;
+    private long refreshCount;
+    private long dragMoveCount;
+    private long windowLayoutUpdateCount;
+    private long chartUpdateCount;
     
-    private boolean isTestRunning = false;
-    private int startBatteryLevel = 100;
-    private long startTime = 0;
-    private int testDurationMinutes = 30; // 預設30分鐘
-    private String currentTestSubject = ""; // 當前測試主題
     private TestSubjectDialog testSubjectDialog;
     
-    // UI更新處理器
-    private Handler updateHandler;
-    private Runnable updateRunnable;
+    // 綁定的監測服務，連線前為 null
+    private MonitorService monitorService;
+    private boolean isBound = false;
+    
+    // 介面刷新
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private UiTicker uiTicker;
+    private UiTicker chartTicker;
+    private SampleBuffer.Cursor sampleCursor;
+    
+    // 測試狀態或電量改變時刷新浮動窗口
+    private final MonitorService.Listener monitorListener = new MonitorService.Listener() {
+        @Override
+        public void onMonitorStateChanged() {
+            syncTicker();
+            updateUI();
+        }
+    };
+    
+    private final ServiceConnection connection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            monitorService = ((MonitorService.LocalBinder) service).getService();
+            monitorService.addListener(monitorListener);
+            sampleCursor = monitorService.getSampleBuffer().newCursor();
+            syncTicker();
+            updateUI();
+        }
+        
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            monitorService = null;
+            sampleCursor = null;
+            syncTicker();
+        }
+    };
     
     @Override
     public void onCreate() {
@@ -77,23 +146,17 @@ public class FloatingWindowService extends Service {
                 return;
             }
             
-            // 初始化管理器
-            batteryMonitor = new BatteryMonitor(this);
-            wakeLockManager = new WakeLockManager(this);
-            preferenceManager = new PreferenceManager(this);
-            feedbackManager = new FeedbackManager(this);
-            
-            // 讀取測試時長設定
-            testDurationMinutes = preferenceManager.getTestDuration();
-            
             // 創建浮動窗口
             createFloatingWindow();
             
-            // 開始UI更新
-            startUIUpdates();
+            // 介面刷新
+            setupTimers();
             
-            Log.d(TAG, "FloatingWindowService created successfully");
+            // 綁定監測服務，服務被終止後重啟時會自行繼續進行中的測試
+            isBound = bindService(new Intent(this, MonitorService.class), connection, Context.BIND_AUTO_CREATE);
             
+            Log.d(TAG, "FloatingWindowService created successfully");
+        
         } catch (Exception e) {
             Log.e(TAG, "Error in onCreate", e);
             Toast.makeText(this, "浮動窗口創建失敗: " + e.getMessage(), Toast.LENGTH_LONG).show();
@@ -127,7 +190,7 @@ public class FloatingWindowService extends Service {
             
             Log.d(TAG, "Floating window added to WindowManager");
             Toast.makeText(this, "浮動窗口已啟動", Toast.LENGTH_SHORT).show();
-            
+        
         } catch (Exception e) {
             Log.e(TAG, "Error creating floating window", e);
             Toast.makeText(this, "創建浮動窗口失敗: " + e.getMessage(), Toast.LENGTH_LONG).show();
@@ -141,6 +204,28 @@ public class FloatingWindowService extends Service {
         btnAction = floatingView.findViewById(R.id.btn_action);
         btnSettings = floatingView.findViewById(R.id.btn_settings);
         btnClose = floatingView.findViewById(R.id.btn_close);
+        chartPower = floatingView.findViewById(R.id.chart_power);
+        chartPower.setChartColor(ContextCompat.getColor(this, R.color.floating_text_secondary));
+        
+        // 新的 View 需要完整設定一次
+        renderedState.invalidate();
+        batteryLevelText.invalidate();
+        statusText.invalidate();
+        
+        // 繪製與排版計數
+        ViewTreeObserver observer = floatingView.getViewTreeObserver();
+        observer.addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            @Override
+            public void onDraw() {
+                drawCount++;
+            }
+        });
+        observer.addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
+            @Override
+            public void onGlobalLayout() {
+                layoutCount++;
+            }
+        });
         
         // 設置初始值
         updateUI();
@@ -163,6 +248,10 @@ public class FloatingWindowService extends Service {
         btnClose.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
+                // 只關閉浮動窗口，測試在通知列繼續進行
+                if (monitorService != null && monitorService.isTestRunning()) {
+                    Toast.makeText(FloatingWindowService.this, "監測繼續在通知列進行", Toast.LENGTH_SHORT).show();
+                }
                 stopSelf();
             }
         });
@@ -177,33 +266,29 @@ public class FloatingWindowService extends Service {
             public boolean onTouch(View v, MotionEvent event) {
                 switch (event.getAction()) {
                     case MotionEvent.ACTION_DOWN:
-                        initialX = layoutParams.x;
-                        initialY = layoutParams.y;
+                        // 上一次拖曳的位置可能還在等下一個畫格
+                        initialX = isDragFrameScheduled ? pendingX : layoutParams.x;
+                        initialY = isDragFrameScheduled ? pendingY : layoutParams.y;
                         initialTouchX = event.getRawX();
                         initialTouchY = event.getRawY();
                         isDragging = false;
                         return true;
-                        
+                    
                     case MotionEvent.ACTION_MOVE:
                         float deltaX = Math.abs(event.getRawX() - initialTouchX);
                         float deltaY = Math.abs(event.getRawY() - initialTouchY);
                         
                         if (deltaX > 10 || deltaY > 10) {
                             isDragging = true;
-                            layoutParams.x = (int) (initialX + (event.getRawX() - initialTouchX));
-                            layoutParams.y = (int) (initialY + (event.getRawY() - initialTouchY));
-                            
-                            try {
-                                windowManager.updateViewLayout(floatingView, layoutParams);
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error updating view layout", e);
-                            }
+                            dragMoveCount++;
+                            scheduleWindowPosition((int) (initialX + (event.getRawX() - initialTouchX)),
+                                (int) (initialY + (event.getRawY() - initialTouchY)));
                         }
                         return true;
-                        
+                    
                     case MotionEvent.ACTION_UP:
                         return isDragging; // 如果有拖拽，則消費事件
-                        
+                    
                     default:
                         return false;
                 }
@@ -211,6 +296,31 @@ public class FloatingWindowService extends Service {
         });
     }
     
+    // 記錄拖曳目標位置，在下一個畫格才更新窗口
+    private void scheduleWindowPosition(int x, int y) {
+        pendingX = x;
+        pendingY = y;
+        if (!isDragFrameScheduled) {
+            isDragFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(dragFrameCallback);
+        }
+    }
+    
+    private void applyWindowPosition() {
+        if (floatingView == null || !floatingView.isAttachedToWindow()
+                || (layoutParams.x == pendingX && layoutParams.y == pendingY)) {
+            return;
+        }
+        layoutParams.x = pendingX;
+        layoutParams.y = pendingY;
+        try {
+            windowManager.updateViewLayout(floatingView, layoutParams);
+            windowLayoutUpdateCount++;
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating view layout", e);
+        }
+    }
+    
     private void setupWindowParams() {
         int windowType;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -233,13 +343,16 @@ public class FloatingWindowService extends Service {
     }
     
     private void toggleTest() {
+        if (monitorService == null) {
+            return;
+        }
         try {
-            if (!isTestRunning) {
+            if (!monitorService.isTestRunning()) {
                 // 顯示測試主題選擇對話框
                 showTestSubjectDialog();
             } else {
                 // 停止測試
-                stopTest();
+                monitorService.stopTest();
             }
         } catch (Exception e) {
             Log.e(TAG, "Error stopping test", e);
@@ -255,8 +368,9 @@ public class FloatingWindowService extends Service {
         testSubjectDialog.show(new TestSubjectDialog.OnTestSubjectSelectedListener() {
             @Override
             public void onTestSubjectSelected(String testSubject) {
-                currentTestSubject = testSubject;
-                startTest();
+                // 以啟動命令開始測試，解除綁定後監測服務仍在前景繼續執行
+                ContextCompat.startForegroundService(FloatingWindowService.this,
+                    MonitorService.createStartIntent(FloatingWindowService.this, testSubject));
             }
             
             @Override
@@ -267,192 +381,147 @@ public class FloatingWindowService extends Service {
         });
     }
     
-    private void startTest() {
+    private void openMainActivity() {
         try {
-            isTestRunning = true;
-            
-            // 開始測試
-            startBatteryLevel = batteryMonitor.getCurrentBatteryLevel();
-            startTime = System.currentTimeMillis();
-            
-            // 重新讀取測試時長設定
-            testDurationMinutes = preferenceManager.getTestDuration();
-                
-            // 獲取WakeLock防止休眠和變暗
-            wakeLockManager.acquireWakeLock();
-            
-            // 播放開始反饋（音效 + 震動）
-            if (feedbackManager != null) {
-                feedbackManager.playStartFeedback();
-            }
-            
-            String subjectText = currentTestSubject.isEmpty() ? "" : " - " + currentTestSubject;
-            Toast.makeText(this, "開始監測 " + testDurationMinutes + " 分鐘" + subjectText, Toast.LENGTH_SHORT).show();
-            Log.d(TAG, "Test started at battery level: " + startBatteryLevel + "%, duration: " + testDurationMinutes + " minutes, subject: " + currentTestSubject);
-            
-            updateUI();
-            
+            Intent intent = new Intent(this, MainActivity.class);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            startActivity(intent);
         } catch (Exception e) {
-            Log.e(TAG, "Error starting test", e);
-            Toast.makeText(this, "開始測試失敗: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            Log.e(TAG, "Error opening main activity", e);
         }
     }
     
-    private void stopTest() {
-        try {
-            isTestRunning = false;
-            
-            // 停止測試
-            wakeLockManager.releaseWakeLock();
-            
-            // 播放結束反饋（音效 + 震動）
-            if (feedbackManager != null) {
-                feedbackManager.playEndFeedback();
+    private void setupTimers() {
+        // 螢幕亮起時先補上可能延遲的截止檢查（非精確鬧鐘），再刷新介面
+        uiTicker = new UiTicker(this, mainHandler, UI_TICK_PERIOD_MS, () -> {
+            if (monitorService == null || !monitorService.checkDeadline()) {
+                updateUI();
+            }
+        });
+        
+        chartTicker = new UiTicker(this, mainHandler, CHART_TICK_PERIOD_MS, this::updateChart);
+        
+        // 浮動窗口移除後不再刷新
+        floatingView.addOnAttachStateChangeListener(new View.OnAttachStateChangeListener() {
+            @Override
+            public void onViewAttachedToWindow(View view) {
+                uiTicker.setVisible(true);
+                chartTicker.setVisible(true);
             }
             
-            // 計算測試結果
-            int endBatteryLevel = batteryMonitor.getCurrentBatteryLevel();
-            long duration = System.currentTimeMillis() - startTime;
-            int batteryConsumed = Math.max(0, startBatteryLevel - endBatteryLevel);
-            
-            // 創建測試結果
-            TestResult result = createTestResult(startTime, duration, startBatteryLevel, endBatteryLevel, batteryConsumed);
-            
-            // 保存到歷史記錄
-            preferenceManager.saveTestResult(result);
-            
-            // 顯示詳細結果
-            showTestResult(result);
-            
-            Log.d(TAG, "Test completed and saved: " + result.toString());
-            
-            updateUI();
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error stopping test", e);
-            Toast.makeText(this, "停止測試失敗: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
-    }
-    
-    private TestResult createTestResult(long startTime, long duration, int startBattery, int endBattery, int consumed) {
-        TestResult result = new TestResult();
-        result.setStartTime(startTime);
-        result.setEndTime(startTime + duration);
-        result.setDuration(duration);
-        result.setStartBatteryLevel(startBattery);
-        result.setEndBatteryLevel(endBattery);
-        result.setBatteryConsumed(consumed);
-        result.setPlannedDuration(testDurationMinutes * 60 * 1000L); // 轉換為毫秒
-        result.setTestSubject(currentTestSubject); // 設定測試主題
-        return result;
+            @Override
+            public void onViewDetachedFromWindow(View view) {
+                uiTicker.setVisible(false);
+                chartTicker.setVisible(false);
+            }
+        });
+        boolean isAttached = floatingView.isAttachedToWindow();
+        uiTicker.setVisible(isAttached);
+        chartTicker.setVisible(isAttached);
+        uiTicker.start();
+        chartTicker.start();
+        updateUI();
     }
     
-    private void showTestResult(TestResult result) {
-        try {
-            // 啟動MainActivity並顯示結果（不需要重複保存，已在stopTest中保存）
-            Intent intent = new Intent(this, MainActivity.class);
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
-            intent.putExtra("show_test_result", true);
-            intent.putExtra("test_start_time", result.getStartTime());
-            intent.putExtra("test_end_time", result.getEndTime());
-            intent.putExtra("test_start_battery", result.getStartBatteryLevel());
-            intent.putExtra("test_end_battery", result.getEndBatteryLevel());
-            intent.putExtra("test_duration", result.getDuration());
-            intent.putExtra("test_subject", result.getTestSubject());
-            startActivity(intent);
-            
-            Log.d(TAG, "Test result activity started: " + result.toString());
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error showing test result", e);
-            
-            // 如果啟動Activity失敗，回退到Toast
-            SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-            String startTimeStr = timeFormat.format(new Date(result.getStartTime()));
-            String endTimeStr = timeFormat.format(new Date(result.getEndTime()));
-            
-            long durationMinutes = result.getDuration() / (60 * 1000);
-            
-            String message = String.format("📊 測試完成\n⏰ %s - %s (%d分鐘)\n🔋 %d%% → %d%% (-%d%%)",
-                startTimeStr, endTimeStr, durationMinutes,
-                result.getStartBatteryLevel(), result.getEndBatteryLevel(), result.getBatteryConsumed());
-            
-            Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+    // 測試進行中才每分鐘刷新文字、每 5 秒刷新功率縮圖
+    private void syncTicker() {
+        if (uiTicker == null) {
+            return;
         }
-    }
-    
-    private void openMainActivity() {
-        try {
-            Intent intent = new Intent(this, MainActivity.class);
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            startActivity(intent);
-        } catch (Exception e) {
-            Log.e(TAG, "Error opening main activity", e);
+        if (monitorService != null && monitorService.isTestRunning()) {
+            uiTicker.setActive(true, monitorService.getStartElapsedRealtime());
+            chartTicker.setActive(true, monitorService.getStartElapsedRealtime());
+        } else {
+            uiTicker.setActive(false, 0);
+            chartTicker.setActive(false, 0);
         }
     }
     
-    private void startUIUpdates() {
-        updateHandler = new Handler(Looper.getMainLooper());
-        updateRunnable = new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    updateUI();
-                    
-                    // 檢查是否達到設定時間
-                    if (isTestRunning && startTime > 0) {
-                        long elapsed = System.currentTimeMillis() - startTime;
-                        long plannedDuration = testDurationMinutes * 60 * 1000L;
-                        
-                        if (elapsed >= plannedDuration) {
-                            // 自動停止測試
-                            toggleTest();
-                            Toast.makeText(FloatingWindowService.this, "測試時間到，自動停止", Toast.LENGTH_SHORT).show();
-                        }
-                    }
-                    
-                    updateHandler.postDelayed(this, 1000); // 每1秒更新
-                } catch (Exception e) {
-                    Log.e(TAG, "Error in UI update", e);
-                }
-            }
-        };
-        updateHandler.post(updateRunnable);
+    /**
+     * 由即時取樣緩衝重新抽取最近 10 分鐘的功率包絡
+     * 只走訪視窗內的取樣、寫入預先配置的陣列，在主執行緒執行也不配置物件
+     */
+    private void updateChart() {
+        if (chartPower == null || sampleCursor == null || chartPower.getVisibility() != View.VISIBLE) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtimeNanos();
+        chartPower.updateFrom(sampleCursor, now - CHART_WINDOW_NANOS, now);
+        chartUpdateCount++;
     }
     
     private void updateUI() {
         try {
-            if (tvBatteryLevel == null || tvStatus == null || btnAction == null) {
+            if (tvBatteryLevel == null || tvStatus == null || btnAction == null || monitorService == null) {
+                return;
+            }
+            
+            refreshCount++;
+            
+            // 收集要顯示的狀態
+            OverlayViewState state = pendingState;
+            state.batteryLevel = monitorService.getBatteryLevel();
+            if (monitorService.isTestRunning()) {
+                state.status = OverlayViewState.STATUS_RUNNING;
+                state.elapsedMinutes = monitorService.getElapsedTime() / (60 * 1000);
+                state.plannedMinutes = monitorService.getTestDurationMinutes();
+            } else if (monitorService.isWakeLockHeld()) {
+                state.status = OverlayViewState.STATUS_WAKE_LOCK;
+            } else {
+                state.status = OverlayViewState.STATUS_IDLE;
+            }
+            
+            int changes = state.diff(renderedState);
+            if (changes == 0) {
                 return;
             }
             
             // 更新電量顯示
-            int batteryLevel = batteryMonitor.getCurrentBatteryLevel();
-            tvBatteryLevel.setText(batteryLevel + "%");
+            if ((changes & OverlayViewState.CHANGED_BATTERY_LEVEL) != 0) {
+                batteryLevelText.edit().append(state.batteryLevel).append('%');
+                if (batteryLevelText.commit()) {
+                    tvBatteryLevel.setText(batteryLevelText.getChars(), 0, batteryLevelText.length());
+                    viewUpdateCount++;
+                }
+            }
             
-            // 更新狀態和按鈕
-            if (isTestRunning) {
-                long elapsed = (System.currentTimeMillis() - startTime) / (60 * 1000);
-                
-                // 顯示進度格式: 5/30
-                tvStatus.setText(elapsed + "/" + testDurationMinutes);
-                btnAction.setText("停止監測");
-                
-                // 監測中按鈕變紅色
-                btnAction.setBackgroundResource(R.drawable.floating_button_running);
-                
-            } else {
-                if (wakeLockManager.isWakeLockHeld()) {
-                    tvStatus.setText("螢幕保持明亮");
+            // 更新狀態
+            if ((changes & OverlayViewState.CHANGED_STATUS) != 0) {
+                TextBuffer status = statusText.edit();
+                if (state.status == OverlayViewState.STATUS_RUNNING) {
+                    // 顯示進度格式: 5/30
+                    status.append(state.elapsedMinutes).append('/').append(state.plannedMinutes);
+                } else if (state.status == OverlayViewState.STATUS_WAKE_LOCK) {
+                    status.append("螢幕保持明亮");
                 } else {
-                    tvStatus.setText("待機");
+                    status.append("待機");
+                }
+                if (statusText.commit()) {
+                    tvStatus.setText(statusText.getChars(), 0, statusText.length());
+                    viewUpdateCount++;
                 }
-                btnAction.setText("開始監測");
-                
-                // 待機按鈕恢復藍色
-                btnAction.setBackgroundResource(R.drawable.floating_button_primary);
             }
             
+            // 更新按鈕
+            if ((changes & OverlayViewState.CHANGED_ACTION) != 0) {
+                if (state.isRunning()) {
+                    btnAction.setText("停止監測");
+                    
+                    // 監測中按鈕變紅色
+                    btnAction.setBackgroundResource(R.drawable.floating_button_running);
+                    chartPower.setVisibility(View.VISIBLE);
+                } else {
+                    btnAction.setText("開始監測");
+                    
+                    // 待機按鈕恢復藍色
+                    btnAction.setBackgroundResource(R.drawable.floating_button_primary);
+                    chartPower.setVisibility(View.INVISIBLE);
+                }
+                viewUpdateCount++;
+            }
+            
+            renderedState.copyFrom(state);
+        
         } catch (Exception e) {
             Log.e(TAG, "Error updating UI", e);
         }
@@ -469,32 +538,26 @@ public class FloatingWindowService extends Service {
         Log.d(TAG, "FloatingWindowService onDestroy");
         
         try {
-            // 如果測試正在進行，先保存結果
-            if (isTestRunning) {
-                int endBatteryLevel = batteryMonitor.getCurrentBatteryLevel();
-                long duration = System.currentTimeMillis() - startTime;
-                int batteryConsumed = Math.max(0, startBatteryLevel - endBatteryLevel);
-                
-                TestResult result = createTestResult(startTime, duration, startBatteryLevel, endBatteryLevel, batteryConsumed);
-                preferenceManager.saveTestResult(result);
-                
-                Log.d(TAG, "Test result saved on service destroy");
-            }
-            
-            // 停止UI更新
-            if (updateHandler != null && updateRunnable != null) {
-                updateHandler.removeCallbacks(updateRunnable);
+            // 解除綁定，進行中的測試由監測服務在前景繼續
+            if (isBound) {
+                if (monitorService != null) {
+                    monitorService.removeListener(monitorListener);
+                    monitorService = null;
+                }
+                unbindService(connection);
+                isBound = false;
             }
             
-            // 釋放WakeLock
-            if (wakeLockManager != null) {
-                wakeLockManager.cleanup();
+            // 停止介面刷新
+            if (uiTicker != null) {
+                uiTicker.release();
             }
-            
-            // 釋放FeedbackManager資源
-            if (feedbackManager != null) {
-                feedbackManager.release();
+            if (chartTicker != null) {
+                chartTicker.release();
             }
+            Choreographer.getInstance().removeFrameCallback(dragFrameCallback);
+            isDragFrameScheduled = false;
+            Log.d(TAG, "Overlay render stats: " + formatRenderStats());
             
             // 關閉測試主題對話框
             if (testSubjectDialog != null && testSubjectDialog.isShowing()) {
@@ -506,7 +569,7 @@ public class FloatingWindowService extends Service {
                 windowManager.removeView(floatingView);
                 Log.d(TAG, "Floating window removed");
             }
-            
+        
         } catch (Exception e) {
             Log.e(TAG, "Error in onDestroy", e);
         }
@@ -518,5 +581,21 @@ public class FloatingWindowService extends Service {
     public IBinder onBind(Intent intent) {
         return null;
     }
+    
+    private String formatRenderStats() {
+        return "refreshes=" + refreshCount + ", view updates=" + viewUpdateCount
+            + ", draws=" + drawCount + ", layouts=" + layoutCount
+            + ", drag moves=" + dragMoveCount + ", window updates=" + windowLayoutUpdateCount
+            + ", chart updates=" + chartUpdateCount;
+    }
+    
+    /**
+     * 輸出浮動窗口的繪製計數（在 binder 執行緒呼叫，讀到的是近似值）
+     * adb shell dumpsys activity service com.batterymonitor.newicon/com.batterymonitor.app.service.FloatingWindowService
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("Overlay render stats: " + formatRenderStats());
+        writer.println("Overlay attached: " + (floatingView != null && floatingView.isAttachedToWindow()));
+    }
 }
-
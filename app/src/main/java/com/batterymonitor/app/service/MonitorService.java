@@ -0,0 +1,932 @@
+package com.batterymonitor.app.service;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+
+import com.batterymonitor.app.MainActivity;
+import com.batterymonitor.app.R;
+import com.batterymonitor.app.analysis.LevelStepEstimator;
+import com.batterymonitor.app.data.PersistenceQueue;
+import com.batterymonitor.app.data.PowerPyramid;
+import com.batterymonitor.app.data.ProbeLog;
+import com.batterymonitor.app.data.SampleBuffer;
+import com.batterymonitor.app.data.SampleLog;
+import com.batterymonitor.app.data.SampleLogRecovery;
+import com.batterymonitor.app.manager.BatteryListener;
+import com.batterymonitor.app.manager.BatteryManagerSource;
+import com.batterymonitor.app.manager.BatteryMonitor;
+import com.batterymonitor.app.manager.BatterySampler;
+import com.batterymonitor.app.manager.FeedbackManager;
+import com.batterymonitor.app.manager.TestDeadline;
+import com.batterymonitor.app.manager.TestManager;
+import com.batterymonitor.app.manager.WakeLockManager;
+import com.batterymonitor.app.model.BatterySnapshot;
+import com.batterymonitor.app.model.TestResult;
+import com.batterymonitor.app.probe.CpuFreqProbe;
+import com.batterymonitor.app.probe.DisplayProbe;
+import com.batterymonitor.app.probe.NetworkProbe;
+import com.batterymonitor.app.probe.Probe;
+import com.batterymonitor.app.probe.SamplingScheduler;
+import com.batterymonitor.app.probe.ThermalProbe;
+import com.batterymonitor.app.utils.AndroidClock;
+import com.batterymonitor.app.utils.PreferenceManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 監測主機服務
+ * 取樣、排程、截止時間、WakeLock 與日誌持久化都在這裡執行，測試進行中以前景服務搭配常駐通知運行，
+ * 因此 Android 8 以上不會在背景被停止，也不需要浮動窗口權限。
+ * 浮動窗口只是可選的訂閱者：透過綁定取得狀態並註冊 Listener，關閉浮動窗口不影響測試。
+ *
+ * 沒有進行中的測試時離開前景並停止自身（仍被綁定時保留到解除綁定）。
+ */
+public class MonitorService extends Service {
+    
+    private static final String TAG = "MonitorService";
+    
+    // 外部控制的動作
+    public static final String ACTION_START_TEST = "com.batterymonitor.app.action.START_TEST";
+    public static final String ACTION_STOP_TEST = "com.batterymonitor.app.action.STOP_TEST";
+    public static final String EXTRA_TEST_SUBJECT = "test_subject";
+    
+    // 測試截止鬧鐘送給服務的動作
+    private static final String ACTION_TEST_DEADLINE = "com.batterymonitor.app.action.TEST_DEADLINE";
+    
+    // 點擊「繼續測試」通知送給服務的動作
+    private static final String ACTION_RESUME_TEST = "com.batterymonitor.app.action.RESUME_TEST";
+    
+    private static final String CHANNEL_ID = "monitor";
+    private static final String RESULT_CHANNEL_ID = "test_result";
+    private static final int NOTIFICATION_ID = 1;
+    private static final int RESULT_NOTIFICATION_ID = 2;
+    private static final int RESUME_NOTIFICATION_ID = 3;
+    
+    // 即時取樣緩衝容量：10 Hz 下約 1 小時，1 Hz 下約 10 小時
+    private static final int SAMPLE_BUFFER_CAPACITY = 36_000;
+    
+    // 服務銷毀時等待寫入佇列落盤的最長時間
+    private static final long DESTROY_BARRIER_TIMEOUT_MS = 3000;
+    
+    /**
+     * 狀態訂閱者，在主執行緒上回調
+     */
+    public interface Listener {
+        /** 測試狀態或電量改變 */
+        void onMonitorStateChanged();
+    }
+    
+    /**
+     * 同一程序內的綁定介面
+     */
+    public final class LocalBinder extends Binder {
+        public MonitorService getService() {
+            return MonitorService.this;
+        }
+    }
+    
+    private final IBinder binder = new LocalBinder();
+    private final List<Listener> listeners = new ArrayList<>();
+    
+    private BatteryMonitor batteryMonitor;
+    private BatterySampler batterySampler;
+    private final SamplingScheduler samplingScheduler = new SamplingScheduler(AndroidClock.INSTANCE);
+    private final List<Probe> auxiliaryProbes = new ArrayList<>();
+    private final SampleBuffer sampleBuffer = new SampleBuffer(SAMPLE_BUFFER_CAPACITY);
+    
+    // 緩衝區只能由寫入者（取樣執行緒）清空，開始或恢復測試時設定，在下一筆取樣寫入前清空
+    private volatile boolean isSampleBufferStale = false;
+    private final LevelStepEstimator levelStepEstimator = new LevelStepEstimator();
+    private volatile SampleLog sampleLog;
+    private volatile ProbeLog probeLog;
+    
+    // 記錄中建立的多解析度功率摘要，只由取樣執行緒寫入，測試完成後寫入快取檔
+    private volatile PowerPyramid powerPyramid;
+    private WakeLockManager wakeLockManager;
+    private PreferenceManager preferenceManager;
+    private FeedbackManager feedbackManager;
+    
+    // 測試狀態由 TestManager 保存並寫入檢查點，服務重啟後可繼續同一個測試
+    // 測試時長以 elapsedRealtime 計算，不受系統時間調整影響
+    private TestManager testManager;
+    private int testDurationMinutes = 30; // 預設30分鐘
+    
+    // 服務重啟前由取樣日誌重建的區段，停止時與之後的取樣合併
+    private TestResult resumedSegment;
+    
+    // 無法在前景恢復的測試：檢查點保留，等待使用者點擊通知後再繼續
+    private boolean isResumePending = false;
+    
+    // 本程序中服務正在執行的測試 ID，開始或恢復時設定，結束、放棄或延後恢復時清除
+    private static volatile long hostedRunId = SampleLogRecovery.NO_RUN;
+    
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private TestDeadline testDeadline;
+    private boolean isForeground = false;
+    
+    // 寫入佇列回調（在寫入執行緒上）
+    private final PersistenceQueue.Callback saveCallback = new PersistenceQueue.Callback() {
+        @Override
+        public void onSaved(TestResult result) {
+            Log.d(TAG, "Test result saved: id=" + result.getId());
+        }
+        
+        @Override
+        public void onFailed(TestResult result, Exception e) {
+            Log.e(TAG, "Error saving test result", e);
+        }
+    };
+    
+    // 電量變化時通知訂閱者
+    private final BatteryListener batteryListener = new BatteryListener() {
+        @Override
+        public void onBatterySnapshotChanged(BatterySnapshot snapshot) {
+            // 記錄測試期間每次電量跳變的廣播時間
+            if (testManager.isTestRunning()) {
+                levelStepEstimator.onLevel(snapshot.getTimestamp(), snapshot.getPercent());
+            }
+        }
+        
+        @Override
+        public void onBatteryLevelChanged(int level, boolean isCharging) {
+            notifyListeners();
+        }
+    };
+    
+    /**
+     * 建立開始測試的 Intent，以 ContextCompat.startForegroundService() 送出
+     */
+    public static Intent createStartIntent(Context context, String testSubject) {
+        return new Intent(context, MonitorService.class)
+            .setAction(ACTION_START_TEST)
+            .putExtra(EXTRA_TEST_SUBJECT, testSubject);
+    }
+    
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Log.d(TAG, "MonitorService onCreate");
+        
+        // 初始化管理器
+        batteryMonitor = new BatteryMonitor(this);
+        batteryMonitor.addListener(batteryListener);
+        batterySampler = BatterySampler.createSysfs(batteryMonitor, samplingScheduler,
+            new BatteryManagerSource(this), AndroidClock.INSTANCE);
+        batterySampler.addListener((timestampNanos, currentNow, currentAverage, chargeCounter,
+                                    energyCounter, voltage, level, sampleFlags, periodMs) -> {
+            if (isSampleBufferStale) {
+                isSampleBufferStale = false;
+                sampleBuffer.clear();
+            }
+            sampleBuffer.append(timestampNanos, currentNow, voltage, chargeCounter, level);
+            PowerPyramid pyramid = powerPyramid;
+            if (pyramid != null) {
+                pyramid.add(timestampNanos, currentNow, voltage);
+            }
+            appendToSampleLog(timestampNanos, currentNow, currentAverage, chargeCounter,
+                energyCounter, voltage, level, sampleFlags, periodMs);
+        });
+        
+        // 其他系統訊號與電池共用同一個排程執行緒，測試期間寫入 probes.log
+        auxiliaryProbes.add(new ThermalProbe());
+        auxiliaryProbes.add(new CpuFreqProbe());
+        auxiliaryProbes.add(new DisplayProbe(this));
+        auxiliaryProbes.add(new NetworkProbe());
+        samplingScheduler.setOutput(this::appendToProbeLog);
+        
+        wakeLockManager = new WakeLockManager(this);
+        // 續約時寫入持有統計，服務被終止後恢復時不會遺失之前的缺口
+        wakeLockManager.setRenewListener(manager -> testManager.saveWakeLockStats(manager.getHeldMillis(),
+            manager.getGapCount(), manager.getGapMillis()));
+        preferenceManager = new PreferenceManager(this);
+        testManager = TestManager.getInstance(getFilesDir(), AndroidClock.INSTANCE);
+        
+        // 電流校正依設備指紋保存，之後的測試直接以正規化的數據開始
+        batterySampler.setCalibration(preferenceManager.getCurrentCalibration(Build.FINGERPRINT));
+        batterySampler.setCalibrationListener(calibration ->
+            preferenceManager.setCurrentCalibration(Build.FINGERPRINT, calibration));
+        feedbackManager = new FeedbackManager(this);
+        
+        // 讀取測試時長設定
+        testDurationMinutes = preferenceManager.getTestDuration();
+        
+        createNotificationChannels();
+        
+        Intent deadlineIntent = new Intent(this, MonitorService.class).setAction(ACTION_TEST_DEADLINE);
+        PendingIntent alarmIntent = PendingIntent.getService(this, 0, deadlineIntent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        testDeadline = new TestDeadline(this, mainHandler, alarmIntent, () -> {
+            if (testManager.isTestRunning()) {
+                Log.d(TAG, "Test deadline reached");
+                stopTest();
+                Toast.makeText(MonitorService.this, "測試時間到，自動停止", Toast.LENGTH_SHORT).show();
+            }
+        });
+        
+        // 服務被終止後重啟時繼續進行中的測試
+        resumeInterruptedTest();
+    }
+    
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        Log.d(TAG, "MonitorService onStartCommand");
+        
+        // 以 startForegroundService() 啟動時必須先進入前景，閒置時再離開
+        enterForeground();
+        
+        // 點擊繼續通知或 MainActivity 重新啟動服務時再次嘗試恢復
+        if (isResumePending) {
+            resumeInterruptedTest();
+        }
+        
+        String action = intent != null ? intent.getAction() : null;
+        if (ACTION_START_TEST.equals(action)) {
+            if (!testManager.isInProgress()) {
+                startTest(intent.getStringExtra(EXTRA_TEST_SUBJECT));
+            }
+        } else if (ACTION_STOP_TEST.equals(action)) {
+            stopTest();
+        } else if (ACTION_TEST_DEADLINE.equals(action)) {
+            // 截止鬧鐘喚醒
+            testDeadline.check();
+        }
+        
+        if (!testManager.isInProgress()) {
+            stopIfIdle();
+        }
+        return START_STICKY;
+    }
+    
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+    
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+    
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+    
+    private void notifyListeners() {
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onMonitorStateChanged();
+        }
+    }
+    
+    public boolean isTestRunning() {
+        return testManager.isTestRunning() && !isResumePending;
+    }
+    
+    /**
+     * 本程序中服務正在執行（取樣或停止中）的測試 ID，沒有時回傳 SampleLogRecovery.NO_RUN
+     * 服務執行中的測試不可被放棄，即使取樣日誌建立失敗或系統時間被調整而無法恢復
+     */
+    public static long getHostedRunId() {
+        return hostedRunId;
+    }
+    
+    public int getBatteryLevel() {
+        return batteryMonitor.getCurrentBatteryLevel();
+    }
+    
+    public long getStartElapsedRealtime() {
+        return testManager.getStartElapsedRealtime();
+    }
+    
+    public long getElapsedTime() {
+        return testManager.getElapsedTime();
+    }
+    
+    public int getTestDurationMinutes() {
+        return testDurationMinutes;
+    }
+    
+    public boolean isWakeLockHeld() {
+        return wakeLockManager.isWakeLockHeld();
+    }
+    
+    public SampleBuffer getSampleBuffer() {
+        return sampleBuffer;
+    }
+    
+    /**
+     * 補上可能延遲的截止檢查（非精確鬧鐘），例如螢幕亮起時
+     * @return 已到截止時間並停止測試時回傳 true
+     */
+    public boolean checkDeadline() {
+        return testDeadline.check();
+    }
+    
+    /**
+     * 開始新的測試，服務會進入前景直到測試結束
+     */
+    public void startTest(String testSubject) {
+        try {
+            // 重新讀取測試時長設定
+            testDurationMinutes = preferenceManager.getTestDuration();
+            
+            // 開始測試
+            int startBatteryLevel = batteryMonitor.getCurrentBatteryLevel();
+            if (!testManager.startTest(testSubject, startBatteryLevel, testDurationMinutes * 60 * 1000L)) {
+                return;
+            }
+            hostedRunId = testManager.getRunId();
+            enterForeground();
+            long startElapsedRealtime = testManager.getStartElapsedRealtime();
+            levelStepEstimator.start(startElapsedRealtime, startBatteryLevel);
+            resumedSegment = null;
+            
+            // 獲取WakeLock防止休眠和變暗，租約會續約到計劃時長結束
+            wakeLockManager.acquireWakeLock(testDurationMinutes * 60 * 1000L);
+            
+            // 開始高解析度取樣，並寫入崩潰安全的取樣日誌
+            // 探針先註冊以確定通道編號，日誌建立前的第一個刻度不會寫入
+            for (Probe probe : auxiliaryProbes) {
+                samplingScheduler.register(probe);
+            }
+            openSampleLog();
+            isSampleBufferStale = true;
+            long samplingPeriod = preferenceManager.getSamplingPeriod();
+            batterySampler.start(samplingPeriod, preferenceManager.isAdaptiveSamplingEnabled()
+                ? preferenceManager.getSamplingFloorPeriod() : samplingPeriod);
+            
+            // 在截止時間精確結束測試
+            testDeadline.schedule(startElapsedRealtime + testDurationMinutes * 60 * 1000L);
+            testManager.markRunning();
+            updateNotification();
+            
+            // 播放開始反饋（音效 + 震動）
+            if (feedbackManager != null) {
+                feedbackManager.playStartFeedback();
+            }
+            
+            String subject = testManager.getTestSubject();
+            String subjectText = subject.isEmpty() ? "" : " - " + subject;
+            Toast.makeText(this, "開始監測 " + testDurationMinutes + " 分鐘" + subjectText, Toast.LENGTH_SHORT).show();
+            Log.d(TAG, "Test started at battery level: " + startBatteryLevel + "%, duration: " + testDurationMinutes + " minutes, subject: " + subject);
+            
+            notifyListeners();
+        
+        } catch (Exception e) {
+            Log.e(TAG, "Error starting test", e);
+            abortTest();
+            Toast.makeText(this, "開始測試失敗: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    }
+    
+    /**
+     * 繼續服務被終止前進行中的測試
+     * 同一次開機內且尚未到截止時間時，沿用原本的開始時間與截止時間，取樣日誌從寫入尾端繼續；
+     * 其他情況放棄該測試，由 MainActivity 的恢復流程從取樣日誌匯入。
+     * 服務在背景重啟時可能不允許進入前景，此時保留檢查點並以通知請使用者點擊繼續。
+     */
+    private void resumeInterruptedTest() {
+        if (!testManager.isInProgress()) {
+            return;
+        }
+        if (!testManager.isResumable()) {
+            isResumePending = false;
+            getNotificationManager().cancel(RESUME_NOTIFICATION_ID);
+            testManager.abandon();
+            return;
+        }
+        
+        // 先成為前景服務再開始取樣，常駐通知需要計劃時長
+        testDurationMinutes = (int) (testManager.getPlannedDuration() / (60 * 1000L));
+        if (!enterForeground()) {
+            deferResume();
+            return;
+        }
+        
+        try {
+            long startElapsedRealtime = testManager.getStartElapsedRealtime();
+            hostedRunId = testManager.getRunId();
+            
+            // 先由日誌重建終止前的區段，再從尾端繼續寫入
+            File runDir = SampleLog.getRunDirectory(getFilesDir(), testManager.getRunId());
+            resumedSegment = SampleLogRecovery.recover(new File(runDir, SampleLog.FILE_NAME));
+            sampleLog = SampleLog.resume(runDir, preferenceManager.getLogFlushInterval(),
+                SystemClock.elapsedRealtimeNanos());
+            sampleLog.setFlushHandler(PreferenceManager.getPersistenceQueue());
+            
+            // 終止前的跳變時間已遺失，從目前電量開始記錄之後的跳變
+            levelStepEstimator.start(startElapsedRealtime, batteryMonitor.getCurrentBatteryLevel());
+            
+            long now = SystemClock.elapsedRealtime();
+            long remaining = startElapsedRealtime + testManager.getPlannedDuration() - now;
+            wakeLockManager.acquireWakeLock(remaining);
+            
+            // 服務未執行的期間沒有持有 WakeLock：從最後的統計檢查點或最後一筆日誌記錄到現在計為一個缺口
+            long checkpointElapsed = testManager.getWakeLockCheckpointElapsed();
+            long lastHeldElapsed = checkpointElapsed;
+            if (resumedSegment != null) {
+                lastHeldElapsed = Math.max(lastHeldElapsed, startElapsedRealtime + resumedSegment.getDuration());
+            }
+            lastHeldElapsed = Math.min(lastHeldElapsed, now);
+            wakeLockManager.carryOver(testManager.getWakeLockHeldMillis() + (lastHeldElapsed - checkpointElapsed),
+                testManager.getWakeLockGapCount() + 1, testManager.getWakeLockGapMillis() + (now - lastHeldElapsed));
+            testManager.saveWakeLockStats(wakeLockManager.getHeldMillis(), wakeLockManager.getGapCount(),
+                wakeLockManager.getGapMillis());
+            
+            // 保留原本的 probes.log，恢復後不再記錄輔助探針
+            isSampleBufferStale = true;
+            long samplingPeriod = preferenceManager.getSamplingPeriod();
+            batterySampler.start(samplingPeriod, preferenceManager.isAdaptiveSamplingEnabled()
+                ? preferenceManager.getSamplingFloorPeriod() : samplingPeriod);
+            
+            testDeadline.schedule(startElapsedRealtime + testManager.getPlannedDuration());
+            
+            // 被綁定建立時也要成為已啟動的服務，解除綁定後測試才會繼續；已在前景，不受背景啟動限制
+            startService(new Intent(this, MonitorService.class));
+            isResumePending = false;
+            getNotificationManager().cancel(RESUME_NOTIFICATION_ID);
+            notifyListeners();
+            
+            Toast.makeText(this, "已繼續進行中的測試", Toast.LENGTH_SHORT).show();
+            Log.d(TAG, "Test resumed: run " + testManager.getRunId() + ", elapsed "
+                + (SystemClock.elapsedRealtime() - startElapsedRealtime) + "ms, log records: "
+                + sampleLog.getRecordCount());
+        
+        } catch (Exception e) {
+            Log.e(TAG, "Error resuming test", e);
+            deferResume();
+        }
+    }
+    
+    // 恢復失敗時撤銷已完成的準備但保留檢查點，取樣日誌以未完成狀態關閉，之後仍可從尾端繼續；
+    // 超過計劃時長後檢查點不再可恢復，由 MainActivity 的恢復流程從日誌匯入
+    private void deferResume() {
+        testDeadline.cancel();
+        stopSampling(false);
+        wakeLockManager.releaseWakeLock();
+        resumedSegment = null;
+        hostedRunId = SampleLogRecovery.NO_RUN;
+        isResumePending = true;
+        showResumeNotification();
+        stopIfIdle();
+        notifyListeners();
+    }
+    
+    // 開始失敗或放棄等待恢復的測試時撤銷已完成的準備，日誌留給恢復流程
+    private void abortTest() {
+        testDeadline.cancel();
+        stopSampling(false);
+        wakeLockManager.releaseWakeLock();
+        resumedSegment = null;
+        if (isResumePending) {
+            isResumePending = false;
+            getNotificationManager().cancel(RESUME_NOTIFICATION_ID);
+        }
+        testManager.abandon();
+        hostedRunId = SampleLogRecovery.NO_RUN;
+        stopIfIdle();
+        notifyListeners();
+    }
+    
+    /**
+     * 停止進行中的測試並保存結果
+     */
+    public void stopTest() {
+        // 等待恢復的測試沒有在取樣，停止時直接放棄，由恢復流程從日誌匯入
+        if (isResumePending) {
+            abortTest();
+            return;
+        }
+        
+        try {
+            if (!testManager.stopTest()) {
+                return;
+            }
+            
+            // 停止測試
+            testDeadline.cancel();
+            stopSampling(true);
+            wakeLockManager.releaseWakeLock();
+            
+            // 播放結束反饋（音效 + 震動）
+            if (feedbackManager != null) {
+                feedbackManager.playEndFeedback();
+            }
+            
+            // 計算並保存測試結果
+            TestResult result = finishTest();
+            
+            // 顯示詳細結果
+            showTestResult(result);
+            
+            Log.d(TAG, "Test completed: " + result.toString());
+        
+        } catch (Exception e) {
+            Log.e(TAG, "Error stopping test", e);
+            Toast.makeText(this, "停止測試失敗: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+        
+        stopIfIdle();
+        notifyListeners();
+    }
+    
+    /**
+     * 建立測試結果並交給寫入佇列保存（STOPPING → COMPLETED）
+     */
+    private TestResult finishTest() {
+        int startBatteryLevel = testManager.getStartBatteryLevel();
+        int endBatteryLevel = batteryMonitor.getCurrentBatteryLevel();
+        long duration = SystemClock.elapsedRealtime() - testManager.getStartElapsedRealtime();
+        int batteryConsumed = Math.max(0, startBatteryLevel - endBatteryLevel);
+        
+        // 創建測試結果
+        TestResult result = createTestResult(testManager.getStartTime(), duration, startBatteryLevel,
+            endBatteryLevel, batteryConsumed);
+        
+        // 在寫入佇列上保存到歷史記錄，不阻塞結果顯示
+        preferenceManager.saveTestResultAsync(result, saveCallback);
+        testManager.complete(endBatteryLevel, duration);
+        resumedSegment = null;
+        hostedRunId = SampleLogRecovery.NO_RUN;
+        return result;
+    }
+    
+    // 停止所有探針並關閉本次測試的日誌，未完成的取樣日誌留給恢復流程匯入
+    private void stopSampling(boolean completed) {
+        batterySampler.stop();
+        for (Probe probe : auxiliaryProbes) {
+            samplingScheduler.unregister(probe);
+        }
+        Log.d(TAG, "Sampling wakeups: " + String.format(Locale.US, "%.2f/s", samplingScheduler.getWakeupsPerSecond())
+            + ", probes per wakeup: " + String.format(Locale.US, "%.2f", samplingScheduler.getSamplesPerWakeup()));
+        closeSampleLog(completed);
+        closeProbeLog();
+        savePowerPyramid(completed);
+    }
+    
+    private void openSampleLog() {
+        long runId = testManager.getRunId();
+        powerPyramid = new PowerPyramid();
+        try {
+            sampleLog = SampleLog.create(
+                SampleLog.getRunDirectory(getFilesDir(), runId),
+                runId,
+                testManager.getStartTime(),
+                SystemClock.elapsedRealtimeNanos(),
+                testManager.getPlannedDuration(),
+                testManager.getStartBatteryLevel(),
+                testManager.getTestSubject(),
+                preferenceManager.getLogFlushInterval());
+            sampleLog.setFlushHandler(PreferenceManager.getPersistenceQueue());
+        } catch (IOException e) {
+            Log.e(TAG, "Error creating sample log", e);
+            sampleLog = null;
+        }
+        
+        try {
+            probeLog = ProbeLog.create(
+                SampleLog.getRunDirectory(getFilesDir(), runId),
+                runId,
+                samplingScheduler.getChannelNames(),
+                SystemClock.elapsedRealtimeNanos(),
+                preferenceManager.getLogFlushInterval());
+        } catch (IOException e) {
+            Log.e(TAG, "Error creating probe log", e);
+            probeLog = null;
+        }
+    }
+    
+    // 在排程執行緒上呼叫
+    private void appendToProbeLog(int channel, long timestampNanos, long value) {
+        ProbeLog log = probeLog;
+        if (log == null) {
+            return;
+        }
+        try {
+            log.append(channel, timestampNanos, value);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing probe log, probe logging disabled for this run", e);
+            // 關閉失敗的日誌以釋放檔案，已寫入的區段保留
+            probeLog = null;
+            PreferenceManager.getPersistenceQueue().closeProbeLog(log);
+        }
+    }
+    
+    // 探針停止後呼叫，實際關閉在寫入佇列上進行
+    private void closeProbeLog() {
+        ProbeLog log = probeLog;
+        probeLog = null;
+        if (log != null) {
+            PreferenceManager.getPersistenceQueue().closeProbeLog(log);
+        }
+    }
+    
+    // 在排程執行緒上呼叫
+    private void appendToSampleLog(long timestampNanos, int currentNow, int currentAverage,
+                                   int chargeCounter, long energyCounter, int voltage, int level,
+                                   int sampleFlags, int periodMs) {
+        SampleLog log = sampleLog;
+        if (log == null) {
+            return;
+        }
+        try {
+            log.append(timestampNanos, currentNow, currentAverage, chargeCounter, energyCounter, voltage, level,
+                sampleFlags, periodMs);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing sample log, logging disabled for this run", e);
+            // 以未完成狀態關閉以釋放映射與檔案，之後恢復流程可匯入已寫入的記錄
+            sampleLog = null;
+            PreferenceManager.getPersistenceQueue().closeSampleLog(log, false);
+        }
+    }
+    
+    // 取樣器停止後呼叫，實際關閉在寫入佇列上進行
+    private void closeSampleLog(boolean completed) {
+        SampleLog log = sampleLog;
+        sampleLog = null;
+        if (log != null) {
+            PreferenceManager.getPersistenceQueue().closeSampleLog(log, completed);
+        }
+    }
+    
+    // 取樣器停止後呼叫；未完成的測試不寫快取，需要時再由取樣日誌重建
+    private void savePowerPyramid(boolean completed) {
+        PowerPyramid pyramid = powerPyramid;
+        powerPyramid = null;
+        if (pyramid == null || !completed || pyramid.isEmpty()) {
+            return;
+        }
+        File file = new File(SampleLog.getRunDirectory(getFilesDir(), testManager.getRunId()), PowerPyramid.FILE_NAME);
+        PreferenceManager.getPersistenceQueue().savePowerPyramid(pyramid, file);
+    }
+    
+    private TestResult createTestResult(long startTime, long duration, int startBattery, int endBattery, int consumed) {
+        TestResult result = new TestResult();
+        result.setStartTime(startTime);
+        result.setEndTime(startTime + duration);
+        result.setDuration(duration);
+        result.setStartBatteryLevel(startBattery);
+        result.setEndBatteryLevel(endBattery);
+        result.setBatteryConsumed(consumed);
+        result.setPlannedDuration(testDurationMinutes * 60 * 1000L); // 轉換為毫秒
+        result.setTestSubject(testManager.getTestSubject()); // 設定測試主題
+        if (batterySampler != null) {
+            batterySampler.writeTo(result);
+        }
+        if (resumedSegment != null) {
+            SampleLogRecovery.mergeSegment(result, resumedSegment);
+        }
+        if (wakeLockManager != null) {
+            // stopTest 已釋放 WakeLock，此時的統計已是最終值
+            result.setWakeLockStats(wakeLockManager.getHeldMillis(), wakeLockManager.getGapCount(),
+                wakeLockManager.getGapMillis());
+        }
+        LevelStepEstimator.Estimate estimate = levelStepEstimator.estimate(SystemClock.elapsedRealtime());
+        if (estimate != null) {
+            result.setLevelStepEstimate(estimate.stepCount, estimate.consumption, estimate.consumptionError,
+                estimate.rate, estimate.rateError);
+        }
+        return result;
+    }
+    
+    private Intent createResultIntent(TestResult result) {
+        Intent intent = new Intent(this, MainActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        intent.putExtra("show_test_result", true);
+        intent.putExtra("test_start_time", result.getStartTime());
+        intent.putExtra("test_end_time", result.getEndTime());
+        intent.putExtra("test_start_battery", result.getStartBatteryLevel());
+        intent.putExtra("test_end_battery", result.getEndBatteryLevel());
+        intent.putExtra("test_duration", result.getDuration());
+        intent.putExtra("test_subject", result.getTestSubject());
+        intent.putExtra("test_charge_mah", result.getChargeConsumedMah());
+        intent.putExtra("test_energy_mwh", result.getEnergyMilliwattHours());
+        intent.putExtra("test_average_power_mw", result.getAveragePowerMilliwatts());
+        intent.putExtra("test_peak_power_mw", result.getPeakPowerMilliwatts());
+        intent.putExtra("test_level_steps", result.getLevelStepCount());
+        intent.putExtra("test_estimated_consumption", result.getEstimatedConsumption());
+        intent.putExtra("test_estimated_consumption_error", result.getEstimatedConsumptionError());
+        intent.putExtra("test_estimated_rate", result.getEstimatedRate());
+        intent.putExtra("test_estimated_rate_error", result.getEstimatedRateError());
+        return intent;
+    }
+    
+    /**
+     * 顯示測試結果
+     * 結果一律以通知提供；有浮動窗口權限時可從背景啟動 Activity，直接開啟結果畫面
+     */
+    private void showTestResult(TestResult result) {
+        Intent intent = createResultIntent(result);
+        try {
+            long durationMinutes = result.getDuration() / (60 * 1000);
+            PendingIntent contentIntent = PendingIntent.getActivity(this, RESULT_NOTIFICATION_ID, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+            Notification notification = new NotificationCompat.Builder(this, RESULT_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_battery)
+                .setContentTitle("📊 測試完成")
+                .setContentText(String.format("%d分鐘 · %d%% → %d%% (-%d%%)", durationMinutes,
+                    result.getStartBatteryLevel(), result.getEndBatteryLevel(), result.getBatteryConsumed()))
+                .setContentIntent(contentIntent)
+                .setAutoCancel(true)
+                .build();
+            getNotificationManager().notify(RESULT_NOTIFICATION_ID, notification);
+        } catch (Exception e) {
+            Log.e(TAG, "Error posting result notification", e);
+        }
+        
+        if (Settings.canDrawOverlays(this)) {
+            try {
+                // 啟動MainActivity並顯示結果（不需要重複保存，已在stopTest中保存）
+                startActivity(intent);
+                Log.d(TAG, "Test result activity started: " + result.toString());
+            } catch (Exception e) {
+                Log.e(TAG, "Error showing test result", e);
+            }
+        }
+    }
+    
+    /**
+     * 通知使用者點擊以繼續中斷的測試，通知在計劃時長結束時自動移除
+     * 點擊通知屬於使用者操作，可從背景啟動前景服務
+     */
+    private void showResumeNotification() {
+        try {
+            Intent resumeIntent = new Intent(this, MonitorService.class).setAction(ACTION_RESUME_TEST);
+            int flags = PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE;
+            PendingIntent contentIntent = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                ? PendingIntent.getForegroundService(this, RESUME_NOTIFICATION_ID, resumeIntent, flags)
+                : PendingIntent.getService(this, RESUME_NOTIFICATION_ID, resumeIntent, flags);
+            long remaining = testManager.getStartElapsedRealtime() + testManager.getPlannedDuration()
+                - SystemClock.elapsedRealtime();
+            String subject = testManager.getTestSubject();
+            Notification notification = new NotificationCompat.Builder(this, RESULT_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_battery)
+                .setContentTitle(subject.isEmpty() ? "測試已中斷" : "測試已中斷 - " + subject)
+                .setContentText("點擊以繼續測試")
+                .setContentIntent(contentIntent)
+                .setAutoCancel(true)
+                .setTimeoutAfter(Math.max(1, remaining))
+                .build();
+            getNotificationManager().notify(RESUME_NOTIFICATION_ID, notification);
+        } catch (Exception e) {
+            Log.e(TAG, "Error posting resume notification", e);
+        }
+    }
+    
+    private NotificationManager getNotificationManager() {
+        return (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+    }
+    
+    private void createNotificationChannels() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            // 常駐通知不發出聲音也不震動
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "電力監測",
+                NotificationManager.IMPORTANCE_LOW);
+            channel.setShowBadge(false);
+            NotificationChannel resultChannel = new NotificationChannel(RESULT_CHANNEL_ID, "測試結果",
+                NotificationManager.IMPORTANCE_DEFAULT);
+            getNotificationManager().createNotificationChannel(channel);
+            getNotificationManager().createNotificationChannel(resultChannel);
+        }
+    }
+    
+    /**
+     * 建立常駐通知
+     * 已測試時間由系統的計時器顯示，測試期間不需要定時更新通知
+     */
+    private Notification buildNotification() {
+        Intent openIntent = new Intent(this, MainActivity.class).addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0, openIntent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+            .setSmallIcon(R.drawable.ic_battery)
+            .setContentIntent(contentIntent)
+            .setOngoing(true)
+            .setOnlyAlertOnce(true)
+            .setShowWhen(false)
+            .setCategory(NotificationCompat.CATEGORY_SERVICE)
+            .setPriority(NotificationCompat.PRIORITY_LOW);
+        
+        if (testManager.isInProgress()) {
+            String subject = testManager.getTestSubject();
+            Intent stopIntent = new Intent(this, MonitorService.class).setAction(ACTION_STOP_TEST);
+            PendingIntent stopPendingIntent = PendingIntent.getService(this, 1, stopIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+            builder.setContentTitle(subject.isEmpty() ? "電力監測中" : "電力監測中 - " + subject)
+                .setContentText("計劃 " + testDurationMinutes + " 分鐘，開始電量 " + testManager.getStartBatteryLevel() + "%")
+                .setWhen(testManager.getStartTime())
+                .setShowWhen(true)
+                .setUsesChronometer(true)
+                .addAction(0, "停止監測", stopPendingIntent);
+        } else {
+            builder.setContentTitle("電力監測待機中");
+        }
+        return builder.build();
+    }
+    
+    /**
+     * @return 是否已成為前景服務（背景啟動受限時會失敗）
+     */
+    private boolean enterForeground() {
+        try {
+            int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE
+                ? ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE : 0;
+            ServiceCompat.startForeground(this, NOTIFICATION_ID, buildNotification(), type);
+            isForeground = true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error entering foreground", e);
+        }
+        return isForeground;
+    }
+    
+    private void updateNotification() {
+        if (isForeground) {
+            getNotificationManager().notify(NOTIFICATION_ID, buildNotification());
+        }
+    }
+    
+    // 沒有進行中的測試時離開前景，仍被綁定時服務保留到解除綁定
+    private void stopIfIdle() {
+        if (isForeground) {
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            isForeground = false;
+        }
+        stopSelf();
+    }
+    
+    @Override
+    public void onDestroy() {
+        Log.d(TAG, "MonitorService onDestroy");
+        
+        try {
+            // 如果測試正在進行，先保存結果
+            if (testManager != null && testManager.isTestRunning() && !isResumePending) {
+                testManager.stopTest();
+                testDeadline.cancel();
+                stopSampling(true);
+                finishTest();
+                
+                // 服務即將結束，等待結果與日誌寫入儲存裝置
+                if (!PreferenceManager.getPersistenceQueue().awaitDurable(DESTROY_BARRIER_TIMEOUT_MS)) {
+                    Log.w(TAG, "Persistence barrier timed out on service destroy");
+                }
+                
+                Log.d(TAG, "Test result saved on service destroy");
+            }
+            
+            // 停止排程器上剩餘的探針
+            samplingScheduler.unregisterAll();
+            
+            // 取消截止排程
+            if (testDeadline != null) {
+                testDeadline.cancel();
+            }
+            
+            // 註銷電池監聽
+            if (batteryMonitor != null) {
+                batteryMonitor.release();
+            }
+            
+            // 釋放WakeLock
+            if (wakeLockManager != null) {
+                wakeLockManager.cleanup();
+            }
+            
+            // 釋放FeedbackManager資源
+            if (feedbackManager != null) {
+                feedbackManager.release();
+            }
+            
+            listeners.clear();
+        
+        } catch (Exception e) {
+            Log.e(TAG, "Error in onDestroy", e);
+        }
+        hostedRunId = SampleLogRecovery.NO_RUN;
+        
+        super.onDestroy();
+    }
+}
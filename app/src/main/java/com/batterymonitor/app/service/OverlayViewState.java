@@ -0,0 +1,69 @@
+package com.batterymonitor.app.service;
+
+/**
+ * 浮動窗口的顯示狀態
+ * 每次刷新先由監測服務填入新狀態，再與上次實際顯示的狀態比較，只更新有變化的 View；
+ * 避免每次刷新都重設文字與背景而觸發浮動窗口的重新排版與繪製。
+ */
+final class OverlayViewState {
+    
+    static final int CHANGED_BATTERY_LEVEL = 1;
+    static final int CHANGED_STATUS = 1 << 1;
+    static final int CHANGED_ACTION = 1 << 2;
+    static final int CHANGED_ALL = CHANGED_BATTERY_LEVEL | CHANGED_STATUS | CHANGED_ACTION;
+    
+    static final int STATUS_IDLE = 0;
+    static final int STATUS_WAKE_LOCK = 1;
+    static final int STATUS_RUNNING = 2;
+    
+    int batteryLevel;
+    int status;
+    long elapsedMinutes;     // 只在 STATUS_RUNNING 時有意義
+    int plannedMinutes;
+    
+    // 尚未顯示過任何狀態，與任何狀態比較都視為全部改變
+    private boolean isValid = false;
+    
+    boolean isRunning() {
+        return status == STATUS_RUNNING;
+    }
+    
+    /**
+     * 比較要顯示的狀態與已顯示的狀態
+     * @return CHANGED_* 位元組合，0 表示不需更新
+     */
+    int diff(OverlayViewState rendered) {
+        if (!rendered.isValid) {
+            return CHANGED_ALL;
+        }
+        
+        int changes = 0;
+        if (batteryLevel != rendered.batteryLevel) {
+            changes |= CHANGED_BATTERY_LEVEL;
+        }
+        if (status != rendered.status
+                || (isRunning() && (elapsedMinutes != rendered.elapsedMinutes
+                    || plannedMinutes != rendered.plannedMinutes))) {
+            changes |= CHANGED_STATUS;
+        }
+        if (isRunning() != rendered.isRunning()) {
+            changes |= CHANGED_ACTION;
+        }
+        return changes;
+    }
+    
+    void copyFrom(OverlayViewState other) {
+        batteryLevel = other.batteryLevel;
+        status = other.status;
+        elapsedMinutes = other.elapsedMinutes;
+        plannedMinutes = other.plannedMinutes;
+        isValid = true;
+    }
+    
+    /**
+     * View 重新建立後呼叫，下一次刷新會設定所有 View
+     */
+    void invalidate() {
+        isValid = false;
+    }
+}
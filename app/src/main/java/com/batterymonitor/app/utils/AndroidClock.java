@@ -0,0 +1,29 @@
+package com.batterymonitor.app.utils;
+
+import android.os.SystemClock;
+
+/**
+ * 以 SystemClock 實作的系統時鐘
+ */
+public final class AndroidClock implements Clock {
+    
+    public static final AndroidClock INSTANCE = new AndroidClock();
+    
+    private AndroidClock() {
+    }
+    
+    @Override
+    public long elapsedRealtime() {
+        return SystemClock.elapsedRealtime();
+    }
+    
+    @Override
+    public long elapsedRealtimeNanos() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+    
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
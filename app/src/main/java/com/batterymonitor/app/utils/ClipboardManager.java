@@ -5,12 +5,9 @@ import android.content.Context;
 import android.util.Log;
 import android.widget.Toast;
 
+import com.batterymonitor.app.format.DateFormats;
 import com.batterymonitor.app.model.TestResult;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-
 /**
  * 剪貼簿管理器
  * 負責處理測試結果的複製功能
@@ -108,9 +105,6 @@ public class ClipboardManager {
     private String formatTestResult(TestResult result) {
         StringBuilder sb = new StringBuilder();
         
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss", Locale.getDefault());
-        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
-        
         // 獲取設備信息
         DeviceInfoManager deviceInfo = new DeviceInfoManager(context);
         
@@ -124,27 +118,60 @@ public class ClipboardManager {
         
         // 測試時間
         sb.append("🕐 測試時間:\n");
-        sb.append("開始: ").append(dateFormat.format(new Date(result.getStartTime()))).append("\n");
-        sb.append("結束: ").append(dateFormat.format(new Date(result.getEndTime()))).append("\n");
+        sb.append("開始: ").append(DateFormats.formatDateTime(result.getStartTime())).append("\n");
+        sb.append("結束: ").append(DateFormats.formatDateTime(result.getEndTime())).append("\n");
         sb.append("持續: ").append(formatDuration(result.getActualDuration())).append("\n\n");
         
         // 電量信息
         sb.append("🔋 電量變化:\n");
         sb.append("開始電量: ").append(result.getStartBatteryLevel()).append("%\n");
         sb.append("結束電量: ").append(result.getEndBatteryLevel()).append("%\n");
-        sb.append("消耗電量: ").append(result.getBatteryConsumed()).append("%\n\n");
+        sb.append("消耗電量: ").append(result.getBatteryConsumed()).append("%\n");
+        if (result.hasHighResolutionData()) {
+            sb.append("消耗電荷: ").append(String.format("%.1f", result.getChargeConsumedMah())).append(" mAh\n");
+            sb.append("消耗能量: ").append(String.format("%.1f", result.getEnergyMilliwattHours())).append(" mWh\n");
+        }
+        if (result.hasPowerData()) {
+            sb.append("平均功率: ").append(String.format("%.0f", result.getAveragePowerMilliwatts())).append(" mW\n");
+            sb.append("峰值功率: ").append(String.format("%.0f", result.getPeakPowerMilliwatts())).append(" mW\n");
+        }
+        sb.append("\n");
         
         // 統計信息
         sb.append("📊 統計數據:\n");
-        sb.append("消耗率: ").append(String.format("%.2f", result.getConsumptionRate())).append("%/小時\n\n");
+        sb.append("消耗率: ").append(String.format("%.2f", result.getConsumptionRate())).append("%/小時\n");
+        if (result.hasHighResolutionData()) {
+            sb.append("電荷消耗率: ").append(String.format("%.1f", result.getChargeConsumptionRate())).append(" mAh/小時\n");
+        }
+        if (result.hasLevelStepEstimate()) {
+            sb.append("跳變估計: ").append(result.getFormattedEstimatedConsumption())
+                .append("，").append(result.getLevelStepCount()).append(" 次跳變\n");
+        }
+        if (result.getSamplerWakeupsPerSecond() > 0) {
+            sb.append("取樣喚醒: ").append(String.format("%.2f", result.getSamplerWakeupsPerSecond())).append(" 次/秒\n");
+        }
+        if (result.hasSamplingOverhead()) {
+            sb.append("取樣開銷: ").append(String.format("%.1f", result.getSamplingBusyMillis()))
+                .append(" ms（固定頻率約 ").append(String.format("%.1f", result.getFixedRateBusyMillis())).append(" ms）\n");
+        }
+        sb.append("\n");
         
         // 測試條件
         sb.append("⚙️ 測試條件:\n");
         sb.append("測試應用: 電力監測器\n");
         sb.append("測試模式: 螢幕常亮監測\n");
+        if (result.hasWakeLockData()) {
+            sb.append("螢幕常亮: ").append(formatDuration(result.getWakeLockHeldMillis()));
+            if (result.hasWakeLockGaps()) {
+                sb.append("（中斷 ").append(result.getWakeLockGapCount()).append(" 次，共 ")
+                    .append(formatDuration(result.getWakeLockGapMillis())).append("）⚠️\n");
+            } else {
+                sb.append("（未中斷）\n");
+            }
+        }
         
         sb.append("\n───────────────────\n");
-        sb.append("由電力監測器生成 ").append(dateFormat.format(new Date()));
+        sb.append("由電力監測器生成 ").append(DateFormats.formatDateTime(System.currentTimeMillis()));
         
         return sb.toString();
     }
@@ -153,11 +180,9 @@ public class ClipboardManager {
      * 格式化簡化版測試結果
      */
     private String formatTestResultSimple(TestResult result) {
-        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-        
         return String.format("電力測試 %s-%s: %d%%→%d%% (-%d%%) %s",
-            timeFormat.format(new Date(result.getStartTime())),
-            timeFormat.format(new Date(result.getEndTime())),
+            DateFormats.formatTimeShort(result.getStartTime()),
+            DateFormats.formatTimeShort(result.getEndTime()),
             result.getStartBatteryLevel(),
             result.getEndBatteryLevel(),
             result.getBatteryConsumed(),
@@ -169,10 +194,8 @@ public class ClipboardManager {
      * 格式化當前狀態
      */
     private String formatCurrentStatus(int batteryLevel, long elapsedTime, int consumed) {
-        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
-        
         return String.format("電力監測 %s: %d%% (-%d%%) %s",
-            timeFormat.format(new Date()),
+            DateFormats.formatTime(System.currentTimeMillis()),
             batteryLevel,
             consumed,
             formatDurationShort(elapsedTime)
@@ -4,8 +4,18 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
 
+import com.batterymonitor.app.analysis.CurrentCalibration;
+import com.batterymonitor.app.data.LegacyHistoryParser;
+import com.batterymonitor.app.data.PersistenceQueue;
+import com.batterymonitor.app.data.RunStatistics;
+import com.batterymonitor.app.data.RunStore;
+import com.batterymonitor.app.data.SampleLog;
 import com.batterymonitor.app.model.TestResult;
 
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,16 +30,30 @@ public class PreferenceManager {
     private static final String KEY_AUTO_START = "auto_start";
     private static final String KEY_FLOATING_WINDOW_ENABLED = "floating_window_enabled";
     private static final String KEY_WINDOW_TRANSPARENCY = "window_transparency";
-    private static final String KEY_TEST_HISTORY = "test_history";
+    private static final String KEY_TEST_HISTORY = "test_history"; // 舊版歷史字串，僅用於遷移
     private static final String KEY_FIRST_RUN = "first_run";
     private static final String KEY_AUTO_COPY = "auto_copy";
+    private static final String KEY_SAMPLING_PERIOD = "sampling_period";
+    private static final String KEY_LOG_FLUSH_INTERVAL = "log_flush_interval";
+    private static final String KEY_ADAPTIVE_SAMPLING = "adaptive_sampling";
+    private static final String KEY_SAMPLING_FLOOR_PERIOD = "sampling_floor_period";
+    private static final String KEY_CURRENT_CALIBRATION_PREFIX = "current_calibration_";
     
     // 默認值
     private static final long DEFAULT_TEST_DURATION = 30 * 60 * 1000; // 30分鐘
     private static final boolean DEFAULT_AUTO_START = false;
     private static final boolean DEFAULT_FLOATING_WINDOW_ENABLED = true;
     private static final int DEFAULT_WINDOW_TRANSPARENCY = 90; // 90% 不透明
-    private static final int MAX_HISTORY_COUNT = 5; // 最多保存5筆記錄
+    private static final long DEFAULT_SAMPLING_PERIOD = 1000; // 1 Hz
+    private static final long DEFAULT_LOG_FLUSH_INTERVAL = 5000; // 5秒群組提交一次
+    private static final boolean DEFAULT_ADAPTIVE_SAMPLING = true;
+    private static final long DEFAULT_SAMPLING_FLOOR_PERIOD = 5000; // 訊號平穩時降到 0.2 Hz
+    
+    private static final String HISTORY_DIRECTORY = "history";
+    
+    // 程序共用的測試記錄儲存庫與寫入佇列
+    private static RunStore runStore;
+    private static PersistenceQueue persistenceQueue;
     
     private SharedPreferences preferences;
     private Context context;
@@ -107,120 +131,256 @@ public class PreferenceManager {
         preferences.edit().putBoolean(KEY_AUTO_COPY, enabled).apply();
     }
     
+    // 取樣週期設定 (毫秒)，範圍 100ms (10 Hz) 至 10000ms (0.1 Hz)
+    public long getSamplingPeriod() {
+        return preferences.getLong(KEY_SAMPLING_PERIOD, DEFAULT_SAMPLING_PERIOD);
+    }
+    
+    public void setSamplingPeriod(long periodMs) {
+        preferences.edit().putLong(KEY_SAMPLING_PERIOD, periodMs).apply();
+        Log.d(TAG, "Sampling period set to: " + periodMs + "ms");
+    }
+    
+    // 自適應取樣：訊號平穩時放慢到底限週期，變化時回到取樣週期
+    public boolean isAdaptiveSamplingEnabled() {
+        return preferences.getBoolean(KEY_ADAPTIVE_SAMPLING, DEFAULT_ADAPTIVE_SAMPLING);
+    }
+    
+    public void setAdaptiveSamplingEnabled(boolean enabled) {
+        preferences.edit().putBoolean(KEY_ADAPTIVE_SAMPLING, enabled).apply();
+    }
+    
+    // 自適應取樣的底限週期 (毫秒)，不大於取樣週期時為固定頻率
+    public long getSamplingFloorPeriod() {
+        return preferences.getLong(KEY_SAMPLING_FLOOR_PERIOD, DEFAULT_SAMPLING_FLOOR_PERIOD);
+    }
+    
+    public void setSamplingFloorPeriod(long periodMs) {
+        preferences.edit().putLong(KEY_SAMPLING_FLOOR_PERIOD, periodMs).apply();
+        Log.d(TAG, "Sampling floor period set to: " + periodMs + "ms");
+    }
+    
+    // 取樣日誌群組提交間隔 (毫秒)
+    public long getLogFlushInterval() {
+        return preferences.getLong(KEY_LOG_FLUSH_INTERVAL, DEFAULT_LOG_FLUSH_INTERVAL);
+    }
+    
+    public void setLogFlushInterval(long intervalMs) {
+        preferences.edit().putLong(KEY_LOG_FLUSH_INTERVAL, intervalMs).apply();
+        Log.d(TAG, "Log flush interval set to: " + intervalMs + "ms");
+    }
+    
+    // 電流感測器校正，依設備指紋分開保存（系統更新後會重新偵測）
+    public CurrentCalibration getCurrentCalibration(String fingerprint) {
+        return CurrentCalibration.decode(preferences.getString(calibrationKey(fingerprint), null));
+    }
+    
+    public void setCurrentCalibration(String fingerprint, CurrentCalibration calibration) {
+        preferences.edit().putString(calibrationKey(fingerprint), calibration.encode()).apply();
+        Log.d(TAG, "Current calibration saved: " + calibration);
+    }
+    
+    private static String calibrationKey(String fingerprint) {
+        return KEY_CURRENT_CALIBRATION_PREFIX + Integer.toHexString(String.valueOf(fingerprint).hashCode());
+    }
+    
     // 測試結果管理
-    public void saveTestResult(TestResult result) {
-        try {
-            List<TestResult> history = getTestHistory();
-            
-            // 添加新結果到列表開頭
-            history.add(0, result);
-            
-            // 限制最多保存5筆記錄
-            if (history.size() > MAX_HISTORY_COUNT) {
-                history = history.subList(0, MAX_HISTORY_COUNT);
-            }
-            
-            // 保存到SharedPreferences
-            StringBuilder sb = new StringBuilder();
-            for (int i = 0; i < history.size(); i++) {
-                TestResult r = history.get(i);
-                if (i > 0) sb.append("|");
-                sb.append(r.getStartTime()).append(",")
-                  .append(r.getEndTime()).append(",")
-                  .append(r.getStartBatteryLevel()).append(",")
-                  .append(r.getEndBatteryLevel()).append(",")
-                  .append(r.getBatteryConsumed()).append(",")
-                  .append(r.getDuration()).append(",")
-                  .append(encodeTestSubject(r.getTestSubject()));
+    
+    /**
+     * 獲取程序共用的測試記錄儲存庫，首次開啟時遷移舊的 SharedPreferences 歷史字串
+     */
+    public RunStore getRunStore() throws IOException {
+        synchronized (PreferenceManager.class) {
+            if (runStore == null) {
+                File dir = new File(context.getFilesDir(), HISTORY_DIRECTORY);
+                runStore = RunStore.open(dir);
+                migrateLegacyHistory(runStore);
             }
-            
-            preferences.edit().putString(KEY_TEST_HISTORY, sb.toString()).apply();
-            Log.d(TAG, "Test result saved: " + result.toString());
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error saving test result", e);
+            return runStore;
         }
     }
     
-    public List<TestResult> getTestHistory() {
-        List<TestResult> history = new ArrayList<>();
+    /**
+     * 獲取程序共用的持久化佇列
+     */
+    public static synchronized PersistenceQueue getPersistenceQueue() {
+        if (persistenceQueue == null) {
+            persistenceQueue = new PersistenceQueue();
+        }
+        return persistenceQueue;
+    }
+    
+    private void migrateLegacyHistory(RunStore store) throws IOException {
+        String historyStr = preferences.getString(KEY_TEST_HISTORY, "");
+        if (historyStr.isEmpty()) {
+            return;
+        }
         
-        try {
-            String historyStr = preferences.getString(KEY_TEST_HISTORY, "");
-            if (!historyStr.isEmpty()) {
-                String[] records = historyStr.split("\\|");
-                
-                for (String record : records) {
-                    String[] parts = record.split(",");
-                    if (parts.length >= 6) {
-                        TestResult result = new TestResult();
-                        result.setStartTime(Long.parseLong(parts[0]));
-                        result.setEndTime(Long.parseLong(parts[1]));
-                        result.setStartBatteryLevel(Integer.parseInt(parts[2]));
-                        result.setEndBatteryLevel(Integer.parseInt(parts[3]));
-                        result.setBatteryConsumed(Integer.parseInt(parts[4]));
-                        result.setDuration(Long.parseLong(parts[5]));
-                        
-                        // 處理測試主題（如果存在）
-                        if (parts.length >= 7) {
-                            result.setTestSubject(decodeTestSubject(parts[6]));
-                        } else {
-                            result.setTestSubject("");
-                        }
-                        
-                        history.add(result);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading test history", e);
+        // 舊格式由新到舊排列，依時間順序寫入
+        List<TestResult> legacy = parseLegacyHistory(historyStr);
+        for (int i = legacy.size() - 1; i >= 0; i--) {
+            store.insertIfAbsent(legacy.get(i), false);
         }
+        store.sync();
         
-        return history;
+        preferences.edit().remove(KEY_TEST_HISTORY).commit();
+        Log.d(TAG, "Migrated " + legacy.size() + " legacy history records");
     }
     
-    public void clearTestHistory() {
-        preferences.edit().remove(KEY_TEST_HISTORY).apply();
-        Log.d(TAG, "Test history cleared");
+    /**
+     * 保存由取樣日誌恢復的測試結果，開始時間已存在時略過
+     * 插入後、日誌標記為已恢復前程序被終止時，下次啟動再次恢復同一個日誌也不會產生重複記錄。
+     * 不立即同步，整批恢復完成後呼叫 syncTestHistory()
+     * @return 新增了記錄時回傳 true
+     */
+    public boolean saveRecoveredTestResult(TestResult result) throws IOException {
+        if (!getRunStore().insertIfAbsent(result, false)) {
+            Log.d(TAG, "Recovered test already saved: " + result.getStartTime());
+            return false;
+        }
+        Log.d(TAG, "Recovered test result saved: " + result.toString());
+        return true;
     }
     
-    // 測試主題編碼和解碼方法（處理逗號和分隔符）
-    private String encodeTestSubject(String subject) {
-        if (subject == null || subject.isEmpty()) {
-            return "EMPTY";
+    /**
+     * 將未同步的測試記錄與統計寫入儲存裝置
+     */
+    public void syncTestHistory() throws IOException {
+        getRunStore().sync();
+    }
+    
+    /**
+     * 在寫入佇列上保存測試結果，不阻塞呼叫執行緒
+     */
+    public void saveTestResultAsync(TestResult result, PersistenceQueue.Callback callback) {
+        getPersistenceQueue().saveTestResult(this::getRunStore, result, callback);
+    }
+    
+    /**
+     * 分頁讀取測試歷史，由新到舊
+     */
+    public List<TestResult> getTestHistory(int offset, int limit) {
+        try {
+            return getRunStore().query(offset, limit);
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading test history", e);
+            return new ArrayList<>();
         }
-        // 將逗號和豎線替換為安全字符
-        return subject.replace(",", "COMMA").replace("|", "PIPE");
     }
     
-    private String decodeTestSubject(String encoded) {
-        if (encoded == null || encoded.equals("EMPTY")) {
-            return "";
+    // 解析舊版以 | 和 , 分隔的歷史字串
+    private List<TestResult> parseLegacyHistory(String historyStr) {
+        List<TestResult> history = new ArrayList<>();
+        
+        try {
+            LegacyHistoryParser.parse(historyStr, history);
+        } catch (Exception e) {
+            Log.e(TAG, "Error parsing legacy test history", e);
         }
-        // 將安全字符還原為原始字符
-        return encoded.replace("COMMA", ",").replace("PIPE", "|");
+        
+        return history;
+    }
+    
+    /**
+     * 在寫入佇列上清除測試歷史與各測試的取樣目錄，不阻塞呼叫執行緒
+     * @param activeRunId 進行中的測試 ID，其目錄保留，沒有時傳入 SampleLogRecovery.NO_RUN
+     * @param callback 在寫入執行緒上回調，可為 null
+     */
+    public void clearTestHistoryAsync(long activeRunId, PersistenceQueue.ClearCallback callback) {
+        File runsDir = new File(context.getFilesDir(), SampleLog.RUNS_DIRECTORY);
+        getPersistenceQueue().clearHistory(this::getRunStore, runsDir, activeRunId, callback);
     }
     
     // 統計信息
     public int getTotalTestCount() {
-        return getTestHistory().size();
+        try {
+            return getRunStore().size();
+        } catch (Exception e) {
+            Log.e(TAG, "Error counting test history", e);
+            return 0;
+        }
     }
     
     public long getTotalTestDuration() {
-        return 0; // 簡化實現
+        try {
+            return getRunStore().getStatistics().getTotalDuration();
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading test statistics", e);
+            return 0;
+        }
     }
     
     public double getAverageConsumptionRate() {
-        return 0.0; // 簡化實現
+        try {
+            return getRunStore().getStatistics().getAverageRate();
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading test statistics", e);
+            return 0.0;
+        }
     }
     
     // 設定導出/導入
     public String exportSettings() {
-        return "{}"; // 簡化實現
+        try {
+            JSONObject json = new JSONObject();
+            json.put(KEY_TEST_DURATION, getTestDuration());
+            json.put(KEY_TEST_SUBJECT, getTestSubject());
+            json.put(KEY_AUTO_START, isAutoStartEnabled());
+            json.put(KEY_FLOATING_WINDOW_ENABLED, isFloatingWindowEnabled());
+            json.put(KEY_WINDOW_TRANSPARENCY, getWindowTransparency());
+            json.put(KEY_AUTO_COPY, isAutoCopyEnabled());
+            json.put(KEY_SAMPLING_PERIOD, getSamplingPeriod());
+            json.put(KEY_LOG_FLUSH_INTERVAL, getLogFlushInterval());
+            json.put(KEY_ADAPTIVE_SAMPLING, isAdaptiveSamplingEnabled());
+            json.put(KEY_SAMPLING_FLOOR_PERIOD, getSamplingFloorPeriod());
+            return json.toString();
+        } catch (Exception e) {
+            Log.e(TAG, "Error exporting settings", e);
+            return null;
+        }
     }
     
     public boolean importSettings(String jsonString) {
-        return false; // 簡化實現
+        try {
+            JSONObject json = new JSONObject(jsonString);
+            SharedPreferences.Editor editor = preferences.edit();
+            if (json.has(KEY_TEST_DURATION)) {
+                editor.putInt(KEY_TEST_DURATION, json.getInt(KEY_TEST_DURATION));
+            }
+            if (json.has(KEY_TEST_SUBJECT)) {
+                editor.putString(KEY_TEST_SUBJECT, json.getString(KEY_TEST_SUBJECT));
+            }
+            if (json.has(KEY_AUTO_START)) {
+                editor.putBoolean(KEY_AUTO_START, json.getBoolean(KEY_AUTO_START));
+            }
+            if (json.has(KEY_FLOATING_WINDOW_ENABLED)) {
+                editor.putBoolean(KEY_FLOATING_WINDOW_ENABLED, json.getBoolean(KEY_FLOATING_WINDOW_ENABLED));
+            }
+            if (json.has(KEY_WINDOW_TRANSPARENCY)) {
+                editor.putInt(KEY_WINDOW_TRANSPARENCY, json.getInt(KEY_WINDOW_TRANSPARENCY));
+            }
+            if (json.has(KEY_AUTO_COPY)) {
+                editor.putBoolean(KEY_AUTO_COPY, json.getBoolean(KEY_AUTO_COPY));
+            }
+            if (json.has(KEY_SAMPLING_PERIOD)) {
+                editor.putLong(KEY_SAMPLING_PERIOD, json.getLong(KEY_SAMPLING_PERIOD));
+            }
+            if (json.has(KEY_LOG_FLUSH_INTERVAL)) {
+                editor.putLong(KEY_LOG_FLUSH_INTERVAL, json.getLong(KEY_LOG_FLUSH_INTERVAL));
+            }
+            if (json.has(KEY_ADAPTIVE_SAMPLING)) {
+                editor.putBoolean(KEY_ADAPTIVE_SAMPLING, json.getBoolean(KEY_ADAPTIVE_SAMPLING));
+            }
+            if (json.has(KEY_SAMPLING_FLOOR_PERIOD)) {
+                editor.putLong(KEY_SAMPLING_FLOOR_PERIOD, json.getLong(KEY_SAMPLING_FLOOR_PERIOD));
+            }
+            editor.apply();
+            Log.d(TAG, "Settings imported");
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error importing settings", e);
+            return false;
+        }
     }
     
     // 統計信息類
@@ -231,10 +391,48 @@ public class PreferenceManager {
         public double averageRate = 0.0;
         public double avgBatteryConsumed = 0.0;
         public double avgConsumptionRate = 0.0;
+        public double rateStandardDeviation = 0.0;
+        public double minRate = 0.0;
+        public double maxRate = 0.0;
+        
+        static TestStatistics from(RunStatistics.Summary summary) {
+            TestStatistics stats = new TestStatistics();
+            stats.totalTests = summary.getCount();
+            stats.totalDuration = summary.getTotalDuration();
+            stats.averageConsumption = summary.getAverageBatteryConsumed();
+            stats.avgBatteryConsumed = summary.getAverageBatteryConsumed();
+            stats.averageRate = summary.getAverageRate();
+            stats.avgConsumptionRate = summary.getAverageRate();
+            stats.rateStandardDeviation = summary.getRateStandardDeviation();
+            // 沒有有效消耗率時以 0 表示
+            stats.minRate = Double.isNaN(summary.getMinRate()) ? 0.0 : summary.getMinRate();
+            stats.maxRate = Double.isNaN(summary.getMaxRate()) ? 0.0 : summary.getMaxRate();
+            return stats;
+        }
     }
     
+    /**
+     * 全部測試的統計，直接讀取累計值，不掃描歷史
+     */
     public TestStatistics getTestStatistics() {
-        return new TestStatistics(); // 簡化實現
+        try {
+            return TestStatistics.from(getRunStore().getStatistics());
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading test statistics", e);
+            return new TestStatistics();
+        }
+    }
+    
+    /**
+     * 指定測試主題的統計
+     */
+    public TestStatistics getTestStatistics(String subject) {
+        try {
+            return TestStatistics.from(getRunStore().getStatistics(subject != null ? subject : ""));
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading test statistics", e);
+            return new TestStatistics();
+        }
     }
 }
 
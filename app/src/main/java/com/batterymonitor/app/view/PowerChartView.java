@@ -0,0 +1,390 @@
+package com.batterymonitor.app.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import com.batterymonitor.app.analysis.PowerEnvelope;
+import com.batterymonitor.app.data.SampleBuffer;
+import com.batterymonitor.app.format.TextBuffer;
+
+/**
+ * 功率曲線圖
+ * 以每像素一個區間的最小/最大值包絡繪製功率（放電為正），長時間的測試也只畫與寬度相同數量的點。
+ * 兩種用法：
+ * 1. 即時縮圖：updateFrom 由即時取樣緩衝抽取最近一段時間的包絡；
+ * 2. 可縮放圖表：setDataRange 設定完整範圍，雙指縮放、單指拖曳、雙擊還原，
+ *    視窗改變時先以現有包絡即時顯示，再由 OnViewportChangeListener 通知呼叫端在背景重新抽取；
+ *    另可以 setLine 疊加一條 LTTB 降取樣的趨勢折線，此時包絡改為半透明。
+ * 繪製只使用預先配置的 Path、Paint 與陣列，onDraw 不配置物件。
+ */
+public class PowerChartView extends View {
+    
+    /**
+     * 顯示的時間視窗改變，呼叫端應重新抽取包絡後以 setEnvelope 交回
+     * 在主執行緒呼叫，拖曳與縮放期間每個事件都會呼叫，呼叫端需自行合併請求
+     */
+    public interface OnViewportChangeListener {
+        void onViewportChanged(long fromNanos, long toNanos, int bucketCount);
+    }
+    
+    private static final int MAX_BUCKETS = 2048;
+    
+    // 最小可縮放到的時間跨度
+    private static final long MIN_VIEWPORT_NANOS = 5_000_000_000L;
+    
+    // 縱軸上方保留的空間比例
+    private static final float HEADROOM = 0.1f;
+    
+    // 有趨勢折線時包絡的透明度
+    private static final int ENVELOPE_ALPHA_WITH_LINE = 0x60;
+    
+    private final PowerEnvelope envelope = new PowerEnvelope(MAX_BUCKETS);
+    private final Path path = new Path();
+    private final Paint fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path linePath = new Path();
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final long[] lineTimestamps = new long[MAX_BUCKETS];
+    private final float[] linePowers = new float[MAX_BUCKETS];
+    private int lineCount;
+    private int chartAlpha = 0xFF;
+    private final Paint baselinePaint = new Paint();
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final TextBuffer labelText = new TextBuffer(32);
+    
+    // 資料的完整時間範圍與目前顯示的視窗（elapsedRealtimeNanos）
+    private long dataFromNanos;
+    private long dataToNanos;
+    private long viewFromNanos;
+    private long viewToNanos;
+    
+    private boolean isZoomEnabled = false;
+    private boolean showsLabels = false;
+    private OnViewportChangeListener viewportChangeListener;
+    
+    private ScaleGestureDetector scaleDetector;
+    private GestureDetector gestureDetector;
+    
+    public PowerChartView(Context context) {
+        super(context);
+        init();
+    }
+    
+    public PowerChartView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+    
+    public PowerChartView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init();
+    }
+    
+    private void init() {
+        // 填滿與描邊：只有一筆取樣的區間高度為 0，描邊讓它仍然可見
+        fillPaint.setStyle(Paint.Style.FILL_AND_STROKE);
+        fillPaint.setStrokeJoin(Paint.Join.ROUND);
+        fillPaint.setStrokeWidth(dp(1));
+        
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeJoin(Paint.Join.ROUND);
+        linePaint.setStrokeWidth(dp(1.5f));
+        
+        baselinePaint.setStrokeWidth(dp(1));
+        
+        labelPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 11,
+            getResources().getDisplayMetrics()));
+        
+        setChartColor(0xFF2196F3);
+    }
+    
+    private float dp(float value) {
+        return value * getResources().getDisplayMetrics().density;
+    }
+    
+    /**
+     * 設定曲線顏色，基準線以同色半透明顯示
+     */
+    public void setChartColor(int color) {
+        fillPaint.setColor(color);
+        linePaint.setColor(color);
+        chartAlpha = Color.alpha(color);
+        baselinePaint.setColor(Color.argb(0x60, Color.red(color), Color.green(color), Color.blue(color)));
+        labelPaint.setColor(color);
+        invalidate();
+    }
+    
+    /**
+     * 是否顯示峰值與時間跨度標籤
+     */
+    public void setShowsLabels(boolean showsLabels) {
+        this.showsLabels = showsLabels;
+        invalidate();
+    }
+    
+    /**
+     * 啟用縮放與拖曳
+     */
+    public void setZoomEnabled(boolean enabled) {
+        isZoomEnabled = enabled;
+        if (enabled && scaleDetector == null) {
+            scaleDetector = new ScaleGestureDetector(getContext(), scaleListener);
+            gestureDetector = new GestureDetector(getContext(), gestureListener);
+        }
+    }
+    
+    public void setOnViewportChangeListener(OnViewportChangeListener listener) {
+        this.viewportChangeListener = listener;
+    }
+    
+    /**
+     * 由即時取樣緩衝抽取 [fromNanos, toNanos] 的包絡並顯示整個視窗
+     * 在主執行緒呼叫，不配置物件；適合只涵蓋最近幾分鐘的即時縮圖
+     */
+    public void updateFrom(SampleBuffer.Cursor cursor, long fromNanos, long toNanos) {
+        envelope.begin(fromNanos, toNanos, getBucketCount());
+        cursor.seek(fromNanos, toNanos);
+        while (cursor.next()) {
+            envelope.add(cursor.getTimestamp(), cursor.getCurrent(), cursor.getVoltage());
+        }
+        dataFromNanos = viewFromNanos = fromNanos;
+        dataToNanos = viewToNanos = toNanos;
+        lineCount = 0;
+        invalidate();
+    }
+    
+    /**
+     * 設定資料的完整時間範圍並還原為顯示全部
+     */
+    public void setDataRange(long fromNanos, long toNanos) {
+        dataFromNanos = fromNanos;
+        dataToNanos = Math.max(fromNanos + 1, toNanos);
+        setViewport(dataFromNanos, dataToNanos);
+    }
+    
+    /**
+     * 顯示在背景抽取好的包絡（複製內容，呼叫後可重複使用 source）
+     */
+    public void setEnvelope(PowerEnvelope source) {
+        envelope.copyFrom(source);
+        invalidate();
+    }
+    
+    /**
+     * 顯示在背景降取樣好的趨勢折線（複製前 count 個點），count 為 0 時不顯示
+     */
+    public void setLine(long[] timestamps, float[] powers, int count) {
+        lineCount = Math.min(count, MAX_BUCKETS);
+        System.arraycopy(timestamps, 0, lineTimestamps, 0, lineCount);
+        System.arraycopy(powers, 0, linePowers, 0, lineCount);
+        invalidate();
+    }
+    
+    public long getViewportFrom() {
+        return viewFromNanos;
+    }
+    
+    public long getViewportTo() {
+        return viewToNanos;
+    }
+    
+    /**
+     * 目前寬度對應的區間數（每像素一個區間）
+     */
+    public int getBucketCount() {
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        return Math.max(1, Math.min(MAX_BUCKETS, width));
+    }
+    
+    private void setViewport(long fromNanos, long toNanos) {
+        long dataSpan = dataToNanos - dataFromNanos;
+        long span = Math.min(dataSpan, Math.max(Math.min(MIN_VIEWPORT_NANOS, dataSpan), toNanos - fromNanos));
+        long from = Math.max(dataFromNanos, Math.min(dataToNanos - span, fromNanos));
+        if (from == viewFromNanos && from + span == viewToNanos) {
+            return;
+        }
+        viewFromNanos = from;
+        viewToNanos = from + span;
+        invalidate();
+        notifyViewportChanged();
+    }
+    
+    private void notifyViewportChanged() {
+        if (viewportChangeListener != null && getWidth() > 0 && viewToNanos > viewFromNanos) {
+            viewportChangeListener.onViewportChanged(viewFromNanos, viewToNanos, getBucketCount());
+        }
+    }
+    
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // 區間數隨寬度改變，需要重新抽取
+        if (w != oldw) {
+            notifyViewportChanged();
+        }
+    }
+    
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        
+        float left = getPaddingLeft();
+        float top = getPaddingTop();
+        float right = getWidth() - getPaddingRight();
+        float bottom = getHeight() - getPaddingBottom();
+        if (right <= left || bottom <= top) {
+            return;
+        }
+        
+        if (!envelope.hasData() || viewToNanos <= viewFromNanos) {
+            canvas.drawLine(left, bottom, right, bottom, baselinePaint);
+            return;
+        }
+        
+        // 縱軸：0 至峰值（充電時延伸到負值），上方保留空間
+        float lowest = Math.min(0f, envelope.getLowest());
+        float highest = Math.max(envelope.getHighest(), lowest + 1f);
+        highest += (highest - lowest) * HEADROOM;
+        float yScale = (bottom - top) / (highest - lowest);
+        float zeroY = bottom + lowest * yScale;
+        
+        // 橫軸：區間中心時間映射到目前的視窗，縮放期間先沿用舊的包絡
+        int count = envelope.getBucketCount();
+        double viewSpan = viewToNanos - viewFromNanos;
+        double bucketSpan = (double) (envelope.getToNanos() - envelope.getFromNanos()) / count;
+        float xStep = (float) (bucketSpan / viewSpan * (right - left));
+        float x0 = left + (float) ((envelope.getFromNanos() - viewFromNanos + bucketSpan / 2) / viewSpan * (right - left));
+        
+        canvas.save();
+        canvas.clipRect(left, top, right, bottom);
+        canvas.drawLine(left, zeroY, right, zeroY, baselinePaint);
+        
+        // 每段連續有資料的區間畫成一個多邊形：沿最大值向右，再沿最小值返回
+        path.rewind();
+        int i = 0;
+        while (i < count) {
+            if (Float.isNaN(envelope.getMax(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            path.moveTo(x0 + start * xStep, bottom - (envelope.getMax(start) - lowest) * yScale);
+            while (i < count && !Float.isNaN(envelope.getMax(i))) {
+                path.lineTo(x0 + i * xStep, bottom - (envelope.getMax(i) - lowest) * yScale);
+                i++;
+            }
+            for (int j = i - 1; j >= start; j--) {
+                path.lineTo(x0 + j * xStep, bottom - (envelope.getMin(j) - lowest) * yScale);
+            }
+            path.close();
+        }
+        fillPaint.setAlpha(lineCount > 1 ? ENVELOPE_ALPHA_WITH_LINE : chartAlpha);
+        canvas.drawPath(path, fillPaint);
+        
+        if (lineCount > 1) {
+            float xScale = (float) ((right - left) / viewSpan);
+            linePath.rewind();
+            for (int j = 0; j < lineCount; j++) {
+                float x = left + (lineTimestamps[j] - viewFromNanos) * xScale;
+                float y = bottom - (linePowers[j] - lowest) * yScale;
+                if (j == 0) {
+                    linePath.moveTo(x, y);
+                } else {
+                    linePath.lineTo(x, y);
+                }
+            }
+            canvas.drawPath(linePath, linePaint);
+        }
+        canvas.restore();
+        
+        if (showsLabels) {
+            drawLabels(canvas, left, top, right);
+        }
+    }
+    
+    private void drawLabels(Canvas canvas, float left, float top, float right) {
+        // 標籤畫在上方的 padding 內，不遮住曲線
+        float baseline = top - labelPaint.descent();
+        
+        labelText.clear().append("峰值 ").append((long) envelope.getHighest()).append(" mW");
+        canvas.drawText(labelText.getChars(), 0, labelText.length(), left, baseline, labelPaint);
+        
+        labelText.clear().append((viewToNanos - viewFromNanos) / 60e9, 1).append(" 分鐘");
+        float width = labelPaint.measureText(labelText.getChars(), 0, labelText.length());
+        canvas.drawText(labelText.getChars(), 0, labelText.length(), right - width, baseline, labelPaint);
+    }
+    
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!isZoomEnabled || dataToNanos <= dataFromNanos) {
+            return super.onTouchEvent(event);
+        }
+        
+        // 操作圖表期間不讓外層攔截拖曳
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+        scaleDetector.onTouchEvent(event);
+        gestureDetector.onTouchEvent(event);
+        return true;
+    }
+    
+    // 螢幕 x 座標對應的時間
+    private double timeAt(float x) {
+        float left = getPaddingLeft();
+        float width = Math.max(1, getWidth() - getPaddingLeft() - getPaddingRight());
+        return viewFromNanos + (double) (x - left) / width * (viewToNanos - viewFromNanos);
+    }
+    
+    private final ScaleGestureDetector.SimpleOnScaleGestureListener scaleListener =
+            new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            // 只縮放橫軸，以兩指中心為錨點
+            float previousSpan = detector.getPreviousSpanX();
+            float factor = previousSpan > 0 ? detector.getCurrentSpanX() / previousSpan : detector.getScaleFactor();
+            if (factor <= 0) {
+                return false;
+            }
+            double focus = timeAt(detector.getFocusX());
+            double span = (viewToNanos - viewFromNanos) / factor;
+            double ratio = (focus - viewFromNanos) / (viewToNanos - viewFromNanos);
+            long from = (long) (focus - ratio * span);
+            setViewport(from, from + (long) span);
+            return true;
+        }
+    };
+    
+    private final GestureDetector.SimpleOnGestureListener gestureListener =
+            new GestureDetector.SimpleOnGestureListener() {
+        @Override
+        public boolean onDown(MotionEvent e) {
+            return true;
+        }
+        
+        @Override
+        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+            if (scaleDetector.isInProgress()) {
+                return false;
+            }
+            float width = Math.max(1, getWidth() - getPaddingLeft() - getPaddingRight());
+            long shift = (long) ((double) distanceX / width * (viewToNanos - viewFromNanos));
+            setViewport(viewFromNanos + shift, viewToNanos + shift);
+            return true;
+        }
+        
+        @Override
+        public boolean onDoubleTap(MotionEvent e) {
+            setViewport(dataFromNanos, dataToNanos);
+            return true;
+        }
+    };
+}
@@ -0,0 +1,128 @@
+package com.batterymonitor.benchmarks;
+
+import com.batterymonitor.app.data.PowerPyramid;
+import com.batterymonitor.app.data.RunStore;
+import com.batterymonitor.app.data.SampleLog;
+import com.batterymonitor.app.model.TestResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * 基準測試共用的固定資料
+ * 以固定種子產生，每次執行的輸入完全相同。
+ */
+final class BenchmarkData {
+    
+    static final long START_TIME = 1_700_000_000_000L;
+    static final long PERIOD_NANOS = 1_000_000_000L;
+    
+    // 群組提交間隔長於任何測試，append 不會觸發 force()
+    static final long NO_FLUSH_INTERVAL_MS = 24 * 60 * 60 * 1000L;
+    
+    private static final String[] SUBJECTS = { "影片播放", "遊戲, 高亮度", "待機|螢幕關閉", "" };
+    
+    private BenchmarkData() {
+    }
+    
+    /**
+     * 填滿所有欄位的測試結果
+     */
+    static TestResult newResult(int index, Random random) {
+        long duration = 30 * 60 * 1000L + random.nextInt(90 * 60 * 1000);
+        int startLevel = 50 + random.nextInt(50);
+        int endLevel = startLevel - 1 - random.nextInt(20);
+        TestResult result = new TestResult();
+        result.setStartTime(START_TIME + index * 3 * 60 * 60 * 1000L);
+        result.setEndTime(result.getStartTime() + duration);
+        result.setDuration(duration);
+        result.setPlannedDuration(duration);
+        result.setStartBatteryLevel(startLevel);
+        result.setEndBatteryLevel(endLevel);
+        result.setBatteryConsumed(startLevel - endLevel);
+        result.setTestSubject(SUBJECTS[index % SUBJECTS.length]);
+        result.setChargeConsumedMah(100 + random.nextDouble() * 800);
+        result.setEnergyMilliwattHours(400 + random.nextDouble() * 3000);
+        result.setLevelStepEstimate(startLevel - endLevel, startLevel - endLevel + 0.5, 0.3,
+            random.nextDouble() * 20, 0.5);
+        result.setAveragePowerMilliwatts(500 + random.nextDouble() * 2000);
+        result.setPeakPowerMilliwatts(3000 + random.nextDouble() * 2000);
+        result.setSamplerWakeupsPerSecond(0.2 + random.nextDouble());
+        result.setSamplingOverhead(random.nextDouble() * 100, random.nextDouble() * 200);
+        result.setWakeLockStats(duration, random.nextInt(3), random.nextInt(5000));
+        return result;
+    }
+    
+    /**
+     * 放電電流：緩慢變化的基準加上雜訊 (µA，放電為負)
+     */
+    static int current(int index, Random random) {
+        return -(300_000 + (int) (200_000 * Math.sin(index / 600.0)) + (int) (random.nextGaussian() * 20_000));
+    }
+    
+    static int voltage(int index) {
+        return 4200 - index / 20;
+    }
+    
+    static int chargeCounter(int index) {
+        return 3_600_000 - index * 83;
+    }
+    
+    static int level(int index) {
+        return 80 - index / 540;
+    }
+    
+    /**
+     * 寫入一次測試的取樣日誌與功率摘要快取，runId 與 RunStore 中的開始時間一致
+     */
+    static void writeSampleLog(File filesDir, TestResult result, int samples, Random random) throws IOException {
+        File runDir = SampleLog.getRunDirectory(filesDir, result.getStartTime());
+        SampleLog log = SampleLog.create(runDir, result.getStartTime(), result.getStartTime(), 0,
+            result.getPlannedDuration(), result.getStartBatteryLevel(), result.getTestSubject(), NO_FLUSH_INTERVAL_MS);
+        PowerPyramid pyramid = new PowerPyramid();
+        try {
+            for (int i = 0; i < samples; i++) {
+                int current = current(i, random);
+                log.append(i * PERIOD_NANOS, current, current, chargeCounter(i), 0, voltage(i), level(i), 0, 1000);
+                pyramid.add(i * PERIOD_NANOS, current, voltage(i));
+            }
+        } finally {
+            log.close(true);
+        }
+        pyramid.writeTo(new File(runDir, PowerPyramid.FILE_NAME));
+    }
+    
+    /**
+     * 建立含 runs 筆記錄的 RunStore，samplesPerRun 大於 0 時同時寫入取樣日誌
+     */
+    static File createHistory(int runs, int samplesPerRun) throws IOException {
+        File filesDir = Files.createTempDirectory("bm-bench").toFile();
+        Random random = new Random(1);
+        RunStore store = RunStore.open(new File(filesDir, "history"));
+        try {
+            for (int i = 0; i < runs; i++) {
+                TestResult result = newResult(i, random);
+                store.insert(result, false);
+                if (samplesPerRun > 0) {
+                    writeSampleLog(filesDir, result, samplesPerRun, random);
+                }
+            }
+            store.sync();
+        } finally {
+            store.close();
+        }
+        return filesDir;
+    }
+    
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,91 @@
+package com.batterymonitor.benchmarks;
+
+import com.batterymonitor.app.data.HistoryExporter;
+import com.batterymonitor.app.data.RunStore;
+import com.batterymonitor.app.data.SampleLog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 歷史導出：runs 筆記錄，每筆附一小時 1 Hz 的取樣日誌
+ * 輸出寫到暫存目錄並覆蓋上一次的檔案，包含實際的檔案寫入成本。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+    
+    private static final int SAMPLES_PER_RUN = 3600;
+    
+    @Param({ "20" })
+    public int runs;
+    
+    @Param({ "true", "false" })
+    public boolean includeSamples;
+    
+    private File filesDir;
+    private File outputDir;
+    private RunStore store;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        filesDir = BenchmarkData.createHistory(runs, SAMPLES_PER_RUN);
+        outputDir = new File(filesDir, "export");
+        store = RunStore.open(new File(filesDir, "history"));
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        BenchmarkData.deleteRecursively(filesDir);
+    }
+    
+    @Benchmark
+    public List<File> csv() throws IOException {
+        return export(HistoryExporter.FORMAT_CSV);
+    }
+    
+    @Benchmark
+    public List<File> jsonLines() throws IOException {
+        return export(HistoryExporter.FORMAT_JSON_LINES);
+    }
+    
+    /**
+     * 每分鐘功率摘要取代完整取樣，讀取測試結束時寫入的摘要快取
+     */
+    @Benchmark
+    public List<File> csvPowerSummary() throws IOException {
+        return export(HistoryExporter.FORMAT_CSV, true);
+    }
+    
+    private List<File> export(int format) throws IOException {
+        return export(format, false);
+    }
+    
+    private List<File> export(int format, boolean powerSummary) throws IOException {
+        HistoryExporter exporter = new HistoryExporter(store, new File(filesDir, SampleLog.RUNS_DIRECTORY), format,
+            includeSamples);
+        exporter.setPowerSummary(powerSummary);
+        return exporter.export(outputDir, "history", null);
+    }
+}
@@ -0,0 +1,99 @@
+package com.batterymonitor.benchmarks;
+
+import com.batterymonitor.app.format.DateFormats;
+import com.batterymonitor.app.format.TextBuffer;
+import com.batterymonitor.app.format.TextSlot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 顯示文字的格式化
+ * overlayTick 重現浮動窗口每次刷新的文字更新（電量與「已測分鐘/計劃分鐘」），應不配置任何物件；
+ * 以 -Pjmh.include=FormattingBenchmark -Pjmh.args="-prof gc" 執行，gc.alloc.rate.norm 應為 0 B/op。
+ * 帶 Concat / New 後綴的基準是改用快取與緩衝區之前的寫法，作為對照。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormattingBenchmark {
+    
+    private static final int PLANNED_MINUTES = 120;
+    
+    private final TextSlot batteryLevelText = new TextSlot(8);
+    private final TextSlot statusText = new TextSlot(16);
+    private final TextBuffer buffer = new TextBuffer(32);
+    private long tick;
+    
+    // 每次呼叫前進一秒：電量每 6 分鐘降 1%，狀態文字每分鐘改變
+    private int level() {
+        return 80 - (int) (tick / 360 % 80);
+    }
+    
+    private long elapsedMinutes() {
+        return tick / 60 % PLANNED_MINUTES;
+    }
+    
+    @Benchmark
+    public int overlayTick() {
+        tick++;
+        int changed = 0;
+        batteryLevelText.edit().append(level()).append('%');
+        if (batteryLevelText.commit()) {
+            changed++;
+        }
+        statusText.edit().append(elapsedMinutes()).append('/').append(PLANNED_MINUTES);
+        if (statusText.commit()) {
+            changed++;
+        }
+        return changed;
+    }
+    
+    @Benchmark
+    public int overlayTickConcat() {
+        tick++;
+        String levelText = level() + "%";
+        String status = elapsedMinutes() + "/" + PLANNED_MINUTES;
+        return levelText.length() + status.length();
+    }
+    
+    @Benchmark
+    public int decimal() {
+        tick++;
+        return buffer.clear().append(tick * 0.37, 1).append(" mAh").length();
+    }
+    
+    @Benchmark
+    public String decimalFormat() {
+        tick++;
+        return String.format("%.1f mAh", tick * 0.37);
+    }
+    
+    @Benchmark
+    public String dateTime() {
+        tick++;
+        return DateFormats.formatDateTime(BenchmarkData.START_TIME + tick * 1000);
+    }
+    
+    @Benchmark
+    public String dateTimeNew() {
+        tick++;
+        SimpleDateFormat format = new SimpleDateFormat(DateFormats.DATE_TIME, Locale.getDefault());
+        return format.format(new Date(BenchmarkData.START_TIME + tick * 1000));
+    }
+}
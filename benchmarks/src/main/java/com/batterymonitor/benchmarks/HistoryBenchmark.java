@@ -0,0 +1,134 @@
+package com.batterymonitor.benchmarks;
+
+import com.batterymonitor.app.data.LegacyHistoryParser;
+import com.batterymonitor.app.data.RunStore;
+import com.batterymonitor.app.data.TestResultCodec;
+import com.batterymonitor.app.model.TestResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 歷史記錄的序列化與解析
+ * 單筆 TestResultCodec 編解碼、RunStore 分頁讀取與統計，以及舊版歷史字串的遷移解析。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+    
+    @Param({ "500" })
+    public int runs;
+    
+    private TestResult result;
+    private ByteBuffer encodeBuffer;
+    private ByteBuffer encoded;
+    private String legacyHistory;
+    private File filesDir;
+    private RunStore store;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(1);
+        result = BenchmarkData.newResult(0, random);
+        encodeBuffer = ByteBuffer.allocate(TestResultCodec.maxEncodedSize(result));
+        TestResultCodec.encode(result, encodeBuffer);
+        encodeBuffer.flip();
+        encoded = encodeBuffer.duplicate();
+        
+        // 舊版格式：由新到舊、欄位以 , 分隔、主題中的 , 與 | 轉為 COMMA / PIPE
+        StringBuilder builder = new StringBuilder();
+        for (int i = runs - 1; i >= 0; i--) {
+            TestResult legacy = BenchmarkData.newResult(i, random);
+            if (builder.length() > 0) {
+                builder.append('|');
+            }
+            String subject = legacy.getTestSubject().isEmpty() ? "EMPTY"
+                : legacy.getTestSubject().replace(",", "COMMA").replace("|", "PIPE");
+            builder.append(legacy.getStartTime()).append(',')
+                .append(legacy.getEndTime()).append(',')
+                .append(legacy.getStartBatteryLevel()).append(',')
+                .append(legacy.getEndBatteryLevel()).append(',')
+                .append(legacy.getBatteryConsumed()).append(',')
+                .append(legacy.getDuration()).append(',')
+                .append(subject).append(',')
+                .append(legacy.getChargeConsumedMah()).append(',')
+                .append(legacy.getEnergyMilliwattHours());
+        }
+        legacyHistory = builder.toString();
+        
+        filesDir = BenchmarkData.createHistory(runs, 0);
+        store = RunStore.open(new File(filesDir, "history"));
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        BenchmarkData.deleteRecursively(filesDir);
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public ByteBuffer encode() {
+        encodeBuffer.clear();
+        TestResultCodec.encode(result, encodeBuffer);
+        return encodeBuffer;
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public TestResult decode() {
+        encoded.rewind();
+        return TestResultCodec.decode(encoded);
+    }
+    
+    /**
+     * 歷史頁面的第一頁
+     */
+    @Benchmark
+    public List<TestResult> queryFirstPage() throws IOException {
+        return store.query(0, 50);
+    }
+    
+    /**
+     * 讀出全部記錄
+     */
+    @Benchmark
+    public List<TestResult> queryAll() throws IOException {
+        return store.query(0, Integer.MAX_VALUE);
+    }
+    
+    @Benchmark
+    public double statistics() {
+        return store.getStatistics().getAverageRate();
+    }
+    
+    @Benchmark
+    public List<TestResult> parseLegacyHistory() {
+        List<TestResult> history = new ArrayList<>(runs);
+        LegacyHistoryParser.parse(legacyHistory, history);
+        return history;
+    }
+}
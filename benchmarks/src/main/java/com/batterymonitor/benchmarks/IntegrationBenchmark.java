@@ -0,0 +1,72 @@
+package com.batterymonitor.benchmarks;
+
+import com.batterymonitor.app.analysis.EnergyAccumulator;
+import com.batterymonitor.app.analysis.LevelStepEstimator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次兩小時 1 Hz 測試的功率積分與電量跳變估計，結果為每筆取樣的平均時間
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntegrationBenchmark {
+    
+    private static final int SAMPLES = 7200;
+    
+    private final long[] timestamps = new long[SAMPLES];
+    private final int[] currents = new int[SAMPLES];
+    private final int[] voltages = new int[SAMPLES];
+    private final int[] levels = new int[SAMPLES];
+    private final EnergyAccumulator accumulator = new EnergyAccumulator(5 * BenchmarkData.PERIOD_NANOS);
+    private final LevelStepEstimator estimator = new LevelStepEstimator();
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < SAMPLES; i++) {
+            timestamps[i] = i * BenchmarkData.PERIOD_NANOS;
+            currents[i] = BenchmarkData.current(i, random);
+            voltages[i] = BenchmarkData.voltage(i);
+            levels[i] = BenchmarkData.level(i);
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double energy() {
+        accumulator.reset();
+        for (int i = 0; i < SAMPLES; i++) {
+            accumulator.add(timestamps[i], currents[i], voltages[i]);
+        }
+        return accumulator.getEnergyMilliwattHours();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public LevelStepEstimator.Estimate levelSteps() {
+        estimator.start(0, levels[0]);
+        for (int i = 0; i < SAMPLES; i++) {
+            estimator.onLevel(timestamps[i] / 1_000_000L, levels[i]);
+        }
+        return estimator.estimate(timestamps[SAMPLES - 1] / 1_000_000L);
+    }
+}
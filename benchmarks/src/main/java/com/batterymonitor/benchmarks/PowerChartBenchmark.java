@@ -0,0 +1,178 @@
+package com.batterymonitor.benchmarks;
+
+import com.batterymonitor.app.analysis.Lttb;
+import com.batterymonitor.app.analysis.PowerEnvelope;
+import com.batterymonitor.app.data.PowerPyramid;
+import com.batterymonitor.app.data.PowerTrace;
+import com.batterymonitor.app.data.SampleBuffer;
+import com.batterymonitor.app.data.SampleLog;
+import com.batterymonitor.app.model.TestResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 功率曲線的資料準備
+ * load 是結果對話框在背景讀取取樣日誌，loadPyramid 是讀取測試結束時寫入的摘要快取；
+ * decimateFull / decimateZoomed 是縮放時的背景抽取（1080 像素寬），經由多解析度摘要時成本應與取樣數無關，
+ * 帶 Raw 後綴的基準走訪全部原始取樣，作為對照；lttb* 是趨勢折線的降取樣（270 點）；
+ * pyramidAppend 是記錄時每筆取樣更新摘要的成本；
+ * sparkline 是浮動窗口每 5 秒在主執行緒由即時緩衝抽取最近 10 分鐘（10 Hz），應不配置任何物件。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PowerChartBenchmark {
+    
+    private static final int CHART_WIDTH = 1080;
+    private static final int SPARKLINE_WIDTH = 350;
+    private static final int LINE_POINTS = 270;
+    private static final long LIVE_PERIOD_NANOS = 100_000_000L;
+    private static final long SPARKLINE_WINDOW_NANOS = 10 * 60 * 1_000_000_000L;
+    private static final int LIVE_SAMPLES = 36_000;
+    
+    // 1 Hz 取樣的筆數，43200 為 12 小時
+    @Param({ "3600", "43200" })
+    public int samples;
+    
+    private File filesDir;
+    private File logFile;
+    private File pyramidFile;
+    private PowerTrace trace;
+    private final PowerEnvelope envelope = new PowerEnvelope(CHART_WIDTH);
+    private final Lttb lttb = new Lttb(LINE_POINTS * 4);
+    private final long[] lineTimestamps = new long[LINE_POINTS];
+    private final float[] linePowers = new float[LINE_POINTS];
+    private PowerPyramid appendPyramid = new PowerPyramid();
+    private long appendIndex;
+    private final SampleBuffer liveBuffer = new SampleBuffer(LIVE_SAMPLES);
+    private SampleBuffer.Cursor liveCursor;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        filesDir = Files.createTempDirectory("bm-chart").toFile();
+        Random random = new Random(1);
+        TestResult result = BenchmarkData.newResult(0, random);
+        BenchmarkData.writeSampleLog(filesDir, result, samples, random);
+        File runDir = SampleLog.getRunDirectory(filesDir, result.getStartTime());
+        logFile = new File(runDir, SampleLog.FILE_NAME);
+        pyramidFile = new File(runDir, PowerPyramid.FILE_NAME);
+        trace = PowerTrace.load(logFile);
+        
+        for (int i = 0; i < LIVE_SAMPLES; i++) {
+            liveBuffer.append(i * LIVE_PERIOD_NANOS, BenchmarkData.current(i, random), BenchmarkData.voltage(i),
+                BenchmarkData.chargeCounter(i), BenchmarkData.level(i));
+        }
+        liveCursor = liveBuffer.newCursor();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.deleteRecursively(filesDir);
+    }
+    
+    @Benchmark
+    public PowerTrace load() throws IOException {
+        return PowerTrace.load(logFile);
+    }
+    
+    @Benchmark
+    public PowerPyramid loadPyramid() throws IOException {
+        return PowerPyramid.readFrom(pyramidFile);
+    }
+    
+    @Benchmark
+    public int decimateFull() {
+        trace.decimate(trace.getFirstTimestamp(), trace.getLastTimestamp(), CHART_WIDTH, envelope);
+        return envelope.getSampleCount();
+    }
+    
+    @Benchmark
+    public int decimateZoomed() {
+        long span = (trace.getLastTimestamp() - trace.getFirstTimestamp()) / 100;
+        long from = trace.getFirstTimestamp() + span * 37;
+        trace.decimate(from, from + span, CHART_WIDTH, envelope);
+        return envelope.getSampleCount();
+    }
+    
+    @Benchmark
+    public int decimateFullRaw() {
+        return decimateRaw(trace.getFirstTimestamp(), trace.getLastTimestamp());
+    }
+    
+    @Benchmark
+    public int decimateZoomedRaw() {
+        long span = (trace.getLastTimestamp() - trace.getFirstTimestamp()) / 100;
+        long from = trace.getFirstTimestamp() + span * 37;
+        return decimateRaw(from, from + span);
+    }
+    
+    // 不經摘要、走訪全部取樣的抽取
+    private int decimateRaw(long fromNanos, long toNanos) {
+        envelope.begin(fromNanos, toNanos, CHART_WIDTH);
+        for (int i = 0; i < trace.size(); i++) {
+            envelope.addPower(trace.getTimestamp(i), trace.getPower(i));
+        }
+        return envelope.getSampleCount();
+    }
+    
+    @Benchmark
+    public int lttbFull() {
+        return trace.downsample(trace.getFirstTimestamp(), trace.getLastTimestamp(), LINE_POINTS, lttb,
+            lineTimestamps, linePowers);
+    }
+    
+    @Benchmark
+    public int lttbZoomed() {
+        long span = (trace.getLastTimestamp() - trace.getFirstTimestamp()) / 100;
+        long from = trace.getFirstTimestamp() + span * 37;
+        return trace.downsample(from, from + span, LINE_POINTS, lttb, lineTimestamps, linePowers);
+    }
+    
+    /**
+     * 記錄 12 小時 10 Hz 後重新開始，避免摘要無限增長
+     */
+    @Benchmark
+    public long pyramidAppend() {
+        long index = appendIndex++;
+        if (index == 12 * 60 * 60 * 10) {
+            appendPyramid = new PowerPyramid();
+            appendIndex = 0;
+        }
+        int i = (int) index;
+        appendPyramid.add(index * LIVE_PERIOD_NANOS, -300_000 - (i & 0xFFFF), BenchmarkData.voltage(i / 10));
+        return appendPyramid.getSampleCount();
+    }
+    
+    @Benchmark
+    public int sparkline() {
+        long to = (LIVE_SAMPLES - 1) * LIVE_PERIOD_NANOS;
+        long from = to - SPARKLINE_WINDOW_NANOS;
+        envelope.begin(from, to, SPARKLINE_WIDTH);
+        liveCursor.seek(from, to);
+        while (liveCursor.next()) {
+            envelope.add(liveCursor.getTimestamp(), liveCursor.getCurrent(), liveCursor.getVoltage());
+        }
+        return envelope.getSampleCount();
+    }
+}
@@ -0,0 +1,86 @@
+package com.batterymonitor.benchmarks;
+
+import com.batterymonitor.app.data.SampleBuffer;
+import com.batterymonitor.app.data.SampleLog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次取樣的寫入路徑：記憶體環形緩衝區與映射檔案的取樣日誌
+ * 日誌的群組提交由 PersistenceQueue 在其他執行緒 force()，這裡以空的 FlushHandler 只量測取樣執行緒上的成本
+ * （記錄寫入、區塊 CRC 與區段映射）。日誌每次呼叫寫入一小時 1 Hz 的取樣，結果為每筆的平均時間。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleAppendBenchmark {
+    
+    private static final int SAMPLES_PER_RUN = 3600;
+    
+    // 與設定中的預設群組提交間隔相同
+    private static final long FLUSH_INTERVAL_MS = 5000;
+    
+    @State(Scope.Thread)
+    public static class BufferState {
+        final SampleBuffer buffer = new SampleBuffer(7200);
+        long sequence;
+    }
+    
+    @State(Scope.Thread)
+    public static class LogState {
+        File runDir;
+        SampleLog log;
+        
+        @Setup(Level.Invocation)
+        public void setUp() throws IOException {
+            runDir = Files.createTempDirectory("bm-append").toFile();
+            log = SampleLog.create(runDir, 1, BenchmarkData.START_TIME, 0, 0, 80, "benchmark", FLUSH_INTERVAL_MS);
+            log.setFlushHandler(new SampleLog.FlushHandler() {
+                @Override
+                public void requestFlush(SampleLog log) {
+                }
+            });
+        }
+        
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            log.close(true);
+            BenchmarkData.deleteRecursively(runDir);
+        }
+    }
+    
+    @Benchmark
+    public void sampleBuffer(BufferState state) {
+        long i = state.sequence++;
+        state.buffer.append(i * BenchmarkData.PERIOD_NANOS, -300_000 - (int) (i & 0xFFFF), 4000, 3_000_000, 80);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_RUN)
+    public void sampleLog(LogState state) throws IOException {
+        SampleLog log = state.log;
+        for (int i = 0; i < SAMPLES_PER_RUN; i++) {
+            int current = -300_000 - (i & 0xFFFF);
+            log.append(i * BenchmarkData.PERIOD_NANOS, current, current, 3_000_000, 0, 4000, 80, 0, 1000);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.batterymonitor.benchmarks;
+
+import com.batterymonitor.app.data.SampleBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 即時取樣環形緩衝區
+ * append 是取樣執行緒每筆取樣的寫入（持續覆蓋最舊的取樣），readWindow / readLast 是浮動窗口以游標讀取
+ * 最近 10 分鐘（10 Hz）與最新 600 筆；三者都應不配置任何物件，
+ * 以 -Pjmh.include=SampleBufferBenchmark -Pjmh.args="-prof gc" 執行，gc.alloc.rate.norm 應為 0 B/op。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleBufferBenchmark {
+    
+    // 與 MonitorService 的即時緩衝容量相同
+    private static final int CAPACITY = 36_000;
+    private static final long PERIOD_NANOS = 100_000_000L;
+    private static final int WINDOW_SAMPLES = 6000;
+    private static final int LAST_SAMPLES = 600;
+    
+    private final SampleBuffer appendBuffer = new SampleBuffer(CAPACITY);
+    private final SampleBuffer readBuffer = new SampleBuffer(CAPACITY);
+    private SampleBuffer.Cursor cursor;
+    private long sequence;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 寫入超過容量，讀取時已經發生過覆蓋
+        Random random = new Random(1);
+        for (int i = 0; i < CAPACITY * 3 / 2; i++) {
+            readBuffer.append(i * PERIOD_NANOS, BenchmarkData.current(i, random), BenchmarkData.voltage(i),
+                BenchmarkData.chargeCounter(i), BenchmarkData.level(i));
+        }
+        cursor = readBuffer.newCursor();
+    }
+    
+    @Benchmark
+    public long append() {
+        long i = sequence++;
+        appendBuffer.append(i * PERIOD_NANOS, -300_000 - (int) (i & 0xFFFF), 4000, 3_000_000, 80);
+        return appendBuffer.getWriteSequence();
+    }
+    
+    @Benchmark
+    public long readWindow() {
+        long to = (readBuffer.getWriteSequence() - 1) * PERIOD_NANOS;
+        cursor.seek(to - WINDOW_SAMPLES * PERIOD_NANOS, to);
+        long sum = 0;
+        while (cursor.next()) {
+            sum += cursor.getCurrent();
+        }
+        return sum;
+    }
+    
+    @Benchmark
+    public long readLast() {
+        cursor.seekLast(LAST_SAMPLES);
+        long sum = 0;
+        while (cursor.next()) {
+            sum += cursor.getCurrent();
+        }
+        return sum;
+    }
+}
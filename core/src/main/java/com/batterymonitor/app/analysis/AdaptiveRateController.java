@@ -0,0 +1,143 @@
+package com.batterymonitor.app.analysis;
+
+/**
+ * 依電流訊號變化調整取樣週期
+ * 以指數加權移動平均 (EWMA) 追蹤電流的平均與變異數，時間常數固定，不受目前週期影響：
+ * - 新讀數偏離平均超過 BURST_SIGMA 個標準差（例如遊戲切換場景）時立即回到最快週期，並保持 HOLD_NANOS
+ * - 變異數高於雜訊底限時每次取樣將週期減半
+ * - 訊號在雜訊範圍內持續平穩時逐步將週期加倍，直到底限週期
+ * 週期只在最快與底限之間以 2 的倍數變化。只在單一執行緒上使用，每筆取樣 O(1)、不配置物件。
+ */
+public final class AdaptiveRateController {
+    
+    // EWMA 時間常數
+    private static final double TAU_NANOS = 5e9;
+    
+    // 電流讀數的雜訊底限：絕對值 5 mA 或平均值的 3%
+    private static final double NOISE_FLOOR_MICRO_AMPS = 5000.0;
+    private static final double RELATIVE_NOISE = 0.03;
+    
+    // 超過幾個標準差視為突變
+    private static final double BURST_SIGMA = 4.0;
+    
+    // 突變後維持最快週期的時間
+    private static final long HOLD_NANOS = 10_000_000_000L;
+    
+    // 降低頻率前，目前週期至少要維持的取樣數與時間
+    private static final int STEP_DOWN_SAMPLES = 4;
+    private static final long STEP_DOWN_MIN_NANOS = 5_000_000_000L;
+    
+    private final long fastPeriodNanos;
+    private final long floorPeriodNanos;
+    
+    private boolean hasState;
+    private double mean;
+    private double variance;
+    private long lastTimestampNanos;
+    private long holdUntilNanos;
+    private long periodNanos;
+    private long periodSinceNanos;
+    private int samplesAtPeriod;
+    private int rateChangeCount;
+    
+    /**
+     * @param fastPeriodNanos 最快（最短）週期
+     * @param floorPeriodNanos 訊號平穩時的底限（最長）週期，不大於 fastPeriodNanos 時固定頻率
+     */
+    public AdaptiveRateController(long fastPeriodNanos, long floorPeriodNanos) {
+        this.fastPeriodNanos = fastPeriodNanos;
+        this.floorPeriodNanos = Math.max(fastPeriodNanos, floorPeriodNanos);
+        reset();
+    }
+    
+    public void reset() {
+        hasState = false;
+        mean = 0;
+        variance = 0;
+        holdUntilNanos = 0;
+        periodNanos = fastPeriodNanos;
+        samplesAtPeriod = 0;
+        rateChangeCount = 0;
+    }
+    
+    /**
+     * 是否會調整週期
+     */
+    public boolean isAdaptive() {
+        return floorPeriodNanos > fastPeriodNanos;
+    }
+    
+    public long getFastPeriodNanos() {
+        return fastPeriodNanos;
+    }
+    
+    public long getFloorPeriodNanos() {
+        return floorPeriodNanos;
+    }
+    
+    /** 目前建議的週期 (ns) */
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+    
+    /** 週期變更次數 */
+    public int getRateChangeCount() {
+        return rateChangeCount;
+    }
+    
+    /**
+     * 加入一筆電流讀數並回傳下一次取樣應使用的週期
+     * @param currentMicroAmps 正規化後的電流 (µA)，Integer.MIN_VALUE 表示無效，此時週期不變
+     */
+    public long update(long timestampNanos, int currentMicroAmps) {
+        if (!isAdaptive() || currentMicroAmps == Integer.MIN_VALUE) {
+            return periodNanos;
+        }
+        
+        if (!hasState) {
+            hasState = true;
+            mean = currentMicroAmps;
+            variance = 0;
+            lastTimestampNanos = timestampNanos;
+            periodSinceNanos = timestampNanos;
+            samplesAtPeriod = 1;
+            return periodNanos;
+        }
+        
+        double dt = Math.max(0, timestampNanos - lastTimestampNanos);
+        lastTimestampNanos = timestampNanos;
+        double alpha = 1.0 - Math.exp(-dt / TAU_NANOS);
+        
+        double noise = Math.max(NOISE_FLOOR_MICRO_AMPS, RELATIVE_NOISE * Math.abs(mean));
+        double deviation = currentMicroAmps - mean;
+        double sigma = Math.sqrt(variance + noise * noise);
+        boolean isBurst = Math.abs(deviation) >= BURST_SIGMA * sigma;
+        
+        // 指數加權的平均與變異數遞推
+        mean += alpha * deviation;
+        variance = (1.0 - alpha) * (variance + alpha * deviation * deviation);
+        samplesAtPeriod++;
+        
+        if (isBurst) {
+            holdUntilNanos = timestampNanos + HOLD_NANOS;
+            setPeriod(timestampNanos, fastPeriodNanos);
+        } else if (variance > noise * noise) {
+            setPeriod(timestampNanos, Math.max(fastPeriodNanos, periodNanos / 2));
+        } else if (timestampNanos >= holdUntilNanos
+                && samplesAtPeriod >= STEP_DOWN_SAMPLES
+                && timestampNanos - periodSinceNanos >= STEP_DOWN_MIN_NANOS) {
+            setPeriod(timestampNanos, Math.min(floorPeriodNanos, periodNanos * 2));
+        }
+        return periodNanos;
+    }
+    
+    private void setPeriod(long timestampNanos, long newPeriodNanos) {
+        if (newPeriodNanos == periodNanos) {
+            return;
+        }
+        periodNanos = newPeriodNanos;
+        periodSinceNanos = timestampNanos;
+        samplesAtPeriod = 0;
+        rateChangeCount++;
+    }
+}
@@ -0,0 +1,118 @@
+package com.batterymonitor.app.analysis;
+
+/**
+ * 電流感測器的校正參數
+ * 將 BatteryManager 回報的原始電流轉換為統一的單位與方向：
+ * 單位為 µA，正值表示流入電池（充電），負值表示放電。
+ */
+public final class CurrentCalibration {
+    
+    public static final int SOURCE_DEFAULT = 0;         // 未偵測，直接使用原始值
+    public static final int SOURCE_HEURISTIC = 1;       // 由數值大小與充電狀態推測
+    public static final int SOURCE_CHARGE_COUNTER = 2;  // 與 CHARGE_COUNTER 差值交叉驗證
+    
+    private static final String FORMAT_VERSION = "1";
+    
+    public static final CurrentCalibration DEFAULT =
+        new CurrentCalibration(1, 1, false, true, SOURCE_DEFAULT);
+    
+    private final int scale;
+    private final int sign;
+    private final boolean isCurrentNowStuck;
+    private final boolean isCurrentAverageUsable;
+    private final int source;
+    
+    public CurrentCalibration(int scale, int sign, boolean isCurrentNowStuck,
+                              boolean isCurrentAverageUsable, int source) {
+        this.scale = scale;
+        this.sign = sign < 0 ? -1 : 1;
+        this.isCurrentNowStuck = isCurrentNowStuck;
+        this.isCurrentAverageUsable = isCurrentAverageUsable;
+        this.source = source;
+    }
+    
+    /** 原始值乘以此倍數得到 µA（1 表示原本就是 µA，1000 表示原始值為 mA） */
+    public int getScale() {
+        return scale;
+    }
+    
+    /** 原始值的方向，-1 表示設備以正值表示放電 */
+    public int getSign() {
+        return sign;
+    }
+    
+    /** CURRENT_NOW 是否卡在固定值 */
+    public boolean isCurrentNowStuck() {
+        return isCurrentNowStuck;
+    }
+    
+    /** CURRENT_AVERAGE 是否有意義（非 0 且非固定值） */
+    public boolean isCurrentAverageUsable() {
+        return isCurrentAverageUsable;
+    }
+    
+    public int getSource() {
+        return source;
+    }
+    
+    /** 是否由 CHARGE_COUNTER 交叉驗證得到 */
+    public boolean isVerified() {
+        return source == SOURCE_CHARGE_COUNTER;
+    }
+    
+    /**
+     * 將原始電流轉換為 µA（充電為正）
+     * @return 原始值不支援時回傳 Integer.MIN_VALUE
+     */
+    public int normalize(int raw) {
+        if (raw == Integer.MIN_VALUE) {
+            return Integer.MIN_VALUE;
+        }
+        long value = (long) raw * scale * sign;
+        if (value >= Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        if (value <= Integer.MIN_VALUE) {
+            return Integer.MIN_VALUE + 1;
+        }
+        return (int) value;
+    }
+    
+    /**
+     * 編碼為可保存在設定中的字串
+     */
+    public String encode() {
+        return FORMAT_VERSION + ";" + scale + ";" + sign + ";" + (isCurrentNowStuck ? 1 : 0)
+            + ";" + (isCurrentAverageUsable ? 1 : 0) + ";" + source;
+    }
+    
+    /**
+     * 解碼 encode() 的結果
+     * @return 格式錯誤時回傳 null
+     */
+    public static CurrentCalibration decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        String[] parts = encoded.split(";");
+        if (parts.length != 6 || !FORMAT_VERSION.equals(parts[0])) {
+            return null;
+        }
+        try {
+            int scale = Integer.parseInt(parts[1]);
+            if (scale != 1 && scale != 1000) {
+                return null;
+            }
+            return new CurrentCalibration(scale, Integer.parseInt(parts[2]), "1".equals(parts[3]),
+                "1".equals(parts[4]), Integer.parseInt(parts[5]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "CurrentCalibration{scale=" + scale + ", sign=" + sign + ", stuck=" + isCurrentNowStuck
+            + ", averageUsable=" + isCurrentAverageUsable + ", source=" + source + "}";
+    }
+}
@@ -0,0 +1,236 @@
+package com.batterymonitor.app.analysis;
+
+/**
+ * 電流感測器正規化
+ * 各廠商的 CURRENT_NOW 單位（µA 或 mA）與放電方向不一致，部分設備的 CURRENT_AVERAGE 恆為 0 或固定值。
+ * 在取樣開始的前幾秒內，以 CHARGE_COUNTER 差值推得的平均電流與原始電流交叉比對，
+ * 判斷單位與方向；計數器無法使用時，改以數值大小與充電狀態推測。
+ * 偵測期間先套用推測值，偵測完成後回報給 Listener 保存，之後的測試直接以保存的校正開始。
+ *
+ * 另外持續追蹤 CURRENT_NOW 是否長時間不變（感測器卡住），此時以 CURRENT_AVERAGE 代替或視為無效。
+ * 只在取樣執行緒上使用，每筆取樣 O(1)。
+ */
+public final class CurrentSensorAdapter {
+    
+    /**
+     * 偵測完成回調（在取樣執行緒上）
+     */
+    public interface Listener {
+        void onCalibrationDetected(CurrentCalibration calibration);
+    }
+    
+    private static final long MIN_PROBE_NANOS = 10_000_000_000L;     // 至少觀察 10 秒
+    private static final long MAX_PROBE_NANOS = 120_000_000_000L;    // 最多等待 2 分鐘
+    private static final int MIN_PROBE_SAMPLES = 5;
+    private static final int MIN_COUNTER_DELTA = 1000;                // µAh，計數器至少變化 1 mAh
+    private static final int MILLIAMP_THRESHOLD = 10_000;             // 平均絕對值低於此值視為 mA
+    private static final int STALE_SAMPLES = 30;                      // 連續相同讀數視為卡住
+    
+    private final Listener listener;
+    
+    private CurrentCalibration calibration = CurrentCalibration.DEFAULT;
+    private boolean isProbing;
+    
+    // 偵測累計量
+    private int probeSamples;
+    private long probeStartNanos;
+    private double sumRawNow;
+    private int firstRawNow;
+    private boolean hasRawNowChanged;
+    private int validRawNowSamples;
+    private int nonZeroAverageSamples;
+    private int firstRawAverage;
+    private boolean hasRawAverageChanged;
+    private int firstChargeCounter;
+    private long firstChargeCounterNanos;
+    private int chargingSamples;
+    
+    // 卡住偵測
+    private int lastRawNow = Integer.MIN_VALUE;
+    private int repeatCount;
+    
+    // 最近一次正規化結果
+    private int currentNow = Integer.MIN_VALUE;
+    private int currentAverage = Integer.MIN_VALUE;
+    private boolean isStale;
+    
+    public CurrentSensorAdapter(Listener listener) {
+        this.listener = listener;
+    }
+    
+    /**
+     * 開始新的取樣期間
+     * @param stored 保存的校正，null 或僅為推測值時會重新偵測
+     */
+    public void reset(CurrentCalibration stored) {
+        calibration = stored != null ? stored : CurrentCalibration.DEFAULT;
+        isProbing = stored == null || !stored.isVerified();
+        probeSamples = 0;
+        sumRawNow = 0;
+        hasRawNowChanged = false;
+        validRawNowSamples = 0;
+        nonZeroAverageSamples = 0;
+        hasRawAverageChanged = false;
+        firstChargeCounter = Integer.MIN_VALUE;
+        chargingSamples = 0;
+        lastRawNow = Integer.MIN_VALUE;
+        repeatCount = 0;
+        isStale = false;
+    }
+    
+    public boolean isProbing() {
+        return isProbing;
+    }
+    
+    public CurrentCalibration getCalibration() {
+        return calibration;
+    }
+    
+    /**
+     * 處理一筆原始讀數，之後以 getCurrentNow() / getCurrentAverage() 取得正規化結果
+     */
+    public void update(long timestampNanos, int rawNow, int rawAverage, int chargeCounter, boolean isCharging) {
+        if (isProbing) {
+            probe(timestampNanos, rawNow, rawAverage, chargeCounter, isCharging);
+        }
+        
+        // 連續相同的讀數表示感測器未更新
+        if (rawNow != Integer.MIN_VALUE && rawNow == lastRawNow) {
+            repeatCount++;
+        } else {
+            repeatCount = 0;
+        }
+        lastRawNow = rawNow;
+        isStale = repeatCount >= STALE_SAMPLES;
+        
+        currentAverage = calibration.isCurrentAverageUsable()
+            ? calibration.normalize(rawAverage) : Integer.MIN_VALUE;
+        if (calibration.isCurrentNowStuck() || isStale) {
+            currentNow = currentAverage;
+        } else {
+            currentNow = calibration.normalize(rawNow);
+        }
+    }
+    
+    /** 正規化後的瞬時電流 (µA，充電為正)，無效時為 Integer.MIN_VALUE */
+    public int getCurrentNow() {
+        return currentNow;
+    }
+    
+    /** 正規化後的平均電流 (µA，充電為正)，無效時為 Integer.MIN_VALUE */
+    public int getCurrentAverage() {
+        return currentAverage;
+    }
+    
+    /** 最近的 CURRENT_NOW 讀數是否已長時間不變 */
+    public boolean isStale() {
+        return isStale;
+    }
+    
+    private void probe(long timestampNanos, int rawNow, int rawAverage, int chargeCounter, boolean isCharging) {
+        if (probeSamples == 0) {
+            probeStartNanos = timestampNanos;
+            firstRawNow = rawNow;
+            firstRawAverage = rawAverage;
+        }
+        probeSamples++;
+        if (isCharging) {
+            chargingSamples++;
+        }
+        
+        if (rawNow != Integer.MIN_VALUE) {
+            validRawNowSamples++;
+            sumRawNow += rawNow;
+            hasRawNowChanged |= rawNow != firstRawNow;
+        }
+        if (rawAverage != Integer.MIN_VALUE && rawAverage != 0) {
+            nonZeroAverageSamples++;
+        }
+        hasRawAverageChanged |= rawAverage != firstRawAverage;
+        
+        if (chargeCounter > 0 && firstChargeCounter == Integer.MIN_VALUE) {
+            firstChargeCounter = chargeCounter;
+            firstChargeCounterNanos = timestampNanos;
+        }
+        
+        // 首筆取樣即套用推測值，避免偵測期間的數據單位錯誤
+        if (probeSamples == 1 && calibration.getSource() == CurrentCalibration.SOURCE_DEFAULT) {
+            calibration = heuristic();
+        }
+        
+        long elapsed = timestampNanos - probeStartNanos;
+        if (elapsed < MIN_PROBE_NANOS || probeSamples < MIN_PROBE_SAMPLES) {
+            return;
+        }
+        
+        CurrentCalibration detected = null;
+        if (firstChargeCounter != Integer.MIN_VALUE && chargeCounter > 0
+                && Math.abs(chargeCounter - firstChargeCounter) >= MIN_COUNTER_DELTA) {
+            detected = crossCheck(chargeCounter - firstChargeCounter, timestampNanos - firstChargeCounterNanos);
+        }
+        if (detected == null && elapsed >= MAX_PROBE_NANOS) {
+            detected = heuristic();
+        }
+        if (detected != null) {
+            calibration = detected;
+            isProbing = false;
+            if (listener != null) {
+                listener.onCalibrationDetected(detected);
+            }
+        }
+    }
+    
+    private boolean isCurrentNowStuck() {
+        return validRawNowSamples == 0 || !hasRawNowChanged;
+    }
+    
+    private boolean isCurrentAverageUsable() {
+        return nonZeroAverageSamples * 2 > probeSamples && hasRawAverageChanged;
+    }
+    
+    /**
+     * 以計數器差值推得的平均電流 (µA) 與原始電流平均值比較
+     * @return 比值不落在 µA 或 mA 的合理範圍時回傳 null
+     */
+    private CurrentCalibration crossCheck(int counterDelta, long intervalNanos) {
+        if (intervalNanos <= 0 || validRawNowSamples == 0) {
+            return null;
+        }
+        double meanRaw = sumRawNow / validRawNowSamples;
+        if (meanRaw == 0 || isCurrentNowStuck()) {
+            return null;
+        }
+        
+        // µAh × 3600 / 秒 = µA，充電時為正
+        double counterCurrent = counterDelta * 3600.0 * 1e9 / intervalNanos;
+        double ratio = Math.abs(counterCurrent / meanRaw);
+        
+        int scale;
+        if (ratio >= 0.2 && ratio <= 5) {
+            scale = 1;
+        } else if (ratio >= 200 && ratio <= 5000) {
+            scale = 1000;
+        } else {
+            return null;
+        }
+        int sign = Math.signum(counterCurrent) == Math.signum(meanRaw) ? 1 : -1;
+        return new CurrentCalibration(scale, sign, false, isCurrentAverageUsable(),
+            CurrentCalibration.SOURCE_CHARGE_COUNTER);
+    }
+    
+    /**
+     * 以數值大小判斷單位，以充電狀態判斷方向
+     */
+    private CurrentCalibration heuristic() {
+        double meanRaw = validRawNowSamples > 0 ? sumRawNow / validRawNowSamples : 0;
+        int scale = meanRaw != 0 && Math.abs(meanRaw) < MILLIAMP_THRESHOLD ? 1000 : 1;
+        
+        boolean isMostlyCharging = chargingSamples * 2 > probeSamples;
+        int sign = 1;
+        if (meanRaw != 0 && (meanRaw > 0) != isMostlyCharging) {
+            sign = -1;
+        }
+        return new CurrentCalibration(scale, sign, probeSamples > 1 && isCurrentNowStuck(),
+            probeSamples <= 1 || isCurrentAverageUsable(), CurrentCalibration.SOURCE_HEURISTIC);
+    }
+}
@@ -0,0 +1,167 @@
+package com.batterymonitor.app.analysis;
+
+/**
+ * 以電壓 × 電流積分消耗能量
+ * 相鄰兩筆有效取樣之間以梯形法積分；間隔超過 maxGapNanos（例如系統休眠、取樣中斷）
+ * 或取樣無效時不跨越積分，改為記錄缺口時間，最後以已覆蓋區間的平均功率補上缺口。
+ *
+ * 功率以放電為正：電流為正表示流入電池，因此放電功率 = -電流 × 電壓。
+ * 只在單一執行緒上使用，每筆取樣 O(1)、不配置物件。
+ */
+public final class EnergyAccumulator {
+    
+    private static final double NANOS_PER_HOUR = 3600.0 * 1e9;
+    
+    private long maxGapNanos;
+    
+    private boolean hasPrevious;           // 是否有上一筆有效取樣
+    private boolean isChainBroken;         // 上一筆有效取樣之後出現過無效取樣
+    private long previousTimestampNanos;
+    private double previousPowerMilliwatts;
+    
+    private long firstTimestampNanos;
+    private long lastTimestampNanos;
+    private boolean hasSamples;
+    
+    private double energyMilliwattNanos;   // 已覆蓋區間的積分 (mW·ns)
+    private long coveredNanos;
+    private long gapNanos;
+    private int gapCount;
+    private double peakPowerMilliwatts;
+    private long validSamples;
+    
+    /**
+     * @param maxGapNanos 相鄰取樣的最大間隔，超過視為缺口
+     */
+    public EnergyAccumulator(long maxGapNanos) {
+        this.maxGapNanos = maxGapNanos;
+        reset();
+    }
+    
+    /**
+     * 變更缺口門檻，取樣週期改變時使用；只影響之後加入的取樣
+     */
+    public void setMaxGapNanos(long maxGapNanos) {
+        this.maxGapNanos = maxGapNanos;
+    }
+    
+    public void reset() {
+        hasPrevious = false;
+        isChainBroken = false;
+        hasSamples = false;
+        energyMilliwattNanos = 0;
+        coveredNanos = 0;
+        gapNanos = 0;
+        gapCount = 0;
+        peakPowerMilliwatts = 0;
+        validSamples = 0;
+    }
+    
+    /**
+     * 加入一筆取樣
+     * @param currentMicroAmps 電流 (µA)，Integer.MIN_VALUE 表示不支援
+     * @param voltageMillivolts 電壓 (mV)，0 或負值表示未知
+     */
+    public void add(long timestampNanos, int currentMicroAmps, int voltageMillivolts) {
+        if (!hasSamples) {
+            firstTimestampNanos = timestampNanos;
+            hasSamples = true;
+        } else if (timestampNanos <= lastTimestampNanos) {
+            return;
+        }
+        lastTimestampNanos = timestampNanos;
+        
+        if (currentMicroAmps == Integer.MIN_VALUE || voltageMillivolts <= 0) {
+            // 無效取樣打斷積分鏈，保留上一筆有效取樣的時間，到下一筆有效取樣的整段間隔計為一個缺口
+            isChainBroken = hasPrevious;
+            return;
+        }
+        
+        // µA × mV = nW，除以 1e6 得 mW
+        double power = -(double) currentMicroAmps * voltageMillivolts / 1e6;
+        validSamples++;
+        if (power > peakPowerMilliwatts) {
+            peakPowerMilliwatts = power;
+        }
+        
+        if (hasPrevious) {
+            long interval = timestampNanos - previousTimestampNanos;
+            if (!isChainBroken && interval <= maxGapNanos) {
+                energyMilliwattNanos += (previousPowerMilliwatts + power) * 0.5 * interval;
+                coveredNanos += interval;
+            } else {
+                gapNanos += interval;
+                gapCount++;
+            }
+        }
+        
+        hasPrevious = true;
+        isChainBroken = false;
+        previousTimestampNanos = timestampNanos;
+        previousPowerMilliwatts = power;
+    }
+    
+    /**
+     * 已覆蓋區間的平均功率 (mW)
+     */
+    public double getAveragePowerMilliwatts() {
+        return coveredNanos > 0 ? energyMilliwattNanos / coveredNanos : 0.0;
+    }
+    
+    /**
+     * 最高放電功率 (mW)
+     */
+    public double getPeakPowerMilliwatts() {
+        return peakPowerMilliwatts;
+    }
+    
+    /**
+     * 消耗能量 (mWh)，缺口以平均功率估計
+     */
+    public double getEnergyMilliwattHours() {
+        double gapEnergy = getAveragePowerMilliwatts() * getGapNanos();
+        return (energyMilliwattNanos + gapEnergy) / NANOS_PER_HOUR;
+    }
+    
+    /**
+     * 只計算實際積分區間的能量 (mWh)，不含缺口估計
+     */
+    public double getIntegratedMilliwattHours() {
+        return energyMilliwattNanos / NANOS_PER_HOUR;
+    }
+    
+    /** 積分覆蓋的時間 (ns) */
+    public long getCoveredNanos() {
+        return coveredNanos;
+    }
+    
+    /** 缺口總時間 (ns)，包含最後一筆有效取樣之後仍無效的時間 */
+    public long getGapNanos() {
+        return gapNanos + getTrailingGapNanos();
+    }
+    
+    public int getGapCount() {
+        return gapCount + (getTrailingGapNanos() > 0 ? 1 : 0);
+    }
+    
+    // 結尾連續無效取樣的時間，下一筆有效取樣到來時才正式計入缺口
+    private long getTrailingGapNanos() {
+        return isChainBroken ? lastTimestampNanos - previousTimestampNanos : 0;
+    }
+    
+    /** 第一筆到最後一筆取樣的時間 (ns) */
+    public long getSpanNanos() {
+        return hasSamples ? lastTimestampNanos - firstTimestampNanos : 0;
+    }
+    
+    /**
+     * 是否至少有一段可積分的區間
+     */
+    public boolean hasData() {
+        return coveredNanos > 0;
+    }
+    
+    public long getValidSampleCount() {
+        return validSamples;
+    }
+}
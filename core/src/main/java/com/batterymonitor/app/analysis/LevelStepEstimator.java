@@ -0,0 +1,154 @@
+package com.batterymonitor.app.analysis;
+
+import java.util.Arrays;
+
+/**
+ * 以電量跳變時間估計小數級的消耗
+ * 只有百分比可用時，短時間測試的整數消耗只會是 0 或 1%。
+ * 這裡記錄每次 ACTION_BATTERY_CHANGED 電量跳變的精確時間（elapsedRealtime），
+ * 以最小平方法對「電量 - 時間」迴歸，斜率即為消耗率，並給出 95% 信賴區間。
+ *
+ * 測試開始時的電量並非剛好在跳變點上，因此不納入迴歸；至少需要兩次跳變才能估計，
+ * 三次以上才有信賴區間。迴歸所需的累計量以 O(1) 更新，只在主執行緒使用。
+ */
+public final class LevelStepEstimator {
+    
+    private static final double MILLIS_PER_HOUR = 60.0 * 60.0 * 1000.0;
+    
+    // 95% 雙尾 t 分布臨界值，索引為自由度 1..30
+    private static final double[] T_CRITICAL_95 = {
+        12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+        2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+        2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+    private static final double Z_CRITICAL_95 = 1.960;
+    
+    private long[] stepTimes = new long[16];
+    private int[] stepLevels = new int[16];
+    private int stepCount = 0;
+    
+    private long startElapsed;
+    private int lastLevel = -1;
+    
+    // 迴歸累計量（時間以小時為單位，相對於開始時間）
+    private double sumX;
+    private double sumY;
+    private double sumXX;
+    private double sumXY;
+    private double sumYY;
+    
+    /**
+     * 迴歸估計結果
+     */
+    public static final class Estimate {
+        /** 消耗率 (%/h)，正值表示耗電 */
+        public final double rate;
+        /** 消耗率 95% 信賴區間半寬，無法計算時為 NaN */
+        public final double rateError;
+        /** 整個測試期間的估計消耗 (%) */
+        public final double consumption;
+        /** 估計消耗的 95% 信賴區間半寬，無法計算時為 NaN */
+        public final double consumptionError;
+        /** 用於迴歸的跳變次數 */
+        public final int stepCount;
+        
+        Estimate(double rate, double rateError, double consumption, double consumptionError, int stepCount) {
+            this.rate = rate;
+            this.rateError = rateError;
+            this.consumption = consumption;
+            this.consumptionError = consumptionError;
+            this.stepCount = stepCount;
+        }
+    }
+    
+    /**
+     * 開始新的測試
+     */
+    public void start(long elapsedRealtime, int level) {
+        startElapsed = elapsedRealtime;
+        lastLevel = level;
+        stepCount = 0;
+        sumX = 0;
+        sumY = 0;
+        sumXX = 0;
+        sumXY = 0;
+        sumYY = 0;
+    }
+    
+    /**
+     * 收到電量廣播時呼叫，只有電量改變時才記錄
+     * @param elapsedRealtime 廣播接收時間
+     */
+    public void onLevel(long elapsedRealtime, int level) {
+        if (lastLevel < 0 || level == lastLevel || elapsedRealtime < startElapsed) {
+            return;
+        }
+        lastLevel = level;
+        
+        if (stepCount == stepTimes.length) {
+            stepTimes = Arrays.copyOf(stepTimes, stepCount * 2);
+            stepLevels = Arrays.copyOf(stepLevels, stepCount * 2);
+        }
+        stepTimes[stepCount] = elapsedRealtime;
+        stepLevels[stepCount] = level;
+        stepCount++;
+        
+        double x = (elapsedRealtime - startElapsed) / MILLIS_PER_HOUR;
+        sumX += x;
+        sumY += level;
+        sumXX += x * x;
+        sumXY += x * level;
+        sumYY += (double) level * level;
+    }
+    
+    public int getStepCount() {
+        return stepCount;
+    }
+    
+    /** 第 index 次跳變的 elapsedRealtime 時間 */
+    public long getStepTime(int index) {
+        return stepTimes[index];
+    }
+    
+    /** 第 index 次跳變後的電量 */
+    public int getStepLevel(int index) {
+        return stepLevels[index];
+    }
+    
+    /**
+     * 計算估計值
+     * @param endElapsed 測試結束時間
+     * @return 跳變不足兩次時回傳 null
+     */
+    public Estimate estimate(long endElapsed) {
+        int n = stepCount;
+        if (n < 2) {
+            return null;
+        }
+        
+        double sxx = sumXX - sumX * sumX / n;
+        double sxy = sumXY - sumX * sumY / n;
+        double syy = sumYY - sumY * sumY / n;
+        if (sxx <= 0) {
+            return null;
+        }
+        
+        double slope = sxy / sxx;
+        double rate = -slope;
+        double hours = Math.max(0, endElapsed - startElapsed) / MILLIS_PER_HOUR;
+        
+        double rateError = Double.NaN;
+        if (n > 2) {
+            double residual = Math.max(0, syy - slope * sxy);
+            double standardError = Math.sqrt(residual / (n - 2) / sxx);
+            rateError = tCritical(n - 2) * standardError;
+        }
+        
+        return new Estimate(rate, rateError, rate * hours, rateError * hours, n);
+    }
+    
+    private static double tCritical(int degreesOfFreedom) {
+        return degreesOfFreedom <= T_CRITICAL_95.length
+            ? T_CRITICAL_95[degreesOfFreedom - 1] : Z_CRITICAL_95;
+    }
+}
@@ -0,0 +1,110 @@
+package com.batterymonitor.app.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Largest-Triangle-Three-Buckets 降取樣
+ * 把一段時間序列降為指定點數的折線，每個區間保留與前一個選中點、下一區間平均點
+ * 構成最大三角形的點；比均勻抽樣更能保留曲線的形狀與轉折。
+ * 輸入暫存陣列可重複使用，達到所需容量後不再配置物件。只能在單一執行緒上使用。
+ */
+public final class Lttb {
+    
+    private long[] xs;
+    private float[] ys;
+    private int size;
+    
+    public Lttb(int capacity) {
+        xs = new long[Math.max(1, capacity)];
+        ys = new float[Math.max(1, capacity)];
+    }
+    
+    /**
+     * 清空輸入
+     */
+    public Lttb clear() {
+        size = 0;
+        return this;
+    }
+    
+    /**
+     * 加入一個點，x 必須單調遞增
+     */
+    public void add(long x, float y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * 把輸入降為最多 threshold 個點，第一點與最後一點一定保留
+     * @param outX 長度至少為 min(threshold, size())
+     * @return 輸出的點數
+     */
+    public int downsample(int threshold, long[] outX, float[] outY) {
+        // 點數已不超過門檻，或門檻太小無法分區，直接複製前 count 個點
+        if (threshold >= size || threshold < 3) {
+            int count = Math.max(0, Math.min(size, threshold));
+            System.arraycopy(xs, 0, outX, 0, count);
+            System.arraycopy(ys, 0, outY, 0, count);
+            return count;
+        }
+        
+        // x 以第一點為原點換成 double，避免奈秒時間戳相乘溢位
+        long origin = xs[0];
+        double every = (double) (size - 2) / (threshold - 2);
+        int selected = 0;
+        int outCount = 0;
+        outX[outCount] = xs[0];
+        outY[outCount] = ys[0];
+        outCount++;
+        
+        for (int i = 0; i < threshold - 2; i++) {
+            // 下一區間的平均點
+            int nextStart = (int) Math.floor((i + 1) * every) + 1;
+            int nextEnd = Math.min(size, (int) Math.floor((i + 2) * every) + 1);
+            double averageX = 0;
+            double averageY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                averageX += xs[j] - origin;
+                averageY += ys[j];
+            }
+            int nextCount = Math.max(1, nextEnd - nextStart);
+            averageX /= nextCount;
+            averageY /= nextCount;
+            
+            // 目前區間中與選中點、平均點構成最大三角形的點
+            int start = (int) Math.floor(i * every) + 1;
+            int end = (int) Math.floor((i + 1) * every) + 1;
+            double selectedX = xs[selected] - origin;
+            double selectedY = ys[selected];
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((selectedX - averageX) * (ys[j] - selectedY)
+                    - (selectedX - (xs[j] - origin)) * (averageY - selectedY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = j;
+                }
+            }
+            
+            outX[outCount] = xs[maxIndex];
+            outY[outCount] = ys[maxIndex];
+            outCount++;
+            selected = maxIndex;
+        }
+        
+        outX[outCount] = xs[size - 1];
+        outY[outCount] = ys[size - 1];
+        return outCount + 1;
+    }
+}
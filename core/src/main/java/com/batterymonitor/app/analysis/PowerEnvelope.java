@@ -0,0 +1,159 @@
+package com.batterymonitor.app.analysis;
+
+/**
+ * 功率曲線的逐區間最小/最大值包絡
+ * 把時間視窗均分為 bucketCount 個區間（通常等於圖表寬度的像素數），每個區間只保留功率的最小與最大值；
+ * 長時間的測試也只需畫 bucketCount 個點，短暫的峰值不會因抽樣而消失。
+ * 陣列在建構時配置，重複使用時不配置物件。只能在單一執行緒上寫入。
+ */
+public final class PowerEnvelope {
+    
+    private final float[] minima;
+    private final float[] maxima;
+    private int bucketCount;
+    private long fromNanos;
+    private long toNanos;
+    private float lowest;
+    private float highest;
+    private int sampleCount;
+    
+    /**
+     * @param capacity 最多的區間數
+     */
+    public PowerEnvelope(int capacity) {
+        minima = new float[Math.max(1, capacity)];
+        maxima = new float[Math.max(1, capacity)];
+    }
+    
+    public int capacity() {
+        return minima.length;
+    }
+    
+    /**
+     * 清空並設定時間視窗 [fromNanos, toNanos]
+     * @param bucketCount 區間數，超過容量時截為容量
+     */
+    public void begin(long fromNanos, long toNanos, int bucketCount) {
+        this.fromNanos = fromNanos;
+        this.toNanos = Math.max(fromNanos + 1, toNanos);
+        this.bucketCount = Math.max(1, Math.min(minima.length, bucketCount));
+        for (int i = 0; i < this.bucketCount; i++) {
+            minima[i] = Float.NaN;
+            maxima[i] = Float.NaN;
+        }
+        lowest = Float.NaN;
+        highest = Float.NaN;
+        sampleCount = 0;
+    }
+    
+    /**
+     * 加入一筆電池取樣，功率以放電為正 (mW)
+     * @param currentMicroAmps 電流 (µA)，正值表示流入電池，Integer.MIN_VALUE 表示不支援
+     * @param voltageMillivolts 電壓 (mV)，0 或負值表示未知
+     */
+    public void add(long timestampNanos, int currentMicroAmps, int voltageMillivolts) {
+        if (currentMicroAmps == Integer.MIN_VALUE || voltageMillivolts <= 0) {
+            return;
+        }
+        // µA × mV = nW，除以 1e6 得 mW
+        addPower(timestampNanos, (float) (-(double) currentMicroAmps * voltageMillivolts / 1e6));
+    }
+    
+    /**
+     * 加入一筆功率值 (mW)，視窗外的取樣忽略
+     */
+    public void addPower(long timestampNanos, float milliwatts) {
+        addRange(timestampNanos, milliwatts, milliwatts, 1);
+    }
+    
+    /**
+     * 加入一段已彙總的取樣（例如多解析度摘要的一個區間），整段歸入 timestampNanos 所在的區間
+     * @param count 該段的取樣數
+     */
+    public void addRange(long timestampNanos, float minMilliwatts, float maxMilliwatts, int count) {
+        if (timestampNanos < fromNanos || timestampNanos > toNanos) {
+            return;
+        }
+        int bucket = (int) ((double) (timestampNanos - fromNanos) * bucketCount / (toNanos - fromNanos));
+        if (bucket >= bucketCount) {
+            bucket = bucketCount - 1;
+        }
+        
+        // NaN 的比較永遠為 false，空區間直接取第一個值
+        if (!(minMilliwatts >= minima[bucket])) {
+            minima[bucket] = minMilliwatts;
+        }
+        if (!(maxMilliwatts <= maxima[bucket])) {
+            maxima[bucket] = maxMilliwatts;
+        }
+        if (!(minMilliwatts >= lowest)) {
+            lowest = minMilliwatts;
+        }
+        if (!(maxMilliwatts <= highest)) {
+            highest = maxMilliwatts;
+        }
+        sampleCount += count;
+    }
+    
+    /**
+     * 複製另一個包絡的內容，容量不足時截去尾端的區間
+     */
+    public void copyFrom(PowerEnvelope other) {
+        fromNanos = other.fromNanos;
+        toNanos = other.toNanos;
+        bucketCount = Math.min(minima.length, other.bucketCount);
+        System.arraycopy(other.minima, 0, minima, 0, bucketCount);
+        System.arraycopy(other.maxima, 0, maxima, 0, bucketCount);
+        lowest = other.lowest;
+        highest = other.highest;
+        sampleCount = other.sampleCount;
+    }
+    
+    public int getBucketCount() {
+        return bucketCount;
+    }
+    
+    public long getFromNanos() {
+        return fromNanos;
+    }
+    
+    public long getToNanos() {
+        return toNanos;
+    }
+    
+    /**
+     * 區間的最小功率，空區間為 NaN
+     */
+    public float getMin(int bucket) {
+        return minima[bucket];
+    }
+    
+    /**
+     * 區間的最大功率，空區間為 NaN
+     */
+    public float getMax(int bucket) {
+        return maxima[bucket];
+    }
+    
+    /**
+     * 視窗內的最小功率，沒有取樣時為 NaN
+     */
+    public float getLowest() {
+        return lowest;
+    }
+    
+    /**
+     * 視窗內的最大功率，沒有取樣時為 NaN
+     */
+    public float getHighest() {
+        return highest;
+    }
+    
+    public int getSampleCount() {
+        return sampleCount;
+    }
+    
+    public boolean hasData() {
+        return sampleCount > 0;
+    }
+}
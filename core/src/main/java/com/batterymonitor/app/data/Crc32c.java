@@ -0,0 +1,61 @@
+package com.batterymonitor.app.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * CRC32C (Castagnoli) 校驗
+ * java.util.zip.CRC32C 需要 API 26，這裡以查表法實作以支援 minSdk 23
+ */
+public final class Crc32c {
+    
+    private static final int POLYNOMIAL = 0x82F63B78; // 反轉的 0x1EDC6F41
+    private static final int[] TABLE = new int[256];
+    
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+    
+    private int state = 0xFFFFFFFF;
+    
+    public void reset() {
+        state = 0xFFFFFFFF;
+    }
+    
+    /**
+     * 以絕對位置讀取 buffer，不改變 buffer 的 position
+     */
+    public void update(ByteBuffer buffer, int offset, int length) {
+        int crc = state;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ buffer.get(i)) & 0xFF];
+        }
+        state = crc;
+    }
+    
+    public void update(byte[] bytes, int offset, int length) {
+        int crc = state;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ bytes[i]) & 0xFF];
+        }
+        state = crc;
+    }
+    
+    public int getValue() {
+        return ~state;
+    }
+    
+    /**
+     * 計算 buffer 指定區段的 CRC32C
+     */
+    public static int compute(ByteBuffer buffer, int offset, int length) {
+        Crc32c crc = new Crc32c();
+        crc.update(buffer, offset, length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,570 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.model.TestResult;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 測試歷史導出器
+ * 分頁讀取 RunStore 並逐筆寫出，可選擇一併導出每次測試的取樣日誌。
+ * 所有輸出都經由固定大小的緩衝區寫入檔案通道，記憶體用量與資料量無關，
+ * 數 GB 的取樣日誌也能在背景執行緒中導出。
+ *
+ * CSV 格式輸出 <baseName>_runs.csv，含取樣時另輸出 <baseName>_samples.csv；
+ * JSON Lines 格式輸出單一 <baseName>.jsonl，每行以 "type" 欄位區分 settings / run / sample。
+ * 測試與取樣都以 run_id（測試開始時間，即取樣日誌目錄名）關聯，不輸出 RunStore 內部的流水號。
+ */
+public final class HistoryExporter {
+    
+    public static final int FORMAT_CSV = 0;
+    public static final int FORMAT_JSON_LINES = 1;
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PAGE_SIZE = 100;
+    private static final int SAMPLE_PROGRESS_INTERVAL = 16 * 1024;
+    
+    private static final String RUN_CSV_HEADER = "run_id,start_time,end_time,start_level,end_level,battery_consumed,"
+        + "planned_duration_ms,actual_duration_ms,consumption_rate,charge_mah,energy_mwh,"
+        + "average_power_mw,peak_power_mw,level_steps,estimated_consumption,estimated_rate,subject\n";
+    private static final String SAMPLE_CSV_HEADER = "run_id,timestamp_ns,current_ua,current_avg_ua,"
+        + "charge_uah,energy_nwh,voltage_mv,level,flags,period_ms\n";
+    private static final String POWER_CSV_HEADER = "run_id,bucket_start_ns,period_s,samples,"
+        + "min_power_mw,max_power_mw,mean_power_mw\n";
+    
+    // 功率摘要使用的層：每分鐘一個區間
+    private static final int POWER_SUMMARY_LEVEL = 2;
+    
+    /**
+     * 導出進度回調（在導出執行緒上呼叫）
+     */
+    public interface ProgressListener {
+        void onProgress(int runsExported, int totalRuns, long samplesExported);
+    }
+    
+    private final RunStore store;
+    private final File runsDir;
+    private final int format;
+    private final boolean includeSamples;
+    private boolean isPowerSummary = false;
+    private String settingsJson;
+    private volatile boolean isCancelled = false;
+    
+    private int runsExported;
+    private int totalRuns;
+    private long samplesExported;
+    private ProgressListener progressListener;
+    
+    /**
+     * @param runsDir 取樣日誌根目錄（files/runs），不導出取樣時可為 null
+     */
+    public HistoryExporter(RunStore store, File runsDir, int format, boolean includeSamples) {
+        this.store = store;
+        this.runsDir = runsDir;
+        this.format = format;
+        this.includeSamples = includeSamples && runsDir != null;
+    }
+    
+    /**
+     * 設定要寫入 JSON Lines 開頭的設定內容（JSON 物件字串）
+     */
+    public void setSettingsJson(String settingsJson) {
+        this.settingsJson = settingsJson;
+    }
+    
+    /**
+     * 以每分鐘的功率摘要（最小/最大/平均）取代完整取樣，輸出大小與取樣率無關
+     * 優先讀取測試結束時寫入的摘要快取，沒有快取時才掃描取樣日誌
+     */
+    public void setPowerSummary(boolean powerSummary) {
+        this.isPowerSummary = powerSummary;
+    }
+    
+    /**
+     * 取消導出，導出執行緒會在下一筆記錄時停止並刪除未完成的檔案
+     */
+    public void cancel() {
+        isCancelled = true;
+    }
+    
+    /**
+     * 執行導出
+     * @return 產生的檔案
+     */
+    public List<File> export(File outputDir, String baseName, ProgressListener listener) throws IOException {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Cannot create export directory: " + outputDir);
+        }
+        
+        progressListener = listener;
+        runsExported = 0;
+        samplesExported = 0;
+        
+        List<File> files = new ArrayList<>();
+        ChannelWriter runWriter = null;
+        ChannelWriter sampleWriter = null;
+        boolean isSuccessful = false;
+        try {
+            if (format == FORMAT_CSV) {
+                File runFile = new File(outputDir, baseName + "_runs.csv");
+                files.add(runFile);
+                runWriter = new ChannelWriter(runFile);
+                runWriter.ascii(RUN_CSV_HEADER);
+                if (includeSamples) {
+                    File sampleFile = new File(outputDir, baseName + (isPowerSummary ? "_power.csv" : "_samples.csv"));
+                    files.add(sampleFile);
+                    sampleWriter = new ChannelWriter(sampleFile);
+                    sampleWriter.ascii(isPowerSummary ? POWER_CSV_HEADER : SAMPLE_CSV_HEADER);
+                }
+            } else {
+                File file = new File(outputDir, baseName + ".jsonl");
+                files.add(file);
+                runWriter = new ChannelWriter(file);
+                sampleWriter = includeSamples ? runWriter : null;
+                if (settingsJson != null) {
+                    runWriter.ascii("{\"type\":\"settings\",\"settings\":").utf8(settingsJson).ascii("}\n");
+                }
+            }
+            
+            exportRuns(runWriter, sampleWriter);
+            
+            runWriter.close();
+            if (sampleWriter != null && sampleWriter != runWriter) {
+                sampleWriter.close();
+            }
+            isSuccessful = true;
+            return files;
+        } finally {
+            if (!isSuccessful) {
+                closeQuietly(runWriter);
+                closeQuietly(sampleWriter);
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+    
+    /**
+     * 由新到舊分頁導出，上限固定為開始導出時最新記錄的時間，避免導出期間新增的記錄使分頁位移
+     */
+    private void exportRuns(ChannelWriter runWriter, ChannelWriter sampleWriter) throws IOException {
+        List<TestResult> newest = store.query(0, 1);
+        if (newest.isEmpty()) {
+            return;
+        }
+        long upperStartTime = newest.get(0).getStartTime() + 1;
+        totalRuns = store.size();
+        
+        for (int offset = 0; ; offset += PAGE_SIZE) {
+            List<TestResult> page = store.query(null, Long.MIN_VALUE, upperStartTime, offset, PAGE_SIZE);
+            if (page.isEmpty()) {
+                break;
+            }
+            
+            for (TestResult result : page) {
+                checkCancelled();
+                if (format == FORMAT_CSV) {
+                    writeRunCsv(runWriter, result);
+                } else {
+                    writeRunJson(runWriter, result);
+                }
+                if (sampleWriter != null) {
+                    if (isPowerSummary) {
+                        exportPowerSummary(sampleWriter, result.getStartTime());
+                    } else {
+                        exportSamples(sampleWriter, result.getStartTime());
+                    }
+                }
+                
+                runsExported++;
+                totalRuns = Math.max(totalRuns, runsExported);
+                reportProgress();
+            }
+        }
+    }
+    
+    private void writeRunCsv(ChannelWriter out, TestResult result) throws IOException {
+        out.number(result.getStartTime()).comma()
+            .number(result.getStartTime()).comma()
+            .number(result.getEndTime()).comma()
+            .number(result.getStartBatteryLevel()).comma()
+            .number(result.getEndBatteryLevel()).comma()
+            .number(result.getBatteryConsumed()).comma()
+            .number(result.getPlannedDuration()).comma()
+            .number(result.getActualDuration()).comma()
+            .decimal(result.getConsumptionRate()).comma()
+            .decimal(result.getChargeConsumedMah()).comma()
+            .decimal(result.getEnergyMilliwattHours()).comma()
+            .decimal(result.getAveragePowerMilliwatts()).comma()
+            .decimal(result.getPeakPowerMilliwatts()).comma()
+            .number(result.getLevelStepCount()).comma()
+            .decimal(result.getEstimatedConsumption()).comma()
+            .decimal(result.getEstimatedRate()).comma()
+            .csvField(result.getTestSubject()).newline();
+    }
+    
+    private void writeRunJson(ChannelWriter out, TestResult result) throws IOException {
+        out.ascii("{\"type\":\"run\",\"run_id\":").number(result.getStartTime())
+            .ascii(",\"start_time\":").number(result.getStartTime())
+            .ascii(",\"end_time\":").number(result.getEndTime())
+            .ascii(",\"start_level\":").number(result.getStartBatteryLevel())
+            .ascii(",\"end_level\":").number(result.getEndBatteryLevel())
+            .ascii(",\"battery_consumed\":").number(result.getBatteryConsumed())
+            .ascii(",\"planned_duration_ms\":").number(result.getPlannedDuration())
+            .ascii(",\"actual_duration_ms\":").number(result.getActualDuration())
+            .ascii(",\"consumption_rate\":").decimal(result.getConsumptionRate())
+            .ascii(",\"charge_mah\":").decimal(result.getChargeConsumedMah())
+            .ascii(",\"energy_mwh\":").decimal(result.getEnergyMilliwattHours())
+            .ascii(",\"average_power_mw\":").decimal(result.getAveragePowerMilliwatts())
+            .ascii(",\"peak_power_mw\":").decimal(result.getPeakPowerMilliwatts())
+            .ascii(",\"level_steps\":").number(result.getLevelStepCount())
+            .ascii(",\"estimated_consumption\":").decimal(result.getEstimatedConsumption())
+            .ascii(",\"estimated_rate\":").decimal(result.getEstimatedRate())
+            .ascii(",\"subject\":").jsonString(result.getTestSubject())
+            .ascii("}\n");
+    }
+    
+    /**
+     * 逐區塊讀取一次測試的取樣日誌並寫出，沒有日誌的測試直接略過
+     */
+    private void exportSamples(ChannelWriter out, long runId) throws IOException {
+        File logFile = new File(new File(runsDir, String.valueOf(runId)), SampleLog.FILE_NAME);
+        if (!logFile.isFile()) {
+            return;
+        }
+        
+        SampleLog.Reader reader;
+        try {
+            reader = SampleLog.openReader(logFile);
+        } catch (IOException e) {
+            // 日誌標頭損壞，略過該次測試的取樣
+            return;
+        }
+        
+        try {
+            boolean isCsv = format == FORMAT_CSV;
+            while (reader.next()) {
+                if (isCsv) {
+                    out.number(runId).comma()
+                        .number(reader.getTimestamp()).comma()
+                        .number(reader.getCurrent()).comma()
+                        .number(reader.getCurrentAverage()).comma()
+                        .number(reader.getChargeCounter()).comma()
+                        .number(reader.getEnergyCounter()).comma()
+                        .number(reader.getVoltage()).comma()
+                        .number(reader.getLevel()).comma()
+                        .number(reader.getRecordFlags()).comma()
+                        .number(reader.getSamplePeriodMs()).newline();
+                } else {
+                    out.ascii("{\"type\":\"sample\",\"run_id\":").number(runId)
+                        .ascii(",\"timestamp_ns\":").number(reader.getTimestamp())
+                        .ascii(",\"current_ua\":").number(reader.getCurrent())
+                        .ascii(",\"current_avg_ua\":").number(reader.getCurrentAverage())
+                        .ascii(",\"charge_uah\":").number(reader.getChargeCounter())
+                        .ascii(",\"energy_nwh\":").number(reader.getEnergyCounter())
+                        .ascii(",\"voltage_mv\":").number(reader.getVoltage())
+                        .ascii(",\"level\":").number(reader.getLevel())
+                        .ascii(",\"flags\":").number(reader.getRecordFlags())
+                        .ascii(",\"period_ms\":").number(reader.getSamplePeriodMs())
+                        .ascii("}\n");
+                }
+                
+                samplesExported++;
+                if (samplesExported % SAMPLE_PROGRESS_INTERVAL == 0) {
+                    checkCancelled();
+                    reportProgress();
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+    
+    /**
+     * 寫出一次測試每分鐘的功率摘要，沒有摘要快取也沒有日誌的測試直接略過
+     */
+    private void exportPowerSummary(ChannelWriter out, long runId) throws IOException {
+        File runDir = new File(runsDir, String.valueOf(runId));
+        PowerPyramid pyramid;
+        try {
+            File pyramidFile = new File(runDir, PowerPyramid.FILE_NAME);
+            if (pyramidFile.isFile()) {
+                pyramid = PowerPyramid.readFrom(pyramidFile);
+            } else {
+                File logFile = new File(runDir, SampleLog.FILE_NAME);
+                if (!logFile.isFile()) {
+                    return;
+                }
+                pyramid = PowerPyramid.fromSampleLog(logFile);
+            }
+        } catch (IOException e) {
+            // 快取或日誌損壞，略過該次測試
+            return;
+        }
+        
+        boolean isCsv = format == FORMAT_CSV;
+        long periodSeconds = PowerPyramid.getLevelPeriod(POWER_SUMMARY_LEVEL) / 1_000_000_000L;
+        int bucketCount = pyramid.getBucketCount(POWER_SUMMARY_LEVEL);
+        for (int i = 0; i < bucketCount; i++) {
+            int count = pyramid.getCount(POWER_SUMMARY_LEVEL, i);
+            if (count == 0) {
+                continue;
+            }
+            if (isCsv) {
+                out.number(runId).comma()
+                    .number(pyramid.getBucketStart(POWER_SUMMARY_LEVEL, i)).comma()
+                    .number(periodSeconds).comma()
+                    .number(count).comma()
+                    .decimal(pyramid.getMin(POWER_SUMMARY_LEVEL, i)).comma()
+                    .decimal(pyramid.getMax(POWER_SUMMARY_LEVEL, i)).comma()
+                    .decimal(pyramid.getMean(POWER_SUMMARY_LEVEL, i)).newline();
+            } else {
+                out.ascii("{\"type\":\"power\",\"run_id\":").number(runId)
+                    .ascii(",\"bucket_start_ns\":").number(pyramid.getBucketStart(POWER_SUMMARY_LEVEL, i))
+                    .ascii(",\"period_s\":").number(periodSeconds)
+                    .ascii(",\"samples\":").number(count)
+                    .ascii(",\"min_power_mw\":").decimal(pyramid.getMin(POWER_SUMMARY_LEVEL, i))
+                    .ascii(",\"max_power_mw\":").decimal(pyramid.getMax(POWER_SUMMARY_LEVEL, i))
+                    .ascii(",\"mean_power_mw\":").decimal(pyramid.getMean(POWER_SUMMARY_LEVEL, i))
+                    .ascii("}\n");
+            }
+            samplesExported += count;
+        }
+        checkCancelled();
+        reportProgress();
+    }
+    
+    private void checkCancelled() throws InterruptedIOException {
+        if (isCancelled) {
+            throw new InterruptedIOException("Export cancelled");
+        }
+    }
+    
+    private void reportProgress() {
+        if (progressListener != null) {
+            progressListener.onProgress(runsExported, totalRuns, samplesExported);
+        }
+    }
+    
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // 已在錯誤處理流程中，忽略關閉失敗
+        }
+    }
+    
+    /**
+     * 以固定大小直接緩衝區寫入檔案通道的文字輸出
+     * 數字直接轉為 ASCII 位元組，不建立中間字串
+     */
+    private static final class ChannelWriter implements Closeable {
+        
+        private static final byte[] HEX_DIGITS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+        };
+        
+        private final FileOutputStream stream;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final byte[] digits = new byte[20];
+        private boolean isClosed = false;
+        
+        ChannelWriter(File file) throws IOException {
+            stream = new FileOutputStream(file);
+            channel = stream.getChannel();
+        }
+        
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+        
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        
+        /** 寫入純 ASCII 文字 */
+        ChannelWriter ascii(String text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                ensure(1);
+                buffer.put((byte) text.charAt(i));
+            }
+            return this;
+        }
+        
+        /** 以 UTF-8 寫入任意文字 */
+        ChannelWriter utf8(String text) throws IOException {
+            int length = text.length();
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                ensure(4);
+                if (c < 0x80) {
+                    buffer.put((byte) c);
+                } else if (c < 0x800) {
+                    buffer.put((byte) (0xC0 | (c >> 6)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else if (Character.isSurrogate(c)) {
+                    buffer.put((byte) '?');
+                } else {
+                    buffer.put((byte) (0xE0 | (c >> 12)));
+                    buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+            return this;
+        }
+        
+        ChannelWriter number(long value) throws IOException {
+            ensure(20);
+            if (value == Long.MIN_VALUE) {
+                return ascii(Long.toString(value));
+            }
+            if (value < 0) {
+                buffer.put((byte) '-');
+                value = -value;
+            }
+            int count = 0;
+            do {
+                digits[count++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            while (count > 0) {
+                buffer.put(digits[--count]);
+            }
+            return this;
+        }
+        
+        /** 以固定四位小數寫出，NaN 與無限大寫為 0 */
+        ChannelWriter decimal(double value) throws IOException {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                value = 0.0;
+            }
+            long scaled = Math.round(Math.abs(value) * 10_000);
+            if (value < 0 && scaled != 0) {
+                ensure(1);
+                buffer.put((byte) '-');
+            }
+            number(scaled / 10_000);
+            ensure(5);
+            buffer.put((byte) '.');
+            long fraction = scaled % 10_000;
+            buffer.put((byte) ('0' + fraction / 1000));
+            buffer.put((byte) ('0' + fraction / 100 % 10));
+            buffer.put((byte) ('0' + fraction / 10 % 10));
+            buffer.put((byte) ('0' + fraction % 10));
+            return this;
+        }
+        
+        ChannelWriter comma() throws IOException {
+            ensure(1);
+            buffer.put((byte) ',');
+            return this;
+        }
+        
+        ChannelWriter newline() throws IOException {
+            ensure(1);
+            buffer.put((byte) '\n');
+            return this;
+        }
+        
+        /** CSV 欄位，包含逗號、引號或換行時加上引號 */
+        ChannelWriter csvField(String text) throws IOException {
+            if (text == null || text.isEmpty()) {
+                return this;
+            }
+            boolean needsQuote = false;
+            for (int i = 0; i < text.length() && !needsQuote; i++) {
+                char c = text.charAt(i);
+                needsQuote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!needsQuote) {
+                return utf8(text);
+            }
+            ascii("\"");
+            int start = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '"') {
+                    utf8(text.substring(start, i + 1)).ascii("\"");
+                    start = i + 1;
+                }
+            }
+            return utf8(text.substring(start)).ascii("\"");
+        }
+        
+        /** JSON 字串值（含引號與跳脫） */
+        ChannelWriter jsonString(String text) throws IOException {
+            ascii("\"");
+            if (text != null) {
+                int start = 0;
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    if (c == '"' || c == '\\' || c < 0x20) {
+                        utf8(text.substring(start, i));
+                        escape(c);
+                        start = i + 1;
+                    }
+                }
+                utf8(text.substring(start));
+            }
+            return ascii("\"");
+        }
+        
+        // 直接寫入跳脫序列，其他控制字元寫成四位十六進位的 Unicode 跳脫
+        private void escape(char c) throws IOException {
+            ensure(6);
+            buffer.put((byte) '\\');
+            if (c == '"' || c == '\\') {
+                buffer.put((byte) c);
+            } else if (c == '\n') {
+                buffer.put((byte) 'n');
+            } else if (c == '\r') {
+                buffer.put((byte) 'r');
+            } else if (c == '\t') {
+                buffer.put((byte) 't');
+            } else {
+                buffer.put((byte) 'u');
+                buffer.put((byte) '0');
+                buffer.put((byte) '0');
+                buffer.put(HEX_DIGITS[(c >> 4) & 0xF]);
+                buffer.put(HEX_DIGITS[c & 0xF]);
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+            try {
+                drain();
+            } finally {
+                stream.close();
+            }
+        }
+    }
+}
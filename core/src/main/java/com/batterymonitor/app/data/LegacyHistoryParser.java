@@ -0,0 +1,59 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.model.TestResult;
+
+import java.util.List;
+
+/**
+ * 舊版 SharedPreferences 歷史字串的解析
+ * 記錄以 | 分隔、欄位以 , 分隔，由新到舊排列；僅用於遷移到 RunStore。
+ */
+public final class LegacyHistoryParser {
+    
+    private LegacyHistoryParser() {
+    }
+    
+    /**
+     * 依序解析記錄並加入 out，欄位不足的記錄略過
+     * 遇到格式錯誤的數字時拋出例外，已解析的記錄保留在 out 中
+     */
+    public static void parse(String historyStr, List<TestResult> out) throws NumberFormatException {
+        String[] records = historyStr.split("\\|");
+        
+        for (String record : records) {
+            String[] parts = record.split(",");
+            if (parts.length >= 6) {
+                TestResult result = new TestResult();
+                result.setStartTime(Long.parseLong(parts[0]));
+                result.setEndTime(Long.parseLong(parts[1]));
+                result.setStartBatteryLevel(Integer.parseInt(parts[2]));
+                result.setEndBatteryLevel(Integer.parseInt(parts[3]));
+                result.setBatteryConsumed(Integer.parseInt(parts[4]));
+                result.setDuration(Long.parseLong(parts[5]));
+                
+                // 處理測試主題（如果存在）
+                if (parts.length >= 7) {
+                    result.setTestSubject(decodeTestSubject(parts[6]));
+                } else {
+                    result.setTestSubject("");
+                }
+                
+                // 處理取樣數據（如果存在）
+                if (parts.length >= 9) {
+                    result.setChargeConsumedMah(Double.parseDouble(parts[7]));
+                    result.setEnergyMilliwattHours(Double.parseDouble(parts[8]));
+                }
+                
+                out.add(result);
+            }
+        }
+    }
+    
+    private static String decodeTestSubject(String encoded) {
+        if (encoded == null || encoded.equals("EMPTY")) {
+            return "";
+        }
+        // 將安全字符還原為原始字符
+        return encoded.replace("COMMA", ",").replace("PIPE", "|");
+    }
+}
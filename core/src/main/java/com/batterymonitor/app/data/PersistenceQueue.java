@@ -0,0 +1,291 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.model.TestResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 寫入延後的持久化佇列
+ * 單一寫入執行緒依序處理測試結果保存與取樣日誌的刷新、關閉。
+ * 同一批次中的多個操作會合併：相同日誌的刷新只執行一次，記錄檔在批次結束時只 fsync 一次。
+ * 呼叫端不會被 I/O 阻塞；只有 awaitDurable() 會等待之前的所有操作寫入儲存裝置。
+ */
+public final class PersistenceQueue implements SampleLog.FlushHandler {
+    
+    private static final long IDLE_TIMEOUT_SECONDS = 30;
+    
+    public interface Callback {
+        void onSaved(TestResult result);
+        void onFailed(TestResult result, Exception e);
+    }
+    
+    public interface ClearCallback {
+        void onCleared(int deletedRuns);
+        void onFailed(Exception e);
+    }
+    
+    private final ThreadPoolExecutor executor;
+    private final Object lock = new Object();
+    
+    // 以下欄位受 lock 保護
+    private final ArrayDeque<FutureTask<?>> pendingTasks = new ArrayDeque<>();
+    private final Set<SampleLog> pendingFlushes = new LinkedHashSet<>();
+    private final Set<RunStore> dirtyStores = new LinkedHashSet<>();
+    private final List<CountDownLatch> pendingBarriers = new ArrayList<>();
+    private boolean isDrainScheduled = false;
+    
+    public PersistenceQueue() {
+        executor = new ThreadPoolExecutor(1, 1, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), runnable -> {
+                Thread thread = new Thread(runnable, "PersistenceQueue");
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+    }
+    
+    /**
+     * 非同步保存測試結果
+     * @param storeProvider 在寫入執行緒上取得儲存庫，首次開啟的掃描也因此不在呼叫端執行
+     * @param callback 在寫入執行緒上回調，可為 null
+     */
+    public Future<TestResult> saveTestResult(final Callable<RunStore> storeProvider, final TestResult result,
+                                             final Callback callback) {
+        FutureTask<TestResult> task = new FutureTask<>(new Callable<TestResult>() {
+            @Override
+            public TestResult call() throws Exception {
+                try {
+                    RunStore store = storeProvider.call();
+                    store.insert(result, false);
+                    synchronized (lock) {
+                        dirtyStores.add(store);
+                    }
+                    if (callback != null) {
+                        callback.onSaved(result);
+                    }
+                    return result;
+                } catch (Exception e) {
+                    if (callback != null) {
+                        callback.onFailed(result, e);
+                    }
+                    throw e;
+                }
+            }
+        });
+        enqueue(task);
+        return task;
+    }
+    
+    /**
+     * 非同步關閉取樣日誌（包含最後一次刷新）
+     */
+    public Future<Void> closeSampleLog(final SampleLog log, final boolean completed) {
+        FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                synchronized (lock) {
+                    pendingFlushes.remove(log);
+                }
+                log.close(completed);
+                return null;
+            }
+        });
+        enqueue(task);
+        return task;
+    }
+    
+    /**
+     * 非同步關閉探針日誌（寫入剩餘記錄並寫回儲存裝置）
+     * 探針必須已經停止寫入
+     */
+    public Future<Void> closeProbeLog(final ProbeLog log) {
+        FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                log.close();
+                return null;
+            }
+        });
+        enqueue(task);
+        return task;
+    }
+    
+    /**
+     * 非同步寫入多解析度功率摘要的快取檔
+     * 取樣必須已經停止寫入
+     */
+    public Future<Void> savePowerPyramid(final PowerPyramid pyramid, final File file) {
+        FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                pyramid.writeTo(file);
+                return null;
+            }
+        });
+        enqueue(task);
+        return task;
+    }
+    
+    /**
+     * 非同步清除測試歷史與 runsDir 下各測試的目錄（取樣日誌、探針日誌、功率摘要）
+     * 在寫入佇列上執行，排在之前提交的保存與關閉之後
+     * @param keepRunId 進行中的測試 ID，其目錄保留，沒有時傳入 SampleLogRecovery.NO_RUN
+     * @param callback 在寫入執行緒上回調，可為 null
+     * @return 刪除的測試目錄數
+     */
+    public Future<Integer> clearHistory(final Callable<RunStore> storeProvider, final File runsDir,
+                                        final long keepRunId, final ClearCallback callback) {
+        FutureTask<Integer> task = new FutureTask<>(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                try {
+                    storeProvider.call().clear();
+                    int deleted = deleteRunDirectories(runsDir, keepRunId);
+                    if (callback != null) {
+                        callback.onCleared(deleted);
+                    }
+                    return deleted;
+                } catch (Exception e) {
+                    if (callback != null) {
+                        callback.onFailed(e);
+                    }
+                    throw e;
+                }
+            }
+        });
+        enqueue(task);
+        return task;
+    }
+    
+    private static int deleteRunDirectories(File runsDir, long keepRunId) {
+        File[] runDirs = runsDir.listFiles();
+        if (runDirs == null) {
+            return 0;
+        }
+        
+        String keepName = keepRunId != SampleLogRecovery.NO_RUN ? String.valueOf(keepRunId) : null;
+        int deleted = 0;
+        for (File runDir : runDirs) {
+            if (!runDir.isDirectory() || runDir.getName().equals(keepName)) {
+                continue;
+            }
+            if (deleteRecursively(runDir)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+    
+    private static boolean deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        return file.delete();
+    }
+    
+    /**
+     * 要求將取樣日誌寫回儲存裝置，尚未處理的重複請求會被合併
+     * 由取樣執行緒在群組提交時呼叫
+     */
+    @Override
+    public void requestFlush(SampleLog log) {
+        synchronized (lock) {
+            if (pendingFlushes.add(log)) {
+                scheduleDrainLocked();
+            }
+        }
+    }
+    
+    /**
+     * 持久屏障：等待之前提交的所有操作完成並寫入儲存裝置
+     * @return 在逾時前完成時回傳 true
+     */
+    public boolean awaitDurable(long timeoutMs) {
+        CountDownLatch latch = new CountDownLatch(1);
+        synchronized (lock) {
+            pendingBarriers.add(latch);
+            scheduleDrainLocked();
+        }
+        
+        try {
+            return latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    private void enqueue(FutureTask<?> task) {
+        synchronized (lock) {
+            pendingTasks.add(task);
+            scheduleDrainLocked();
+        }
+    }
+    
+    private void scheduleDrainLocked() {
+        if (!isDrainScheduled) {
+            isDrainScheduled = true;
+            executor.execute(this::drain);
+        }
+    }
+    
+    /**
+     * 處理目前累積的所有操作，最後統一刷新日誌與同步記錄檔
+     * 屏障在同批次的同步之後才釋放，確保 awaitDurable() 返回時資料已落盤
+     */
+    private void drain() {
+        List<FutureTask<?>> tasks;
+        List<CountDownLatch> barriers;
+        synchronized (lock) {
+            isDrainScheduled = false;
+            tasks = new ArrayList<>(pendingTasks);
+            pendingTasks.clear();
+            barriers = new ArrayList<>(pendingBarriers);
+            pendingBarriers.clear();
+        }
+        
+        for (FutureTask<?> task : tasks) {
+            task.run();
+        }
+        
+        List<SampleLog> logs;
+        List<RunStore> stores;
+        synchronized (lock) {
+            logs = new ArrayList<>(pendingFlushes);
+            pendingFlushes.clear();
+            stores = new ArrayList<>(dirtyStores);
+            dirtyStores.clear();
+        }
+        
+        for (SampleLog log : logs) {
+            log.forceToDisk();
+        }
+        for (RunStore store : stores) {
+            try {
+                store.sync();
+            } catch (IOException e) {
+                // 下次寫入時會再次同步
+            }
+        }
+        
+        for (CountDownLatch barrier : barriers) {
+            barrier.countDown();
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.analysis.Lttb;
+import com.batterymonitor.app.analysis.PowerEnvelope;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 多解析度的功率摘要
+ * 依 1 秒、10 秒、1 分鐘、10 分鐘分層，每層每個區間保存功率的最小、最大、平均值與取樣數；
+ * 記錄時每筆取樣只更新各層的一個區間 (O(1))，之後任何縮放程度的圖表或導出都只需讀取
+ * 與像素數同量級的區間，不必走訪全部取樣。
+ * 區間以第一筆取樣的時間為原點，依索引密集存放，沒有取樣的區間數量為 0。
+ * 只能由單一執行緒寫入；寫入完成並交給其他執行緒後可同時讀取。
+ */
+public final class PowerPyramid {
+    
+    public static final String FILE_NAME = "power.pyr";
+    
+    public static final int LEVEL_COUNT = 4;
+    
+    private static final long[] LEVEL_PERIODS_NANOS = {
+        1_000_000_000L,
+        10_000_000_000L,
+        60_000_000_000L,
+        600_000_000_000L
+    };
+    
+    // LTTB 的輸入點數上限為輸出點數的倍數，超過時改用較粗的層
+    static final int LTTB_OVERSAMPLING = 4;
+    
+    private static final int MAGIC = 0x50505952;   // "PPYR"
+    private static final int VERSION = 1;
+    private static final int INITIAL_CAPACITY = 64;
+    
+    // 超過 7 天的時間戳視為損壞，避免配置過大的陣列
+    private static final long MAX_SPAN_NANOS = 7 * 24 * 60 * 60 * 1_000_000_000L;
+    
+    /**
+     * 單一解析度的區間序列
+     */
+    private static final class Level {
+        
+        final long periodNanos;
+        int size;
+        int[] counts;
+        float[] minima;
+        float[] maxima;
+        float[] means;
+        
+        Level(long periodNanos, int capacity) {
+            this.periodNanos = periodNanos;
+            counts = new int[capacity];
+            minima = new float[capacity];
+            maxima = new float[capacity];
+            means = new float[capacity];
+        }
+        
+        void add(int bucket, float milliwatts) {
+            if (bucket >= counts.length) {
+                int capacity = Math.max(bucket + 1, counts.length * 2);
+                counts = Arrays.copyOf(counts, capacity);
+                minima = Arrays.copyOf(minima, capacity);
+                maxima = Arrays.copyOf(maxima, capacity);
+                means = Arrays.copyOf(means, capacity);
+            }
+            if (bucket >= size) {
+                size = bucket + 1;
+            }
+            
+            int count = counts[bucket] + 1;
+            counts[bucket] = count;
+            if (count == 1) {
+                minima[bucket] = milliwatts;
+                maxima[bucket] = milliwatts;
+                means[bucket] = milliwatts;
+                return;
+            }
+            if (milliwatts < minima[bucket]) {
+                minima[bucket] = milliwatts;
+            }
+            if (milliwatts > maxima[bucket]) {
+                maxima[bucket] = milliwatts;
+            }
+            means[bucket] += (milliwatts - means[bucket]) / count;
+        }
+    }
+    
+    private final Level[] levels = new Level[LEVEL_COUNT];
+    private long originNanos;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long sampleCount;
+    
+    public PowerPyramid() {
+        for (int i = 0; i < LEVEL_COUNT; i++) {
+            levels[i] = new Level(LEVEL_PERIODS_NANOS[i], INITIAL_CAPACITY);
+        }
+    }
+    
+    /**
+     * 掃描取樣日誌建立摘要，用於沒有快取的測試（例如由崩潰恢復匯入）
+     * 逐區塊讀取，不保留原始取樣
+     */
+    public static PowerPyramid fromSampleLog(File logFile) throws IOException {
+        PowerPyramid pyramid = new PowerPyramid();
+        SampleLog.Reader reader = SampleLog.openReader(logFile);
+        try {
+            while (reader.next()) {
+                pyramid.add(reader.getTimestamp(), reader.getCurrent(), reader.getVoltage());
+            }
+        } finally {
+            reader.close();
+        }
+        return pyramid;
+    }
+    
+    /**
+     * 第 level 層每個區間的時間長度
+     */
+    public static long getLevelPeriod(int level) {
+        return LEVEL_PERIODS_NANOS[level];
+    }
+    
+    /**
+     * 加入一筆電池取樣，沒有電流或電壓的取樣略過
+     * @param currentMicroAmps 電流 (µA)，正值表示流入電池
+     */
+    public void add(long timestampNanos, int currentMicroAmps, int voltageMillivolts) {
+        if (currentMicroAmps == Integer.MIN_VALUE || voltageMillivolts <= 0) {
+            return;
+        }
+        addPower(timestampNanos, (float) (-(double) currentMicroAmps * voltageMillivolts / 1e6));
+    }
+    
+    /**
+     * 加入一筆功率值 (mW，放電為正)
+     */
+    public void addPower(long timestampNanos, float milliwatts) {
+        if (sampleCount == 0) {
+            originNanos = timestampNanos;
+            firstTimestamp = timestampNanos;
+        }
+        long offset = timestampNanos - originNanos;
+        if (offset < 0 || offset > MAX_SPAN_NANOS) {
+            return;
+        }
+        for (Level level : levels) {
+            level.add((int) (offset / level.periodNanos), milliwatts);
+        }
+        if (timestampNanos > lastTimestamp || sampleCount == 0) {
+            lastTimestamp = timestampNanos;
+        }
+        sampleCount++;
+    }
+    
+    public boolean isEmpty() {
+        return sampleCount == 0;
+    }
+    
+    public long getSampleCount() {
+        return sampleCount;
+    }
+    
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+    
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+    
+    /**
+     * 第 level 層的區間數（含沒有取樣的區間）
+     */
+    public int getBucketCount(int level) {
+        return levels[level].size;
+    }
+    
+    public long getBucketStart(int level, int bucket) {
+        return originNanos + bucket * levels[level].periodNanos;
+    }
+    
+    public int getCount(int level, int bucket) {
+        return levels[level].counts[bucket];
+    }
+    
+    public float getMin(int level, int bucket) {
+        return levels[level].minima[bucket];
+    }
+    
+    public float getMax(int level, int bucket) {
+        return levels[level].maxima[bucket];
+    }
+    
+    public float getMean(int level, int bucket) {
+        return levels[level].means[bucket];
+    }
+    
+    /**
+     * 選擇能填滿 bucketCount 個輸出區間的最粗層（每層區間不長於一個輸出區間）
+     * @return 層索引，視窗太短、連 1 秒層都比一個輸出區間粗時回傳 -1，應改用原始取樣
+     */
+    public int levelFor(long fromNanos, long toNanos, int bucketCount) {
+        long spanPerBucket = (toNanos - fromNanos) / Math.max(1, bucketCount);
+        for (int i = LEVEL_COUNT - 1; i >= 0; i--) {
+            if (LEVEL_PERIODS_NANOS[i] <= spanPerBucket) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * 以最適合的層抽取 [fromNanos, toNanos] 的最小/最大值包絡，視窗太短時使用最細的 1 秒層
+     * 讀取的區間數最多約為 bucketCount 的 10 倍，與取樣數無關
+     */
+    public void decimate(long fromNanos, long toNanos, int bucketCount, PowerEnvelope out) {
+        decimate(Math.max(0, levelFor(fromNanos, toNanos, bucketCount)), fromNanos, toNanos, bucketCount, out);
+    }
+    
+    /**
+     * 以指定的層抽取包絡，部分落在視窗內的區間歸入最近的邊緣
+     */
+    public void decimate(int levelIndex, long fromNanos, long toNanos, int bucketCount, PowerEnvelope out) {
+        out.begin(fromNanos, toNanos, bucketCount);
+        Level level = levels[levelIndex];
+        int first = firstBucket(level, fromNanos);
+        int last = lastBucket(level, toNanos);
+        for (int i = first; i <= last; i++) {
+            int count = level.counts[i];
+            if (count > 0) {
+                long center = originNanos + i * level.periodNanos + level.periodNanos / 2;
+                long timestamp = Math.max(fromNanos, Math.min(toNanos, center));
+                out.addRange(timestamp, level.minima[i], level.maxima[i], count);
+            }
+        }
+    }
+    
+    /**
+     * 選擇 [fromNanos, toNanos] 內區間數不超過 maxPoints 的最細層
+     * @return 層索引，所有層都超過時回傳最粗層
+     */
+    public int levelForPoints(long fromNanos, long toNanos, int maxPoints) {
+        long span = toNanos - fromNanos;
+        for (int i = 0; i < LEVEL_COUNT; i++) {
+            if (span / LEVEL_PERIODS_NANOS[i] <= maxPoints) {
+                return i;
+            }
+        }
+        return LEVEL_COUNT - 1;
+    }
+    
+    /**
+     * 把指定層在視窗內各區間的平均功率（以區間中心為時間）加入 LTTB 輸入
+     */
+    public void collectMeans(int levelIndex, long fromNanos, long toNanos, Lttb out) {
+        Level level = levels[levelIndex];
+        int first = firstBucket(level, fromNanos);
+        int last = lastBucket(level, toNanos);
+        for (int i = first; i <= last; i++) {
+            if (level.counts[i] > 0) {
+                out.add(originNanos + i * level.periodNanos + level.periodNanos / 2, level.means[i]);
+            }
+        }
+    }
+    
+    /**
+     * 以 LTTB 把視窗內各區間的平均功率降為最多 pointCount 個點的折線
+     * 使用區間數不超過 pointCount 數倍的最細層，成本與點數同量級
+     * @param lttb 呼叫端的暫存，每個執行緒一個
+     * @return 輸出的點數
+     */
+    public int downsample(long fromNanos, long toNanos, int pointCount, Lttb lttb,
+                          long[] outTimestamps, float[] outPowers) {
+        lttb.clear();
+        int level = levelForPoints(fromNanos, toNanos, pointCount * LTTB_OVERSAMPLING);
+        collectMeans(level, fromNanos, toNanos, lttb);
+        return lttb.downsample(pointCount, outTimestamps, outPowers);
+    }
+    
+    private int firstBucket(Level level, long fromNanos) {
+        return (int) Math.max(0, (fromNanos - originNanos) / level.periodNanos);
+    }
+    
+    private int lastBucket(Level level, long toNanos) {
+        if (toNanos < originNanos) {
+            return -1;
+        }
+        return (int) Math.min(level.size - 1, (toNanos - originNanos) / level.periodNanos);
+    }
+    
+    /**
+     * 寫入快取檔，先寫暫存檔再改名，中斷時不會留下不完整的檔案
+     */
+    public void writeTo(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(temp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(originNanos);
+            out.writeLong(firstTimestamp);
+            out.writeLong(lastTimestamp);
+            out.writeLong(sampleCount);
+            out.writeInt(LEVEL_COUNT);
+            for (Level level : levels) {
+                out.writeLong(level.periodNanos);
+                out.writeInt(level.size);
+                for (int i = 0; i < level.size; i++) {
+                    out.writeInt(level.counts[i]);
+                    out.writeFloat(level.minima[i]);
+                    out.writeFloat(level.maxima[i]);
+                    out.writeFloat(level.means[i]);
+                }
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot rename " + temp + " to " + file);
+        }
+    }
+    
+    /**
+     * 讀取快取檔
+     * @throws IOException 檔案不存在、格式不符或已損壞
+     */
+    public static PowerPyramid readFrom(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a power pyramid: " + file);
+            }
+            PowerPyramid pyramid = new PowerPyramid();
+            pyramid.originNanos = in.readLong();
+            pyramid.firstTimestamp = in.readLong();
+            pyramid.lastTimestamp = in.readLong();
+            pyramid.sampleCount = in.readLong();
+            if (in.readInt() != LEVEL_COUNT) {
+                throw new IOException("Unexpected level count in " + file);
+            }
+            for (int i = 0; i < LEVEL_COUNT; i++) {
+                long periodNanos = in.readLong();
+                int size = in.readInt();
+                if (periodNanos != LEVEL_PERIODS_NANOS[i] || size < 0 || size > MAX_SPAN_NANOS / periodNanos + 1) {
+                    throw new IOException("Corrupt level " + i + " in " + file);
+                }
+                Level level = new Level(periodNanos, Math.max(1, size));
+                level.size = size;
+                for (int j = 0; j < size; j++) {
+                    level.counts[j] = in.readInt();
+                    level.minima[j] = in.readFloat();
+                    level.maxima[j] = in.readFloat();
+                    level.means[j] = in.readFloat();
+                }
+                pyramid.levels[i] = level;
+            }
+            return pyramid;
+        } finally {
+            in.close();
+        }
+    }
+}
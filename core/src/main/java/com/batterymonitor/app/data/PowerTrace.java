@@ -0,0 +1,176 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.analysis.Lttb;
+import com.batterymonitor.app.analysis.PowerEnvelope;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 一次測試完整解析度的功率序列
+ * 由取樣日誌讀入平行的基本型別陣列（時間戳與功率），同時建立多解析度摘要 (PowerPyramid)；
+ * 抽取時視窗夠長就改讀摘要，只有像素比 1 秒還細時才走訪原始取樣，成本與像素數同量級。
+ * 讀取後不再改變，可在任何執行緒上讀取。
+ */
+public final class PowerTrace {
+    
+    private static final int INITIAL_CAPACITY = 4096;
+    
+    private final long[] timestamps;    // elapsedRealtimeNanos，單調遞增
+    private final float[] powers;       // mW，放電為正
+    private final int size;
+    private final PowerPyramid pyramid;
+    
+    private PowerTrace(long[] timestamps, float[] powers, int size, PowerPyramid pyramid) {
+        this.timestamps = timestamps;
+        this.powers = powers;
+        this.size = size;
+        this.pyramid = pyramid;
+    }
+    
+    /**
+     * 讀取取樣日誌，略過沒有電流或電壓的取樣
+     * 應在背景執行緒呼叫
+     */
+    public static PowerTrace load(File logFile) throws IOException {
+        return read(logFile, Long.MIN_VALUE, Long.MAX_VALUE, null);
+    }
+    
+    /**
+     * 只讀取 [fromNanos, toNanos] 內的取樣，供已有摘要快取時放大到 1 秒以下使用
+     * 以區塊時間戳跳到視窗起點，讀過視窗結尾即停止；比 1 秒粗的視窗仍由傳入的摘要抽取
+     * 應在背景執行緒呼叫
+     */
+    public static PowerTrace loadRange(File logFile, long fromNanos, long toNanos, PowerPyramid pyramid)
+            throws IOException {
+        return read(logFile, fromNanos, toNanos, pyramid);
+    }
+    
+    // pyramid 為 null 時邊讀邊建立摘要
+    private static PowerTrace read(File logFile, long fromNanos, long toNanos, PowerPyramid pyramid)
+            throws IOException {
+        long[] timestamps = new long[INITIAL_CAPACITY];
+        float[] powers = new float[INITIAL_CAPACITY];
+        int size = 0;
+        long lastTimestamp = Long.MIN_VALUE;
+        PowerPyramid building = pyramid == null ? new PowerPyramid() : null;
+        
+        SampleLog.Reader reader = SampleLog.openReader(logFile);
+        try {
+            if (fromNanos != Long.MIN_VALUE) {
+                reader.seekToTimestamp(fromNanos);
+            }
+            while (reader.next()) {
+                int current = reader.getCurrent();
+                int voltage = reader.getVoltage();
+                long timestamp = reader.getTimestamp();
+                if (timestamp > toNanos) {
+                    break;
+                }
+                if (current == Integer.MIN_VALUE || voltage <= 0 || timestamp <= lastTimestamp
+                        || timestamp < fromNanos) {
+                    continue;
+                }
+                if (size == timestamps.length) {
+                    timestamps = Arrays.copyOf(timestamps, size * 2);
+                    powers = Arrays.copyOf(powers, size * 2);
+                }
+                timestamps[size] = timestamp;
+                powers[size] = (float) (-(double) current * voltage / 1e6);
+                if (building != null) {
+                    building.addPower(timestamp, powers[size]);
+                }
+                lastTimestamp = timestamp;
+                size++;
+            }
+        } finally {
+            reader.close();
+        }
+        return new PowerTrace(timestamps, powers, size, building != null ? building : pyramid);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public long getFirstTimestamp() {
+        return size > 0 ? timestamps[0] : 0;
+    }
+    
+    public long getLastTimestamp() {
+        return size > 0 ? timestamps[size - 1] : 0;
+    }
+    
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+    
+    public float getPower(int index) {
+        return powers[index];
+    }
+    
+    /**
+     * 讀取時建立的多解析度摘要，可寫入快取供之後直接使用
+     */
+    public PowerPyramid getPyramid() {
+        return pyramid;
+    }
+    
+    /**
+     * 把 [fromNanos, toNanos] 視窗內的取樣抽取為 bucketCount 個區間的最小/最大值包絡
+     * 每個輸出區間至少涵蓋 1 秒時讀取摘要，否則只走訪視窗內的原始取樣（二分搜尋起點）
+     */
+    public void decimate(long fromNanos, long toNanos, int bucketCount, PowerEnvelope out) {
+        int level = pyramid.levelFor(fromNanos, toNanos, bucketCount);
+        if (level >= 0) {
+            pyramid.decimate(level, fromNanos, toNanos, bucketCount, out);
+            return;
+        }
+        out.begin(fromNanos, toNanos, bucketCount);
+        for (int i = lowerBound(fromNanos); i < size && timestamps[i] <= toNanos; i++) {
+            out.addPower(timestamps[i], powers[i]);
+        }
+    }
+    
+    /**
+     * 以 LTTB 把視窗內的功率降為最多 pointCount 個點的折線
+     * 視窗內的原始取樣不多，或最細的 1 秒層也湊不滿 pointCount 個點時使用原始取樣，
+     * 否則使用區間數不超過 pointCount 數倍的摘要層平均值
+     * @param lttb 呼叫端的暫存，每個執行緒一個
+     * @return 輸出的點數
+     */
+    public int downsample(long fromNanos, long toNanos, int pointCount, Lttb lttb,
+                          long[] outTimestamps, float[] outPowers) {
+        int first = lowerBound(fromNanos);
+        int end = lowerBound(toNanos + 1);
+        long finestBuckets = (toNanos - fromNanos) / PowerPyramid.getLevelPeriod(0);
+        if (end - first > pointCount * PowerPyramid.LTTB_OVERSAMPLING && finestBuckets >= pointCount) {
+            return pyramid.downsample(fromNanos, toNanos, pointCount, lttb, outTimestamps, outPowers);
+        }
+        lttb.clear();
+        for (int i = first; i < end; i++) {
+            lttb.add(timestamps[i], powers[i]);
+        }
+        return lttb.downsample(pointCount, outTimestamps, outPowers);
+    }
+    
+    // 第一筆時間戳不小於 timestamp 的位置
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
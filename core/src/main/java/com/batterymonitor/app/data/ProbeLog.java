@@ -0,0 +1,330 @@
+package com.batterymonitor.app.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * 單次測試的探針日誌（僅追加），與 samples.log 放在同一個測試目錄
+ *
+ * 檔案格式：
+ * - 檔頭：魔術數、版本、測試 ID、通道數、各通道名稱（長度 + UTF-8），附 CRC32C
+ * - 之後為變長的區段，每個區段 12 位元組區段頭（魔術數、記錄數、CRC32C）
+ *   加上最多 RECORDS_PER_CHUNK 筆 20 位元組記錄（時間戳、通道編號、數值）
+ *
+ * 記錄先累積在緩衝區，滿一個區段或超過 flushInterval 時才寫入檔案；
+ * 程序被強制終止時已寫入的區段仍由核心保留，最後一個未寫入的區段會遺失。
+ * 讀取時只接受 CRC 正確的區段。
+ */
+public final class ProbeLog implements Closeable {
+    
+    public static final String FILE_NAME = "probes.log";
+    
+    static final int MAGIC = 0x424D504C;          // "BMPL"
+    static final int VERSION = 1;
+    static final int CHUNK_MAGIC = 0x50434B31;    // "PCK1"
+    
+    public static final int RECORD_SIZE = 20;
+    public static final int RECORDS_PER_CHUNK = 256;
+    static final int CHUNK_HEADER_SIZE = 12;
+    static final int MAX_CHUNK_SIZE = CHUNK_HEADER_SIZE + RECORDS_PER_CHUNK * RECORD_SIZE;
+    private static final int MAX_CHANNELS = 1024;
+    private static final int MAX_NAME_BYTES = 256;
+    
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final int channelCount;
+    private final long flushIntervalNanos;
+    private final ByteBuffer chunk = ByteBuffer.allocateDirect(MAX_CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private int chunkRecordCount = 0;
+    private long position;
+    private long recordCount = 0;
+    private long lastFlushNanos;
+    private boolean isClosed = false;
+    
+    private ProbeLog(File file, RandomAccessFile randomAccessFile, int channelCount, long position,
+                     long flushIntervalMs, long startElapsedNanos) {
+        this.file = file;
+        this.randomAccessFile = randomAccessFile;
+        this.channel = randomAccessFile.getChannel();
+        this.channelCount = channelCount;
+        this.position = position;
+        this.flushIntervalNanos = flushIntervalMs * 1_000_000L;
+        this.lastFlushNanos = startElapsedNanos;
+        chunk.position(CHUNK_HEADER_SIZE);
+    }
+    
+    /**
+     * 在 runDir 下建立新的探針日誌
+     * @param channelNames 全域通道名稱，索引即為 append() 使用的通道編號
+     */
+    public static ProbeLog create(File runDir, long runId, String[] channelNames, long startElapsedNanos,
+                                  long flushIntervalMs) throws IOException {
+        if (channelNames.length > MAX_CHANNELS) {
+            throw new IOException("Too many probe channels: " + channelNames.length);
+        }
+        if (!runDir.isDirectory() && !runDir.mkdirs()) {
+            throw new IOException("Cannot create run directory: " + runDir);
+        }
+        
+        byte[][] names = new byte[channelNames.length][];
+        int headerSize = 20 + 4;
+        for (int i = 0; i < channelNames.length; i++) {
+            byte[] encoded = channelNames[i].getBytes(UTF_8);
+            if (encoded.length > MAX_NAME_BYTES) {
+                throw new IOException("Probe channel name too long: " + channelNames[i]);
+            }
+            names[i] = encoded;
+            headerSize += 2 + encoded.length;
+        }
+        
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(runId).putInt(channelNames.length);
+        for (byte[] name : names) {
+            header.putShort((short) name.length);
+            header.put(name);
+        }
+        header.putInt(Crc32c.compute(header, 0, headerSize - 4));
+        header.flip();
+        
+        File file = new File(runDir, FILE_NAME);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            FileChannel fileChannel = raf.getChannel();
+            while (header.hasRemaining()) {
+                fileChannel.write(header, header.position());
+            }
+            return new ProbeLog(file, raf, channelNames.length, headerSize, flushIntervalMs, startElapsedNanos);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    public long getRecordCount() {
+        return recordCount;
+    }
+    
+    /**
+     * 追加一筆探針數值，達到區段大小或刷新間隔時寫入檔案
+     * 只能由單一執行緒呼叫
+     */
+    public void append(int channelIndex, long timestampNanos, long value) throws IOException {
+        if (isClosed || channelIndex < 0 || channelIndex >= channelCount) {
+            return;
+        }
+        
+        chunk.putLong(timestampNanos);
+        chunk.putInt(channelIndex);
+        chunk.putLong(value);
+        chunkRecordCount++;
+        recordCount++;
+        
+        if (chunkRecordCount == RECORDS_PER_CHUNK || timestampNanos - lastFlushNanos >= flushIntervalNanos) {
+            lastFlushNanos = timestampNanos;
+            writeChunk();
+        }
+    }
+    
+    /**
+     * 將緩衝中的記錄寫成一個區段
+     */
+    private void writeChunk() throws IOException {
+        if (chunkRecordCount == 0) {
+            return;
+        }
+        
+        int length = CHUNK_HEADER_SIZE + chunkRecordCount * RECORD_SIZE;
+        chunk.putInt(0, CHUNK_MAGIC);
+        chunk.putInt(4, chunkRecordCount);
+        chunk.putInt(8, Crc32c.compute(chunk, CHUNK_HEADER_SIZE, chunkRecordCount * RECORD_SIZE));
+        chunk.position(0);
+        chunk.limit(length);
+        while (chunk.hasRemaining()) {
+            position += channel.write(chunk, position);
+        }
+        
+        chunk.clear();
+        chunk.position(CHUNK_HEADER_SIZE);
+        chunkRecordCount = 0;
+    }
+    
+    /**
+     * 寫入剩餘記錄並寫回儲存裝置，之後的 append() 會被忽略
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        
+        try {
+            writeChunk();
+            channel.force(false);
+        } finally {
+            isClosed = true;
+            randomAccessFile.close();
+        }
+    }
+    
+    /**
+     * 開啟日誌讀取器
+     */
+    public static Reader openReader(File file) throws IOException {
+        return new Reader(file);
+    }
+    
+    /**
+     * 探針日誌讀取器，只回傳 CRC 驗證通過的區段中的記錄
+     */
+    public static final class Reader implements Closeable {
+        
+        private final RandomAccessFile randomAccessFile;
+        private final FileChannel channel;
+        private final ByteBuffer chunk = ByteBuffer.allocateDirect(MAX_CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final long runId;
+        private final String[] channelNames;
+        
+        private long position;
+        private int chunkRecordCount = 0;
+        private int recordIndex = 0;
+        private boolean isExhausted = false;
+        
+        private long timestamp;
+        private int channelIndex;
+        private long value;
+        
+        private Reader(File file) throws IOException {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            channel = randomAccessFile.getChannel();
+            
+            try {
+                long length = channel.size();
+                ByteBuffer prefix = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+                if (length < 24 || !readFully(prefix, 0)) {
+                    throw new IOException("Invalid probe log header: " + file);
+                }
+                int count = prefix.getInt(16);
+                if (prefix.getInt(0) != MAGIC || prefix.getInt(4) != VERSION || count < 0 || count > MAX_CHANNELS) {
+                    throw new IOException("Invalid probe log header: " + file);
+                }
+                
+                // 名稱長度未知，先讀取可能的最大檔頭
+                int maxHeader = (int) Math.min(length, 24 + (long) count * (2 + MAX_NAME_BYTES));
+                ByteBuffer header = ByteBuffer.allocate(maxHeader).order(ByteOrder.LITTLE_ENDIAN);
+                if (!readFully(header, 0)) {
+                    throw new IOException("Invalid probe log header: " + file);
+                }
+                header.position(20);
+                channelNames = new String[count];
+                for (int i = 0; i < count; i++) {
+                    int nameLength = header.getShort() & 0xFFFF;
+                    channelNames[i] = new String(header.array(), header.position(), nameLength, UTF_8);
+                    header.position(header.position() + nameLength);
+                }
+                int crcOffset = header.position();
+                if (header.getInt() != Crc32c.compute(header, 0, crcOffset)) {
+                    throw new IOException("Invalid probe log header: " + file);
+                }
+                
+                runId = prefix.getLong(8);
+                position = header.position();
+            } catch (IOException | RuntimeException e) {
+                randomAccessFile.close();
+                throw e instanceof IOException ? (IOException) e : new IOException("Invalid probe log: " + file, e);
+            }
+        }
+        
+        private boolean readFully(ByteBuffer buffer, long offset) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private boolean loadNextChunk() throws IOException {
+            chunk.clear();
+            chunk.limit(CHUNK_HEADER_SIZE);
+            if (!readFully(chunk, position) || chunk.getInt(0) != CHUNK_MAGIC) {
+                return false;
+            }
+            
+            int count = chunk.getInt(4);
+            if (count <= 0 || count > RECORDS_PER_CHUNK) {
+                return false;
+            }
+            chunk.limit(CHUNK_HEADER_SIZE + count * RECORD_SIZE);
+            if (!readFully(chunk, position)
+                    || chunk.getInt(8) != Crc32c.compute(chunk, CHUNK_HEADER_SIZE, count * RECORD_SIZE)) {
+                // 寫到一半的尾端
+                return false;
+            }
+            
+            position += chunk.limit();
+            chunkRecordCount = count;
+            recordIndex = 0;
+            return true;
+        }
+        
+        /**
+         * 移動到下一筆有效記錄
+         * @return 沒有更多有效記錄時回傳 false
+         */
+        public boolean next() throws IOException {
+            if (isExhausted) {
+                return false;
+            }
+            if (recordIndex >= chunkRecordCount && !loadNextChunk()) {
+                isExhausted = true;
+                return false;
+            }
+            
+            int offset = CHUNK_HEADER_SIZE + recordIndex * RECORD_SIZE;
+            timestamp = chunk.getLong(offset);
+            channelIndex = chunk.getInt(offset + 8);
+            value = chunk.getLong(offset + 12);
+            recordIndex++;
+            return true;
+        }
+        
+        public long getRunId() {
+            return runId;
+        }
+        
+        public String[] getChannelNames() {
+            return channelNames.clone();
+        }
+        
+        public long getTimestamp() {
+            return timestamp;
+        }
+        
+        public int getChannel() {
+            return channelIndex;
+        }
+        
+        public long getValue() {
+            return value;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            randomAccessFile.close();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.model.TestResult;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 測試記錄的累計統計
+ * 每保存一筆記錄即以 O(1) 更新整體與各測試主題的統計，消耗率的平均與變異數採用 Welford 演算法。
+ * 統計檔與記錄檔放在同一目錄，並記錄對應的記錄檔長度；長度不符時視為過期，由 RunStore 重新計算。
+ * 本類別本身不做同步，由 RunStore 在其鎖內存取。
+ */
+public final class RunStatistics {
+    
+    public static final String FILE_NAME = "stats.dat";
+    
+    private static final int MAGIC = 0x424D5354;   // "BMST"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 20;
+    private static final int SUMMARY_SIZE = 56;
+    private static final int MAX_SUBJECT_BYTES = 1024;
+    
+    /**
+     * 單一分組的統計結果
+     */
+    public static final class Summary {
+        int count;
+        long totalDuration;
+        long totalBatteryConsumed;
+        int rateCount;
+        double rateMean;
+        double rateM2;
+        double minRate = Double.NaN;
+        double maxRate = Double.NaN;
+        
+        Summary() {
+        }
+        
+        Summary(Summary other) {
+            count = other.count;
+            totalDuration = other.totalDuration;
+            totalBatteryConsumed = other.totalBatteryConsumed;
+            rateCount = other.rateCount;
+            rateMean = other.rateMean;
+            rateM2 = other.rateM2;
+            minRate = other.minRate;
+            maxRate = other.maxRate;
+        }
+        
+        void add(TestResult result) {
+            count++;
+            totalDuration += result.getActualDuration();
+            totalBatteryConsumed += result.getBatteryConsumed();
+            
+            // 時長為 0 的記錄沒有有效的消耗率
+            if (result.getActualDuration() <= 0) {
+                return;
+            }
+            double rate = result.getConsumptionRate();
+            rateCount++;
+            double delta = rate - rateMean;
+            rateMean += delta / rateCount;
+            rateM2 += delta * (rate - rateMean);
+            
+            if (rateCount == 1) {
+                minRate = rate;
+                maxRate = rate;
+            } else {
+                minRate = Math.min(minRate, rate);
+                maxRate = Math.max(maxRate, rate);
+            }
+        }
+        
+        public int getCount() {
+            return count;
+        }
+        
+        public long getTotalDuration() {
+            return totalDuration;
+        }
+        
+        public double getAverageBatteryConsumed() {
+            return count > 0 ? (double) totalBatteryConsumed / count : 0.0;
+        }
+        
+        /** 平均消耗率 (%/h) */
+        public double getAverageRate() {
+            return rateMean;
+        }
+        
+        /** 消耗率的樣本變異數 */
+        public double getRateVariance() {
+            return rateCount > 1 ? rateM2 / (rateCount - 1) : 0.0;
+        }
+        
+        public double getRateStandardDeviation() {
+            return Math.sqrt(getRateVariance());
+        }
+        
+        /** 最低消耗率，沒有資料時為 NaN */
+        public double getMinRate() {
+            return minRate;
+        }
+        
+        /** 最高消耗率，沒有資料時為 NaN */
+        public double getMaxRate() {
+            return maxRate;
+        }
+        
+        void write(ByteBuffer buffer) {
+            buffer.putInt(count);
+            buffer.putLong(totalDuration);
+            buffer.putLong(totalBatteryConsumed);
+            buffer.putInt(rateCount);
+            buffer.putDouble(rateMean);
+            buffer.putDouble(rateM2);
+            buffer.putDouble(minRate);
+            buffer.putDouble(maxRate);
+        }
+        
+        static Summary read(ByteBuffer buffer) {
+            Summary summary = new Summary();
+            summary.count = buffer.getInt();
+            summary.totalDuration = buffer.getLong();
+            summary.totalBatteryConsumed = buffer.getLong();
+            summary.rateCount = buffer.getInt();
+            summary.rateMean = buffer.getDouble();
+            summary.rateM2 = buffer.getDouble();
+            summary.minRate = buffer.getDouble();
+            summary.maxRate = buffer.getDouble();
+            return summary;
+        }
+    }
+    
+    private Summary overall = new Summary();
+    private final Map<String, Summary> bySubject = new HashMap<>();
+    private boolean isDirty = false;
+    
+    RunStatistics() {
+    }
+    
+    void add(TestResult result) {
+        overall.add(result);
+        
+        Summary summary = bySubject.get(result.getTestSubject());
+        if (summary == null) {
+            summary = new Summary();
+            bySubject.put(result.getTestSubject(), summary);
+        }
+        summary.add(result);
+        isDirty = true;
+    }
+    
+    void clear() {
+        overall = new Summary();
+        bySubject.clear();
+        isDirty = true;
+    }
+    
+    boolean isDirty() {
+        return isDirty;
+    }
+    
+    /** 整體統計的副本 */
+    Summary getOverall() {
+        return new Summary(overall);
+    }
+    
+    /** 指定測試主題統計的副本，沒有記錄時回傳空的統計 */
+    Summary getSummary(String subject) {
+        Summary summary = bySubject.get(subject);
+        return summary != null ? new Summary(summary) : new Summary();
+    }
+    
+    /**
+     * 讀取統計檔
+     * @param storeLength 目前記錄檔的有效長度
+     * @return 統計檔不存在、損壞或與記錄檔不一致時回傳 null
+     */
+    static RunStatistics load(File file, long storeLength) {
+        if (!file.isFile() || file.length() < FILE_HEADER_SIZE + SUMMARY_SIZE + 4) {
+            return null;
+        }
+        
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            if (length > Integer.MAX_VALUE) {
+                return null;
+            }
+            byte[] bytes = new byte[(int) length];
+            raf.readFully(bytes);
+            
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            int bodyLength = bytes.length - 4;
+            if (Crc32c.compute(buffer, 0, bodyLength) != buffer.getInt(bodyLength)) {
+                return null;
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != storeLength) {
+                return null;
+            }
+            
+            int subjectCount = buffer.getInt();
+            RunStatistics statistics = new RunStatistics();
+            statistics.overall = Summary.read(buffer);
+            for (int i = 0; i < subjectCount; i++) {
+                int subjectLength = buffer.getShort() & 0xFFFF;
+                String subject = new String(bytes, buffer.position(), subjectLength, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + subjectLength);
+                statistics.bySubject.put(subject, Summary.read(buffer));
+            }
+            return statistics;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 寫入統計檔，先寫入暫存檔再改名，避免留下寫到一半的檔案
+     * @param storeLength 統計所對應的記錄檔長度
+     */
+    void save(File file, long storeLength) throws IOException {
+        int size = FILE_HEADER_SIZE + SUMMARY_SIZE + 4;
+        Map<String, byte[]> subjects = new HashMap<>();
+        for (String subject : bySubject.keySet()) {
+            byte[] encoded = subject.getBytes(StandardCharsets.UTF_8);
+            if (encoded.length > MAX_SUBJECT_BYTES) {
+                throw new IOException("Subject too long for statistics file");
+            }
+            subjects.put(subject, encoded);
+            size += 2 + encoded.length + SUMMARY_SIZE;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(storeLength).putInt(bySubject.size());
+        overall.write(buffer);
+        for (Map.Entry<String, Summary> entry : bySubject.entrySet()) {
+            byte[] encoded = subjects.get(entry.getKey());
+            buffer.putShort((short) encoded.length);
+            buffer.put(encoded);
+            entry.getValue().write(buffer);
+        }
+        buffer.putInt(Crc32c.compute(buffer, 0, size - 4));
+        
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(buffer.array(), 0, size);
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Cannot replace statistics file: " + file);
+        }
+        isDirty = false;
+    }
+}
@@ -0,0 +1,455 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.model.TestResult;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 測試記錄儲存庫
+ * 以僅追加的記錄檔保存所有測試結果，開啟時掃描一次建立記憶體索引：
+ * - 依開始時間排序的全域索引
+ * - 依測試主題分組的索引
+ *
+ * 記錄格式：[int payload長度][int CRC32C][payload]，payload 由 TestResultCodec 編碼。
+ * 開啟時若尾端記錄不完整或 CRC 錯誤，會截斷到最後一筆有效記錄。
+ * 累計統計（RunStatistics）隨每次新增更新，並在同步時寫入同目錄的統計檔。
+ * 所有公開方法皆為同步方法，可跨執行緒共用同一個實例。
+ */
+public final class RunStore implements Closeable {
+    
+    public static final String FILE_NAME = "runs.dat";
+    
+    private static final int MAGIC = 0x424D5253;   // "BMRS"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD_SIZE = 64 * 1024;
+    
+    /**
+     * 依序走訪記錄的回調
+     */
+    public interface Visitor {
+        void visit(TestResult result) throws IOException;
+    }
+    
+    private final File file;
+    private final File statisticsFile;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final Crc32c crc = new Crc32c();
+    private final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer payloadBuffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+    
+    private final Index allRuns = new Index();
+    private final Map<String, Index> runsBySubject = new HashMap<>();
+    private long endOffset;
+    private long nextId = 1;
+    private RunStatistics statistics;
+    
+    private RunStore(File file, File statisticsFile) throws IOException {
+        this.file = file;
+        this.statisticsFile = statisticsFile;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = randomAccessFile.getChannel();
+        
+        try {
+            if (channel.size() < FILE_HEADER_SIZE) {
+                writeFileHeader();
+            } else {
+                verifyFileHeader();
+            }
+            loadIndex();
+        } catch (IOException | RuntimeException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * 開啟（或建立）dir 下的記錄檔
+     */
+    public static RunStore open(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create store directory: " + dir);
+        }
+        return new RunStore(new File(dir, FILE_NAME), new File(dir, RunStatistics.FILE_NAME));
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    private void writeFileHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(0);
+        header.flip();
+        channel.truncate(0);
+        writeFully(header, 0);
+        channel.force(true);
+        endOffset = FILE_HEADER_SIZE;
+    }
+    
+    private void verifyFileHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(header, 0) || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Invalid run store header: " + file);
+        }
+    }
+    
+    /**
+     * 掃描整個檔案建立索引，並截去損壞的尾端
+     * 統計檔與有效長度一致時直接沿用，否則在同一次掃描中重新累計
+     */
+    private void loadIndex() throws IOException {
+        long offset = FILE_HEADER_SIZE;
+        long size = channel.size();
+        
+        while (offset + RECORD_HEADER_SIZE <= size) {
+            TestResult result = readRecord(offset);
+            if (result == null) {
+                break;
+            }
+            addToIndex(result, offset);
+            offset += RECORD_HEADER_SIZE + recordHeader.getInt(0);
+        }
+        
+        if (offset < size) {
+            channel.truncate(offset);
+        }
+        endOffset = offset;
+        
+        statistics = RunStatistics.load(statisticsFile, endOffset);
+        if (statistics == null) {
+            rebuildStatistics();
+        }
+    }
+    
+    private void rebuildStatistics() throws IOException {
+        final RunStatistics rebuilt = new RunStatistics();
+        scan(rebuilt::add);
+        statistics = rebuilt;
+        saveStatistics();
+    }
+    
+    private void saveStatistics() {
+        try {
+            statistics.save(statisticsFile, endOffset);
+        } catch (IOException e) {
+            // 統計檔過期時下次開啟會重新計算
+        }
+    }
+    
+    /**
+     * 讀取 offset 處的記錄，格式或 CRC 錯誤時回傳 null
+     */
+    private TestResult readRecord(long offset) throws IOException {
+        if (!readFully(recordHeader, offset)) {
+            return null;
+        }
+        
+        int length = recordHeader.getInt(0);
+        if (length <= 0 || length > MAX_PAYLOAD_SIZE) {
+            return null;
+        }
+        
+        ByteBuffer payload = payloadBuffer(length);
+        if (!readFully(payload, offset + RECORD_HEADER_SIZE)) {
+            return null;
+        }
+        
+        crc.reset();
+        crc.update(payload, 0, length);
+        if (crc.getValue() != recordHeader.getInt(4)) {
+            return null;
+        }
+        
+        payload.position(0);
+        return TestResultCodec.decode(payload);
+    }
+    
+    private ByteBuffer payloadBuffer(int length) {
+        if (payloadBuffer.capacity() < length) {
+            payloadBuffer = ByteBuffer.allocate(Math.max(length, payloadBuffer.capacity() * 2))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        payloadBuffer.clear();
+        payloadBuffer.limit(length);
+        return payloadBuffer;
+    }
+    
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        buffer.position(0);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+    
+    private void addToIndex(TestResult result, long offset) {
+        allRuns.insert(result.getStartTime(), offset, result.getId());
+        
+        Index subjectIndex = runsBySubject.get(result.getTestSubject());
+        if (subjectIndex == null) {
+            subjectIndex = new Index();
+            runsBySubject.put(result.getTestSubject(), subjectIndex);
+        }
+        subjectIndex.insert(result.getStartTime(), offset, result.getId());
+        
+        nextId = Math.max(nextId, result.getId() + 1);
+    }
+    
+    /**
+     * 新增一筆測試結果並指定 ID
+     * 寫入位置固定在檔案尾端，依開始時間遞增保存時索引更新為 O(1)
+     */
+    public synchronized long insert(TestResult result, boolean sync) throws IOException {
+        long id = nextId;
+        result.setId(id);
+        
+        int maxSize = TestResultCodec.maxEncodedSize(result);
+        ByteBuffer payload = payloadBuffer(RECORD_HEADER_SIZE + maxSize);
+        payload.position(RECORD_HEADER_SIZE);
+        TestResultCodec.encode(result, payload);
+        int length = payload.position() - RECORD_HEADER_SIZE;
+        
+        crc.reset();
+        crc.update(payload, RECORD_HEADER_SIZE, length);
+        payload.putInt(0, length);
+        payload.putInt(4, crc.getValue());
+        payload.flip();
+        
+        long offset = endOffset;
+        writeFully(payload, offset);
+        if (sync) {
+            channel.force(false);
+        }
+        
+        endOffset = offset + RECORD_HEADER_SIZE + length;
+        addToIndex(result, offset);
+        statistics.add(result);
+        if (sync) {
+            saveStatistics();
+        }
+        return id;
+    }
+    
+    public synchronized long insert(TestResult result) throws IOException {
+        return insert(result, true);
+    }
+    
+    /**
+     * 沒有相同開始時間的記錄時才新增，檢查與寫入在同一個鎖內完成
+     * 多個執行緒匯入同一個測試時只會寫入一次
+     * @return 新增了記錄時回傳 true
+     */
+    public synchronized boolean insertIfAbsent(TestResult result, boolean sync) throws IOException {
+        if (containsStartTime(result.getStartTime())) {
+            return false;
+        }
+        insert(result, sync);
+        return true;
+    }
+    
+    /**
+     * 將已寫入的記錄同步到儲存裝置
+     */
+    public synchronized void sync() throws IOException {
+        channel.force(false);
+        if (statistics.isDirty()) {
+            saveStatistics();
+        }
+    }
+    
+    /**
+     * 分頁查詢，結果依開始時間由新到舊排列
+     * @param subject 測試主題，null 表示全部
+     * @param fromStartTime 開始時間下限（含）
+     * @param toStartTime 開始時間上限（不含）
+     * @param offset 略過的筆數
+     * @param limit 最多回傳的筆數
+     */
+    public synchronized List<TestResult> query(String subject, long fromStartTime, long toStartTime,
+                                               int offset, int limit) throws IOException {
+        Index index = subject == null ? allRuns : runsBySubject.get(subject);
+        if (index == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+        
+        int low = index.lowerBound(fromStartTime);
+        int high = index.lowerBound(toStartTime);
+        
+        List<TestResult> results = new ArrayList<>(Math.min(limit, Math.max(0, high - low)));
+        for (int i = high - 1 - offset; i >= low && results.size() < limit; i--) {
+            TestResult result = readRecord(index.offsets[i]);
+            if (result != null) {
+                results.add(result);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * 分頁查詢全部記錄，由新到舊
+     */
+    public List<TestResult> query(int offset, int limit) throws IOException {
+        return query(null, Long.MIN_VALUE, Long.MAX_VALUE, offset, limit);
+    }
+    
+    /**
+     * 依檔案順序（保存順序）走訪所有記錄，記憶體用量固定
+     */
+    public synchronized void scan(Visitor visitor) throws IOException {
+        long offset = FILE_HEADER_SIZE;
+        while (offset < endOffset) {
+            TestResult result = readRecord(offset);
+            if (result == null) {
+                break;
+            }
+            visitor.visit(result);
+            offset += RECORD_HEADER_SIZE + recordHeader.getInt(0);
+        }
+    }
+    
+    /**
+     * 是否已有相同開始時間的記錄（用於避免重複匯入）
+     */
+    public synchronized boolean containsStartTime(long startTime) {
+        int position = allRuns.lowerBound(startTime);
+        return position < allRuns.size && allRuns.startTimes[position] == startTime;
+    }
+    
+    public synchronized int size() {
+        return allRuns.size;
+    }
+    
+    public synchronized int count(String subject) {
+        Index index = runsBySubject.get(subject);
+        return index != null ? index.size : 0;
+    }
+    
+    /**
+     * 全部記錄的累計統計（副本）
+     */
+    public synchronized RunStatistics.Summary getStatistics() {
+        return statistics.getOverall();
+    }
+    
+    /**
+     * 指定測試主題的累計統計（副本）
+     */
+    public synchronized RunStatistics.Summary getStatistics(String subject) {
+        return statistics.getSummary(subject);
+    }
+    
+    public synchronized Set<String> getSubjects() {
+        return Collections.unmodifiableSet(new HashSet<>(runsBySubject.keySet()));
+    }
+    
+    /**
+     * 清除所有記錄
+     */
+    public synchronized void clear() throws IOException {
+        channel.truncate(FILE_HEADER_SIZE);
+        channel.force(true);
+        endOffset = FILE_HEADER_SIZE;
+        allRuns.clear();
+        runsBySubject.clear();
+        statistics.clear();
+        saveStatistics();
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        randomAccessFile.close();
+    }
+    
+    /**
+     * 依開始時間排序的索引（平行陣列）
+     * 依時間遞增插入時為附加操作；亂序插入（例如恢復較早的測試）才需要搬移
+     */
+    private static final class Index {
+        long[] startTimes = new long[16];
+        long[] offsets = new long[16];
+        long[] ids = new long[16];
+        int size = 0;
+        
+        void insert(long startTime, long offset, long id) {
+            if (size == startTimes.length) {
+                int capacity = size * 2;
+                startTimes = Arrays.copyOf(startTimes, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+            }
+            
+            int position = upperBound(startTime);
+            if (position < size) {
+                System.arraycopy(startTimes, position, startTimes, position + 1, size - position);
+                System.arraycopy(offsets, position, offsets, position + 1, size - position);
+                System.arraycopy(ids, position, ids, position + 1, size - position);
+            }
+            startTimes[position] = startTime;
+            offsets[position] = offset;
+            ids[position] = id;
+            size++;
+        }
+        
+        // 第一個開始時間 >= startTime 的位置
+        int lowerBound(long startTime) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (startTimes[mid] < startTime) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+        // 第一個開始時間 > startTime 的位置
+        int upperBound(long startTime) {
+            if (size == 0 || startTimes[size - 1] <= startTime) {
+                return size;
+            }
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (startTimes[mid] <= startTime) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.batterymonitor.app.data;
+
+/**
+ * 電池取樣環形緩衝區
+ * 以平行的基本型別陣列保存取樣數據，容量固定，寫滿後覆蓋最舊的取樣。
+ * append() 不配置任何物件；讀取透過可重複使用的 Cursor 以時間視窗進行。
+ *
+ * 執行緒模型：單一寫入者（取樣執行緒）、多個讀取者。
+ * 讀取者在讀完一筆後以寫入序號驗證該槽位未被覆蓋，被覆蓋的取樣會被跳過。
+ */
+public final class SampleBuffer {
+    
+    private final int capacity;
+    private final long[] timestamps;        // elapsedRealtimeNanos
+    private final int[] currents;           // µA，正值表示流入電池
+    private final int[] voltages;           // mV
+    private final int[] chargeCounters;     // µAh
+    private final byte[] levels;            // 電量百分比
+    
+    // 累計寫入的取樣數，同時作為發布屏障
+    private volatile long writeSequence = 0;
+    
+    public SampleBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+        }
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.currents = new int[capacity];
+        this.voltages = new int[capacity];
+        this.chargeCounters = new int[capacity];
+        this.levels = new byte[capacity];
+    }
+    
+    /**
+     * 寫入一筆取樣，緩衝區已滿時覆蓋最舊的取樣
+     * 只能由單一執行緒呼叫
+     */
+    public void append(long timestampNanos, int currentMicroAmps, int voltageMillivolts,
+                       int chargeCounterMicroAmpHours, int level) {
+        long sequence = writeSequence;
+        int index = (int) (sequence % capacity);
+        timestamps[index] = timestampNanos;
+        currents[index] = currentMicroAmps;
+        voltages[index] = voltageMillivolts;
+        chargeCounters[index] = chargeCounterMicroAmpHours;
+        levels[index] = (byte) level;
+        writeSequence = sequence + 1;
+    }
+    
+    /**
+     * 清空緩衝區，只能由寫入執行緒呼叫
+     */
+    public void clear() {
+        writeSequence = 0;
+    }
+    
+    public int capacity() {
+        return capacity;
+    }
+    
+    /**
+     * 目前可讀取的取樣數
+     */
+    public int size() {
+        return (int) Math.min(writeSequence, capacity);
+    }
+    
+    /**
+     * 累計寫入的取樣數（包含已被覆蓋的）
+     */
+    public long getWriteSequence() {
+        return writeSequence;
+    }
+    
+    /**
+     * 最舊的可安全讀取序號
+     * 保留一個槽位給可能正在寫入的取樣
+     */
+    private long oldestReadable(long sequence) {
+        return Math.max(0, sequence - capacity + 1);
+    }
+    
+    /**
+     * 建立讀取游標，游標本身可重複使用
+     */
+    public Cursor newCursor() {
+        return new Cursor();
+    }
+    
+    /**
+     * 時間視窗讀取游標
+     * 一個游標只能在單一執行緒上使用
+     */
+    public final class Cursor {
+        
+        private long position;
+        private long end;
+        private long toNanos = Long.MAX_VALUE;
+        
+        private long timestamp;
+        private int current;
+        private int voltage;
+        private int chargeCounter;
+        private int level;
+        
+        private Cursor() {
+        }
+        
+        /**
+         * 定位到 [fromNanos, toNanos] 時間視窗
+         */
+        public Cursor seek(long fromNanos, long toNanos) {
+            long sequence = writeSequence;
+            this.end = sequence;
+            this.toNanos = toNanos;
+            this.position = lowerBound(oldestReadable(sequence), sequence, fromNanos);
+            return this;
+        }
+        
+        /**
+         * 定位到最新的 count 筆取樣
+         */
+        public Cursor seekLast(int count) {
+            long sequence = writeSequence;
+            this.end = sequence;
+            this.toNanos = Long.MAX_VALUE;
+            this.position = Math.max(oldestReadable(sequence), sequence - count);
+            return this;
+        }
+        
+        /**
+         * 延伸視窗至目前最新寫入的取樣，用於即時追蹤
+         */
+        public Cursor refresh() {
+            this.end = writeSequence;
+            return this;
+        }
+        
+        /**
+         * 移動到下一筆取樣
+         * @return 視窗內沒有更多取樣時回傳 false
+         */
+        public boolean next() {
+            while (position < end) {
+                int index = (int) (position % capacity);
+                timestamp = timestamps[index];
+                current = currents[index];
+                voltage = voltages[index];
+                chargeCounter = chargeCounters[index];
+                level = levels[index];
+                
+                // 讀取期間槽位可能已被覆蓋，跳到最舊的有效位置重讀
+                long oldest = oldestReadable(writeSequence);
+                if (position < oldest) {
+                    position = oldest;
+                    continue;
+                }
+                
+                if (timestamp > toNanos) {
+                    position = end;
+                    return false;
+                }
+                
+                position++;
+                return true;
+            }
+            return false;
+        }
+        
+        /**
+         * 目前取樣的序號
+         */
+        public long getSequence() {
+            return position - 1;
+        }
+        
+        public long getTimestamp() {
+            return timestamp;
+        }
+        
+        public int getCurrent() {
+            return current;
+        }
+        
+        public int getVoltage() {
+            return voltage;
+        }
+        
+        public int getChargeCounter() {
+            return chargeCounter;
+        }
+        
+        public int getLevel() {
+            return level;
+        }
+        
+        // 二分搜尋第一筆時間戳不小於 fromNanos 的序號（時間戳單調遞增）
+        private long lowerBound(long low, long high, long fromNanos) {
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (timestamps[(int) (mid % capacity)] < fromNanos) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,648 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.utils.Utf8;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 單次測試的取樣日誌（僅追加、記憶體映射）
+ *
+ * 檔案格式：
+ * - 512 位元組檔頭：魔術數、版本、測試 ID、開始時間、計劃時長、測試主題等，附 CRC32C
+ * - 之後為固定大小的區塊，每個區塊 16 位元組區塊頭（魔術數、區塊序號、記錄數、CRC32C）
+ *   加上最多 RECORDS_PER_BLOCK 筆 40 位元組的固定格式記錄
+ *
+ * 寫入透過記憶體映射完成，程序被強制終止時已寫入的頁面仍由核心保留；
+ * 每隔 flushInterval 以群組提交方式更新區塊 CRC，並透過 FlushHandler 在其他執行緒 force() 到儲存裝置。
+ * 讀取時只接受 CRC 正確的區塊，因此未提交或寫到一半的尾端會被捨棄。
+ * 服務被終止後恢復同一個測試時，以 resume() 從第一個沒有區塊頭的位置繼續寫入。
+ */
+public final class SampleLog implements Closeable {
+    
+    public static final String RUNS_DIRECTORY = "runs";
+    public static final String FILE_NAME = "samples.log";
+    
+    public static final int FLAG_COMPLETED = 1;   // 測試正常結束
+    public static final int FLAG_RECOVERED = 2;   // 已由崩潰恢復流程匯入
+    
+    static final int MAGIC = 0x424D534C;          // "BMSL"
+    static final int VERSION = 1;
+    static final int BLOCK_MAGIC = 0x424C4B31;    // "BLK1"
+    
+    public static final int HEADER_SIZE = 512;
+    public static final int RECORD_SIZE = 40;
+    public static final int RECORDS_PER_BLOCK = 256;
+    static final int BLOCK_HEADER_SIZE = 16;
+    public static final int BLOCK_SIZE = BLOCK_HEADER_SIZE + RECORDS_PER_BLOCK * RECORD_SIZE;
+    static final int BLOCKS_PER_SEGMENT = 64;
+    static final int SEGMENT_SIZE = BLOCK_SIZE * BLOCKS_PER_SEGMENT;
+    
+    // 檔頭欄位偏移
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_RECORD_SIZE = 8;
+    private static final int H_BLOCK_RECORDS = 12;
+    private static final int H_RUN_ID = 16;
+    private static final int H_START_TIME = 24;
+    private static final int H_START_ELAPSED = 32;
+    private static final int H_PLANNED_DURATION = 40;
+    private static final int H_START_LEVEL = 48;
+    private static final int H_SUBJECT_LENGTH = 52;
+    private static final int H_SUBJECT = 56;
+    private static final int MAX_SUBJECT_BYTES = 400;
+    private static final int H_CRC = 500;         // 覆蓋 [0, H_CRC)
+    private static final int H_FLAGS = 504;       // 不在 CRC 範圍內，可於結束時更新
+    
+    // 記錄欄位偏移
+    private static final int R_TIMESTAMP = 0;     // elapsedRealtimeNanos
+    private static final int R_ENERGY = 8;        // nWh
+    private static final int R_CURRENT = 16;      // µA
+    private static final int R_CURRENT_AVERAGE = 20;
+    private static final int R_CHARGE = 24;       // µAh
+    private static final int R_VOLTAGE = 28;      // mV
+    private static final int R_LEVEL = 32;        // short
+    private static final int R_FLAGS = 34;        // short
+    private static final int R_PERIOD = 36;       // int，取樣週期 (ms)，0 表示未記錄
+    
+    // 區塊頭欄位偏移
+    private static final int B_MAGIC = 0;
+    private static final int B_SEQUENCE = 4;
+    private static final int B_COUNT = 8;
+    private static final int B_CRC = 12;
+    
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    
+    /**
+     * 群組提交時的刷新處理器，用於把 force() 移到其他執行緒
+     */
+    public interface FlushHandler {
+        void requestFlush(SampleLog log);
+    }
+    
+    // 本程序中仍在寫入的日誌，恢復流程會略過
+    private static final Set<String> OPEN_LOGS = Collections.synchronizedSet(new HashSet<String>());
+    
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final MappedByteBuffer headerBuffer;
+    private final long flushIntervalNanos;
+    private final Crc32c blockCrc = new Crc32c();
+    
+    private volatile MappedByteBuffer segment;
+    private final List<MappedByteBuffer> unforcedSegments = new ArrayList<>();
+    private volatile FlushHandler flushHandler;
+    private int blockIndex = 0;
+    private int blockRecordCount = 0;
+    private int checksummedRecords = 0;
+    private long recordCount = 0;
+    private long lastFlushNanos;
+    private volatile boolean isClosed = false;
+    
+    private SampleLog(File file, RandomAccessFile randomAccessFile, MappedByteBuffer headerBuffer,
+                      long flushIntervalMs, long startElapsedNanos, int blockIndex,
+                      long recordCount) throws IOException {
+        this.file = file;
+        this.randomAccessFile = randomAccessFile;
+        this.channel = randomAccessFile.getChannel();
+        this.headerBuffer = headerBuffer;
+        this.flushIntervalNanos = flushIntervalMs * 1_000_000L;
+        this.lastFlushNanos = startElapsedNanos;
+        this.blockIndex = blockIndex;
+        this.recordCount = recordCount;
+        this.segment = mapSegment(blockIndex / BLOCKS_PER_SEGMENT);
+        OPEN_LOGS.add(file.getAbsolutePath());
+    }
+    
+    /**
+     * 獲取指定測試的日誌目錄：runs/<runId>
+     */
+    public static File getRunDirectory(File filesDir, long runId) {
+        return new File(new File(filesDir, RUNS_DIRECTORY), String.valueOf(runId));
+    }
+    
+    /**
+     * 在 runDir 下建立新的取樣日誌
+     */
+    public static SampleLog create(File runDir, long runId, long startTime, long startElapsedNanos,
+                                   long plannedDuration, int startBatteryLevel, String testSubject,
+                                   long flushIntervalMs) throws IOException {
+        if (!runDir.isDirectory() && !runDir.mkdirs()) {
+            throw new IOException("Cannot create run directory: " + runDir);
+        }
+        
+        File file = new File(runDir, FILE_NAME);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            MappedByteBuffer header = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            
+            byte[] subject = testSubject != null ? testSubject.getBytes(UTF_8) : new byte[0];
+            int subjectLength = Utf8.truncatedLength(subject, MAX_SUBJECT_BYTES);
+            
+            header.putInt(H_MAGIC, MAGIC);
+            header.putInt(H_VERSION, VERSION);
+            header.putInt(H_RECORD_SIZE, RECORD_SIZE);
+            header.putInt(H_BLOCK_RECORDS, RECORDS_PER_BLOCK);
+            header.putLong(H_RUN_ID, runId);
+            header.putLong(H_START_TIME, startTime);
+            header.putLong(H_START_ELAPSED, startElapsedNanos);
+            header.putLong(H_PLANNED_DURATION, plannedDuration);
+            header.putInt(H_START_LEVEL, startBatteryLevel);
+            header.putInt(H_SUBJECT_LENGTH, subjectLength);
+            for (int i = 0; i < subjectLength; i++) {
+                header.put(H_SUBJECT + i, subject[i]);
+            }
+            header.putInt(H_CRC, Crc32c.compute(header, 0, H_CRC));
+            header.putInt(H_FLAGS, 0);
+            header.force();
+            
+            return new SampleLog(file, raf, header, flushIntervalMs, startElapsedNanos, 0, 0);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * 重新開啟 runDir 下尚未結束的取樣日誌並繼續追加
+     * 新記錄從第一個沒有區塊頭的區塊開始，最後一個區塊中未提交的記錄會被覆寫。
+     * @param nowElapsedNanos 目前的 elapsedRealtimeNanos，作為群組提交的起點
+     * @throws IOException 日誌不存在、檔頭無效、已結束或已被恢復流程匯入
+     */
+    public static SampleLog resume(File runDir, long flushIntervalMs, long nowElapsedNanos) throws IOException {
+        File file = new File(runDir, FILE_NAME);
+        if (!file.isFile() || isOpen(file)) {
+            throw new IOException("Sample log not resumable: " + file);
+        }
+        
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel fileChannel = raf.getChannel();
+            MappedByteBuffer header = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION
+                    || header.getInt(H_RECORD_SIZE) != RECORD_SIZE
+                    || header.getInt(H_CRC) != Crc32c.compute(header, 0, H_CRC)) {
+                throw new IOException("Invalid sample log header: " + file);
+            }
+            if (header.getInt(H_FLAGS) != 0) {
+                throw new IOException("Sample log already closed: " + file);
+            }
+            
+            // 只讀區塊頭找出寫入尾端，CRC 錯誤的區塊保留原樣（讀取時會略過）
+            ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            int blockIndex = 0;
+            long recordCount = 0;
+            long size = fileChannel.size();
+            while (HEADER_SIZE + (long) (blockIndex + 1) * BLOCK_SIZE <= size) {
+                blockHeader.clear();
+                long position = HEADER_SIZE + (long) blockIndex * BLOCK_SIZE;
+                while (blockHeader.hasRemaining()) {
+                    if (fileChannel.read(blockHeader, position + blockHeader.position()) < 0) {
+                        break;
+                    }
+                }
+                if (blockHeader.hasRemaining() || blockHeader.getInt(B_MAGIC) != BLOCK_MAGIC
+                        || blockHeader.getInt(B_SEQUENCE) != blockIndex) {
+                    break;
+                }
+                recordCount += Math.max(0, Math.min(RECORDS_PER_BLOCK, blockHeader.getInt(B_COUNT)));
+                blockIndex++;
+            }
+            
+            return new SampleLog(file, raf, header, flushIntervalMs, nowElapsedNanos, blockIndex, recordCount);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * 設定刷新處理器；未設定時在 append() 的執行緒上直接 force()
+     */
+    public void setFlushHandler(FlushHandler flushHandler) {
+        this.flushHandler = flushHandler;
+    }
+    
+    public long getRecordCount() {
+        return recordCount;
+    }
+    
+    private MappedByteBuffer mapSegment(int segmentIndex) throws IOException {
+        long position = HEADER_SIZE + (long) segmentIndex * SEGMENT_SIZE;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, SEGMENT_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+    
+    /**
+     * 追加一筆取樣，達到群組提交間隔時自動 flush
+     * 只能由單一執行緒呼叫
+     */
+    public void append(long timestampNanos, int currentMicroAmps, int currentAverageMicroAmps,
+                       int chargeCounterMicroAmpHours, long energyCounterNanoWattHours,
+                       int voltageMillivolts, int level, int flags, int periodMs) throws IOException {
+        if (isClosed) {
+            return;
+        }
+        
+        if (blockRecordCount == RECORDS_PER_BLOCK) {
+            sealBlock();
+        }
+        
+        int offset = blockOffset() + BLOCK_HEADER_SIZE + blockRecordCount * RECORD_SIZE;
+        segment.putLong(offset + R_TIMESTAMP, timestampNanos);
+        segment.putLong(offset + R_ENERGY, energyCounterNanoWattHours);
+        segment.putInt(offset + R_CURRENT, currentMicroAmps);
+        segment.putInt(offset + R_CURRENT_AVERAGE, currentAverageMicroAmps);
+        segment.putInt(offset + R_CHARGE, chargeCounterMicroAmpHours);
+        segment.putInt(offset + R_VOLTAGE, voltageMillivolts);
+        segment.putShort(offset + R_LEVEL, (short) level);
+        segment.putShort(offset + R_FLAGS, (short) flags);
+        segment.putInt(offset + R_PERIOD, periodMs);
+        
+        blockRecordCount++;
+        recordCount++;
+        
+        if (timestampNanos - lastFlushNanos >= flushIntervalNanos) {
+            lastFlushNanos = timestampNanos;
+            commitBlockHeader();
+            FlushHandler handler = flushHandler;
+            if (handler != null) {
+                handler.requestFlush(this);
+            } else {
+                forceToDisk();
+            }
+        }
+    }
+    
+    private int blockOffset() {
+        return (blockIndex % BLOCKS_PER_SEGMENT) * BLOCK_SIZE;
+    }
+    
+    /**
+     * 更新目前區塊的記錄數與 CRC（只對新增的記錄增量計算）
+     */
+    private void commitBlockHeader() {
+        if (blockRecordCount == 0) {
+            return;
+        }
+        
+        int base = blockOffset();
+        if (checksummedRecords < blockRecordCount) {
+            blockCrc.update(segment,
+                base + BLOCK_HEADER_SIZE + checksummedRecords * RECORD_SIZE,
+                (blockRecordCount - checksummedRecords) * RECORD_SIZE);
+            checksummedRecords = blockRecordCount;
+        }
+        
+        segment.putInt(base + B_MAGIC, BLOCK_MAGIC);
+        segment.putInt(base + B_SEQUENCE, blockIndex);
+        segment.putInt(base + B_COUNT, blockRecordCount);
+        segment.putInt(base + B_CRC, blockCrc.getValue());
+    }
+    
+    private void sealBlock() throws IOException {
+        commitBlockHeader();
+        blockIndex++;
+        blockRecordCount = 0;
+        checksummedRecords = 0;
+        blockCrc.reset();
+        
+        if (blockIndex % BLOCKS_PER_SEGMENT == 0) {
+            synchronized (unforcedSegments) {
+                unforcedSegments.add(segment);
+            }
+            segment = mapSegment(blockIndex / BLOCKS_PER_SEGMENT);
+        }
+    }
+    
+    /**
+     * 將已提交的區塊寫回儲存裝置，可在任何執行緒上呼叫
+     */
+    public void forceToDisk() {
+        List<MappedByteBuffer> sealed;
+        synchronized (unforcedSegments) {
+            sealed = new ArrayList<>(unforcedSegments);
+            unforcedSegments.clear();
+        }
+        for (MappedByteBuffer buffer : sealed) {
+            buffer.force();
+        }
+        if (!isClosed) {
+            segment.force();
+        }
+    }
+    
+    /**
+     * 群組提交：更新區塊 CRC 並寫回儲存裝置
+     * 只能由寫入執行緒（或寫入停止後）呼叫
+     */
+    public void flush() {
+        if (isClosed) {
+            return;
+        }
+        commitBlockHeader();
+        forceToDisk();
+    }
+    
+    /**
+     * 結束寫入
+     * @param completed 測試是否正常完成
+     */
+    public void close(boolean completed) throws IOException {
+        if (isClosed) {
+            return;
+        }
+        
+        try {
+            flush();
+            headerBuffer.putInt(H_FLAGS, completed ? FLAG_COMPLETED : 0);
+            headerBuffer.force();
+            
+            // 截去未使用的映射區段
+            int usedBlocks = blockIndex + (blockRecordCount > 0 ? 1 : 0);
+            channel.truncate(HEADER_SIZE + (long) usedBlocks * BLOCK_SIZE);
+        } finally {
+            isClosed = true;
+            OPEN_LOGS.remove(file.getAbsolutePath());
+            randomAccessFile.close();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        close(false);
+    }
+    
+    /**
+     * 檢查日誌是否正在本程序中寫入
+     */
+    public static boolean isOpen(File file) {
+        return OPEN_LOGS.contains(file.getAbsolutePath());
+    }
+    
+    /**
+     * 設定日誌檔頭旗標（例如標記為已恢復）
+     */
+    public static void markFlags(File file, int flags) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, flags);
+            raf.getChannel().write(buffer, H_FLAGS);
+            raf.getChannel().force(false);
+        } finally {
+            raf.close();
+        }
+    }
+    
+    /**
+     * 開啟日誌讀取器
+     */
+    public static Reader openReader(File file) throws IOException {
+        return new Reader(file);
+    }
+    
+    /**
+     * 取樣日誌讀取器
+     * 以固定大小的緩衝區逐區塊讀取，只回傳 CRC 驗證通過的記錄，記憶體用量與檔案大小無關
+     */
+    public static final class Reader implements Closeable {
+        
+        private final RandomAccessFile randomAccessFile;
+        private final FileChannel channel;
+        private final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final ByteBuffer probe =
+            ByteBuffer.allocate(BLOCK_HEADER_SIZE + R_TIMESTAMP + Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        
+        private final long runId;
+        private final long startTime;
+        private final long startElapsedNanos;
+        private final long plannedDuration;
+        private final int startBatteryLevel;
+        private final String testSubject;
+        private final int flags;
+        
+        private int nextBlockIndex = 0;
+        private int blockCount = 0;
+        private int recordIndex = 0;
+        private boolean isExhausted = false;
+        private int recordOffset;
+        private int corruptBlocks = 0;
+        
+        private Reader(File file) throws IOException {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            channel = randomAccessFile.getChannel();
+            
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(header, 0);
+                
+                if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION
+                        || header.getInt(H_RECORD_SIZE) != RECORD_SIZE
+                        || header.getInt(H_CRC) != Crc32c.compute(header, 0, H_CRC)) {
+                    throw new IOException("Invalid sample log header: " + file);
+                }
+                
+                runId = header.getLong(H_RUN_ID);
+                startTime = header.getLong(H_START_TIME);
+                startElapsedNanos = header.getLong(H_START_ELAPSED);
+                plannedDuration = header.getLong(H_PLANNED_DURATION);
+                startBatteryLevel = header.getInt(H_START_LEVEL);
+                int subjectLength = Math.min(header.getInt(H_SUBJECT_LENGTH), MAX_SUBJECT_BYTES);
+                testSubject = new String(header.array(), H_SUBJECT, Math.max(0, subjectLength), UTF_8);
+                flags = header.getInt(H_FLAGS);
+            } catch (IOException | RuntimeException e) {
+                randomAccessFile.close();
+                throw e;
+            }
+        }
+        
+        private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private boolean loadNextBlock() throws IOException {
+            while (true) {
+                long position = HEADER_SIZE + (long) nextBlockIndex * BLOCK_SIZE;
+                if (position + BLOCK_SIZE > channel.size() || !readFully(block, position)) {
+                    return false;
+                }
+                
+                // 沒有區塊頭表示已到達寫入尾端
+                if (block.getInt(B_MAGIC) != BLOCK_MAGIC || block.getInt(B_SEQUENCE) != nextBlockIndex) {
+                    return false;
+                }
+                
+                nextBlockIndex++;
+                int count = block.getInt(B_COUNT);
+                if (count > 0 && count <= RECORDS_PER_BLOCK
+                        && block.getInt(B_CRC) == Crc32c.compute(block, BLOCK_HEADER_SIZE, count * RECORD_SIZE)) {
+                    blockCount = count;
+                    recordIndex = 0;
+                    return true;
+                }
+                // CRC 錯誤的區塊直接略過，繼續讀取後續區塊
+                corruptBlocks++;
+            }
+        }
+        
+        /**
+         * 移到第一筆時間戳不大於 timestampNanos 的最後一個區塊開頭，之後的 next() 從該區塊第一筆記錄開始
+         * 區塊內外的時間戳都單調遞增，以二分搜尋只讀取區塊頭與第一筆時間戳，不走訪之前的記錄；
+         * 呼叫端仍需略過該區塊中早於 timestampNanos 的記錄
+         */
+        public void seekToTimestamp(long timestampNanos) throws IOException {
+            int found = 0;
+            int low = 1;
+            int high = (int) ((channel.size() - HEADER_SIZE) / BLOCK_SIZE) - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (blockStartsAtOrBefore(mid, timestampNanos)) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            nextBlockIndex = found;
+            blockCount = 0;
+            recordIndex = 0;
+            isExhausted = false;
+        }
+        
+        // 寫入尾端之後沒有區塊頭的區塊視為晚於任何時間戳
+        private boolean blockStartsAtOrBefore(int blockIndex, long timestampNanos) throws IOException {
+            if (!readFully(probe, HEADER_SIZE + (long) blockIndex * BLOCK_SIZE)) {
+                return false;
+            }
+            int count = probe.getInt(B_COUNT);
+            return probe.getInt(B_MAGIC) == BLOCK_MAGIC && probe.getInt(B_SEQUENCE) == blockIndex
+                && count > 0 && count <= RECORDS_PER_BLOCK
+                && probe.getLong(BLOCK_HEADER_SIZE + R_TIMESTAMP) <= timestampNanos;
+        }
+        
+        /**
+         * 讀取過程中略過的損壞區塊數
+         */
+        public int getCorruptBlockCount() {
+            return corruptBlocks;
+        }
+        
+        /**
+         * 移動到下一筆有效記錄
+         * @return 沒有更多有效記錄時回傳 false
+         */
+        public boolean next() throws IOException {
+            if (isExhausted) {
+                return false;
+            }
+            if (recordIndex >= blockCount && !loadNextBlock()) {
+                isExhausted = true;
+                return false;
+            }
+            recordOffset = BLOCK_HEADER_SIZE + recordIndex * RECORD_SIZE;
+            recordIndex++;
+            return true;
+        }
+        
+        public long getRunId() {
+            return runId;
+        }
+        
+        public long getStartTime() {
+            return startTime;
+        }
+        
+        public long getStartElapsedNanos() {
+            return startElapsedNanos;
+        }
+        
+        public long getPlannedDuration() {
+            return plannedDuration;
+        }
+        
+        public int getStartBatteryLevel() {
+            return startBatteryLevel;
+        }
+        
+        public String getTestSubject() {
+            return testSubject;
+        }
+        
+        public int getFlags() {
+            return flags;
+        }
+        
+        public long getTimestamp() {
+            return block.getLong(recordOffset + R_TIMESTAMP);
+        }
+        
+        public long getEnergyCounter() {
+            return block.getLong(recordOffset + R_ENERGY);
+        }
+        
+        public int getCurrent() {
+            return block.getInt(recordOffset + R_CURRENT);
+        }
+        
+        public int getCurrentAverage() {
+            return block.getInt(recordOffset + R_CURRENT_AVERAGE);
+        }
+        
+        public int getChargeCounter() {
+            return block.getInt(recordOffset + R_CHARGE);
+        }
+        
+        public int getVoltage() {
+            return block.getInt(recordOffset + R_VOLTAGE);
+        }
+        
+        public int getLevel() {
+            return block.getShort(recordOffset + R_LEVEL);
+        }
+        
+        public int getRecordFlags() {
+            return block.getShort(recordOffset + R_FLAGS);
+        }
+        
+        /**
+         * 寫入本筆記錄時的取樣週期 (ms)，舊版日誌為 0
+         */
+        public int getSamplePeriodMs() {
+            return block.getInt(recordOffset + R_PERIOD);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            randomAccessFile.close();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.analysis.EnergyAccumulator;
+import com.batterymonitor.app.model.TestResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 取樣日誌恢復
+ * 掃描 runs 目錄中未正常結束的測試日誌，從最後一個有效區塊重建測試結果
+ */
+public final class SampleLogRecovery {
+    
+    /** 沒有進行中的測試 */
+    public static final long NO_RUN = 0;
+    
+    // 缺口門檻為記錄週期的三倍；舊版日誌沒有週期，以最長週期 (10 秒) 的三倍為準
+    private static final int MAX_GAP_PERIODS = 3;
+    private static final long RECOVERY_MAX_GAP_NANOS = 30_000_000_000L;
+    
+    public interface Callback {
+        /**
+         * 回調成功返回且 onCommit() 成功後日誌才會被標記為已恢復
+         */
+        void onRecovered(TestResult result) throws Exception;
+        
+        /**
+         * 本次所有 onRecovered() 之後呼叫一次，將批次寫入的結果同步到儲存裝置
+         */
+        default void onCommit() throws Exception {
+        }
+    }
+    
+    private SampleLogRecovery() {
+    }
+    
+    /**
+     * 恢復 runsDir 下所有中斷的測試
+     * @return 成功恢復的測試數
+     */
+    public static int recoverAll(File runsDir, Callback callback) {
+        return recoverAll(runsDir, NO_RUN, callback);
+    }
+    
+    /**
+     * 恢復 runsDir 下所有中斷的測試，略過仍會被服務恢復執行的測試
+     * @param activeRunId 進行中的測試 ID，沒有時傳入 NO_RUN
+     * @return 成功恢復的測試數
+     */
+    public static int recoverAll(File runsDir, long activeRunId, Callback callback) {
+        File[] runDirs = runsDir.listFiles();
+        if (runDirs == null) {
+            return 0;
+        }
+        
+        String activeName = activeRunId != NO_RUN ? String.valueOf(activeRunId) : null;
+        List<File> recoveredLogs = new ArrayList<>();
+        for (File runDir : runDirs) {
+            File logFile = new File(runDir, SampleLog.FILE_NAME);
+            if (!logFile.isFile() || SampleLog.isOpen(logFile) || runDir.getName().equals(activeName)) {
+                continue;
+            }
+            
+            try {
+                TestResult result = recover(logFile);
+                if (result == null) {
+                    continue;
+                }
+                callback.onRecovered(result);
+                recoveredLogs.add(logFile);
+            } catch (Exception e) {
+                // 單一日誌損壞不影響其他日誌的恢復
+            }
+        }
+        if (recoveredLogs.isEmpty()) {
+            return 0;
+        }
+        
+        // 結果全部落盤後才標記日誌；同步失敗時不標記，下次啟動重新恢復
+        try {
+            callback.onCommit();
+        } catch (Exception e) {
+            return 0;
+        }
+        
+        int recovered = 0;
+        for (File logFile : recoveredLogs) {
+            try {
+                SampleLog.markFlags(logFile, SampleLog.FLAG_RECOVERED);
+                recovered++;
+            } catch (IOException e) {
+                // 未標記的日誌下次啟動會再次交給回調
+            }
+        }
+        return recovered;
+    }
+    
+    /**
+     * 從日誌重建測試結果
+     * @return 日誌已正常結束、已恢復過或沒有任何有效記錄時回傳 null
+     */
+    public static TestResult recover(File logFile) throws IOException {
+        SampleLog.Reader reader = SampleLog.openReader(logFile);
+        try {
+            if ((reader.getFlags() & (SampleLog.FLAG_COMPLETED | SampleLog.FLAG_RECOVERED)) != 0) {
+                return null;
+            }
+            
+            long lastTimestamp = Long.MIN_VALUE;
+            int lastLevel = reader.getStartBatteryLevel();
+            int firstCharge = 0;
+            int lastCharge = 0;
+            long firstEnergy = 0;
+            long lastEnergy = 0;
+            EnergyAccumulator accumulator = new EnergyAccumulator(RECOVERY_MAX_GAP_NANOS);
+            long firstTimestamp = Long.MIN_VALUE;
+            
+            while (reader.next()) {
+                lastTimestamp = reader.getTimestamp();
+                lastLevel = reader.getLevel();
+                if (firstTimestamp == Long.MIN_VALUE) {
+                    firstTimestamp = lastTimestamp;
+                }
+                int periodMs = reader.getSamplePeriodMs();
+                accumulator.setMaxGapNanos(periodMs > 0
+                    ? periodMs * 1_000_000L * MAX_GAP_PERIODS : RECOVERY_MAX_GAP_NANOS);
+                accumulator.add(lastTimestamp, reader.getCurrent(), reader.getVoltage());
+                
+                int charge = reader.getChargeCounter();
+                if (charge > 0) {
+                    if (firstCharge == 0) {
+                        firstCharge = charge;
+                    }
+                    lastCharge = charge;
+                }
+                
+                long energy = reader.getEnergyCounter();
+                if (energy > 0) {
+                    if (firstEnergy == 0) {
+                        firstEnergy = energy;
+                    }
+                    lastEnergy = energy;
+                }
+            }
+            
+            if (lastTimestamp == Long.MIN_VALUE) {
+                return null;
+            }
+            
+            long duration = Math.max(0, (lastTimestamp - reader.getStartElapsedNanos()) / 1_000_000L);
+            
+            TestResult result = new TestResult();
+            result.setStartTime(reader.getStartTime());
+            result.setEndTime(reader.getStartTime() + duration);
+            result.setDuration(duration);
+            result.setPlannedDuration(reader.getPlannedDuration());
+            result.setStartBatteryLevel(reader.getStartBatteryLevel());
+            result.setEndBatteryLevel(lastLevel);
+            result.setTestSubject(reader.getTestSubject());
+            if (firstCharge > lastCharge) {
+                result.setChargeConsumedMah((firstCharge - lastCharge) / 1000.0);
+            }
+            if (firstEnergy > lastEnergy) {
+                result.setEnergyMilliwattHours((firstEnergy - lastEnergy) / 1_000_000.0);
+            } else if (accumulator.hasData()) {
+                result.setEnergyMilliwattHours(Math.max(0, accumulator.getEnergyMilliwattHours()));
+            }
+            long span = lastTimestamp - firstTimestamp;
+            if (accumulator.hasData() && span > 0) {
+                result.setAveragePowerMilliwatts(result.getEnergyMilliwattHours() * 3600.0 * 1e9 / span);
+                result.setPeakPowerMilliwatts(accumulator.getPeakPowerMilliwatts());
+            }
+            return result;
+        } finally {
+            reader.close();
+        }
+    }
+    
+    /**
+     * 將服務重啟前由日誌重建的區段合併到之後的測試結果
+     * 兩段之間服務未執行的時間沒有取樣，電荷與能量只計入兩段實際量測的部分
+     */
+    public static void mergeSegment(TestResult result, TestResult earlier) {
+        double energy = result.getEnergyMilliwattHours() + earlier.getEnergyMilliwattHours();
+        double hours = sampledHours(result) + sampledHours(earlier);
+        result.setChargeConsumedMah(result.getChargeConsumedMah() + earlier.getChargeConsumedMah());
+        result.setEnergyMilliwattHours(energy);
+        if (hours > 0) {
+            result.setAveragePowerMilliwatts(energy / hours);
+            result.setPeakPowerMilliwatts(Math.max(result.getPeakPowerMilliwatts(), earlier.getPeakPowerMilliwatts()));
+        }
+    }
+    
+    // 由平均功率反推有功率數據的取樣時間（小時）
+    private static double sampledHours(TestResult result) {
+        double power = result.getAveragePowerMilliwatts();
+        return power > 0 ? result.getEnergyMilliwattHours() / power : 0;
+    }
+}
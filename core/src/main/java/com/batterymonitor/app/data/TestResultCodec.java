@@ -0,0 +1,107 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.model.TestResult;
+import com.batterymonitor.app.utils.Utf8;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * 測試結果二進位編解碼
+ * 新欄位一律加在尾端；解碼時讀到 payload 結尾就停止，因此舊記錄仍可讀取
+ */
+public final class TestResultCodec {
+    
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_SUBJECT_BYTES = 1024;
+    
+    private TestResultCodec() {
+    }
+    
+    /**
+     * 估算編碼後的最大長度
+     */
+    public static int maxEncodedSize(TestResult result) {
+        return 192 + Math.min(MAX_SUBJECT_BYTES, result.getTestSubject().length() * 4);
+    }
+    
+    /**
+     * 將測試結果寫入 buffer 目前位置
+     */
+    public static void encode(TestResult result, ByteBuffer out) {
+        out.putLong(result.getId());
+        out.putLong(result.getStartTime());
+        out.putLong(result.getEndTime());
+        out.putInt(result.getStartBatteryLevel());
+        out.putInt(result.getEndBatteryLevel());
+        out.putLong(result.getPlannedDuration());
+        out.putLong(result.getActualDuration());
+        
+        byte[] subject = result.getTestSubject().getBytes(UTF_8);
+        int subjectLength = Utf8.truncatedLength(subject, MAX_SUBJECT_BYTES);
+        out.putShort((short) subjectLength);
+        out.put(subject, 0, subjectLength);
+        
+        out.putDouble(result.getChargeConsumedMah());
+        out.putDouble(result.getEnergyMilliwattHours());
+        
+        out.putInt(result.getLevelStepCount());
+        out.putDouble(result.getEstimatedConsumption());
+        out.putDouble(result.getEstimatedConsumptionError());
+        out.putDouble(result.getEstimatedRate());
+        out.putDouble(result.getEstimatedRateError());
+        
+        out.putDouble(result.getAveragePowerMilliwatts());
+        out.putDouble(result.getPeakPowerMilliwatts());
+        
+        out.putDouble(result.getSamplerWakeupsPerSecond());
+        out.putDouble(result.getSamplingBusyMillis());
+        out.putDouble(result.getFixedRateBusyMillis());
+        
+        out.putLong(result.getWakeLockHeldMillis());
+        out.putInt(result.getWakeLockGapCount());
+        out.putLong(result.getWakeLockGapMillis());
+    }
+    
+    /**
+     * 從 buffer 目前位置解碼到 limit
+     */
+    public static TestResult decode(ByteBuffer in) {
+        TestResult result = new TestResult();
+        result.setId(in.getLong());
+        result.setStartTime(in.getLong());
+        result.setEndTime(in.getLong());
+        result.setStartBatteryLevel(in.getInt());
+        result.setEndBatteryLevel(in.getInt());
+        result.setPlannedDuration(in.getLong());
+        result.setActualDuration(in.getLong());
+        
+        int subjectLength = in.getShort() & 0xFFFF;
+        byte[] subject = new byte[subjectLength];
+        in.get(subject);
+        result.setTestSubject(new String(subject, UTF_8));
+        
+        if (in.remaining() >= 16) {
+            result.setChargeConsumedMah(in.getDouble());
+            result.setEnergyMilliwattHours(in.getDouble());
+        }
+        if (in.remaining() >= 36) {
+            result.setLevelStepEstimate(in.getInt(), in.getDouble(), in.getDouble(),
+                in.getDouble(), in.getDouble());
+        }
+        if (in.remaining() >= 16) {
+            result.setAveragePowerMilliwatts(in.getDouble());
+            result.setPeakPowerMilliwatts(in.getDouble());
+        }
+        if (in.remaining() >= 8) {
+            result.setSamplerWakeupsPerSecond(in.getDouble());
+        }
+        if (in.remaining() >= 16) {
+            result.setSamplingOverhead(in.getDouble(), in.getDouble());
+        }
+        if (in.remaining() >= 20) {
+            result.setWakeLockStats(in.getLong(), in.getInt(), in.getLong());
+        }
+        return result;
+    }
+}
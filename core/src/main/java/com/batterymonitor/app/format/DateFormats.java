@@ -0,0 +1,79 @@
+package com.batterymonitor.app.format;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * 共用的日期格式化
+ * SimpleDateFormat 不是執行緒安全的，建立成本又高；這裡每個執行緒各自快取一份，
+ * 系統語系或時區改變時整份快取重建。
+ */
+public final class DateFormats {
+    
+    public static final String DATE_TIME = "yyyy/MM/dd HH:mm:ss";
+    public static final String DATE = "yyyy/MM/dd";
+    public static final String TIME = "HH:mm:ss";
+    public static final String TIME_SHORT = "HH:mm";
+    
+    private static final ThreadLocal<DateFormats> CACHE = new ThreadLocal<DateFormats>() {
+        @Override
+        protected DateFormats initialValue() {
+            return new DateFormats();
+        }
+    };
+    
+    private final Map<String, SimpleDateFormat> formats = new HashMap<>();
+    private final Date date = new Date();
+    private Locale locale;
+    private String timeZoneId;
+    
+    private DateFormats() {
+    }
+    
+    /**
+     * 以目前執行緒的快取格式化時間
+     * @param pattern SimpleDateFormat 格式，例如 DATE_TIME
+     * @param timeMillis 牆上時間 (ms)
+     */
+    public static String format(String pattern, long timeMillis) {
+        return CACHE.get().formatCached(pattern, timeMillis);
+    }
+    
+    public static String formatDateTime(long timeMillis) {
+        return format(DATE_TIME, timeMillis);
+    }
+    
+    public static String formatDate(long timeMillis) {
+        return format(DATE, timeMillis);
+    }
+    
+    public static String formatTime(long timeMillis) {
+        return format(TIME, timeMillis);
+    }
+    
+    public static String formatTimeShort(long timeMillis) {
+        return format(TIME_SHORT, timeMillis);
+    }
+    
+    private String formatCached(String pattern, long timeMillis) {
+        Locale currentLocale = Locale.getDefault();
+        String currentTimeZoneId = TimeZone.getDefault().getID();
+        if (!currentLocale.equals(locale) || !currentTimeZoneId.equals(timeZoneId)) {
+            formats.clear();
+            locale = currentLocale;
+            timeZoneId = currentTimeZoneId;
+        }
+        
+        SimpleDateFormat format = formats.get(pattern);
+        if (format == null) {
+            format = new SimpleDateFormat(pattern, currentLocale);
+            formats.put(pattern, format);
+        }
+        date.setTime(timeMillis);
+        return format.format(date);
+    }
+}
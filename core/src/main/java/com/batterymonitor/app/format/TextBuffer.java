@@ -0,0 +1,138 @@
+package com.batterymonitor.app.format;
+
+import java.util.Arrays;
+
+/**
+ * 可重複使用的字元緩衝區
+ * 數字直接寫成字元，不經過 String，容量足夠時 append 不配置任何物件；用於每次刷新都要重建的顯示文字。
+ * 只能在單一執行緒上使用。
+ */
+public final class TextBuffer implements CharSequence {
+    
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L
+    };
+    
+    private char[] chars;
+    private int length;
+    
+    public TextBuffer(int capacity) {
+        chars = new char[Math.max(1, capacity)];
+    }
+    
+    public TextBuffer clear() {
+        length = 0;
+        return this;
+    }
+    
+    public TextBuffer append(char c) {
+        ensureCapacity(length + 1);
+        chars[length++] = c;
+        return this;
+    }
+    
+    public TextBuffer append(String text) {
+        int count = text.length();
+        ensureCapacity(length + count);
+        text.getChars(0, count, chars, length);
+        length += count;
+        return this;
+    }
+    
+    public TextBuffer append(long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                return append("-9223372036854775808");
+            }
+            append('-');
+            value = -value;
+        }
+        
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(length + digits);
+        int end = length + digits;
+        for (int i = end - 1; i >= length; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length = end;
+        return this;
+    }
+    
+    /**
+     * 以固定小數位數寫入（四捨五入），相當於 String.format("%.Nf") 但不配置物件
+     * @param decimals 小數位數 (0 - 6)
+     */
+    public TextBuffer append(double value, int decimals) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return append(Double.isNaN(value) ? "NaN" : value > 0 ? "Infinity" : "-Infinity");
+        }
+        
+        decimals = Math.max(0, Math.min(POWERS_OF_TEN.length - 1, decimals));
+        long scale = POWERS_OF_TEN[decimals];
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            append('-');
+        }
+        append(scaled / scale);
+        if (decimals > 0) {
+            append('.');
+            long fraction = scaled % scale;
+            for (long digit = scale / 10; digit > 0; digit /= 10) {
+                append((char) ('0' + fraction / digit % 10));
+            }
+        }
+        return this;
+    }
+    
+    /**
+     * 內部陣列，有效內容為 [0, length())；下一次 append 前有效
+     */
+    public char[] getChars() {
+        return chars;
+    }
+    
+    @Override
+    public int length() {
+        return length;
+    }
+    
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index=" + index + ", length=" + length);
+        }
+        return chars[index];
+    }
+    
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(chars, start, end - start);
+    }
+    
+    public boolean contentEquals(TextBuffer other) {
+        if (other.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[i] != other.chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.batterymonitor.app.format;
+
+/**
+ * 雙緩衝的顯示文字
+ * TextView.setText(char[], int, int) 只保存陣列參照不複製，顯示中的陣列不能再修改；
+ * 因此新文字寫入後台緩衝區，內容改變時才交換前後台，呼叫端再把前台陣列交給 TextView。
+ * 文字不變時不做任何事，整個流程不配置物件。只能在單一執行緒（主執行緒）上使用。
+ */
+public final class TextSlot {
+    
+    private TextBuffer front;
+    private TextBuffer back;
+    private boolean hasContent = false;
+    
+    public TextSlot(int capacity) {
+        front = new TextBuffer(capacity);
+        back = new TextBuffer(capacity);
+    }
+    
+    /**
+     * 開始寫入新文字，回傳已清空的後台緩衝區
+     */
+    public TextBuffer edit() {
+        return back.clear();
+    }
+    
+    /**
+     * 結束寫入
+     * @return 文字有改變（前台已換成新文字）時回傳 true，呼叫端應重新設定 TextView
+     */
+    public boolean commit() {
+        if (hasContent && back.contentEquals(front)) {
+            return false;
+        }
+        TextBuffer shown = front;
+        front = back;
+        back = shown;
+        hasContent = true;
+        return true;
+    }
+    
+    /**
+     * 讓下一次 commit 一定回傳 true，例如 View 重新建立後
+     */
+    public void invalidate() {
+        hasContent = false;
+    }
+    
+    /**
+     * 目前顯示中的文字陣列，有效內容為 [0, length())
+     */
+    public char[] getChars() {
+        return front.getChars();
+    }
+    
+    public int length() {
+        return front.length();
+    }
+    
+    public CharSequence getText() {
+        return front;
+    }
+}
@@ -0,0 +1,13 @@
+package com.batterymonitor.app.manager;
+
+import com.batterymonitor.app.model.BatterySnapshot;
+
+/**
+ * 電池狀態監聽器
+ */
+public interface BatteryListener {
+    default void onBatterySnapshotChanged(BatterySnapshot snapshot) {}
+    default void onBatteryLevelChanged(int level, boolean isCharging) {}
+    default void onBatteryLow() {}
+    default void onBatteryOkay() {}
+}
@@ -0,0 +1,494 @@
+package com.batterymonitor.app.manager;
+
+import com.batterymonitor.app.analysis.AdaptiveRateController;
+import com.batterymonitor.app.analysis.CurrentCalibration;
+import com.batterymonitor.app.analysis.CurrentSensorAdapter;
+import com.batterymonitor.app.analysis.EnergyAccumulator;
+import com.batterymonitor.app.model.BatterySnapshot;
+import com.batterymonitor.app.model.TestResult;
+import com.batterymonitor.app.probe.Probe;
+import com.batterymonitor.app.probe.ProbeSink;
+import com.batterymonitor.app.probe.SamplingScheduler;
+import com.batterymonitor.app.utils.Clock;
+import com.batterymonitor.app.utils.Logger;
+
+import java.io.File;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 高解析度電池取樣器
+ * 作為電池探針註冊到共用的 SamplingScheduler，以固定頻率讀取電流、電量計數器和能量計數器，
+ * 排程以 elapsedRealtimeNanos 為錨點，不會因每次取樣耗時而累積漂移。
+ * 電流讀數經 CurrentSensorAdapter 正規化為 µA（充電為正），再交給監聽器與累計。
+ * 電流、電壓、電量計數器與電量優先從 sysfs 節點直接讀取，不可讀的欄位逐一回退到平台來源（實機上為 BatteryManager）；
+ * 也可注入 BatterySource 與 Clock（例如 BatterySimulator），在 JVM 上以虛擬時間取樣。
+ * 自適應模式下由 AdaptiveRateController 依電流變化在最快與底限週期之間調整週期，
+ * 每筆取樣附帶所屬區間的週期，週期變更後的第一筆標記 SAMPLE_FLAG_RATE_CHANGED。
+ */
+public class BatterySampler implements Probe {
+    
+    private static final String TAG = "BatterySampler";
+    
+    public static final long MIN_PERIOD_MS = 100;      // 10 Hz
+    public static final long MAX_PERIOD_MS = 10_000;   // 0.1 Hz
+    public static final long DEFAULT_PERIOD_MS = 1000; // 1 Hz
+    
+    // 相鄰取樣超過幾個週期視為缺口，不做梯形積分
+    private static final int MAX_GAP_PERIODS = 3;
+    
+    // 電流積分以固定 1 V 代入 EnergyAccumulator：得到的 mWh 數值即為 mAh，梯形與缺口規則和能量相同
+    private static final int UNIT_VOLTAGE_MV = 1000;
+    
+    // 取樣旗標，隨取樣傳給監聽器並寫入取樣日誌
+    public static final int SAMPLE_FLAG_UNCALIBRATED = 1;   // 電流校正仍在偵測中，使用推測值
+    public static final int SAMPLE_FLAG_CURRENT_STALE = 2;  // CURRENT_NOW 長時間不變
+    public static final int SAMPLE_FLAG_RATE_CHANGED = 4;   // 自適應取樣在此筆之前變更了週期
+    
+    /**
+     * 取樣回調，在排程執行緒上呼叫，參數皆為基本型別以避免配置物件
+     * 電流已正規化為 µA（充電為正），無效時為 Integer.MIN_VALUE；periodMs 為上一筆到本筆之間的取樣週期
+     */
+    public interface SampleListener {
+        void onSample(long timestampNanos, int currentNowMicroAmps, int currentAverageMicroAmps,
+                      int chargeCounterMicroAmpHours, long energyCounterNanoWattHours,
+                      int voltageMillivolts, int batteryLevel, int sampleFlags, int periodMs);
+    }
+    
+    private final BatteryStatus batteryStatus;
+    private final SamplingScheduler scheduler;
+    private final BatterySource batterySource;  // null 表示使用 sysfs，回退到 fallbackSource
+    private final BatterySource fallbackSource;
+    private final Clock clock;
+    private final CopyOnWriteArrayList<SampleListener> listeners = new CopyOnWriteArrayList<>();
+    private final CurrentSensorAdapter currentSensor;
+    private volatile CurrentCalibration storedCalibration;
+    private volatile CurrentSensorAdapter.Listener calibrationListener;
+    private volatile File sysfsRoot = SysfsBatteryReader.DEFAULT_ROOT;
+    private SysfsBatteryReader reader;  // 只在排程器的鎖內存取
+    private BatterySource source;       // 只在排程器的鎖內存取
+    
+    private volatile boolean isRunning = false;
+    private long periodNanos = DEFAULT_PERIOD_MS * 1_000_000L;  // 目前生效的週期
+    private AdaptiveRateController rateController = new AdaptiveRateController(periodNanos, periodNanos);
+    private boolean isRateChanged;
+    
+    // 本次取樣期間的累計值（只在排程執行緒上寫入，stop() 之後讀取）
+    private long sampleCount;
+    private long missedTicks;
+    private long lastTimestampNanos;
+    private int firstChargeCounter;
+    private int lastChargeCounter;
+    private long firstEnergyCounter;
+    private long lastEnergyCounter;
+    private long firstTimestampNanos;
+    private long busyNanos;
+    private EnergyAccumulator energyAccumulator = new EnergyAccumulator(DEFAULT_PERIOD_MS * MAX_GAP_PERIODS * 1_000_000L);
+    private EnergyAccumulator chargeAccumulator = new EnergyAccumulator(DEFAULT_PERIOD_MS * MAX_GAP_PERIODS * 1_000_000L);
+    
+    /**
+     * 從指定來源取樣，不使用 sysfs
+     * @param clock 必須與 scheduler 使用同一個時鐘
+     */
+    public BatterySampler(BatteryStatus batteryStatus, SamplingScheduler scheduler, BatterySource source,
+                          Clock clock) {
+        this(batteryStatus, scheduler, source, null, clock);
+    }
+    
+    /**
+     * 建立優先從 sysfs 取樣的取樣器
+     * @param fallback sysfs 不可讀的欄位改由此來源提供（實機上為 BatteryManager），
+     *                 仍不支援的電壓、電量與溫度取自最近的電池快照；可為 null
+     * @param clock 必須與 scheduler 使用同一個時鐘
+     */
+    public static BatterySampler createSysfs(BatteryStatus batteryStatus, SamplingScheduler scheduler,
+                                             BatterySource fallback, Clock clock) {
+        return new BatterySampler(batteryStatus, scheduler, null, fallback, clock);
+    }
+    
+    private BatterySampler(BatteryStatus batteryStatus, SamplingScheduler scheduler, BatterySource batterySource,
+                           BatterySource fallbackSource, Clock clock) {
+        this.batteryStatus = batteryStatus;
+        this.scheduler = scheduler;
+        this.batterySource = batterySource;
+        this.fallbackSource = fallbackSource;
+        this.clock = clock;
+        this.currentSensor = new CurrentSensorAdapter(calibration -> {
+            storedCalibration = calibration;
+            Logger.d(TAG, "Current sensor calibrated: " + calibration);
+            CurrentSensorAdapter.Listener listener = calibrationListener;
+            if (listener != null) {
+                listener.onCalibrationDetected(calibration);
+            }
+        });
+    }
+    
+    /**
+     * 設定已保存的電流校正，下次 start() 時套用；null 表示重新偵測
+     */
+    public void setCalibration(CurrentCalibration calibration) {
+        this.storedCalibration = calibration;
+    }
+    
+    /**
+     * 設定 sysfs 節點根目錄，null 表示只使用回退來源
+     */
+    public void setSysfsRoot(File root) {
+        this.sysfsRoot = root;
+    }
+    
+    /**
+     * 設定校正偵測完成的回調（在排程執行緒上），用於保存校正
+     */
+    public void setCalibrationListener(CurrentSensorAdapter.Listener listener) {
+        this.calibrationListener = listener;
+    }
+    
+    /**
+     * 將取樣週期限制在 10 Hz 到 0.1 Hz 之間
+     */
+    public static long clampPeriod(long periodMs) {
+        return Math.max(MIN_PERIOD_MS, Math.min(MAX_PERIOD_MS, periodMs));
+    }
+    
+    public void addListener(SampleListener listener) {
+        if (listener != null) {
+            listeners.addIfAbsent(listener);
+        }
+    }
+    
+    public void removeListener(SampleListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * 以固定週期開始取樣
+     */
+    public void start(long periodMs) {
+        start(periodMs, periodMs);
+    }
+    
+    /**
+     * 開始自適應取樣：訊號變化快時使用 periodMs，平穩時逐步放慢到 floorPeriodMs
+     * floorPeriodMs 不大於 periodMs 時為固定頻率
+     */
+    public synchronized void start(long periodMs, long floorPeriodMs) {
+        if (isRunning) {
+            return;
+        }
+        
+        // 與排程器對齊後的週期一致，缺口判斷與錯過刻度的計算才正確
+        periodNanos = SamplingScheduler.clampPeriod(COST_LOW, clampPeriod(periodMs));
+        rateController = new AdaptiveRateController(periodNanos,
+            SamplingScheduler.clampPeriod(COST_LOW, clampPeriod(floorPeriodMs)));
+        resetTotals();
+        isRunning = true;
+        
+        scheduler.register(this, periodNanos / 1_000_000L);
+        Logger.d(TAG, "Sampling started, period: " + (periodNanos / 1_000_000L) + "ms"
+            + (rateController.isAdaptive() ? ", floor: " + (rateController.getFloorPeriodNanos() / 1_000_000L) + "ms" : ""));
+    }
+    
+    /**
+     * 停止取樣，回傳後不會再有進行中的取樣
+     */
+    public synchronized void stop() {
+        if (!isRunning) {
+            return;
+        }
+        
+        isRunning = false;
+        scheduler.unregister(this);
+        Logger.d(TAG, "Sampling stopped, samples: " + sampleCount + ", missed ticks: " + missedTicks
+            + ", rate changes: " + rateController.getRateChangeCount()
+            + ", busy: " + (busyNanos / 1000) + "µs (fixed-rate estimate: " + (getFixedRateBusyNanos() / 1000) + "µs)");
+    }
+    
+    public boolean isRunning() {
+        return isRunning;
+    }
+    
+    private void resetTotals() {
+        sampleCount = 0;
+        missedTicks = 0;
+        lastTimestampNanos = 0;
+        firstChargeCounter = Integer.MIN_VALUE;
+        lastChargeCounter = Integer.MIN_VALUE;
+        firstEnergyCounter = Long.MIN_VALUE;
+        lastEnergyCounter = Long.MIN_VALUE;
+        firstTimestampNanos = 0;
+        busyNanos = 0;
+        isRateChanged = false;
+        rateController.reset();
+        energyAccumulator = new EnergyAccumulator(periodNanos * MAX_GAP_PERIODS);
+        chargeAccumulator = new EnergyAccumulator(periodNanos * MAX_GAP_PERIODS);
+        currentSensor.reset(storedCalibration);
+    }
+    
+    @Override
+    public String getName() {
+        return "battery";
+    }
+    
+    @Override
+    public int getCost() {
+        // sysfs 定位讀取，回退到 BatteryManager 時也只是少量 binder 呼叫
+        return COST_LOW;
+    }
+    
+    @Override
+    public long getPreferredPeriodMs() {
+        return periodNanos / 1_000_000L;
+    }
+    
+    @Override
+    public String[] getChannelNames() {
+        // 電池取樣透過 SampleListener 寫入 samples.log，不使用通用通道
+        return new String[0];
+    }
+    
+    @Override
+    public void open() {
+        if (batterySource != null) {
+            source = batterySource;
+        } else {
+            reader = new SysfsBatteryReader(sysfsRoot, this::readFallback);
+            source = reader;
+        }
+    }
+    
+    @Override
+    public void sample(long timestampNanos, ProbeSink sink) {
+        sampleOnce(timestampNanos);
+    }
+    
+    @Override
+    public void close() {
+        if (reader != null) {
+            Logger.d(TAG, "Sysfs fields: current=" + reader.isSysfs(BatterySource.FIELD_CURRENT_NOW)
+                + ", voltage=" + reader.isSysfs(BatterySource.FIELD_VOLTAGE_NOW)
+                + ", charge=" + reader.isSysfs(BatterySource.FIELD_CHARGE_COUNTER)
+                + ", capacity=" + reader.isSysfs(BatterySource.FIELD_CAPACITY));
+            reader.close();
+            reader = null;
+        }
+        source = null;
+    }
+    
+    private void sampleOnce(long timestampNanos) {
+        int rawCurrentNow = toInt(source.read(BatterySource.FIELD_CURRENT_NOW));
+        int chargeCounter = toInt(source.read(BatterySource.FIELD_CHARGE_COUNTER));
+        int rawCurrentAverage = toInt(source.read(BatterySource.FIELD_CURRENT_AVERAGE));
+        long energyCounter = source.read(BatterySource.FIELD_ENERGY_COUNTER);
+        
+        BatterySnapshot snapshot = batteryStatus.getSnapshot();
+        int voltage = Math.max(0, toInt(source.read(BatterySource.FIELD_VOLTAGE_NOW)));
+        int level = toInt(source.read(BatterySource.FIELD_CAPACITY));
+        if (level == Integer.MIN_VALUE) {
+            level = snapshot.getPercent();
+        }
+        
+        currentSensor.update(timestampNanos, rawCurrentNow, rawCurrentAverage, chargeCounter, snapshot.isCharging());
+        int currentNow = currentSensor.getCurrentNow();
+        int currentAverage = currentSensor.getCurrentAverage();
+        int flags = (currentSensor.isProbing() ? SAMPLE_FLAG_UNCALIBRATED : 0)
+            | (currentSensor.isStale() ? SAMPLE_FLAG_CURRENT_STALE : 0);
+        
+        accumulate(timestampNanos, currentNow, chargeCounter, energyCounter, voltage);
+        
+        if (isRateChanged) {
+            flags |= SAMPLE_FLAG_RATE_CHANGED;
+            isRateChanged = false;
+        }
+        int periodMs = (int) (periodNanos / 1_000_000L);
+        
+        for (SampleListener listener : listeners) {
+            listener.onSample(timestampNanos, currentNow, currentAverage, chargeCounter, energyCounter,
+                voltage, level, flags, periodMs);
+        }
+        
+        adaptPeriod(timestampNanos, currentNow);
+        busyNanos += clock.elapsedRealtimeNanos() - timestampNanos;
+    }
+    
+    /**
+     * 依電流變化決定下一個區間的週期，並同步排程器與積分的缺口門檻
+     */
+    private void adaptPeriod(long timestampNanos, int currentNow) {
+        long next = rateController.update(timestampNanos, currentNow);
+        if (next == periodNanos) {
+            return;
+        }
+        
+        periodNanos = next;
+        isRateChanged = true;
+        energyAccumulator.setMaxGapNanos(next * MAX_GAP_PERIODS);
+        chargeAccumulator.setMaxGapNanos(next * MAX_GAP_PERIODS);
+        scheduler.setPeriod(this, next / 1_000_000L);
+    }
+    
+    /**
+     * sysfs 不可讀時的回退來源：電流與計數器走平台來源（BatteryManager），其餘取自最近的電池廣播
+     */
+    private long readFallback(int field) {
+        switch (field) {
+            case BatterySource.FIELD_VOLTAGE_NOW: {
+                int voltage = batteryStatus.getSnapshot().getVoltage();
+                return voltage > 0 ? voltage : BatterySource.UNSUPPORTED;
+            }
+            case BatterySource.FIELD_CAPACITY:
+                return batteryStatus.getSnapshot().getPercent();
+            case BatterySource.FIELD_TEMP:
+                return batteryStatus.getSnapshot().getTemperature();
+            default:
+                return fallbackSource != null ? fallbackSource.read(field) : BatterySource.UNSUPPORTED;
+        }
+    }
+    
+    private static int toInt(long value) {
+        if (value == BatterySource.UNSUPPORTED || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return Integer.MIN_VALUE;
+        }
+        return (int) value;
+    }
+    
+    private void accumulate(long timestampNanos, int currentNow, int chargeCounter, long energyCounter, int voltage) {
+        if (isValidCounter(chargeCounter)) {
+            if (firstChargeCounter == Integer.MIN_VALUE) {
+                firstChargeCounter = chargeCounter;
+            }
+            lastChargeCounter = chargeCounter;
+        }
+        
+        if (energyCounter != Long.MIN_VALUE && energyCounter > 0) {
+            if (firstEnergyCounter == Long.MIN_VALUE) {
+                firstEnergyCounter = energyCounter;
+            }
+            lastEnergyCounter = energyCounter;
+        }
+        
+        // 與上次取樣相隔超過 1.5 個週期時，計入錯過的刻度（例如系統休眠）
+        if (sampleCount > 0) {
+            long gap = timestampNanos - lastTimestampNanos;
+            if (gap * 2 > periodNanos * 3) {
+                missedTicks += (gap + periodNanos / 2) / periodNanos - 1;
+            }
+        }
+        
+        energyAccumulator.add(timestampNanos, currentNow, voltage);
+        chargeAccumulator.add(timestampNanos, currentNow, UNIT_VOLTAGE_MV);
+        
+        if (sampleCount == 0) {
+            firstTimestampNanos = timestampNanos;
+        }
+        lastTimestampNanos = timestampNanos;
+        sampleCount++;
+    }
+    
+    private static boolean isValidCounter(int value) {
+        return value != Integer.MIN_VALUE && value > 0;
+    }
+    
+    /**
+     * 獲取本次取樣期間消耗的電荷量 (mAh)
+     * 優先使用 CHARGE_COUNTER 差值，設備不支援時改用電流的梯形積分，缺口以平均電流補上
+     */
+    public double getChargeConsumedMah() {
+        if (isValidCounter(firstChargeCounter) && isValidCounter(lastChargeCounter)
+                && firstChargeCounter != lastChargeCounter) {
+            return Math.max(0, (firstChargeCounter - lastChargeCounter) / 1000.0);
+        }
+        return Math.max(0, chargeAccumulator.getEnergyMilliwattHours());
+    }
+    
+    /**
+     * 獲取本次取樣期間消耗的能量 (mWh)
+     * 優先使用 ENERGY_COUNTER 差值，設備不支援時改用電壓 × 電流的梯形積分
+     */
+    public double getEnergyConsumedMwh() {
+        if (firstEnergyCounter != Long.MIN_VALUE && lastEnergyCounter != Long.MIN_VALUE
+                && firstEnergyCounter != lastEnergyCounter) {
+            return Math.max(0, (firstEnergyCounter - lastEnergyCounter) / 1_000_000.0);
+        }
+        return Math.max(0, energyAccumulator.getEnergyMilliwattHours());
+    }
+    
+    /**
+     * 獲取本次取樣期間的平均放電功率 (mW)
+     */
+    public double getAveragePowerMilliwatts() {
+        long span = energyAccumulator.getSpanNanos();
+        if (span <= 0) {
+            return 0.0;
+        }
+        return getEnergyConsumedMwh() * 3600.0 * 1e9 / span;
+    }
+    
+    /**
+     * 獲取本次取樣期間的最高瞬時放電功率 (mW)
+     */
+    public double getPeakPowerMilliwatts() {
+        return energyAccumulator.getPeakPowerMilliwatts();
+    }
+    
+    /**
+     * 將本次取樣的電荷、能量、功率與取樣成本寫入測試結果，少於兩筆取樣時不寫入
+     */
+    public void writeTo(TestResult result) {
+        if (sampleCount <= 1) {
+            return;
+        }
+        result.setChargeConsumedMah(getChargeConsumedMah());
+        result.setEnergyMilliwattHours(getEnergyConsumedMwh());
+        result.setAveragePowerMilliwatts(getAveragePowerMilliwatts());
+        result.setPeakPowerMilliwatts(getPeakPowerMilliwatts());
+        result.setSamplerWakeupsPerSecond(scheduler.getWakeupsPerSecond());
+        result.setSamplingOverhead(busyNanos / 1e6, getFixedRateBusyNanos() / 1e6);
+    }
+    
+    /**
+     * 獲取電壓 × 電流積分的詳細資料（缺口、覆蓋時間）
+     */
+    public EnergyAccumulator getEnergyAccumulator() {
+        return energyAccumulator;
+    }
+    
+    /**
+     * 本次取樣使用的電流校正
+     */
+    public CurrentCalibration getCalibration() {
+        return currentSensor.getCalibration();
+    }
+    
+    public long getSampleCount() {
+        return sampleCount;
+    }
+    
+    public long getMissedTicks() {
+        return missedTicks;
+    }
+    
+    /**
+     * 本次取樣週期變更的次數
+     */
+    public int getRateChangeCount() {
+        return rateController.getRateChangeCount();
+    }
+    
+    /**
+     * 本次取樣實際花費的時間 (ns)，包含讀值、校正、累計與監聽器（寫入日誌）
+     */
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+    
+    /**
+     * 以固定最快週期取樣同一段時間的估計花費 (ns)，以本次平均每筆成本推算
+     */
+    public long getFixedRateBusyNanos() {
+        if (sampleCount == 0) {
+            return 0;
+        }
+        long fixedSamples = (lastTimestampNanos - firstTimestampNanos) / rateController.getFastPeriodNanos() + 1;
+        return busyNanos / sampleCount * Math.max(sampleCount, fixedSamples);
+    }
+}
@@ -0,0 +1,27 @@
+package com.batterymonitor.app.manager;
+
+/**
+ * 電池讀值來源
+ * BatterySampler 每次取樣經由此介面讀取各欄位；實機上是 SysfsBatteryReader（回退到 BatteryManager），
+ * 模擬時由 BatterySimulator 依放電曲線產生。
+ * 只在取樣執行緒上呼叫。
+ */
+public interface BatterySource {
+    
+    // 欄位與回傳單位，前五個與 SysfsBatteryReader 的節點欄位相同
+    int FIELD_CURRENT_NOW = 0;       // µA（方向依來源而定，由 CurrentSensorAdapter 正規化）
+    int FIELD_VOLTAGE_NOW = 1;       // mV
+    int FIELD_CHARGE_COUNTER = 2;    // µAh
+    int FIELD_CAPACITY = 3;          // %
+    int FIELD_TEMP = 4;              // 0.1°C
+    int FIELD_CURRENT_AVERAGE = 5;   // µA
+    int FIELD_ENERGY_COUNTER = 6;    // nWh
+    
+    /** 欄位不支援時的回傳值 */
+    long UNSUPPORTED = Long.MIN_VALUE;
+    
+    /**
+     * @return 以欄位單位表示的數值，不支援時回傳 UNSUPPORTED
+     */
+    long read(int field);
+}
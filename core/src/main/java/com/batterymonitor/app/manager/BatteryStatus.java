@@ -0,0 +1,98 @@
+package com.batterymonitor.app.manager;
+
+import com.batterymonitor.app.model.BatterySnapshot;
+import com.batterymonitor.app.utils.Logger;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 最新的電池狀態
+ * 將收到的狀態發布為不可變的 BatterySnapshot 並通知監聽器，所有 getter 只讀取快照欄位。
+ * 實機上由 BatteryMonitor 以電池廣播更新；模擬時由 BatterySimulator 經 onBatterySnapshotChanged() 提供。
+ */
+public class BatteryStatus implements BatteryListener {
+    
+    private static final String TAG = "BatteryStatus";
+    
+    private final CopyOnWriteArrayList<BatteryListener> listeners = new CopyOnWriteArrayList<>();
+    
+    private volatile BatterySnapshot snapshot = BatterySnapshot.UNKNOWN;
+    
+    protected void publish(BatterySnapshot newSnapshot) {
+        if (newSnapshot.getLevel() < 0 || newSnapshot.getScale() <= 0) {
+            return;
+        }
+        
+        BatterySnapshot previous = snapshot;
+        snapshot = newSnapshot;
+        
+        boolean levelChanged = previous == BatterySnapshot.UNKNOWN
+            || previous.getPercent() != newSnapshot.getPercent()
+            || previous.isCharging() != newSnapshot.isCharging();
+        
+        for (BatteryListener listener : listeners) {
+            try {
+                listener.onBatterySnapshotChanged(newSnapshot);
+                if (levelChanged) {
+                    listener.onBatteryLevelChanged(newSnapshot.getPercent(), newSnapshot.isCharging());
+                }
+            } catch (Exception e) {
+                Logger.e(TAG, "Error notifying battery listener", e);
+            }
+        }
+    }
+    
+    @Override
+    public void onBatterySnapshotChanged(BatterySnapshot newSnapshot) {
+        publish(newSnapshot);
+    }
+    
+    @Override
+    public void onBatteryLow() {
+        for (BatteryListener listener : listeners) {
+            listener.onBatteryLow();
+        }
+    }
+    
+    @Override
+    public void onBatteryOkay() {
+        for (BatteryListener listener : listeners) {
+            listener.onBatteryOkay();
+        }
+    }
+    
+    /**
+     * 新增電池狀態監聽器
+     */
+    public void addListener(BatteryListener listener) {
+        if (listener != null) {
+            listeners.addIfAbsent(listener);
+        }
+    }
+    
+    /**
+     * 移除電池狀態監聽器
+     */
+    public void removeListener(BatteryListener listener) {
+        listeners.remove(listener);
+    }
+    
+    protected void clearListeners() {
+        listeners.clear();
+    }
+    
+    /**
+     * 獲取最新的電池快照
+     */
+    public BatterySnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    public int getCurrentBatteryLevel() {
+        return snapshot.getPercent();
+    }
+    
+    public boolean isCharging() {
+        return snapshot.isCharging();
+    }
+}
@@ -0,0 +1,114 @@
+package com.batterymonitor.app.manager;
+
+import com.batterymonitor.app.probe.SysfsNode;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * sysfs 電池節點快速讀取器
+ * 高頻取樣時，每次經由 BatteryManager（binder 呼叫）或廣播讀值的成本比量測本身還高。
+ * 可讀取時直接以 SysfsNode 從 power_supply 節點讀取（重複使用 FileChannel、逐位元組解析整數，不建立字串）。
+ * 任一欄位開啟、讀取或解析失敗時，該欄位之後改由 Fallback（BatteryManager 路徑）提供，其他欄位不受影響。
+ * 沒有對應節點的欄位（平均電流、能量計數器）一律由 Fallback 提供。
+ *
+ * 節點根目錄可注入，方便在一般 Linux 上以假的目錄結構驗證解析與回退邏輯。
+ * 只能在單一執行緒上使用。
+ */
+public final class SysfsBatteryReader implements BatterySource, Closeable {
+    
+    public static final File DEFAULT_ROOT = new File("/sys/class/power_supply/battery");
+    
+    // 有 sysfs 節點的欄位數（BatterySource.FIELD_CURRENT_NOW 到 FIELD_TEMP）
+    public static final int FIELD_COUNT = 5;
+    
+    private static final String[] NODE_NAMES = {
+        "current_now", "voltage_now", "charge_counter", "capacity", "temp"
+    };
+    
+    // voltage_now 以 µV 回報，其餘節點單位與 BatteryManager 相同
+    private static final int[] NODE_DIVISORS = { 1, 1000, 1, 1, 1 };
+    
+    /**
+     * sysfs 無法提供時的讀取來源
+     */
+    public interface Fallback {
+        /**
+         * @return 以欄位單位表示的數值，不支援時回傳 UNSUPPORTED
+         */
+        long read(int field);
+    }
+    
+    private final File root;
+    private final Fallback fallback;
+    private final SysfsNode[] nodes = new SysfsNode[FIELD_COUNT];
+    private final boolean[] useFallback = new boolean[FIELD_COUNT];
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(SysfsNode.BUFFER_SIZE);
+    private boolean isClosed = false;
+    
+    /**
+     * @param root 節點根目錄，null 表示全部欄位使用 Fallback
+     */
+    public SysfsBatteryReader(File root, Fallback fallback) {
+        this.root = root;
+        this.fallback = fallback;
+        if (root == null) {
+            Arrays.fill(useFallback, true);
+        }
+    }
+    
+    /**
+     * 讀取欄位，sysfs 不可用時自動改用 Fallback
+     */
+    @Override
+    public long read(int field) {
+        if (field < FIELD_COUNT && !useFallback[field] && !isClosed) {
+            long value = readSysfs(field);
+            if (value != UNSUPPORTED) {
+                return value;
+            }
+            // 之後不再嘗試該節點
+            useFallback[field] = true;
+            closeChannel(field);
+        }
+        return fallback != null ? fallback.read(field) : UNSUPPORTED;
+    }
+    
+    /**
+     * 欄位目前是否由 sysfs 提供（尚未讀取過的欄位視為是）
+     */
+    public boolean isSysfs(int field) {
+        return field < FIELD_COUNT && !useFallback[field];
+    }
+    
+    private long readSysfs(int field) {
+        SysfsNode node = nodes[field];
+        if (node == null) {
+            node = new SysfsNode(new File(root, NODE_NAMES[field]));
+            nodes[field] = node;
+        }
+        
+        long value = node.readLong(buffer);
+        if (value == SysfsNode.INVALID) {
+            return UNSUPPORTED;
+        }
+        return value / NODE_DIVISORS[field];
+    }
+    
+    private void closeChannel(int field) {
+        if (nodes[field] != null) {
+            nodes[field].close();
+            nodes[field] = null;
+        }
+    }
+    
+    @Override
+    public void close() {
+        isClosed = true;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            closeChannel(field);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.batterymonitor.app.manager;
+
+import com.batterymonitor.app.data.Crc32c;
+import com.batterymonitor.app.utils.Clock;
+import com.batterymonitor.app.utils.Logger;
+import com.batterymonitor.app.utils.Utf8;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 測試工作階段的狀態機
+ * IDLE → PRECONDITIONING（準備 WakeLock、日誌與取樣）→ RUNNING → STOPPING → COMPLETED，
+ * 任何進行中的狀態都可以 abandon() 回到 IDLE。
+ *
+ * 每次轉換都寫入一個小型檢查點檔（先寫暫存檔再改名，不 fsync）：
+ * 服務被系統終止後核心仍保留檔案，START_STICKY 重啟時可依此恢復同一個測試；
+ * 重新開機後 elapsedRealtime 歸零，測試無法以正確時長恢復，此時交由取樣日誌恢復流程匯入。
+ * 檢查點也保存 WakeLock 的持有統計，恢復時服務未執行的時間可計為缺口。
+ *
+ * 整個程序共用一個實例，只在主執行緒使用；模擬時以虛擬時鐘另外建立實例。
+ */
+public class TestManager {
+    
+    private static final String TAG = "TestManager";
+    
+    public static final String FILE_NAME = "session.dat";
+    
+    // 狀態
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_PRECONDITIONING = 1;
+    public static final int STATE_RUNNING = 2;
+    public static final int STATE_STOPPING = 3;
+    public static final int STATE_COMPLETED = 4;
+    
+    private static final String[] STATE_NAMES = {
+        "IDLE", "PRECONDITIONING", "RUNNING", "STOPPING", "COMPLETED"
+    };
+    
+    private static final int MAGIC = 0x424D5453;   // "BMTS"
+    private static final int VERSION = 2;
+    private static final int FIXED_SIZE_V1 = 62;   // 不含主題與 CRC
+    private static final int FIXED_SIZE = 90;      // 第 2 版加上 WakeLock 統計
+    private static final int MAX_SUBJECT_BYTES = 400;
+    
+    // 開機時間（牆上時間 - elapsedRealtime）的容許誤差，超過視為已重新開機或系統時間被大幅調整
+    private static final long BOOT_TOLERANCE_MS = 60 * 1000L;
+    
+    private static TestManager instance;
+    
+    private final File file;
+    private final Clock clock;
+    
+    private int state = STATE_IDLE;
+    private long startTime = 0;              // 開始牆上時間，同時作為測試 ID
+    private long startElapsedRealtime = 0;
+    private long bootTime = 0;               // 開始時的 currentTimeMillis - elapsedRealtime
+    private long plannedDuration = 0;
+    private int startBatteryLevel = 100;
+    private int endBatteryLevel = 100;
+    private long duration = 0;               // 完成時的實際時長
+    private String testSubject = "";
+    
+    // 最近一次寫入的 WakeLock 統計與寫入時間
+    private long wakeLockCheckpointElapsed = 0;
+    private long wakeLockHeldMillis = 0;
+    private int wakeLockGapCount = 0;
+    private long wakeLockGapMillis = 0;
+    
+    /**
+     * 建立獨立的實例（例如模擬），檢查點寫入指定檔案
+     */
+    public TestManager(File file, Clock clock) {
+        this.file = file;
+        this.clock = clock;
+        load();
+    }
+    
+    /**
+     * 獲取程序共用的實例，首次呼叫時讀取 filesDir 下的檢查點
+     */
+    public static synchronized TestManager getInstance(File filesDir, Clock clock) {
+        if (instance == null) {
+            instance = new TestManager(new File(filesDir, FILE_NAME), clock);
+        }
+        return instance;
+    }
+    
+    /**
+     * 開始準備新的測試（IDLE/COMPLETED → PRECONDITIONING）
+     * @return 目前已有進行中的測試時回傳 false
+     */
+    public boolean startTest(String subject, int batteryLevel, long plannedDurationMs) {
+        if (state != STATE_IDLE && state != STATE_COMPLETED) {
+            Logger.w(TAG, "Cannot start test in state " + getStateName());
+            return false;
+        }
+        
+        startTime = clock.currentTimeMillis();
+        startElapsedRealtime = clock.elapsedRealtime();
+        bootTime = startTime - startElapsedRealtime;
+        plannedDuration = plannedDurationMs;
+        startBatteryLevel = batteryLevel;
+        endBatteryLevel = batteryLevel;
+        duration = 0;
+        testSubject = subject != null ? subject : "";
+        wakeLockCheckpointElapsed = startElapsedRealtime;
+        wakeLockHeldMillis = 0;
+        wakeLockGapCount = 0;
+        wakeLockGapMillis = 0;
+        transition(STATE_PRECONDITIONING);
+        Logger.d(TAG, "Test started at battery level: " + startBatteryLevel + "%");
+        return true;
+    }
+    
+    /**
+     * 準備完成，開始計時取樣（PRECONDITIONING → RUNNING）
+     */
+    public boolean markRunning() {
+        return transition(STATE_PRECONDITIONING, STATE_RUNNING);
+    }
+    
+    /**
+     * 開始停止流程（RUNNING → STOPPING）
+     */
+    public boolean stopTest() {
+        return transition(STATE_RUNNING, STATE_STOPPING);
+    }
+    
+    /**
+     * 結果已建立並交給寫入佇列（STOPPING → COMPLETED）
+     */
+    public boolean complete(int batteryLevel, long actualDuration) {
+        if (state != STATE_STOPPING) {
+            Logger.w(TAG, "Cannot complete test in state " + getStateName());
+            return false;
+        }
+        endBatteryLevel = batteryLevel;
+        duration = actualDuration;
+        transition(STATE_COMPLETED);
+        Logger.d(TAG, "Test stopped");
+        return true;
+    }
+    
+    /**
+     * 放棄進行中的測試，取樣日誌留給恢復流程匯入
+     */
+    public void abandon() {
+        if (isInProgress()) {
+            Logger.w(TAG, "Test abandoned in state " + getStateName());
+            transition(STATE_IDLE);
+        }
+    }
+    
+    /**
+     * 將目前測試的 WakeLock 統計寫入檢查點，例如每次續約時
+     */
+    public void saveWakeLockStats(long heldMillis, int gapCount, long gapMillis) {
+        if (!isInProgress()) {
+            return;
+        }
+        wakeLockCheckpointElapsed = clock.elapsedRealtime();
+        wakeLockHeldMillis = heldMillis;
+        wakeLockGapCount = gapCount;
+        wakeLockGapMillis = gapMillis;
+        save();
+    }
+    
+    private boolean transition(int from, int to) {
+        if (state != from) {
+            Logger.w(TAG, "Invalid transition " + getStateName() + " -> " + STATE_NAMES[to]);
+            return false;
+        }
+        transition(to);
+        return true;
+    }
+    
+    private void transition(int to) {
+        Logger.d(TAG, "State " + getStateName() + " -> " + STATE_NAMES[to]);
+        state = to;
+        save();
+    }
+    
+    public int getState() {
+        return state;
+    }
+    
+    public String getStateName() {
+        return STATE_NAMES[state];
+    }
+    
+    public boolean isTestRunning() {
+        return state == STATE_RUNNING;
+    }
+    
+    /**
+     * 是否有尚未結束的測試（包含準備與停止中）
+     */
+    public boolean isInProgress() {
+        return state == STATE_PRECONDITIONING || state == STATE_RUNNING || state == STATE_STOPPING;
+    }
+    
+    /**
+     * 進行中的測試能否在本次開機中以正確的時長繼續
+     * 只有 RUNNING 狀態、仍在同一次開機且尚未超過計劃時長的測試可以恢復
+     */
+    public boolean isResumable() {
+        if (state != STATE_RUNNING) {
+            return false;
+        }
+        long elapsedRealtime = clock.elapsedRealtime();
+        long currentBootTime = clock.currentTimeMillis() - elapsedRealtime;
+        return elapsedRealtime >= startElapsedRealtime
+            && Math.abs(currentBootTime - bootTime) <= BOOT_TOLERANCE_MS
+            && elapsedRealtime < startElapsedRealtime + plannedDuration;
+    }
+    
+    public boolean hasCompletedTest() {
+        return state == STATE_COMPLETED;
+    }
+    
+    /** 測試 ID（開始牆上時間），與取樣日誌目錄名稱相同 */
+    public long getRunId() {
+        return startTime;
+    }
+    
+    public long getStartTime() {
+        return startTime;
+    }
+    
+    public long getStartElapsedRealtime() {
+        return startElapsedRealtime;
+    }
+    
+    public long getPlannedDuration() {
+        return plannedDuration;
+    }
+    
+    public int getStartBatteryLevel() {
+        return startBatteryLevel;
+    }
+    
+    public String getTestSubject() {
+        return testSubject;
+    }
+    
+    /** WakeLock 統計寫入檢查點時的 elapsedRealtime，尚未寫入時為測試開始時間 */
+    public long getWakeLockCheckpointElapsed() {
+        return wakeLockCheckpointElapsed;
+    }
+    
+    public long getWakeLockHeldMillis() {
+        return wakeLockHeldMillis;
+    }
+    
+    public int getWakeLockGapCount() {
+        return wakeLockGapCount;
+    }
+    
+    public long getWakeLockGapMillis() {
+        return wakeLockGapMillis;
+    }
+    
+    public int getLastTestBatteryConsumed() {
+        return state == STATE_COMPLETED ? Math.max(0, startBatteryLevel - endBatteryLevel) : 0;
+    }
+    
+    public long getLastTestDuration() {
+        return state == STATE_COMPLETED ? duration : 0;
+    }
+    
+    /**
+     * 目前測試已進行的時間；已完成時回傳實際時長
+     */
+    public long getElapsedTime() {
+        if (isInProgress()) {
+            return clock.elapsedRealtime() - startElapsedRealtime;
+        }
+        return getLastTestDuration();
+    }
+    
+    /**
+     * 寫入檢查點：先寫暫存檔再改名，避免留下寫到一半的檔案
+     */
+    private void save() {
+        byte[] subject = testSubject.getBytes(StandardCharsets.UTF_8);
+        int subjectLength = Utf8.truncatedLength(subject, MAX_SUBJECT_BYTES);
+        int size = FIXED_SIZE + subjectLength + 4;
+        
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(state);
+        buffer.putLong(startTime).putLong(startElapsedRealtime).putLong(bootTime).putLong(plannedDuration);
+        buffer.putInt(startBatteryLevel).putInt(endBatteryLevel).putLong(duration);
+        buffer.putLong(wakeLockCheckpointElapsed).putLong(wakeLockHeldMillis).putInt(wakeLockGapCount)
+            .putLong(wakeLockGapMillis);
+        buffer.putShort((short) subjectLength);
+        buffer.put(subject, 0, subjectLength);
+        buffer.putInt(Crc32c.compute(buffer, 0, size - 4));
+        
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(buffer.array(), 0, size);
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Cannot replace session file: " + file);
+            }
+        } catch (IOException e) {
+            Logger.e(TAG, "Error saving session checkpoint", e);
+        }
+    }
+    
+    /**
+     * 讀取檢查點，檔案不存在或損壞時維持 IDLE
+     */
+    private void load() {
+        if (!file.isFile() || file.length() < FIXED_SIZE_V1 + 4 || file.length() > FIXED_SIZE + MAX_SUBJECT_BYTES + 4) {
+            return;
+        }
+        
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            int bodyLength = bytes.length - 4;
+            if (Crc32c.compute(buffer, 0, bodyLength) != buffer.getInt(bodyLength) || buffer.getInt() != MAGIC) {
+                Logger.w(TAG, "Ignoring invalid session checkpoint");
+                return;
+            }
+            // 第 1 版沒有 WakeLock 統計，升級前進行中的測試仍可恢復
+            int version = buffer.getInt();
+            int fixedSize = version == 1 ? FIXED_SIZE_V1 : FIXED_SIZE;
+            if ((version != 1 && version != VERSION) || bodyLength < fixedSize) {
+                Logger.w(TAG, "Ignoring session checkpoint version " + version);
+                return;
+            }
+            
+            int savedState = buffer.getInt();
+            if (savedState < STATE_IDLE || savedState > STATE_COMPLETED) {
+                return;
+            }
+            startTime = buffer.getLong();
+            startElapsedRealtime = buffer.getLong();
+            bootTime = buffer.getLong();
+            plannedDuration = buffer.getLong();
+            startBatteryLevel = buffer.getInt();
+            endBatteryLevel = buffer.getInt();
+            duration = buffer.getLong();
+            if (version == 1) {
+                wakeLockCheckpointElapsed = startElapsedRealtime;
+            } else {
+                wakeLockCheckpointElapsed = buffer.getLong();
+                wakeLockHeldMillis = buffer.getLong();
+                wakeLockGapCount = buffer.getInt();
+                wakeLockGapMillis = buffer.getLong();
+            }
+            int subjectLength = Math.min(buffer.getShort() & 0xFFFF, bodyLength - fixedSize);
+            testSubject = new String(bytes, fixedSize, subjectLength, StandardCharsets.UTF_8);
+            state = savedState;
+            Logger.d(TAG, "Session checkpoint loaded: " + getStateName() + ", run " + startTime);
+        } catch (IOException | RuntimeException e) {
+            Logger.e(TAG, "Error loading session checkpoint", e);
+        }
+    }
+}
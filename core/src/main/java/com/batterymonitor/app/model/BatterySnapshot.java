@@ -0,0 +1,105 @@
+package com.batterymonitor.app.model;
+
+/**
+ * 電池狀態快照（不可變）
+ * 由 BatteryMonitor 在收到 ACTION_BATTERY_CHANGED 時建立，之後只透過引用替換發布
+ */
+public final class BatterySnapshot {
+    
+    /** 尚未收到任何電池廣播時使用的預設快照 */
+    public static final BatterySnapshot UNKNOWN = new BatterySnapshot(100, 100, -1, 0, 0, 0, -1, 0);
+    
+    // 對應 BatteryManager.BATTERY_STATUS_CHARGING / BATTERY_STATUS_FULL
+    private static final int STATUS_CHARGING = 2;
+    private static final int STATUS_FULL = 5;
+    
+    private final int level;            // 原始電量 (EXTRA_LEVEL)
+    private final int scale;            // 電量刻度 (EXTRA_SCALE)
+    private final int status;           // 充電狀態 (EXTRA_STATUS)
+    private final int plugged;          // 電源類型 (EXTRA_PLUGGED)，0 表示未接電源
+    private final int voltage;          // 電壓 (mV)
+    private final int temperature;      // 溫度 (0.1°C)
+    private final int health;           // 健康狀態 (EXTRA_HEALTH)
+    private final long timestamp;       // 建立時間 (SystemClock.elapsedRealtime, 毫秒)
+    
+    public BatterySnapshot(int level, int scale, int status, int plugged,
+                           int voltage, int temperature, int health, long timestamp) {
+        this.level = level;
+        this.scale = scale;
+        this.status = status;
+        this.plugged = plugged;
+        this.voltage = voltage;
+        this.temperature = temperature;
+        this.health = health;
+        this.timestamp = timestamp;
+    }
+    
+    public int getLevel() {
+        return level;
+    }
+    
+    public int getScale() {
+        return scale;
+    }
+    
+    public int getStatus() {
+        return status;
+    }
+    
+    public int getPlugged() {
+        return plugged;
+    }
+    
+    public int getVoltage() {
+        return voltage;
+    }
+    
+    public int getTemperature() {
+        return temperature;
+    }
+    
+    public int getHealth() {
+        return health;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    /**
+     * 獲取電量百分比
+     */
+    public int getPercent() {
+        if (level < 0 || scale <= 0) {
+            return 100;
+        }
+        return (int) ((level / (float) scale) * 100);
+    }
+    
+    /**
+     * 是否正在充電（充飽也視為充電中）
+     */
+    public boolean isCharging() {
+        return status == STATUS_CHARGING || status == STATUS_FULL;
+    }
+    
+    /**
+     * 是否接上外部電源
+     */
+    public boolean isPlugged() {
+        return plugged != 0;
+    }
+    
+    /**
+     * 獲取攝氏溫度
+     */
+    public float getTemperatureCelsius() {
+        return temperature / 10f;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("BatterySnapshot{level=%d%%, status=%d, plugged=%d, voltage=%dmV, temp=%.1f°C}",
+            getPercent(), status, plugged, voltage, getTemperatureCelsius());
+    }
+}
@@ -1,8 +1,6 @@
 package com.batterymonitor.app.model;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import com.batterymonitor.app.format.DateFormats;
 
 /**
  * 電力測試結果數據模型
@@ -10,6 +8,7 @@ import java.util.Locale;
  */
 public class TestResult {
     
+    private long id;                // 記錄 ID（由 RunStore 指定，0 表示尚未保存）
     private long startTime;         // 開始時間戳
     private long endTime;           // 結束時間戳
     private int startBatteryLevel;  // 開始電量百分比
@@ -17,6 +16,21 @@ public class TestResult {
     private long plannedDuration;   // 計劃測試時長（毫秒）
     private long actualDuration;    // 實際測試時長（毫秒）
     private String testSubject;     // 測試項目主題
+    private double chargeConsumedMah;   // 消耗電荷量 (mAh)，0 表示無取樣數據
+    private double energyMilliwattHours; // 消耗能量 (mWh)，0 表示無取樣數據
+    private double averagePowerMilliwatts; // 平均放電功率 (mW)，0 表示無取樣數據
+    private double peakPowerMilliwatts;    // 最高瞬時放電功率 (mW)
+    private int levelStepCount;         // 電量跳變次數，少於 2 表示無跳變估計
+    private double estimatedConsumption;      // 跳變迴歸估計的消耗 (%)
+    private double estimatedConsumptionError = Double.NaN; // 估計消耗 95% 信賴區間半寬
+    private double estimatedRate;             // 跳變迴歸估計的消耗率 (%/h)
+    private double estimatedRateError = Double.NaN;        // 估計消耗率 95% 信賴區間半寬
+    private double samplerWakeupsPerSecond; // 取樣排程器每秒喚醒次數，0 表示無取樣數據
+    private double samplingBusyMillis;      // 電池取樣實際花費的時間 (ms)
+    private double fixedRateBusyMillis;     // 以固定最快週期取樣的估計花費 (ms)
+    private long wakeLockHeldMillis;        // 螢幕常亮 WakeLock 實際持有時間 (ms)，0 表示無記錄
+    private int wakeLockGapCount;           // WakeLock 租約失效次數
+    private long wakeLockGapMillis;         // WakeLock 租約失效總時間 (ms)
     
     // 構造函數
     public TestResult() {
@@ -45,6 +59,14 @@ public class TestResult {
     }
     
     // Getter和Setter方法
+    public long getId() {
+        return id;
+    }
+    
+    public void setId(long id) {
+        this.id = id;
+    }
+    
     public long getStartTime() {
         return startTime;
     }
@@ -101,6 +123,143 @@ public class TestResult {
         this.testSubject = testSubject != null ? testSubject : "";
     }
     
+    public double getChargeConsumedMah() {
+        return chargeConsumedMah;
+    }
+    
+    public void setChargeConsumedMah(double chargeConsumedMah) {
+        this.chargeConsumedMah = chargeConsumedMah;
+    }
+    
+    public double getEnergyMilliwattHours() {
+        return energyMilliwattHours;
+    }
+    
+    public void setEnergyMilliwattHours(double energyMilliwattHours) {
+        this.energyMilliwattHours = energyMilliwattHours;
+    }
+    
+    public int getLevelStepCount() {
+        return levelStepCount;
+    }
+    
+    public double getEstimatedConsumption() {
+        return estimatedConsumption;
+    }
+    
+    public double getEstimatedConsumptionError() {
+        return estimatedConsumptionError;
+    }
+    
+    public double getEstimatedRate() {
+        return estimatedRate;
+    }
+    
+    public double getEstimatedRateError() {
+        return estimatedRateError;
+    }
+    
+    /**
+     * 設定由電量跳變時間迴歸得到的估計值
+     * @param consumptionError 信賴區間半寬，無法計算時為 NaN
+     * @param rateError 信賴區間半寬，無法計算時為 NaN
+     */
+    public void setLevelStepEstimate(int stepCount, double consumption, double consumptionError,
+                                     double rate, double rateError) {
+        this.levelStepCount = stepCount;
+        this.estimatedConsumption = consumption;
+        this.estimatedConsumptionError = consumptionError;
+        this.estimatedRate = rate;
+        this.estimatedRateError = rateError;
+    }
+    
+    public double getAveragePowerMilliwatts() {
+        return averagePowerMilliwatts;
+    }
+    
+    public void setAveragePowerMilliwatts(double averagePowerMilliwatts) {
+        this.averagePowerMilliwatts = averagePowerMilliwatts;
+    }
+    
+    public double getPeakPowerMilliwatts() {
+        return peakPowerMilliwatts;
+    }
+    
+    public void setPeakPowerMilliwatts(double peakPowerMilliwatts) {
+        this.peakPowerMilliwatts = peakPowerMilliwatts;
+    }
+    
+    public double getSamplerWakeupsPerSecond() {
+        return samplerWakeupsPerSecond;
+    }
+    
+    public void setSamplerWakeupsPerSecond(double samplerWakeupsPerSecond) {
+        this.samplerWakeupsPerSecond = samplerWakeupsPerSecond;
+    }
+    
+    public double getSamplingBusyMillis() {
+        return samplingBusyMillis;
+    }
+    
+    public double getFixedRateBusyMillis() {
+        return fixedRateBusyMillis;
+    }
+    
+    /**
+     * 設定取樣自身開銷
+     * @param busyMillis 實際花費的時間
+     * @param fixedRateMillis 以固定最快週期取樣的估計花費
+     */
+    public void setSamplingOverhead(double busyMillis, double fixedRateMillis) {
+        this.samplingBusyMillis = busyMillis;
+        this.fixedRateBusyMillis = fixedRateMillis;
+    }
+    
+    /**
+     * 是否有取樣自身開銷的數據
+     */
+    public boolean hasSamplingOverhead() {
+        return samplingBusyMillis > 0;
+    }
+    
+    public long getWakeLockHeldMillis() {
+        return wakeLockHeldMillis;
+    }
+    
+    public int getWakeLockGapCount() {
+        return wakeLockGapCount;
+    }
+    
+    public long getWakeLockGapMillis() {
+        return wakeLockGapMillis;
+    }
+    
+    /**
+     * 設定螢幕常亮 WakeLock 的持有記錄
+     * @param heldMillis 實際持有時間（已扣除缺口）
+     * @param gapCount 租約失效次數
+     * @param gapMillis 租約失效總時間
+     */
+    public void setWakeLockStats(long heldMillis, int gapCount, long gapMillis) {
+        this.wakeLockHeldMillis = heldMillis;
+        this.wakeLockGapCount = gapCount;
+        this.wakeLockGapMillis = gapMillis;
+    }
+    
+    /**
+     * 是否有 WakeLock 持有記錄
+     */
+    public boolean hasWakeLockData() {
+        return wakeLockHeldMillis > 0;
+    }
+    
+    /**
+     * 測試期間螢幕常亮條件是否曾中斷
+     */
+    public boolean hasWakeLockGaps() {
+        return wakeLockGapCount > 0;
+    }
+    
     // 兼容性方法
     public void setDuration(long duration) {
         this.actualDuration = duration;
@@ -136,6 +295,39 @@ public class TestResult {
         return getBatteryConsumed() / hoursElapsed;
     }
     
+    /**
+     * 是否有取樣器提供的高解析度數據（mAh / mWh）
+     */
+    public boolean hasHighResolutionData() {
+        return chargeConsumedMah > 0 || energyMilliwattHours > 0;
+    }
+    
+    /**
+     * 是否有電壓 × 電流積分的功率數據
+     */
+    public boolean hasPowerData() {
+        return averagePowerMilliwatts > 0 || peakPowerMilliwatts > 0;
+    }
+    
+    /**
+     * 是否有電量跳變迴歸的小數級估計
+     */
+    public boolean hasLevelStepEstimate() {
+        return levelStepCount >= 2;
+    }
+    
+    /**
+     * 獲取電荷消耗率（每小時消耗 mAh）
+     */
+    public double getChargeConsumptionRate() {
+        if (actualDuration <= 0) {
+            return 0.0;
+        }
+        
+        double hoursElapsed = actualDuration / (1000.0 * 60.0 * 60.0);
+        return chargeConsumedMah / hoursElapsed;
+    }
+    
     /**
      * 獲取測試完成度百分比
      */
@@ -193,16 +385,14 @@ public class TestResult {
      * 格式化開始時間
      */
     public String getFormattedStartTime() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss", Locale.getDefault());
-        return sdf.format(new Date(startTime));
+        return DateFormats.formatDateTime(startTime);
     }
     
     /**
      * 格式化結束時間
      */
     public String getFormattedEndTime() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss", Locale.getDefault());
-        return sdf.format(new Date(endTime));
+        return DateFormats.formatDateTime(endTime);
     }
     
     /**
@@ -246,20 +436,55 @@ public class TestResult {
         return String.format("%.1f%%/h", getConsumptionRate());
     }
     
+    /**
+     * 格式化跳變估計的消耗與消耗率，例如 "0.84% (1.68 ± 0.12%/h)"
+     */
+    public String getFormattedEstimatedConsumption() {
+        if (Double.isNaN(estimatedRateError)) {
+            return String.format("%.2f%% (%.2f%%/h)", estimatedConsumption, estimatedRate);
+        }
+        return String.format("%.2f ± %.2f%% (%.2f ± %.2f%%/h)",
+            estimatedConsumption, estimatedConsumptionError, estimatedRate, estimatedRateError);
+    }
+    
+    /**
+     * 格式化消耗電荷量與能量
+     */
+    public String getFormattedChargeConsumed() {
+        return String.format("%.1f mAh / %.1f mWh", chargeConsumedMah, energyMilliwattHours);
+    }
+    
+    /**
+     * 格式化平均與峰值功率
+     */
+    public String getFormattedPower() {
+        return String.format("平均 %.0f mW / 峰值 %.0f mW", averagePowerMilliwatts, peakPowerMilliwatts);
+    }
+    
+    /**
+     * 格式化螢幕常亮持有時間，有中斷時附上中斷次數與時間
+     */
+    public String getFormattedWakeLock() {
+        String held = String.format("%.1f 分鐘", wakeLockHeldMillis / 60000.0);
+        if (!hasWakeLockGaps()) {
+            return held;
+        }
+        return String.format("%s ⚠️ 中斷 %d 次 (%.1f 分鐘)", held,
+            wakeLockGapCount, wakeLockGapMillis / 60000.0);
+    }
+    
     /**
      * 格式化短開始時間
      */
     public String getFormattedStartTimeShort() {
-        SimpleDateFormat sdf = new SimpleDateFormat("HH:mm", Locale.getDefault());
-        return sdf.format(new Date(startTime));
+        return DateFormats.formatTimeShort(startTime);
     }
     
     /**
      * 格式化短結束時間
      */
     public String getFormattedEndTimeShort() {
-        SimpleDateFormat sdf = new SimpleDateFormat("HH:mm", Locale.getDefault());
-        return sdf.format(new Date(endTime));
+        return DateFormats.formatTimeShort(endTime);
     }
     
     /**
@@ -0,0 +1,47 @@
+package com.batterymonitor.app.probe;
+
+/**
+ * 可插拔的系統訊號探針
+ * 每個探針宣告讀取成本與建議週期，由 SamplingScheduler 在同一條執行緒上統一排程，
+ * 新增訊號時只需實作本介面並註冊，不需要再建立 Handler 或計時器。
+ *
+ * open()、sample() 與 close() 都在排程器的鎖內呼叫，實作不需要自行同步。
+ */
+public interface Probe {
+    
+    // 讀取成本，決定可使用的最短週期
+    int COST_LOW = 0;      // 單一 sysfs 讀取或行程內的計數器
+    int COST_MEDIUM = 1;   // 多個節點或一次 binder 呼叫
+    int COST_HIGH = 2;     // 列舉目錄或多次 binder 呼叫
+    
+    /** 探針名稱，用於日誌 */
+    String getName();
+    
+    /** 讀取成本（COST_LOW / COST_MEDIUM / COST_HIGH） */
+    int getCost();
+    
+    /** 建議的取樣週期 (ms) */
+    long getPreferredPeriodMs();
+    
+    /**
+     * 探針輸出的通道名稱，順序即為 sample() 中使用的本地通道編號
+     * 只透過監聽器輸出資料的探針回傳空陣列
+     */
+    String[] getChannelNames();
+    
+    /**
+     * 首次取樣前在排程執行緒上呼叫，用於開啟檔案等資源
+     */
+    void open();
+    
+    /**
+     * 取樣一次並將結果寫入 sink
+     * @param timestampNanos 本次取樣的 elapsedRealtimeNanos
+     */
+    void sample(long timestampNanos, ProbeSink sink);
+    
+    /**
+     * 取消註冊時呼叫，釋放 open() 開啟的資源
+     */
+    void close();
+}
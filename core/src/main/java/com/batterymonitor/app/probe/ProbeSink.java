@@ -0,0 +1,10 @@
+package com.batterymonitor.app.probe;
+
+/**
+ * 探針輸出的接收端，在排程執行緒上呼叫，參數皆為基本型別以避免配置物件
+ * 探針寫入時使用本地通道編號（getChannelNames() 中的索引），
+ * 排程器轉換為全域通道編號（SamplingScheduler.getChannelNames() 中的索引）後交給輸出端。
+ */
+public interface ProbeSink {
+    void write(int channel, long timestampNanos, long value);
+}
@@ -0,0 +1,439 @@
+package com.batterymonitor.app.probe;
+
+import com.batterymonitor.app.utils.Clock;
+import com.batterymonitor.app.utils.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 探針的統一取樣排程器
+ * 所有已註冊的探針共用一條執行緒：每次喚醒時，將已到期及即將到期的探針合併為同一批次依成本由低到高取樣，
+ * 結果以全域通道編號寫入輸出端（通常是該次測試的取樣儲存）。
+ * 各探針的週期對齊到同一錨點的 10 ms 格點上，週期成倍數關係的探針因此總是在同一次喚醒中取樣。
+ * 排程以 Clock.elapsedRealtimeNanos 為基準，落後超過一個週期時跳過錯過的刻度而不補取。
+ *
+ * 第一個探針註冊時啟動執行緒，最後一個探針取消註冊後執行緒自行結束。
+ * 手動模式（createManual）不建立執行緒，由呼叫端推進虛擬時鐘並呼叫 runDue()，供模擬使用。
+ * 取消註冊在鎖內完成，回傳時該探針不會再有進行中的取樣。
+ */
+public final class SamplingScheduler {
+    
+    private static final String TAG = "SamplingScheduler";
+    
+    public static final long MAX_PERIOD_MS = 60_000;
+    
+    // 各成本等級允許的最短週期
+    private static final long[] COST_MIN_PERIOD_MS = { 100, 250, 1000 };
+    
+    // 週期對齊的格點
+    private static final long GRID_NANOS = 10_000_000L;
+    
+    // 在此範圍內（且不超過週期的 1/10）即將到期的探針併入同一次喚醒
+    private static final long MAX_COALESCE_NANOS = 20_000_000L;
+    
+    /**
+     * 單一已註冊探針的排程狀態，同時負責將本地通道轉為全域通道
+     */
+    private final class Entry implements ProbeSink {
+        final Probe probe;
+        final int channelBase;
+        final int channelCount;
+        long periodNanos;
+        long nextDueNanos;
+        boolean isOpen = false;
+        long sampleCount;
+        long missedTicks;
+        long busyNanos;
+        
+        Entry(Probe probe, int channelBase, int channelCount, long periodNanos) {
+            this.probe = probe;
+            this.channelBase = channelBase;
+            this.channelCount = channelCount;
+            this.periodNanos = periodNanos;
+        }
+        
+        @Override
+        public void write(int channel, long timestampNanos, long value) {
+            ProbeSink sink = output;
+            if (sink != null && channel >= 0 && channel < channelCount) {
+                sink.write(channelBase + channel, timestampNanos, value);
+            }
+        }
+    }
+    
+    private final Object lock = new Object();
+    private final Clock clock;
+    private final boolean isManual;
+    private volatile ProbeSink output;
+    
+    // 以下欄位受 lock 保護
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<String> channelNames = new ArrayList<>();
+    private Thread thread;
+    private boolean isStarted = false;
+    private long anchorNanos;
+    private long startedNanos;
+    private long stoppedNanos;
+    private long wakeupCount;
+    private long probeSampleCount;
+    private long busyNanos;
+    
+    /**
+     * @param clock 系統時鐘，排程執行緒依此計算到期時間
+     */
+    public SamplingScheduler(Clock clock) {
+        this(clock, false);
+    }
+    
+    private SamplingScheduler(Clock clock, boolean isManual) {
+        this.clock = clock;
+        this.isManual = isManual;
+    }
+    
+    /**
+     * 建立手動推進的排程器：不建立執行緒，到期的批次只在 runDue() 中執行
+     */
+    public static SamplingScheduler createManual(Clock clock) {
+        return new SamplingScheduler(clock, true);
+    }
+    
+    /**
+     * 設定探針輸出的接收端，null 表示丟棄
+     */
+    public void setOutput(ProbeSink output) {
+        this.output = output;
+    }
+    
+    /**
+     * 依成本限制週期並對齊格點
+     */
+    public static long clampPeriod(int cost, long periodMs) {
+        int index = Math.max(0, Math.min(COST_MIN_PERIOD_MS.length - 1, cost));
+        long clamped = Math.max(COST_MIN_PERIOD_MS[index], Math.min(MAX_PERIOD_MS, periodMs)) * 1_000_000L;
+        return (clamped + GRID_NANOS / 2) / GRID_NANOS * GRID_NANOS;
+    }
+    
+    /**
+     * 以探針的建議週期註冊
+     */
+    public void register(Probe probe) {
+        register(probe, probe.getPreferredPeriodMs());
+    }
+    
+    /**
+     * 以指定週期註冊探針，已註冊時忽略
+     */
+    public void register(Probe probe, long periodMs) {
+        synchronized (lock) {
+            if (find(probe) != null) {
+                return;
+            }
+            
+            long now = clock.elapsedRealtimeNanos();
+            if (!isStarted) {
+                // 重新開始一輪排程，通道編號與統計從頭計算
+                anchorNanos = now;
+                startedNanos = now;
+                wakeupCount = 0;
+                probeSampleCount = 0;
+                busyNanos = 0;
+                channelNames.clear();
+                isStarted = true;
+                if (!isManual) {
+                    thread = new Thread(this::runLoop, TAG);
+                    thread.start();
+                }
+            }
+            
+            String[] names = probe.getChannelNames();
+            Entry entry = new Entry(probe, channelNames.size(), names.length, clampPeriod(probe.getCost(), periodMs));
+            for (String name : names) {
+                channelNames.add(name);
+            }
+            entry.nextDueNanos = alignedSlot(entry.periodNanos, now);
+            
+            // 依成本排序，批次內低成本的探針先取樣，時間戳更接近刻度
+            int index = 0;
+            while (index < entries.size() && entries.get(index).probe.getCost() <= probe.getCost()) {
+                index++;
+            }
+            entries.add(index, entry);
+            
+            lock.notifyAll();
+            Logger.d(TAG, "Probe registered: " + probe.getName() + ", period: "
+                + (entry.periodNanos / 1_000_000L) + "ms");
+        }
+    }
+    
+    /**
+     * 取消註冊並關閉探針，回傳後不會再呼叫該探針
+     */
+    public void unregister(Probe probe) {
+        synchronized (lock) {
+            Entry entry = find(probe);
+            if (entry == null) {
+                return;
+            }
+            
+            entries.remove(entry);
+            closeEntry(entry);
+            lock.notifyAll();
+            finishManualRoundLocked();
+            Logger.d(TAG, "Probe unregistered: " + probe.getName() + ", samples: " + entry.sampleCount
+                + ", missed ticks: " + entry.missedTicks + ", busy: " + (entry.busyNanos / 1000) + "µs");
+        }
+    }
+    
+    /**
+     * 取消註冊全部探針
+     */
+    public void unregisterAll() {
+        synchronized (lock) {
+            for (Entry entry : entries) {
+                closeEntry(entry);
+            }
+            entries.clear();
+            lock.notifyAll();
+            finishManualRoundLocked();
+        }
+    }
+    
+    /**
+     * 變更已註冊探針的週期，從下一個對齊的刻度開始生效
+     */
+    public void setPeriod(Probe probe, long periodMs) {
+        synchronized (lock) {
+            Entry entry = find(probe);
+            if (entry == null) {
+                return;
+            }
+            
+            long periodNanos = clampPeriod(probe.getCost(), periodMs);
+            if (periodNanos != entry.periodNanos) {
+                entry.periodNanos = periodNanos;
+                entry.nextDueNanos = alignedSlot(periodNanos, clock.elapsedRealtimeNanos());
+                lock.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * 已註冊探針目前的週期 (ms)，未註冊時回傳 0
+     */
+    public long getPeriodMs(Probe probe) {
+        synchronized (lock) {
+            Entry entry = find(probe);
+            return entry != null ? entry.periodNanos / 1_000_000L : 0;
+        }
+    }
+    
+    /**
+     * 本輪排程的全域通道名稱，索引即為輸出端收到的通道編號
+     */
+    public String[] getChannelNames() {
+        synchronized (lock) {
+            return channelNames.toArray(new String[0]);
+        }
+    }
+    
+    public boolean isRunning() {
+        synchronized (lock) {
+            return isStarted;
+        }
+    }
+    
+    /**
+     * 手動模式：最早到期的刻度 (elapsedRealtimeNanos)，沒有探針時回傳 Long.MAX_VALUE
+     */
+    public long getNextDueNanos() {
+        synchronized (lock) {
+            long earliest = Long.MAX_VALUE;
+            for (Entry entry : entries) {
+                earliest = Math.min(earliest, entry.nextDueNanos);
+            }
+            return earliest;
+        }
+    }
+    
+    /**
+     * 手動模式：時鐘已到達最早的刻度時執行一次批次
+     * @return 有執行批次時回傳 true
+     */
+    public boolean runDue() {
+        if (!isManual) {
+            throw new IllegalStateException("Scheduler is not manual");
+        }
+        synchronized (lock) {
+            long now = clock.elapsedRealtimeNanos();
+            if (entries.isEmpty() || getNextDueNanos() > now) {
+                return false;
+            }
+            runBatch(now);
+            return true;
+        }
+    }
+    
+    /**
+     * 本輪排程的喚醒次數（每次喚醒取樣一個批次）
+     */
+    public long getWakeupCount() {
+        synchronized (lock) {
+            return wakeupCount;
+        }
+    }
+    
+    /**
+     * 本輪排程的平均每秒喚醒次數
+     */
+    public double getWakeupsPerSecond() {
+        synchronized (lock) {
+            long end = isStarted ? clock.elapsedRealtimeNanos() : stoppedNanos;
+            long span = end - startedNanos;
+            return span > 0 ? wakeupCount * 1e9 / span : 0.0;
+        }
+    }
+    
+    /**
+     * 平均每次喚醒取樣的探針數，越高表示合併效果越好
+     */
+    public double getSamplesPerWakeup() {
+        synchronized (lock) {
+            return wakeupCount > 0 ? (double) probeSampleCount / wakeupCount : 0.0;
+        }
+    }
+    
+    /**
+     * 本輪排程在探針取樣上花費的總時間 (ns)
+     */
+    public long getBusyNanos() {
+        synchronized (lock) {
+            return busyNanos;
+        }
+    }
+    
+    private Entry find(Probe probe) {
+        for (Entry entry : entries) {
+            if (entry.probe == probe) {
+                return entry;
+            }
+        }
+        return null;
+    }
+    
+    private void closeEntry(Entry entry) {
+        if (!entry.isOpen) {
+            return;
+        }
+        entry.isOpen = false;
+        try {
+            entry.probe.close();
+        } catch (RuntimeException e) {
+            Logger.e(TAG, "Error closing probe: " + entry.probe.getName(), e);
+        }
+    }
+    
+    // 手動模式沒有執行緒，最後一個探針取消註冊時在此結束本輪
+    private void finishManualRoundLocked() {
+        if (isManual && isStarted && entries.isEmpty()) {
+            finishRoundLocked();
+        }
+    }
+    
+    private void finishRoundLocked() {
+        isStarted = false;
+        thread = null;
+        stoppedNanos = clock.elapsedRealtimeNanos();
+        Logger.d(TAG, "Scheduler stopped, wakeups: " + wakeupCount
+            + String.format(" (%.2f/s)", getWakeupsPerSecond())
+            + ", probe samples: " + probeSampleCount
+            + ", busy: " + (busyNanos / 1000) + "µs");
+    }
+    
+    /**
+     * 錨點格線上第一個不早於 now 的刻度
+     */
+    private long alignedSlot(long periodNanos, long now) {
+        long elapsed = now - anchorNanos;
+        if (elapsed <= 0) {
+            return anchorNanos;
+        }
+        return anchorNanos + (elapsed + periodNanos - 1) / periodNanos * periodNanos;
+    }
+    
+    private void runLoop() {
+        synchronized (lock) {
+            try {
+                while (!entries.isEmpty()) {
+                    long earliest = Long.MAX_VALUE;
+                    for (Entry entry : entries) {
+                        earliest = Math.min(earliest, entry.nextDueNanos);
+                    }
+                    
+                    long now = clock.elapsedRealtimeNanos();
+                    long wait = earliest - now;
+                    if (wait > 0) {
+                        lock.wait(wait / 1_000_000L, (int) (wait % 1_000_000L));
+                        continue;
+                    }
+                    runBatch(now);
+                }
+            } catch (InterruptedException e) {
+                Logger.w(TAG, "Scheduler interrupted");
+            } finally {
+                finishRoundLocked();
+            }
+        }
+    }
+    
+    private void runBatch(long now) {
+        wakeupCount++;
+        
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            long window = Math.min(MAX_COALESCE_NANOS, entry.periodNanos / 10);
+            if (entry.nextDueNanos - now > window) {
+                continue;
+            }
+            
+            Probe probe = entry.probe;
+            if (!entry.isOpen) {
+                entry.isOpen = true;
+                try {
+                    probe.open();
+                } catch (RuntimeException e) {
+                    Logger.e(TAG, "Error opening probe: " + probe.getName(), e);
+                }
+            }
+            
+            long period = entry.periodNanos;
+            long start = clock.elapsedRealtimeNanos();
+            try {
+                probe.sample(start, entry);
+            } catch (RuntimeException e) {
+                Logger.e(TAG, "Error sampling probe: " + probe.getName(), e);
+            }
+            long end = clock.elapsedRealtimeNanos();
+            
+            entry.sampleCount++;
+            entry.busyNanos += end - start;
+            probeSampleCount++;
+            busyNanos += end - start;
+            
+            // 探針在取樣中自行變更了週期，從新週期的下一個刻度開始
+            if (entry.periodNanos != period) {
+                entry.nextDueNanos = alignedSlot(entry.periodNanos, end + 1);
+                continue;
+            }
+            
+            // 前進到下一個刻度；若落後超過一個週期（例如系統休眠），跳過錯過的刻度
+            long next = entry.nextDueNanos + entry.periodNanos;
+            if (next <= end) {
+                long skipped = (end - next) / entry.periodNanos + 1;
+                entry.missedTicks += skipped;
+                next += skipped * entry.periodNanos;
+            }
+            entry.nextDueNanos = next;
+        }
+    }
+}
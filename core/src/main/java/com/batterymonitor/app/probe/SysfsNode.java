@@ -0,0 +1,121 @@
+package com.batterymonitor.app.probe;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 單一 sysfs 數值節點
+ * 首次讀取時開啟並保留 FileChannel，之後每次從位置 0 重新讀取，
+ * 以逐位元組解析整數，不建立字串。呼叫端提供讀取緩衝區，多個節點可共用。
+ * 只能在單一執行緒上使用。
+ */
+public final class SysfsNode implements Closeable {
+    
+    /** 讀取失敗時的回傳值 */
+    public static final long INVALID = Long.MIN_VALUE;
+    
+    /** 建議的共用讀取緩衝區大小 */
+    public static final int BUFFER_SIZE = 32;
+    
+    private final File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    
+    public SysfsNode(File file) {
+        this.file = file;
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * 讀取節點中的整數
+     * @param buffer 暫存緩衝區（建議使用 allocateDirect(BUFFER_SIZE)）
+     * @return 無法讀取或格式錯誤時回傳 INVALID
+     */
+    public long readLong(ByteBuffer buffer) {
+        try {
+            if (channel == null) {
+                if (!file.canRead()) {
+                    return INVALID;
+                }
+                randomAccessFile = new RandomAccessFile(file, "r");
+                channel = randomAccessFile.getChannel();
+            }
+            
+            // sysfs 屬性每次從位置 0 讀取即會重新產生內容
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) <= 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return parseLong(buffer);
+        } catch (IOException | SecurityException e) {
+            return INVALID;
+        }
+    }
+    
+    /**
+     * 解析 buffer 中以空白結尾的十進位整數（可有前導空白與正負號）
+     * @return 格式錯誤或溢位時回傳 INVALID
+     */
+    public static long parseLong(ByteBuffer buffer) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        
+        while (position < limit && isWhitespace(buffer.get(position))) {
+            position++;
+        }
+        
+        boolean isNegative = false;
+        if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+            isNegative = buffer.get(position) == '-';
+            position++;
+        }
+        
+        long value = 0;
+        int digits = 0;
+        while (position < limit) {
+            byte b = buffer.get(position);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            if (value > (Long.MAX_VALUE - (b - '0')) / 10) {
+                return INVALID;
+            }
+            value = value * 10 + (b - '0');
+            digits++;
+            position++;
+        }
+        
+        // 數字之後只允許空白（通常為換行）
+        if (digits == 0 || (position < limit && !isWhitespace(buffer.get(position)))) {
+            return INVALID;
+        }
+        return isNegative ? -value : value;
+    }
+    
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == 0;
+    }
+    
+    @Override
+    public void close() {
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                // 忽略關閉失敗
+            }
+            randomAccessFile = null;
+            channel = null;
+        }
+    }
+}
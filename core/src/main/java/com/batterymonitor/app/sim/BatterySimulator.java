@@ -0,0 +1,162 @@
+package com.batterymonitor.app.sim;
+
+import com.batterymonitor.app.manager.BatterySource;
+import com.batterymonitor.app.manager.BatteryStatus;
+import com.batterymonitor.app.model.BatterySnapshot;
+
+import java.util.Random;
+
+/**
+ * 依 DischargeProfile 在虛擬時鐘上模擬的電池
+ * 作為 BatterySource 提供給 BatterySampler；電量或充電狀態改變時發布 BatterySnapshot 給 BatteryStatus，
+ * 相當於實機上的 ACTION_BATTERY_CHANGED 廣播。
+ * 所有狀態只由時鐘與亂數種子決定，同一設定重跑的結果完全相同。
+ * 只能在單一執行緒上使用。
+ */
+public final class BatterySimulator implements BatterySource {
+    
+    // 積分的最長步距，電壓隨電量變化時能量積分仍然準確
+    private static final long MAX_STEP_MS = 1000;
+    
+    // 對應 BatteryManager 的常數
+    private static final int STATUS_CHARGING = 2;
+    private static final int STATUS_DISCHARGING = 3;
+    private static final int PLUGGED_AC = 1;
+    private static final int HEALTH_GOOD = 2;
+    
+    private final DischargeProfile profile;
+    private final SimulatedClock clock;
+    private final BatteryStatus monitor;
+    private final long originElapsed;
+    private final Random random;
+    
+    private final double capacityMicroAmpHours;
+    private final double startEnergyNanoWattHours;
+    private double chargeMicroAmpHours;
+    private double energyNanoWattHours;
+    private long updatedMs = 0;          // 狀態已推進到的時間（距離開始）
+    
+    // 同一時間戳的多次讀取使用同一個雜訊值
+    private long noiseNanos = Long.MIN_VALUE;
+    private int noise;
+    
+    private BatterySnapshot published;
+    
+    /**
+     * @param monitor 接收電池快照的電池狀態，可為 null
+     */
+    public BatterySimulator(DischargeProfile profile, SimulatedClock clock, BatteryStatus monitor) {
+        this.profile = profile;
+        this.clock = clock;
+        this.monitor = monitor;
+        this.originElapsed = clock.elapsedRealtime();
+        this.random = new Random(profile.getSeed());
+        this.capacityMicroAmpHours = profile.getCapacityMah() * 1000.0;
+        this.chargeMicroAmpHours = capacityMicroAmpHours * profile.getStartLevel() / 100.0;
+        this.energyNanoWattHours = chargeMicroAmpHours * profile.getVoltageMv(1.0, 0);
+        this.startEnergyNanoWattHours = energyNanoWattHours;
+        publish();
+    }
+    
+    /**
+     * 將電池狀態推進到時鐘的目前時間，必要時發布新的快照
+     */
+    public void update() {
+        long nowMs = clock.elapsedRealtime() - originElapsed;
+        while (updatedMs < nowMs) {
+            long end = Math.min(nowMs, Math.min(updatedMs + MAX_STEP_MS, profile.nextChangeAfter(updatedMs)));
+            int current = getBatteryMicroAmps(updatedMs);
+            double hours = (end - updatedMs) / 3_600_000.0;
+            double charge = current * hours;
+            // µAh × mV = nWh
+            energyNanoWattHours += charge * profile.getVoltageMv(getFraction(), current);
+            chargeMicroAmpHours = Math.max(0, Math.min(capacityMicroAmpHours, chargeMicroAmpHours + charge));
+            updatedMs = end;
+        }
+        publish();
+    }
+    
+    @Override
+    public long read(int field) {
+        update();
+        int current = getBatteryMicroAmps(updatedMs);
+        switch (field) {
+            case FIELD_CURRENT_NOW:
+                return sign(current + getNoise());
+            case FIELD_CURRENT_AVERAGE:
+                return sign(current);
+            case FIELD_CHARGE_COUNTER:
+                return (long) chargeMicroAmpHours;
+            case FIELD_ENERGY_COUNTER:
+                return profile.hasEnergyCounter() ? (long) energyNanoWattHours : UNSUPPORTED;
+            case FIELD_VOLTAGE_NOW:
+                return profile.getVoltageMv(getFraction(), current);
+            case FIELD_CAPACITY:
+                return getLevel();
+            case FIELD_TEMP:
+                return profile.getTemperature();
+            default:
+                return UNSUPPORTED;
+        }
+    }
+    
+    /**
+     * 目前的電量百分比，剛好跨過整數百分比時才下降
+     */
+    public int getLevel() {
+        return (int) Math.ceil(getFraction() * 100 - 1e-9);
+    }
+    
+    /**
+     * 模擬開始以來實際消耗的電荷量 (mAh)，充電時可為負
+     */
+    public double getChargeConsumedMah() {
+        return (capacityMicroAmpHours * profile.getStartLevel() / 100.0 - chargeMicroAmpHours) / 1000.0;
+    }
+    
+    /**
+     * 模擬開始以來實際消耗的能量 (mWh)，充電時可為負
+     */
+    public double getEnergyConsumedMilliwattHours() {
+        return (startEnergyNanoWattHours - energyNanoWattHours) / 1_000_000.0;
+    }
+    
+    private double getFraction() {
+        return chargeMicroAmpHours / capacityMicroAmpHours;
+    }
+    
+    // 流入電池的平均電流，放電為負
+    private int getBatteryMicroAmps(long atMs) {
+        return profile.getChargerMicroAmps(atMs) - profile.getLoadMicroAmps(atMs);
+    }
+    
+    private int getNoise() {
+        long now = clock.elapsedRealtimeNanos();
+        if (now != noiseNanos) {
+            noiseNanos = now;
+            noise = (int) Math.round(random.nextGaussian() * profile.getNoiseMicroAmps());
+        }
+        return noise;
+    }
+    
+    private long sign(int microAmps) {
+        return profile.isCurrentInverted() ? -microAmps : microAmps;
+    }
+    
+    private void publish() {
+        boolean isPlugged = profile.isPlugged(updatedMs);
+        int level = getLevel();
+        if (published != null && published.getLevel() == level && published.isPlugged() == isPlugged) {
+            return;
+        }
+        
+        published = new BatterySnapshot(level, 100,
+            isPlugged ? STATUS_CHARGING : STATUS_DISCHARGING,
+            isPlugged ? PLUGGED_AC : 0,
+            profile.getVoltageMv(getFraction(), getBatteryMicroAmps(updatedMs)),
+            profile.getTemperature(), HEALTH_GOOD, clock.elapsedRealtime());
+        if (monitor != null) {
+            monitor.onBatterySnapshotChanged(published);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.batterymonitor.app.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 模擬電池的放電曲線設定
+ * 負載電流為分段常數（addLoad 切換），另可加入一段段的充電器接上事件；時間皆為距離模擬開始的毫秒數。
+ * 回報的瞬時電流另外疊加常態分布雜訊，電量與電量計數器由電荷積分得出，因此電量以整數百分比跳變。
+ */
+public final class DischargeProfile {
+    
+    // 負載：{ 開始時間, 電流 µA }，依時間排序；充電器：{ 接上時間, 拔除時間, 電流 µA }
+    private final List<long[]> loads = new ArrayList<>();
+    private final List<long[]> chargers = new ArrayList<>();
+    
+    private int capacityMah = 4500;
+    private int startLevel = 80;
+    private int noiseMicroAmps = 20_000;
+    private long seed = 1;
+    
+    // 開路電壓在 0% 到 100% 之間線性變化，再扣掉內阻壓降
+    private int emptyVoltageMv = 3400;
+    private int fullVoltageMv = 4350;
+    private int internalResistanceMilliohms = 100;
+    private int temperature = 300;  // 0.1°C
+    
+    // 廠商差異
+    private boolean isCurrentInverted = false;  // 放電回報為正值
+    private boolean hasEnergyCounter = false;
+    
+    public DischargeProfile() {
+        addLoad(0, 300_000);
+    }
+    
+    /**
+     * 從 atMs 起負載電流改為 microAmps（放電，正值）
+     */
+    public void addLoad(long atMs, int microAmps) {
+        int index = 0;
+        while (index < loads.size() && loads.get(index)[0] <= atMs) {
+            index++;
+        }
+        // 同一時間的設定取代先前的值
+        if (index > 0 && loads.get(index - 1)[0] == atMs) {
+            loads.get(index - 1)[1] = microAmps;
+            return;
+        }
+        loads.add(index, new long[] { atMs, microAmps });
+    }
+    
+    /**
+     * 在 atMs 接上充電器 durationMs 毫秒，充電電流為 microAmps（流入電池前，尚未扣除負載）
+     */
+    public void addCharger(long atMs, long durationMs, int microAmps) {
+        chargers.add(new long[] { atMs, atMs + durationMs, microAmps });
+    }
+    
+    public int getCapacityMah() {
+        return capacityMah;
+    }
+    
+    public void setCapacityMah(int capacityMah) {
+        this.capacityMah = capacityMah;
+    }
+    
+    public int getStartLevel() {
+        return startLevel;
+    }
+    
+    public void setStartLevel(int startLevel) {
+        this.startLevel = Math.max(0, Math.min(100, startLevel));
+    }
+    
+    public int getNoiseMicroAmps() {
+        return noiseMicroAmps;
+    }
+    
+    /**
+     * 瞬時電流雜訊的標準差 (µA)
+     */
+    public void setNoiseMicroAmps(int noiseMicroAmps) {
+        this.noiseMicroAmps = noiseMicroAmps;
+    }
+    
+    public long getSeed() {
+        return seed;
+    }
+    
+    /**
+     * 雜訊的亂數種子，相同設定與種子的模擬結果完全相同
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+    
+    public void setVoltageRange(int emptyVoltageMv, int fullVoltageMv) {
+        this.emptyVoltageMv = emptyVoltageMv;
+        this.fullVoltageMv = fullVoltageMv;
+    }
+    
+    public void setInternalResistanceMilliohms(int internalResistanceMilliohms) {
+        this.internalResistanceMilliohms = internalResistanceMilliohms;
+    }
+    
+    public int getTemperature() {
+        return temperature;
+    }
+    
+    public void setTemperature(int temperature) {
+        this.temperature = temperature;
+    }
+    
+    public boolean isCurrentInverted() {
+        return isCurrentInverted;
+    }
+    
+    /**
+     * 模擬以正值回報放電電流的設備
+     */
+    public void setCurrentInverted(boolean isCurrentInverted) {
+        this.isCurrentInverted = isCurrentInverted;
+    }
+    
+    public boolean hasEnergyCounter() {
+        return hasEnergyCounter;
+    }
+    
+    /**
+     * 是否提供 ENERGY_COUNTER（多數設備不支援）
+     */
+    public void setEnergyCounter(boolean hasEnergyCounter) {
+        this.hasEnergyCounter = hasEnergyCounter;
+    }
+    
+    /**
+     * 時間點的負載電流 (µA)
+     */
+    public int getLoadMicroAmps(long atMs) {
+        int current = 0;
+        for (long[] load : loads) {
+            if (load[0] > atMs) {
+                break;
+            }
+            current = (int) load[1];
+        }
+        return current;
+    }
+    
+    /**
+     * 時間點的充電電流 (µA)，未接充電器時為 0
+     */
+    public int getChargerMicroAmps(long atMs) {
+        int current = 0;
+        for (long[] charger : chargers) {
+            if (charger[0] <= atMs && atMs < charger[1]) {
+                current += (int) charger[2];
+            }
+        }
+        return current;
+    }
+    
+    public boolean isPlugged(long atMs) {
+        for (long[] charger : chargers) {
+            if (charger[0] <= atMs && atMs < charger[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * atMs 之後下一次負載或充電器變化的時間，沒有時回傳 Long.MAX_VALUE
+     */
+    public long nextChangeAfter(long atMs) {
+        long next = Long.MAX_VALUE;
+        for (long[] load : loads) {
+            if (load[0] > atMs) {
+                next = Math.min(next, load[0]);
+            }
+        }
+        for (long[] charger : chargers) {
+            if (charger[0] > atMs) {
+                next = Math.min(next, charger[0]);
+            }
+            if (charger[1] > atMs) {
+                next = Math.min(next, charger[1]);
+            }
+        }
+        return next;
+    }
+    
+    /**
+     * 電池端電壓 (mV)
+     * @param fraction 剩餘電量比例 (0 - 1)
+     * @param batteryMicroAmps 流入電池的電流，放電為負
+     */
+    public int getVoltageMv(double fraction, int batteryMicroAmps) {
+        double openCircuit = emptyVoltageMv + (fullVoltageMv - emptyVoltageMv) * Math.max(0, Math.min(1, fraction));
+        return (int) Math.round(openCircuit + batteryMicroAmps / 1000.0 * internalResistanceMilliohms / 1000.0);
+    }
+}
@@ -0,0 +1,50 @@
+package com.batterymonitor.app.sim;
+
+import com.batterymonitor.app.utils.Clock;
+
+/**
+ * 虛擬時鐘
+ * 只在呼叫 advance 系列方法時前進，牆上時間固定為開機時間加上 elapsedRealtime。
+ */
+public final class SimulatedClock implements Clock {
+    
+    private final long bootTimeMillis;
+    private volatile long elapsedNanos;
+    
+    /**
+     * @param bootTimeMillis 虛擬開機時的牆上時間
+     * @param elapsedMillis 起始的 elapsedRealtime
+     */
+    public SimulatedClock(long bootTimeMillis, long elapsedMillis) {
+        this.bootTimeMillis = bootTimeMillis;
+        this.elapsedNanos = elapsedMillis * 1_000_000L;
+    }
+    
+    @Override
+    public long elapsedRealtime() {
+        return elapsedNanos / 1_000_000L;
+    }
+    
+    @Override
+    public long elapsedRealtimeNanos() {
+        return elapsedNanos;
+    }
+    
+    @Override
+    public long currentTimeMillis() {
+        return bootTimeMillis + elapsedRealtime();
+    }
+    
+    public void advanceBy(long millis) {
+        advanceToNanos(elapsedNanos + millis * 1_000_000L);
+    }
+    
+    /**
+     * 前進到指定的 elapsedRealtimeNanos，早於目前時間時不動作（時鐘不倒退）
+     */
+    public void advanceToNanos(long nanos) {
+        if (nanos > elapsedNanos) {
+            elapsedNanos = nanos;
+        }
+    }
+}
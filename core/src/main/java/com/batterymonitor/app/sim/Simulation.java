@@ -0,0 +1,284 @@
+package com.batterymonitor.app.sim;
+
+import com.batterymonitor.app.analysis.LevelStepEstimator;
+import com.batterymonitor.app.data.PersistenceQueue;
+import com.batterymonitor.app.data.RunStore;
+import com.batterymonitor.app.data.SampleLog;
+import com.batterymonitor.app.data.SampleLogRecovery;
+import com.batterymonitor.app.manager.BatteryListener;
+import com.batterymonitor.app.manager.BatterySampler;
+import com.batterymonitor.app.manager.BatteryStatus;
+import com.batterymonitor.app.manager.TestManager;
+import com.batterymonitor.app.model.BatterySnapshot;
+import com.batterymonitor.app.model.TestResult;
+import com.batterymonitor.app.probe.SamplingScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * 以虛擬時鐘執行完整的測試流程
+ * 與 MonitorService 相同的元件：TestManager 狀態轉換與檢查點、BatterySampler 取樣、SampleLog 取樣日誌、
+ * 電量跳變估計，以及經 PersistenceQueue 寫入 RunStore；只有電池換成 BatterySimulator、
+ * 排程器換成手動推進，120 分鐘的測試在 JVM 上數毫秒內跑完。
+ *
+ * kill() 模擬服務被系統終止：日誌以未完成狀態留下，程序內的元件全部丟棄，
+ * 之後 resume() 依檢查點與 MonitorService 相同的流程繼續測試。
+ *
+ * 所有檔案寫在指定的工作目錄下（取樣日誌在 SampleLog.RUNS_DIRECTORY，歷史記錄在 HISTORY_DIRECTORY）。
+ */
+public final class Simulation {
+    
+    public static final String HISTORY_DIRECTORY = "history";
+    
+    // 虛擬開機時間與測試開始時的 elapsedRealtime
+    private static final long BOOT_TIME_MILLIS = 1_700_000_000_000L;
+    private static final long START_ELAPSED_MILLIS = 10 * 60 * 1000L;
+    
+    private static final long FLUSH_INTERVAL_MS = 1000;
+    private static final long DURABLE_TIMEOUT_MS = 10_000;
+    
+    // 電池與時鐘在服務終止後仍然存在
+    private final File workDir;
+    private final SimulatedClock clock = new SimulatedClock(BOOT_TIME_MILLIS, START_ELAPSED_MILLIS);
+    private final BatteryStatus batteryStatus = new BatteryStatus();
+    private final PersistenceQueue persistenceQueue = new PersistenceQueue();
+    private final BatterySimulator battery;
+    
+    // 程序內的元件，kill() 後重新建立
+    private SamplingScheduler scheduler;
+    private BatterySampler sampler;
+    private TestManager testManager;
+    private LevelStepEstimator levelStepEstimator;
+    private SampleLog sampleLog;
+    private TestResult resumedSegment;
+    
+    private long periodMs;
+    private long floorPeriodMs;
+    private long sampleCount;
+    
+    public Simulation(File workDir, DischargeProfile profile) {
+        this.workDir = workDir;
+        this.battery = new BatterySimulator(profile, clock, batteryStatus);
+        
+        // 服務終止期間沒有取樣日誌，跳變不記錄
+        batteryStatus.addListener(new BatteryListener() {
+            @Override
+            public void onBatterySnapshotChanged(BatterySnapshot snapshot) {
+                if (sampleLog != null && testManager.isTestRunning()) {
+                    levelStepEstimator.onLevel(snapshot.getTimestamp(), snapshot.getPercent());
+                }
+            }
+        });
+        createProcess();
+    }
+    
+    // 建立程序內的元件，TestManager 從檢查點檔讀取狀態
+    private void createProcess() {
+        scheduler = SamplingScheduler.createManual(clock);
+        sampler = new BatterySampler(batteryStatus, scheduler, battery, clock);
+        testManager = new TestManager(new File(workDir, TestManager.FILE_NAME), clock);
+        levelStepEstimator = new LevelStepEstimator();
+        resumedSegment = null;
+        
+        sampler.addListener((timestampNanos, currentNow, currentAverage, chargeCounter, energyCounter,
+                             voltage, level, sampleFlags, periodMs) -> {
+            sampleCount++;
+            if (sampleLog != null) {
+                try {
+                    sampleLog.append(timestampNanos, currentNow, currentAverage, chargeCounter, energyCounter,
+                        voltage, level, sampleFlags, periodMs);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Error writing sample log", e);
+                }
+            }
+        });
+    }
+    
+    public SimulatedClock getClock() {
+        return clock;
+    }
+    
+    public BatterySimulator getBattery() {
+        return battery;
+    }
+    
+    public BatterySampler getSampler() {
+        return sampler;
+    }
+    
+    public TestManager getTestManager() {
+        return testManager;
+    }
+    
+    /**
+     * 本次模擬交給取樣監聽器的取樣筆數
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+    
+    /**
+     * 執行一次完整測試：開始、取樣到計劃時長結束、停止、保存並等待落盤
+     * @param floorPeriodMs 自適應取樣的底限週期，等於 periodMs 時為固定頻率
+     * @return 已寫入 RunStore 的測試結果
+     */
+    public TestResult run(String subject, long plannedDurationMs, long periodMs, long floorPeriodMs)
+            throws IOException {
+        start(subject, plannedDurationMs, periodMs, floorPeriodMs);
+        return finish();
+    }
+    
+    /**
+     * 開始測試並建立取樣日誌，之後以 advance() 或 finish() 推進
+     */
+    public void start(String subject, long plannedDurationMs, long periodMs, long floorPeriodMs)
+            throws IOException {
+        int startLevel = batteryStatus.getCurrentBatteryLevel();
+        if (!testManager.startTest(subject, startLevel, plannedDurationMs)) {
+            throw new IllegalStateException("Test already in progress: " + testManager.getStateName());
+        }
+        this.periodMs = periodMs;
+        this.floorPeriodMs = floorPeriodMs;
+        long runId = testManager.getRunId();
+        levelStepEstimator.start(testManager.getStartElapsedRealtime(), startLevel);
+        
+        sampleLog = SampleLog.create(SampleLog.getRunDirectory(workDir, runId), runId, testManager.getStartTime(),
+            clock.elapsedRealtimeNanos(), plannedDurationMs, startLevel, testManager.getTestSubject(),
+            FLUSH_INTERVAL_MS);
+        sampleLog.setFlushHandler(persistenceQueue);
+        sampler.start(periodMs, floorPeriodMs);
+        testManager.markRunning();
+    }
+    
+    /**
+     * 取樣推進指定時間，不超過測試的截止時間
+     */
+    public void advance(long durationMs) {
+        long untilNanos = Math.min(clock.elapsedRealtimeNanos() + durationMs * 1_000_000L, getDeadlineNanos());
+        sampleUntil(untilNanos);
+        clock.advanceToNanos(untilNanos);
+        battery.update();
+    }
+    
+    /**
+     * 模擬服務被系統終止：取樣停止、日誌以未完成狀態留下，程序內的元件全部丟棄
+     * 檢查點檔保留終止前的狀態，與真正的程序終止相同
+     */
+    public void kill() throws IOException {
+        sampler.stop();
+        if (sampleLog != null) {
+            persistenceQueue.closeSampleLog(sampleLog, false);
+            sampleLog = null;
+        }
+        awaitDurable();
+        createProcess();
+    }
+    
+    /**
+     * 服務未執行的時間：電池繼續放電但沒有取樣
+     */
+    public void idle(long durationMs) {
+        clock.advanceBy(durationMs);
+        battery.update();
+    }
+    
+    /**
+     * 以 MonitorService 相同的流程繼續服務終止前的測試
+     * @return 檢查點不可恢復時放棄測試並回傳 false
+     */
+    public boolean resume() throws IOException {
+        if (!testManager.isInProgress()) {
+            return false;
+        }
+        if (!testManager.isResumable()) {
+            testManager.abandon();
+            return false;
+        }
+        
+        File runDir = SampleLog.getRunDirectory(workDir, testManager.getRunId());
+        resumedSegment = SampleLogRecovery.recover(new File(runDir, SampleLog.FILE_NAME));
+        sampleLog = SampleLog.resume(runDir, FLUSH_INTERVAL_MS, clock.elapsedRealtimeNanos());
+        sampleLog.setFlushHandler(persistenceQueue);
+        levelStepEstimator.start(testManager.getStartElapsedRealtime(), batteryStatus.getCurrentBatteryLevel());
+        sampler.start(periodMs, floorPeriodMs);
+        return true;
+    }
+    
+    /**
+     * 取樣到計劃時長結束，停止、保存並等待落盤
+     * @return 已寫入 RunStore 的測試結果，恢復過的測試包含終止前的區段
+     */
+    public TestResult finish() throws IOException {
+        long startElapsed = testManager.getStartElapsedRealtime();
+        long deadlineNanos = getDeadlineNanos();
+        sampleUntil(deadlineNanos);
+        clock.advanceToNanos(deadlineNanos);
+        battery.update();
+        
+        testManager.stopTest();
+        sampler.stop();
+        persistenceQueue.closeSampleLog(sampleLog, true);
+        sampleLog = null;
+        
+        int startLevel = testManager.getStartBatteryLevel();
+        int endLevel = batteryStatus.getCurrentBatteryLevel();
+        long duration = clock.elapsedRealtime() - startElapsed;
+        TestResult result = new TestResult();
+        result.setStartTime(testManager.getStartTime());
+        result.setEndTime(testManager.getStartTime() + duration);
+        result.setDuration(duration);
+        result.setStartBatteryLevel(startLevel);
+        result.setEndBatteryLevel(endLevel);
+        result.setBatteryConsumed(Math.max(0, startLevel - endLevel));
+        result.setPlannedDuration(testManager.getPlannedDuration());
+        result.setTestSubject(testManager.getTestSubject());
+        sampler.writeTo(result);
+        if (resumedSegment != null) {
+            SampleLogRecovery.mergeSegment(result, resumedSegment);
+            resumedSegment = null;
+        }
+        LevelStepEstimator.Estimate estimate = levelStepEstimator.estimate(clock.elapsedRealtime());
+        if (estimate != null) {
+            result.setLevelStepEstimate(estimate.stepCount, estimate.consumption, estimate.consumptionError,
+                estimate.rate, estimate.rateError);
+        }
+        
+        final RunStore store = RunStore.open(new File(workDir, HISTORY_DIRECTORY));
+        try {
+            Future<TestResult> saved = persistenceQueue.saveTestResult(() -> store, result, null);
+            testManager.complete(endLevel, duration);
+            awaitDurable();
+            return saved.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while saving test result", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error saving test result", e.getCause());
+        } finally {
+            store.close();
+        }
+    }
+    
+    private long getDeadlineNanos() {
+        return (testManager.getStartElapsedRealtime() + testManager.getPlannedDuration()) * 1_000_000L;
+    }
+    
+    // 推進到每個排程刻度並取樣，超過 untilNanos 的刻度不取樣
+    private void sampleUntil(long untilNanos) {
+        long due;
+        while ((due = scheduler.getNextDueNanos()) <= untilNanos) {
+            clock.advanceToNanos(due);
+            battery.update();
+            scheduler.runDue();
+        }
+    }
+    
+    private void awaitDurable() throws IOException {
+        if (!persistenceQueue.awaitDurable(DURABLE_TIMEOUT_MS)) {
+            throw new IOException("Persistence barrier timed out");
+        }
+    }
+}
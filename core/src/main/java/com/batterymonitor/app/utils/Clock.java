@@ -0,0 +1,18 @@
+package com.batterymonitor.app.utils;
+
+/**
+ * 時間來源
+ * 測試狀態、截止時間與取樣排程都經由此介面讀取時間：實機上是 AndroidClock（SystemClock），
+ * 模擬時換成 SimulatedClock，在 JVM 上以虛擬時間在數毫秒內跑完整個測試流程。
+ */
+public interface Clock {
+    
+    /** 開機以來的時間 (ms)，包含休眠 */
+    long elapsedRealtime();
+    
+    /** 開機以來的時間 (ns)，包含休眠 */
+    long elapsedRealtimeNanos();
+    
+    /** 牆上時間 (ms) */
+    long currentTimeMillis();
+}
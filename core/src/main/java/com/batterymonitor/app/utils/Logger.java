@@ -0,0 +1,59 @@
+package com.batterymonitor.app.utils;
+
+/**
+ * 日誌輸出
+ * 核心模組不依賴 android.util.Log：應用程式啟動時以 setSink() 接到 Logcat，
+ * 在 JVM 上（單元測試、模擬、效能基準）未設定輸出端時不輸出任何內容。
+ */
+public final class Logger {
+    
+    // 與 android.util.Log 的優先等級相同
+    public static final int DEBUG = 3;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    
+    /**
+     * 日誌輸出端，可能在任何執行緒上呼叫
+     */
+    public interface Sink {
+        /**
+         * @param throwable 沒有例外時為 null
+         */
+        void log(int priority, String tag, String message, Throwable throwable);
+    }
+    
+    private static volatile Sink sink;
+    
+    private Logger() {
+    }
+    
+    /**
+     * 設定輸出端，null 表示不輸出
+     */
+    public static void setSink(Sink newSink) {
+        sink = newSink;
+    }
+    
+    public static void d(String tag, String message) {
+        log(DEBUG, tag, message, null);
+    }
+    
+    public static void w(String tag, String message) {
+        log(WARN, tag, message, null);
+    }
+    
+    public static void e(String tag, String message) {
+        log(ERROR, tag, message, null);
+    }
+    
+    public static void e(String tag, String message, Throwable throwable) {
+        log(ERROR, tag, message, throwable);
+    }
+    
+    private static void log(int priority, String tag, String message, Throwable throwable) {
+        Sink current = sink;
+        if (current != null) {
+            current.log(priority, tag, message, throwable);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.batterymonitor.app.utils;
+
+/**
+ * UTF-8 位元組工具
+ */
+public final class Utf8 {
+    
+    private Utf8() {
+    }
+    
+    /**
+     * 不超過 maxBytes、且不會把一個字元從中切開的最大長度
+     * 截斷點落在多位元組字元中間時退回該字元的起點，解碼後不會出現替代字元
+     */
+    public static int truncatedLength(byte[] encoded, int maxBytes) {
+        if (encoded.length <= maxBytes) {
+            return encoded.length;
+        }
+        int length = maxBytes;
+        // 第一個被捨棄的位元組是延續位元組 (10xxxxxx) 時，往前找到字元起點
+        while (length > 0 && (encoded[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,85 @@
+package com.batterymonitor.app.analysis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class EnergyAccumulatorTest {
+    
+    private static final long SECOND = 1_000_000_000L;
+    private static final int INVALID = Integer.MIN_VALUE;
+    
+    // -250 mA × 4000 mV = 1000 mW 放電
+    private static final int CURRENT = -250_000;
+    private static final int VOLTAGE = 4000;
+    
+    @Test
+    public void validSamplesAreIntegrated() {
+        EnergyAccumulator accumulator = new EnergyAccumulator(5 * SECOND);
+        for (int i = 0; i <= 10; i++) {
+            accumulator.add(i * SECOND, CURRENT, VOLTAGE);
+        }
+        
+        assertEquals(10 * SECOND, accumulator.getCoveredNanos());
+        assertEquals(0, accumulator.getGapNanos());
+        assertEquals(1000.0 * 10 / 3600, accumulator.getEnergyMilliwattHours(), 1e-9);
+    }
+    
+    @Test
+    public void invalidRunIsOneGapFromLastValidSample() {
+        EnergyAccumulator accumulator = new EnergyAccumulator(5 * SECOND);
+        accumulator.add(0, CURRENT, VOLTAGE);
+        accumulator.add(SECOND, CURRENT, VOLTAGE);
+        for (int i = 2; i < 11; i++) {
+            accumulator.add(i * SECOND, i % 2 == 0 ? INVALID : CURRENT, i % 2 == 0 ? VOLTAGE : 0);
+        }
+        accumulator.add(11 * SECOND, CURRENT, VOLTAGE);
+        accumulator.add(12 * SECOND, CURRENT, VOLTAGE);
+        
+        // 1s 到 11s 整段為一個缺口，沒有任何時間遺失
+        assertEquals(2 * SECOND, accumulator.getCoveredNanos());
+        assertEquals(10 * SECOND, accumulator.getGapNanos());
+        assertEquals(1, accumulator.getGapCount());
+        assertEquals(accumulator.getSpanNanos(), accumulator.getCoveredNanos() + accumulator.getGapNanos());
+        assertEquals(1000.0 * 12 / 3600, accumulator.getEnergyMilliwattHours(), 1e-9);
+    }
+    
+    @Test
+    public void shortInvalidRunStillBreaksIntegration() {
+        EnergyAccumulator accumulator = new EnergyAccumulator(5 * SECOND);
+        accumulator.add(0, CURRENT, VOLTAGE);
+        accumulator.add(SECOND, INVALID, VOLTAGE);
+        accumulator.add(2 * SECOND, CURRENT, VOLTAGE);
+        
+        // 間隔未超過門檻，但中間的取樣無效，不跨越積分
+        assertEquals(0, accumulator.getCoveredNanos());
+        assertEquals(2 * SECOND, accumulator.getGapNanos());
+        assertEquals(1, accumulator.getGapCount());
+    }
+    
+    @Test
+    public void trailingInvalidRunCountsAsGap() {
+        EnergyAccumulator accumulator = new EnergyAccumulator(5 * SECOND);
+        accumulator.add(0, CURRENT, VOLTAGE);
+        accumulator.add(SECOND, CURRENT, VOLTAGE);
+        accumulator.add(2 * SECOND, CURRENT, 0);
+        accumulator.add(4 * SECOND, CURRENT, 0);
+        
+        assertEquals(SECOND, accumulator.getCoveredNanos());
+        assertEquals(3 * SECOND, accumulator.getGapNanos());
+        assertEquals(1, accumulator.getGapCount());
+        assertEquals(1000.0 * 4 / 3600, accumulator.getEnergyMilliwattHours(), 1e-9);
+    }
+    
+    @Test
+    public void longIntervalBetweenValidSamplesIsGap() {
+        EnergyAccumulator accumulator = new EnergyAccumulator(5 * SECOND);
+        accumulator.add(0, CURRENT, VOLTAGE);
+        accumulator.add(SECOND, CURRENT, VOLTAGE);
+        accumulator.add(601 * SECOND, CURRENT, VOLTAGE);
+        
+        assertEquals(SECOND, accumulator.getCoveredNanos());
+        assertEquals(600 * SECOND, accumulator.getGapNanos());
+        assertEquals(1, accumulator.getGapCount());
+    }
+}
@@ -0,0 +1,122 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.model.TestResult;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistoryExporterTest {
+    
+    private static final long SECOND = 1_000_000_000L;
+    private static final Pattern RUN_ID = Pattern.compile("\"run_id\":(\\d+)");
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    // 三次測試，開始時間與 RunStore 流水號不同；其中兩次有取樣日誌
+    private RunStore createHistory(File filesDir) throws IOException {
+        RunStore store = RunStore.open(new File(filesDir, "history"));
+        long[] startTimes = { 1_700_000_000_000L, 1_700_000_600_000L, 1_700_001_200_000L };
+        for (long startTime : startTimes) {
+            store.insert(new TestResult(startTime, startTime + 300_000, 90, 80, 300_000, 300_000));
+        }
+        for (int run = 0; run < 2; run++) {
+            long startTime = startTimes[run];
+            SampleLog log = SampleLog.create(SampleLog.getRunDirectory(filesDir, startTime), startTime, startTime,
+                60 * SECOND, 300_000, 90, "", 60_000);
+            for (int i = 0; i < 300; i++) {
+                log.append(60 * SECOND + i * SECOND, -300_000, -300_000, 0, 0, 4000, 90, 0, 1000);
+            }
+            log.close(true);
+        }
+        return store;
+    }
+    
+    private static List<String> readLines(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    public void csvSampleRowsJoinRunRows() throws Exception {
+        File filesDir = folder.newFolder("files");
+        RunStore store = createHistory(filesDir);
+        
+        HistoryExporter exporter = new HistoryExporter(store, new File(filesDir, SampleLog.RUNS_DIRECTORY),
+            HistoryExporter.FORMAT_CSV, true);
+        List<File> files = exporter.export(folder.newFolder("export"), "history", null);
+        
+        List<String> runLines = readLines(files.get(0));
+        List<String> sampleLines = readLines(files.get(1));
+        assertTrue(runLines.get(0).startsWith("run_id,"));
+        assertTrue(sampleLines.get(0).startsWith("run_id,"));
+        
+        Set<String> runIds = new HashSet<>();
+        for (String line : runLines.subList(1, runLines.size())) {
+            runIds.add(line.substring(0, line.indexOf(',')));
+        }
+        assertEquals(3, runIds.size());
+        Set<String> joined = new HashSet<>();
+        for (String line : sampleLines.subList(1, sampleLines.size())) {
+            String runId = line.substring(0, line.indexOf(','));
+            assertTrue(runId, runIds.contains(runId));
+            joined.add(runId);
+        }
+        assertEquals(600, sampleLines.size() - 1);
+        assertEquals(2, joined.size());
+    }
+    
+    @Test
+    public void jsonPowerRowsJoinRunRows() throws Exception {
+        File filesDir = folder.newFolder("files");
+        RunStore store = createHistory(filesDir);
+        
+        HistoryExporter exporter = new HistoryExporter(store, new File(filesDir, SampleLog.RUNS_DIRECTORY),
+            HistoryExporter.FORMAT_JSON_LINES, true);
+        exporter.setPowerSummary(true);
+        List<File> files = exporter.export(folder.newFolder("export"), "history", null);
+        
+        Set<String> runIds = new HashSet<>();
+        Set<String> joined = new HashSet<>();
+        for (String line : readLines(files.get(0))) {
+            Matcher matcher = RUN_ID.matcher(line);
+            assertTrue(line, matcher.find());
+            if (line.startsWith("{\"type\":\"run\"")) {
+                runIds.add(matcher.group(1));
+            } else {
+                assertTrue(line, line.startsWith("{\"type\":\"power\""));
+                // 測試由新到舊導出，摘要緊接在所屬的測試之後
+                assertTrue(line, runIds.contains(matcher.group(1)));
+                joined.add(matcher.group(1));
+            }
+        }
+        assertEquals(3, runIds.size());
+        assertEquals(2, joined.size());
+    }
+    
+    @Test
+    public void jsonEscapesQuotesAndControlCharacters() throws Exception {
+        RunStore store = RunStore.open(folder.newFolder("history"));
+        store.insert(new TestResult(1000, 2000, 90, 80, 1000, 1000, "a\"b\\c\nd\te\u0001f\u001f電池"));
+        
+        HistoryExporter exporter = new HistoryExporter(store, null, HistoryExporter.FORMAT_JSON_LINES, false);
+        List<File> files = exporter.export(folder.newFolder("export"), "history", null);
+        
+        assertEquals(1, files.size());
+        String text = new String(Files.readAllBytes(files.get(0).toPath()), StandardCharsets.UTF_8);
+        assertTrue(text, text.contains("\"subject\":\"a\\\"b\\\\c\\nd\\te\\u0001f\\u001f電池\""));
+    }
+}
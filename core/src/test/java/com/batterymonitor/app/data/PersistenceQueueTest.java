@@ -0,0 +1,70 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.model.TestResult;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PersistenceQueueTest {
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    private static void touch(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(1);
+        }
+    }
+    
+    @Test
+    public void clearHistoryKeepsActiveRun() throws Exception {
+        final RunStore store = RunStore.open(folder.newFolder("history"));
+        PersistenceQueue queue = new PersistenceQueue();
+        for (long startTime = 1000; startTime < 4000; startTime += 1000) {
+            queue.saveTestResult(() -> store, new TestResult(startTime, startTime + 500, 90, 80, 500, 500), null);
+        }
+        
+        File runsDir = folder.newFolder(SampleLog.RUNS_DIRECTORY);
+        touch(new File(runsDir, "1000/" + SampleLog.FILE_NAME));
+        touch(new File(runsDir, "2000/" + SampleLog.FILE_NAME));
+        touch(new File(runsDir, "5000/" + SampleLog.FILE_NAME));
+        
+        // 清除排在之前的保存之後，歷史最後為空
+        int deleted = queue.clearHistory(() -> store, runsDir, 5000, null).get(5, TimeUnit.SECONDS);
+        
+        assertEquals(2, deleted);
+        assertEquals(0, store.size());
+        assertFalse(new File(runsDir, "1000").exists());
+        assertFalse(new File(runsDir, "2000").exists());
+        assertTrue(new File(runsDir, "5000/" + SampleLog.FILE_NAME).isFile());
+        
+        // 重新開啟後仍為空
+        store.close();
+        assertEquals(0, RunStore.open(store.getFile().getParentFile()).size());
+    }
+    
+    @Test
+    public void clearHistoryWithoutActiveRunDeletesAllRuns() throws Exception {
+        RunStore store = RunStore.open(folder.newFolder("history"));
+        File runsDir = folder.newFolder(SampleLog.RUNS_DIRECTORY);
+        touch(new File(runsDir, "1000/" + SampleLog.FILE_NAME));
+        touch(new File(runsDir, "2000/probes/" + SampleLog.FILE_NAME));
+        
+        int deleted = new PersistenceQueue().clearHistory(() -> store, runsDir, SampleLogRecovery.NO_RUN, null)
+            .get(5, TimeUnit.SECONDS);
+        
+        assertEquals(2, deleted);
+        assertEquals(0, runsDir.list().length);
+    }
+}
@@ -0,0 +1,85 @@
+package com.batterymonitor.app.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PowerTraceTest {
+    
+    private static final long SECOND = 1_000_000_000L;
+    private static final long START_NANOS = 60 * SECOND;
+    private static final int SAMPLE_COUNT = 10 * SampleLog.RECORDS_PER_BLOCK + 17;
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    // 每 100 ms 一筆，電流隨序號變化，每 7 筆一筆沒有電流
+    private File writeLog() throws IOException {
+        File runDir = folder.newFolder("run");
+        SampleLog log = SampleLog.create(runDir, 1000, 1000, START_NANOS, 3_600_000, 80, "", 60_000);
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            int current = i % 7 == 3 ? Integer.MIN_VALUE : -100_000 - i;
+            log.append(START_NANOS + i * SECOND / 10, current, current, 0, 0, 4000, 80, 0, 100);
+        }
+        log.close(true);
+        return new File(runDir, SampleLog.FILE_NAME);
+    }
+    
+    @Test
+    public void seekStartsAtBlockContainingTimestamp() throws IOException {
+        File logFile = writeLog();
+        long target = START_NANOS + 1000 * SECOND / 10;
+        SampleLog.Reader reader = SampleLog.openReader(logFile);
+        try {
+            reader.seekToTimestamp(target);
+            assertTrue(reader.next());
+            // 第 1000 筆在第 3 個區塊（768 起）
+            assertEquals(START_NANOS + 3 * SampleLog.RECORDS_PER_BLOCK * SECOND / 10, reader.getTimestamp());
+            
+            // 早於第一筆與晚於最後一筆的時間戳
+            reader.seekToTimestamp(0);
+            assertTrue(reader.next());
+            assertEquals(START_NANOS, reader.getTimestamp());
+            reader.seekToTimestamp(Long.MAX_VALUE);
+            assertTrue(reader.next());
+            assertEquals(START_NANOS + 10 * SampleLog.RECORDS_PER_BLOCK * SECOND / 10, reader.getTimestamp());
+        } finally {
+            reader.close();
+        }
+    }
+    
+    @Test
+    public void rangeMatchesFullTraceInsideWindow() throws IOException {
+        File logFile = writeLog();
+        PowerTrace full = PowerTrace.load(logFile);
+        PowerPyramid pyramid = full.getPyramid();
+        long from = START_NANOS + 1234 * SECOND / 10 + 1;
+        long to = START_NANOS + 1900 * SECOND / 10;
+        
+        PowerTrace range = PowerTrace.loadRange(logFile, from, to, pyramid);
+        
+        assertSame(pyramid, range.getPyramid());
+        int offset = 0;
+        while (full.getTimestamp(offset) < from) {
+            offset++;
+        }
+        int expected = 0;
+        while (offset + expected < full.size() && full.getTimestamp(offset + expected) <= to) {
+            expected++;
+        }
+        assertEquals(expected, range.size());
+        for (int i = 0; i < range.size(); i++) {
+            assertEquals(full.getTimestamp(offset + i), range.getTimestamp(i));
+            assertEquals(full.getPower(offset + i), range.getPower(i), 0f);
+        }
+        assertTrue(range.getFirstTimestamp() >= from);
+        assertTrue(range.getLastTimestamp() <= to);
+    }
+}
@@ -0,0 +1,81 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.model.TestResult;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RunStoreTest {
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void insertIfAbsentSkipsExistingStartTime() throws Exception {
+        File dir = folder.newFolder("history");
+        RunStore store = RunStore.open(dir);
+        assertTrue(store.insertIfAbsent(new TestResult(1000, 2000, 90, 80, 500, 500), false));
+        assertFalse(store.insertIfAbsent(new TestResult(1000, 2500, 90, 70, 500, 500), false));
+        assertTrue(store.insertIfAbsent(new TestResult(3000, 4000, 80, 70, 500, 500), true));
+        store.close();
+        
+        RunStore reopened = RunStore.open(dir);
+        assertEquals(2, reopened.size());
+        assertTrue(reopened.containsStartTime(1000));
+        assertTrue(reopened.containsStartTime(3000));
+        reopened.close();
+    }
+    
+    @Test
+    public void concurrentInsertIfAbsentWritesOnce() throws Exception {
+        final RunStore store = RunStore.open(folder.newFolder("history"));
+        final int threads = 8;
+        final CountDownLatch ready = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        ready.countDown();
+                        ready.await();
+                        // 與恢復流程相同：每個執行緒都匯入同一批測試
+                        int inserted = 0;
+                        for (long startTime = 1000; startTime <= 50_000; startTime += 1000) {
+                            if (store.insertIfAbsent(new TestResult(startTime, startTime + 500, 90, 80, 500, 500),
+                                    false)) {
+                                inserted++;
+                            }
+                        }
+                        return inserted;
+                    }
+                }));
+            }
+            
+            int total = 0;
+            for (Future<Integer> future : futures) {
+                total += future.get();
+            }
+            assertEquals(50, total);
+            assertEquals(50, store.size());
+        } finally {
+            executor.shutdown();
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.batterymonitor.app.data;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class SampleBufferTest {
+    
+    private static final long PERIOD_NANOS = 100_000_000L;
+    
+    // 每筆取樣的欄位都由序號推出，讀到的值可以逐欄驗證是否來自同一筆
+    private static void append(SampleBuffer buffer, long sequence) {
+        buffer.append(sequence * PERIOD_NANOS, -300_000 - (int) sequence, 4000 + (int) (sequence % 100),
+            3_000_000 - (int) sequence, (int) (sequence % 101));
+    }
+    
+    private static void assertSample(SampleBuffer.Cursor cursor, long sequence) {
+        assertEquals(sequence, cursor.getSequence());
+        assertEquals(sequence * PERIOD_NANOS, cursor.getTimestamp());
+        assertEquals(-300_000 - (int) sequence, cursor.getCurrent());
+        assertEquals(4000 + (int) (sequence % 100), cursor.getVoltage());
+        assertEquals(3_000_000 - (int) sequence, cursor.getChargeCounter());
+        assertEquals((int) (sequence % 101), cursor.getLevel());
+    }
+    
+    private static void assertSequences(SampleBuffer.Cursor cursor, long first, long last) {
+        for (long sequence = first; sequence <= last; sequence++) {
+            assertTrue("missing sample " + sequence, cursor.next());
+            assertSample(cursor, sequence);
+        }
+        assertFalse(cursor.next());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCapacityBelowTwo() {
+        new SampleBuffer(1);
+    }
+    
+    @Test
+    public void appendDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long threadId = Thread.currentThread().getId();
+        SampleBuffer buffer = new SampleBuffer(1024);
+        
+        // 先讓 append 與量測本身完成類別載入與編譯
+        for (long i = 0; i < 100_000; i++) {
+            append(buffer, i);
+        }
+        long overhead = threads.getThreadAllocatedBytes(threadId);
+        overhead = threads.getThreadAllocatedBytes(threadId) - overhead;
+        
+        // 跨越多次覆蓋，寫入路徑仍不配置物件
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (long i = 0; i < 1_000_000; i++) {
+            append(buffer, i);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before - overhead;
+        
+        assertEquals(0, allocated);
+        assertEquals(1_100_000, buffer.getWriteSequence());
+    }
+    
+    @Test
+    public void emptyBufferHasNoSamples() {
+        SampleBuffer buffer = new SampleBuffer(8);
+        assertEquals(0, buffer.size());
+        assertFalse(buffer.newCursor().seek(0, Long.MAX_VALUE).next());
+        assertFalse(buffer.newCursor().seekLast(8).next());
+    }
+    
+    @Test
+    public void overwritesOldestSamplesWhenFull() {
+        SampleBuffer buffer = new SampleBuffer(4);
+        for (long i = 0; i < 10; i++) {
+            append(buffer, i);
+        }
+        
+        assertEquals(4, buffer.size());
+        assertEquals(10, buffer.getWriteSequence());
+        // 保留一個槽位給寫入中的取樣，可讀的是最新的 capacity - 1 筆
+        assertSequences(buffer.newCursor().seek(0, Long.MAX_VALUE), 7, 9);
+    }
+    
+    @Test
+    public void seekReturnsTimeWindow() {
+        SampleBuffer buffer = new SampleBuffer(100);
+        for (long i = 0; i < 50; i++) {
+            append(buffer, i);
+        }
+        
+        SampleBuffer.Cursor cursor = buffer.newCursor();
+        // 邊界落在取樣之間與剛好落在取樣上
+        assertSequences(cursor.seek(10 * PERIOD_NANOS + 1, 20 * PERIOD_NANOS + 1), 11, 20);
+        assertSequences(cursor.seek(10 * PERIOD_NANOS, 20 * PERIOD_NANOS), 10, 20);
+        assertSequences(cursor.seek(49 * PERIOD_NANOS, Long.MAX_VALUE), 49, 49);
+        assertFalse(cursor.seek(50 * PERIOD_NANOS, Long.MAX_VALUE).next());
+        assertFalse(cursor.seek(5 * PERIOD_NANOS + 1, 5 * PERIOD_NANOS + 2).next());
+    }
+    
+    @Test
+    public void seekAfterWraparoundStartsAtOldestReadable() {
+        SampleBuffer buffer = new SampleBuffer(16);
+        for (long i = 0; i < 100; i++) {
+            append(buffer, i);
+        }
+        
+        SampleBuffer.Cursor cursor = buffer.newCursor();
+        assertSequences(cursor.seek(0, Long.MAX_VALUE), 85, 99);
+        assertSequences(cursor.seek(90 * PERIOD_NANOS, 95 * PERIOD_NANOS), 90, 95);
+    }
+    
+    @Test
+    public void seekLastReturnsNewestSamples() {
+        SampleBuffer buffer = new SampleBuffer(16);
+        for (long i = 0; i < 10; i++) {
+            append(buffer, i);
+        }
+        
+        SampleBuffer.Cursor cursor = buffer.newCursor();
+        assertSequences(cursor.seekLast(3), 7, 9);
+        assertSequences(cursor.seekLast(100), 0, 9);
+        assertFalse(cursor.seekLast(0).next());
+        
+        for (long i = 10; i < 40; i++) {
+            append(buffer, i);
+        }
+        assertSequences(cursor.seekLast(100), 25, 39);
+    }
+    
+    @Test
+    public void refreshFollowsNewSamples() {
+        SampleBuffer buffer = new SampleBuffer(16);
+        for (long i = 0; i < 5; i++) {
+            append(buffer, i);
+        }
+        
+        SampleBuffer.Cursor cursor = buffer.newCursor().seekLast(16);
+        assertSequences(cursor, 0, 4);
+        
+        append(buffer, 5);
+        append(buffer, 6);
+        assertFalse(cursor.next());
+        assertSequences(cursor.refresh(), 5, 6);
+    }
+    
+    @Test
+    public void skipsSlotsOverwrittenDuringRead() {
+        SampleBuffer buffer = new SampleBuffer(8);
+        for (long i = 0; i < 8; i++) {
+            append(buffer, i);
+        }
+        
+        SampleBuffer.Cursor cursor = buffer.newCursor().seekLast(8);
+        assertTrue(cursor.next());
+        assertSample(cursor, 1);
+        
+        // 讀取者落後時寫入者覆蓋了游標之後的槽位：讀到的槽位已屬於較新的取樣，
+        // 序號檢查失敗後跳到最舊的有效位置重讀，不會回傳混合兩筆取樣的數據
+        for (long i = 8; i < 13; i++) {
+            append(buffer, i);
+        }
+        assertSequences(cursor, 6, 7);
+        assertSequences(cursor.refresh(), 8, 12);
+    }
+    
+    @Test
+    public void concurrentReaderNeverSeesTornSamples() throws Exception {
+        final SampleBuffer buffer = new SampleBuffer(64);
+        final long total = 2_000_000;
+        Thread writer = new Thread(() -> {
+            for (long i = 0; i < total; i++) {
+                append(buffer, i);
+            }
+        }, "writer");
+        writer.start();
+        
+        // 小容量讓寫入者不斷追上讀取者；每筆讀到的欄位必須屬於同一筆取樣，序號只能遞增
+        SampleBuffer.Cursor cursor = buffer.newCursor();
+        long samples = 0;
+        while (writer.isAlive() || samples == 0) {
+            long previous = -1;
+            cursor.seekLast(64);
+            while (cursor.next()) {
+                long sequence = cursor.getTimestamp() / PERIOD_NANOS;
+                assertSample(cursor, sequence);
+                assertTrue(sequence > previous);
+                previous = sequence;
+                samples++;
+            }
+        }
+        writer.join();
+        assertEquals(total, buffer.getWriteSequence());
+    }
+    
+    @Test
+    public void clearDiscardsSamples() {
+        SampleBuffer buffer = new SampleBuffer(8);
+        for (long i = 0; i < 20; i++) {
+            append(buffer, i);
+        }
+        
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertFalse(buffer.newCursor().seek(0, Long.MAX_VALUE).next());
+        
+        // 清空後序號從 0 重新開始
+        append(buffer, 0);
+        assertSequences(buffer.newCursor().seekLast(8), 0, 0);
+    }
+}
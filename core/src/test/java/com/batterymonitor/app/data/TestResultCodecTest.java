@@ -0,0 +1,50 @@
+package com.batterymonitor.app.data;
+
+import com.batterymonitor.app.model.TestResult;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestResultCodecTest {
+    
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+    
+    private static TestResult roundTrip(TestResult result) {
+        ByteBuffer buffer = ByteBuffer.allocate(TestResultCodec.maxEncodedSize(result));
+        TestResultCodec.encode(result, buffer);
+        buffer.flip();
+        return TestResultCodec.decode(buffer);
+    }
+    
+    @Test
+    public void longSubjectIsTruncatedOnCharacterBoundary() {
+        // 1023 個 ASCII 之後的三位元組字元會跨過 1024 位元組上限
+        String prefix = repeat('a', 1023);
+        TestResult result = new TestResult(1000, 2000, 90, 80, 1000, 1000, prefix + "電池");
+        assertEquals(prefix, roundTrip(result).getTestSubject());
+        
+        // 四位元組的表情符號（代理對）同樣整個捨棄
+        String emoji = "🔋";
+        String subject = repeat('a', 1021) + emoji + "b";
+        assertEquals(repeat('a', 1021), roundTrip(new TestResult(1000, 2000, 90, 80, 1000, 1000, subject))
+            .getTestSubject());
+        subject = repeat('a', 1020) + emoji + "b";
+        assertEquals(repeat('a', 1020) + emoji, roundTrip(new TestResult(1000, 2000, 90, 80, 1000, 1000, subject))
+            .getTestSubject());
+    }
+    
+    @Test
+    public void shortSubjectIsKept() {
+        TestResult result = new TestResult(1000, 2000, 90, 80, 1000, 1000, "螢幕常亮 🔋");
+        assertEquals("螢幕常亮 🔋", roundTrip(result).getTestSubject());
+    }
+}
@@ -0,0 +1,102 @@
+package com.batterymonitor.app.manager;
+
+import com.batterymonitor.app.probe.SamplingScheduler;
+import com.batterymonitor.app.sim.SimulatedClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatterySamplerTest {
+    
+    private static final long SECOND_MS = 1000;
+    private static final int VOLTAGE_MV = 4000;
+    
+    // 沒有電荷與能量計數器的設備，電流與電壓由測試設定
+    private static final class ScriptedSource implements BatterySource {
+        int currentMicroAmps;
+        int voltage = VOLTAGE_MV;
+        private int tick;
+        
+        @Override
+        public long read(int field) {
+            switch (field) {
+                case FIELD_CURRENT_NOW:
+                    // 微小變化避免被視為卡住的感測器
+                    return currentMicroAmps == Integer.MIN_VALUE ? UNSUPPORTED : currentMicroAmps + (tick++ % 2);
+                case FIELD_CURRENT_AVERAGE:
+                    return currentMicroAmps == Integer.MIN_VALUE ? UNSUPPORTED : currentMicroAmps;
+                case FIELD_VOLTAGE_NOW:
+                    return voltage;
+                case FIELD_CAPACITY:
+                    return 80;
+                case FIELD_TEMP:
+                    return 300;
+                default:
+                    return UNSUPPORTED;
+            }
+        }
+    }
+    
+    private SimulatedClock clock;
+    private SamplingScheduler scheduler;
+    private ScriptedSource source;
+    private BatterySampler sampler;
+    
+    @Before
+    public void setUp() {
+        clock = new SimulatedClock(1_700_000_000_000L, 60_000);
+        scheduler = SamplingScheduler.createManual(clock);
+        source = new ScriptedSource();
+        sampler = new BatterySampler(new BatteryStatus(), scheduler, source, clock);
+    }
+    
+    private void sampleFor(long durationMs) {
+        long until = clock.elapsedRealtimeNanos() + durationMs * 1_000_000L;
+        long due;
+        while ((due = scheduler.getNextDueNanos()) <= until) {
+            clock.advanceToNanos(due);
+            scheduler.runDue();
+        }
+    }
+    
+    // 休眠：時鐘前進但沒有取樣，喚醒時立刻取樣一次
+    private void doze(long durationMs) {
+        clock.advanceBy(durationMs);
+        scheduler.runDue();
+    }
+    
+    @Test
+    public void dozeIsFilledWithAverageCurrentNotPostWakeCurrent() {
+        source.currentMicroAmps = -300_000;
+        sampler.start(SECOND_MS, SECOND_MS);
+        sampleFor(60 * SECOND_MS);
+        doze(10 * 60 * SECOND_MS);
+        source.currentMicroAmps = -900_000;
+        sampleFor(60 * SECOND_MS);
+        sampler.stop();
+        
+        // 缺口以已覆蓋區間的平均電流（約 600 mA）估計，而不是喚醒後的 900 mA
+        double hours = sampler.getEnergyAccumulator().getSpanNanos() / 3600e9;
+        assertEquals(600 * hours, sampler.getChargeConsumedMah(), 600 * hours * 0.02);
+    }
+    
+    @Test
+    public void chargeAgreesWithEnergyAcrossInvalidSamples() {
+        source.currentMicroAmps = -500_000;
+        sampler.start(SECOND_MS, SECOND_MS);
+        sampleFor(30 * SECOND_MS);
+        source.currentMicroAmps = Integer.MIN_VALUE;
+        sampleFor(10 * SECOND_MS);
+        source.currentMicroAmps = -500_000;
+        sampleFor(30 * SECOND_MS);
+        sampler.stop();
+        
+        // 無效取樣期間也以平均電流補上，電荷 × 電壓與能量一致
+        double hours = sampler.getEnergyAccumulator().getSpanNanos() / 3600e9;
+        assertEquals(500 * hours, sampler.getChargeConsumedMah(), 500 * hours * 0.01);
+        assertEquals(sampler.getEnergyConsumedMwh(), sampler.getChargeConsumedMah() * VOLTAGE_MV / 1000.0,
+            sampler.getEnergyConsumedMwh() * 0.001);
+    }
+}
@@ -0,0 +1,226 @@
+package com.batterymonitor.app.manager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+public class SysfsBatteryReaderTest {
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    private File root;
+    private CountingFallback fallback;
+    
+    // 回傳可辨識的值並記錄每個欄位被呼叫的次數
+    private static final class CountingFallback implements SysfsBatteryReader.Fallback {
+        final int[] calls = new int[7];
+        
+        @Override
+        public long read(int field) {
+            calls[field]++;
+            return 1000 + field;
+        }
+    }
+    
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("battery");
+        fallback = new CountingFallback();
+    }
+    
+    private void write(String node, String content) throws IOException {
+        write(node, content.getBytes("US-ASCII"));
+    }
+    
+    private void write(String node, byte[] content) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(new File(root, node))) {
+            out.write(content);
+        }
+    }
+    
+    private void writeAllNodes() throws IOException {
+        write("current_now", "-345678\n");
+        write("voltage_now", "4012345\n");
+        write("charge_counter", "3012000\n");
+        write("capacity", "87\n");
+        write("temp", "253\n");
+    }
+    
+    @Test
+    public void readsNodesInFieldUnits() throws IOException {
+        writeAllNodes();
+        SysfsBatteryReader reader = new SysfsBatteryReader(root, fallback);
+        
+        // 電流保留負號（µA），電壓由 µV 換算為 mV
+        assertEquals(-345678, reader.read(BatterySource.FIELD_CURRENT_NOW));
+        assertEquals(4012, reader.read(BatterySource.FIELD_VOLTAGE_NOW));
+        assertEquals(3012000, reader.read(BatterySource.FIELD_CHARGE_COUNTER));
+        assertEquals(87, reader.read(BatterySource.FIELD_CAPACITY));
+        assertEquals(253, reader.read(BatterySource.FIELD_TEMP));
+        for (int field = 0; field < SysfsBatteryReader.FIELD_COUNT; field++) {
+            assertTrue(reader.isSysfs(field));
+            assertEquals(0, fallback.calls[field]);
+        }
+        reader.close();
+    }
+    
+    @Test
+    public void negativeValuesAndSignsAreParsed() throws IOException {
+        write("current_now", "+120000\n");
+        write("voltage_now", "-3999999");
+        write("temp", "  -52 \n");
+        SysfsBatteryReader reader = new SysfsBatteryReader(root, fallback);
+        
+        assertEquals(120000, reader.read(BatterySource.FIELD_CURRENT_NOW));
+        // 截斷而非四捨五入
+        assertEquals(-3999, reader.read(BatterySource.FIELD_VOLTAGE_NOW));
+        assertEquals(-52, reader.read(BatterySource.FIELD_TEMP));
+        reader.close();
+    }
+    
+    @Test
+    public void rereadsChangedValueFromOpenNode() throws IOException {
+        write("current_now", "-100000\n");
+        SysfsBatteryReader reader = new SysfsBatteryReader(root, fallback);
+        assertEquals(-100000, reader.read(BatterySource.FIELD_CURRENT_NOW));
+        
+        write("current_now", "-99\n");
+        assertEquals(-99, reader.read(BatterySource.FIELD_CURRENT_NOW));
+        assertEquals(0, fallback.calls[BatterySource.FIELD_CURRENT_NOW]);
+        reader.close();
+    }
+    
+    @Test
+    public void missingNodeFallsBackForThatFieldOnly() throws IOException {
+        writeAllNodes();
+        new File(root, "charge_counter").delete();
+        SysfsBatteryReader reader = new SysfsBatteryReader(root, fallback);
+        
+        assertEquals(1000 + BatterySource.FIELD_CHARGE_COUNTER, reader.read(BatterySource.FIELD_CHARGE_COUNTER));
+        assertFalse(reader.isSysfs(BatterySource.FIELD_CHARGE_COUNTER));
+        assertEquals(-345678, reader.read(BatterySource.FIELD_CURRENT_NOW));
+        assertEquals(87, reader.read(BatterySource.FIELD_CAPACITY));
+        assertTrue(reader.isSysfs(BatterySource.FIELD_CAPACITY));
+        reader.close();
+    }
+    
+    @Test
+    public void fallbackIsStickyAfterFailure() throws IOException {
+        SysfsBatteryReader reader = new SysfsBatteryReader(root, fallback);
+        assertEquals(1000, reader.read(BatterySource.FIELD_CURRENT_NOW));
+        
+        // 節點之後出現也不再嘗試
+        write("current_now", "-1\n");
+        assertEquals(1000, reader.read(BatterySource.FIELD_CURRENT_NOW));
+        assertEquals(2, fallback.calls[BatterySource.FIELD_CURRENT_NOW]);
+        reader.close();
+    }
+    
+    @Test
+    public void unreadableNodeFallsBack() throws IOException {
+        writeAllNodes();
+        File node = new File(root, "voltage_now");
+        node.setReadable(false, false);
+        // 以 root 執行時檔案權限不生效
+        assumeFalse(node.canRead());
+        SysfsBatteryReader reader = new SysfsBatteryReader(root, fallback);
+        
+        assertEquals(1000 + BatterySource.FIELD_VOLTAGE_NOW, reader.read(BatterySource.FIELD_VOLTAGE_NOW));
+        assertFalse(reader.isSysfs(BatterySource.FIELD_VOLTAGE_NOW));
+        assertEquals(87, reader.read(BatterySource.FIELD_CAPACITY));
+        reader.close();
+    }
+    
+    @Test
+    public void nodeThatCannotBeOpenedFallsBack() throws IOException {
+        writeAllNodes();
+        // 目錄可通過 canRead() 但無法以檔案開啟
+        new File(root, "temp").delete();
+        assertTrue(new File(root, "temp").mkdir());
+        SysfsBatteryReader reader = new SysfsBatteryReader(root, fallback);
+        
+        assertEquals(1000 + BatterySource.FIELD_TEMP, reader.read(BatterySource.FIELD_TEMP));
+        assertFalse(reader.isSysfs(BatterySource.FIELD_TEMP));
+        assertEquals(87, reader.read(BatterySource.FIELD_CAPACITY));
+        reader.close();
+    }
+    
+    @Test
+    public void garbageContentFallsBack() throws IOException {
+        String[] contents = { "", "\n", "abc\n", "12ab\n", "4.2\n", "-\n", "99999999999999999999\n" };
+        for (String content : contents) {
+            write("capacity", content);
+            CountingFallback counting = new CountingFallback();
+            SysfsBatteryReader reader = new SysfsBatteryReader(root, counting);
+            
+            assertEquals("content: " + content, 1000 + BatterySource.FIELD_CAPACITY,
+                reader.read(BatterySource.FIELD_CAPACITY));
+            assertFalse(reader.isSysfs(BatterySource.FIELD_CAPACITY));
+            reader.close();
+        }
+    }
+    
+    @Test
+    public void binaryContentFallsBack() throws IOException {
+        write("capacity", new byte[] { (byte) 0xFF, (byte) 0xFE, '8', '7' });
+        SysfsBatteryReader reader = new SysfsBatteryReader(root, fallback);
+        assertEquals(1000 + BatterySource.FIELD_CAPACITY, reader.read(BatterySource.FIELD_CAPACITY));
+        reader.close();
+    }
+    
+    @Test
+    public void trailingNulIsAccepted() throws IOException {
+        write("capacity", new byte[] { '8', '7', 0 });
+        SysfsBatteryReader reader = new SysfsBatteryReader(root, fallback);
+        assertEquals(87, reader.read(BatterySource.FIELD_CAPACITY));
+        reader.close();
+    }
+    
+    @Test
+    public void fieldsWithoutNodesAlwaysUseFallback() throws IOException {
+        writeAllNodes();
+        SysfsBatteryReader reader = new SysfsBatteryReader(root, fallback);
+        
+        assertEquals(1000 + BatterySource.FIELD_CURRENT_AVERAGE, reader.read(BatterySource.FIELD_CURRENT_AVERAGE));
+        assertEquals(1000 + BatterySource.FIELD_ENERGY_COUNTER, reader.read(BatterySource.FIELD_ENERGY_COUNTER));
+        assertFalse(reader.isSysfs(BatterySource.FIELD_ENERGY_COUNTER));
+        reader.close();
+    }
+    
+    @Test
+    public void nullRootUsesFallbackForAllFields() {
+        SysfsBatteryReader reader = new SysfsBatteryReader(null, fallback);
+        for (int field = 0; field < SysfsBatteryReader.FIELD_COUNT; field++) {
+            assertFalse(reader.isSysfs(field));
+            assertEquals(1000 + field, reader.read(field));
+        }
+    }
+    
+    @Test
+    public void missingNodeWithoutFallbackIsUnsupported() {
+        SysfsBatteryReader reader = new SysfsBatteryReader(root, null);
+        assertEquals(BatterySource.UNSUPPORTED, reader.read(BatterySource.FIELD_CURRENT_NOW));
+        assertEquals(BatterySource.UNSUPPORTED, reader.read(BatterySource.FIELD_CURRENT_AVERAGE));
+    }
+    
+    @Test
+    public void closedReaderUsesFallback() throws IOException {
+        writeAllNodes();
+        SysfsBatteryReader reader = new SysfsBatteryReader(root, fallback);
+        assertEquals(87, reader.read(BatterySource.FIELD_CAPACITY));
+        
+        reader.close();
+        assertEquals(1000 + BatterySource.FIELD_CAPACITY, reader.read(BatterySource.FIELD_CAPACITY));
+    }
+}
@@ -0,0 +1,140 @@
+package com.batterymonitor.app.manager;
+
+import com.batterymonitor.app.sim.SimulatedClock;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestManagerTest {
+    
+    private static final long BOOT_TIME_MILLIS = 1_700_000_000_000L;
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    private File file;
+    private SimulatedClock clock;
+    
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.newFolder("files"), TestManager.FILE_NAME);
+        clock = new SimulatedClock(BOOT_TIME_MILLIS, 60_000);
+    }
+    
+    @Test
+    public void transitionsFollowStateMachine() {
+        TestManager manager = new TestManager(file, clock);
+        assertEquals(TestManager.STATE_IDLE, manager.getState());
+        assertFalse(manager.markRunning());
+        assertFalse(manager.stopTest());
+        
+        assertTrue(manager.startTest("主題", 90, HOUR_MS));
+        assertFalse(manager.startTest("other", 90, HOUR_MS));
+        assertTrue(manager.markRunning());
+        assertFalse(manager.complete(80, HOUR_MS));
+        assertTrue(manager.stopTest());
+        assertTrue(manager.complete(80, HOUR_MS));
+        
+        assertTrue(manager.hasCompletedTest());
+        assertEquals(10, manager.getLastTestBatteryConsumed());
+        assertEquals(HOUR_MS, manager.getElapsedTime());
+        assertTrue(manager.startTest("next", 80, HOUR_MS));
+    }
+    
+    @Test
+    public void checkpointRestoresRunningTest() {
+        TestManager manager = new TestManager(file, clock);
+        manager.startTest("主題", 90, HOUR_MS);
+        manager.markRunning();
+        clock.advanceBy(HOUR_MS / 2);
+        
+        TestManager restarted = new TestManager(file, clock);
+        assertEquals(TestManager.STATE_RUNNING, restarted.getState());
+        assertEquals(manager.getRunId(), restarted.getRunId());
+        assertEquals(manager.getStartElapsedRealtime(), restarted.getStartElapsedRealtime());
+        assertEquals("主題", restarted.getTestSubject());
+        assertEquals(HOUR_MS / 2, restarted.getElapsedTime());
+        assertTrue(restarted.isResumable());
+        
+        // 超過計劃時長後不可恢復，放棄後回到 IDLE 並寫入檢查點
+        clock.advanceBy(HOUR_MS);
+        assertFalse(restarted.isResumable());
+        restarted.abandon();
+        assertEquals(TestManager.STATE_IDLE, new TestManager(file, clock).getState());
+    }
+    
+    @Test
+    public void wakeLockStatsSurviveRestart() {
+        TestManager manager = new TestManager(file, clock);
+        manager.startTest("", 90, HOUR_MS);
+        manager.markRunning();
+        assertEquals(manager.getStartElapsedRealtime(), manager.getWakeLockCheckpointElapsed());
+        
+        clock.advanceBy(HOUR_MS / 4);
+        manager.saveWakeLockStats(HOUR_MS / 4 - 5000, 1, 5000);
+        
+        TestManager restarted = new TestManager(file, clock);
+        assertEquals(clock.elapsedRealtime(), restarted.getWakeLockCheckpointElapsed());
+        assertEquals(HOUR_MS / 4 - 5000, restarted.getWakeLockHeldMillis());
+        assertEquals(1, restarted.getWakeLockGapCount());
+        assertEquals(5000, restarted.getWakeLockGapMillis());
+        
+        // 新的測試重設統計
+        restarted.abandon();
+        restarted.startTest("", 90, HOUR_MS);
+        assertEquals(0, restarted.getWakeLockGapCount());
+        assertEquals(clock.elapsedRealtime(), restarted.getWakeLockCheckpointElapsed());
+    }
+    
+    @Test
+    public void longSubjectIsTruncatedOnCharacterBoundary() {
+        // 每個字三位元組，400 位元組上限落在第 134 個字中間
+        StringBuilder subject = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            subject.append('電');
+        }
+        TestManager manager = new TestManager(file, clock);
+        manager.startTest(subject.toString(), 90, HOUR_MS);
+        
+        assertEquals(subject.substring(0, 133), new TestManager(file, clock).getTestSubject());
+    }
+    
+    @Test
+    public void rebootIsNotResumable() {
+        TestManager manager = new TestManager(file, clock);
+        manager.startTest("", 90, HOUR_MS);
+        manager.markRunning();
+        
+        // 重新開機：elapsedRealtime 從頭開始，牆上時間繼續
+        SimulatedClock rebooted = new SimulatedClock(BOOT_TIME_MILLIS + 10 * 60_000, 120_000);
+        TestManager restarted = new TestManager(file, rebooted);
+        assertEquals(TestManager.STATE_RUNNING, restarted.getState());
+        assertFalse(restarted.isResumable());
+    }
+    
+    @Test
+    public void corruptCheckpointIsIgnored() throws IOException {
+        TestManager manager = new TestManager(file, clock);
+        manager.startTest("主題", 90, HOUR_MS);
+        manager.markRunning();
+        
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(20);
+            int value = raf.read();
+            raf.seek(20);
+            raf.write(value ^ 0xFF);
+        }
+        assertEquals(TestManager.STATE_IDLE, new TestManager(file, clock).getState());
+    }
+}
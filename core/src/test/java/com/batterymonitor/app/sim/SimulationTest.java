@@ -0,0 +1,173 @@
+package com.batterymonitor.app.sim;
+
+import com.batterymonitor.app.data.RunStore;
+import com.batterymonitor.app.data.SampleLog;
+import com.batterymonitor.app.data.SampleLogRecovery;
+import com.batterymonitor.app.manager.TestManager;
+import com.batterymonitor.app.model.TestResult;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SimulationTest {
+    
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final long MINUTE_MS = 60 * 1000L;
+    private static final long PERIOD_MS = 1000;
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    // 三小時內負載 300 → 600 → 200 mA，總消耗約 1100 mAh
+    private static DischargeProfile steppedProfile() {
+        DischargeProfile profile = new DischargeProfile();
+        profile.addLoad(HOUR_MS, 600_000);
+        profile.addLoad(2 * HOUR_MS, 200_000);
+        return profile;
+    }
+    
+    private static void assertWithin(String message, double expected, double actual, double relative) {
+        assertEquals(message, expected, actual, Math.abs(expected) * relative);
+    }
+    
+    private static TestResult readOnlyRun(File workDir) throws IOException {
+        RunStore store = RunStore.open(new File(workDir, Simulation.HISTORY_DIRECTORY));
+        try {
+            List<TestResult> results = store.query(0, 10);
+            assertEquals(1, results.size());
+            return results.get(0);
+        } finally {
+            store.close();
+        }
+    }
+    
+    @Test
+    public void multiHourRunPersistsMeasuredConsumption() throws IOException {
+        File workDir = folder.newFolder("run");
+        // 固定 300 mA 負載，跳變估計假設消耗率不變
+        Simulation simulation = new Simulation(workDir, new DischargeProfile());
+        BatterySimulator battery = simulation.getBattery();
+        
+        TestResult result = simulation.run("constant", 3 * HOUR_MS, PERIOD_MS, PERIOD_MS);
+        
+        // 電荷來自計數器差值，能量來自電壓 × 電流積分
+        assertWithin("mAh", battery.getChargeConsumedMah(), result.getChargeConsumedMah(), 0.005);
+        assertWithin("mWh", battery.getEnergyConsumedMilliwattHours(), result.getEnergyMilliwattHours(), 0.02);
+        assertEquals(900, result.getChargeConsumedMah(), 5);
+        assertEquals(3 * HOUR_MS, result.getActualDuration());
+        assertEquals(80, result.getStartBatteryLevel());
+        assertEquals(battery.getLevel(), result.getEndBatteryLevel());
+        assertEquals(80 - battery.getLevel(), result.getBatteryConsumed());
+        
+        // 每 45 mAh 跳一次電量，跳變估計應接近實際的小數消耗
+        double actualPercent = battery.getChargeConsumedMah() / 4500 * 100;
+        assertTrue(result.hasLevelStepEstimate());
+        assertTrue(result.getLevelStepCount() >= 19);
+        assertEquals(actualPercent, result.getEstimatedConsumption(), result.getEstimatedConsumptionError() + 1);
+        
+        // 重新開啟後歷史記錄與回傳的結果相同
+        TestResult stored = readOnlyRun(workDir);
+        assertEquals(result.getStartTime(), stored.getStartTime());
+        assertEquals("constant", stored.getTestSubject());
+        assertEquals(result.getChargeConsumedMah(), stored.getChargeConsumedMah(), 1e-6);
+        assertEquals(result.getEnergyMilliwattHours(), stored.getEnergyMilliwattHours(), 1e-6);
+        assertEquals(result.getLevelStepCount(), stored.getLevelStepCount());
+        assertEquals(result.getEstimatedConsumption(), stored.getEstimatedConsumption(), 1e-6);
+        
+        // 檢查點為已完成，日誌已標記正常結束，不會再被恢復流程匯入
+        TestManager reloaded = new TestManager(new File(workDir, TestManager.FILE_NAME), simulation.getClock());
+        assertEquals(TestManager.STATE_COMPLETED, reloaded.getState());
+        assertEquals(result.getBatteryConsumed(), reloaded.getLastTestBatteryConsumed());
+        assertEquals(3 * HOUR_MS, reloaded.getLastTestDuration());
+        File log = new File(SampleLog.getRunDirectory(workDir, result.getStartTime()), SampleLog.FILE_NAME);
+        assertNull(SampleLogRecovery.recover(log));
+    }
+    
+    @Test
+    public void energyCounterIsUsedWhenAvailable() throws IOException {
+        DischargeProfile profile = steppedProfile();
+        profile.setEnergyCounter(true);
+        Simulation simulation = new Simulation(folder.newFolder("run"), profile);
+        
+        TestResult result = simulation.run("counter", 3 * HOUR_MS, PERIOD_MS, PERIOD_MS);
+        
+        BatterySimulator battery = simulation.getBattery();
+        assertWithin("mAh", battery.getChargeConsumedMah(), result.getChargeConsumedMah(), 0.005);
+        assertEquals(1100, result.getChargeConsumedMah(), 5);
+        assertWithin("mWh", battery.getEnergyConsumedMilliwattHours(), result.getEnergyMilliwattHours(), 0.005);
+    }
+    
+    @Test
+    public void killedRunResumesFromCheckpoint() throws IOException {
+        File workDir = folder.newFolder("run");
+        Simulation simulation = new Simulation(workDir, steppedProfile());
+        BatterySimulator battery = simulation.getBattery();
+        
+        simulation.start("resumed", 3 * HOUR_MS, PERIOD_MS, PERIOD_MS);
+        long runId = simulation.getTestManager().getRunId();
+        simulation.advance(90 * MINUTE_MS);
+        simulation.kill();
+        
+        // 新的程序從檢查點讀到同一個進行中的測試
+        TestManager restarted = simulation.getTestManager();
+        assertEquals(TestManager.STATE_RUNNING, restarted.getState());
+        assertEquals(runId, restarted.getRunId());
+        
+        // 服務未執行的 20 分鐘沒有取樣，不計入電荷
+        double beforeIdle = battery.getChargeConsumedMah();
+        simulation.idle(20 * MINUTE_MS);
+        double downtime = battery.getChargeConsumedMah() - beforeIdle;
+        assertTrue(restarted.isResumable());
+        assertTrue(simulation.resume());
+        
+        TestResult result = simulation.finish();
+        
+        assertEquals(runId, result.getStartTime());
+        assertEquals(3 * HOUR_MS, result.getActualDuration());
+        assertEquals(80, result.getStartBatteryLevel());
+        assertWithin("mAh", battery.getChargeConsumedMah() - downtime, result.getChargeConsumedMah(), 0.005);
+        assertTrue(result.getEnergyMilliwattHours() > 0);
+        assertTrue(result.getAveragePowerMilliwatts() > 0);
+        assertTrue(result.hasLevelStepEstimate());
+        
+        TestResult stored = readOnlyRun(workDir);
+        assertEquals(result.getChargeConsumedMah(), stored.getChargeConsumedMah(), 1e-6);
+        assertEquals(TestManager.STATE_COMPLETED,
+            new TestManager(new File(workDir, TestManager.FILE_NAME), simulation.getClock()).getState());
+        assertNull(SampleLogRecovery.recover(new File(SampleLog.getRunDirectory(workDir, runId), SampleLog.FILE_NAME)));
+    }
+    
+    @Test
+    public void runPastDeadlineIsAbandonedAndLeftForRecovery() throws IOException {
+        File workDir = folder.newFolder("run");
+        Simulation simulation = new Simulation(workDir, new DischargeProfile());
+        
+        simulation.start("expired", HOUR_MS, PERIOD_MS, PERIOD_MS);
+        long runId = simulation.getTestManager().getRunId();
+        simulation.advance(30 * MINUTE_MS);
+        simulation.kill();
+        simulation.idle(HOUR_MS);
+        
+        assertFalse(simulation.getTestManager().isResumable());
+        assertFalse(simulation.resume());
+        assertEquals(TestManager.STATE_IDLE, simulation.getTestManager().getState());
+        
+        // 日誌保持未完成，由恢復流程匯入終止前的 30 分鐘
+        TestResult recovered = SampleLogRecovery.recover(
+            new File(SampleLog.getRunDirectory(workDir, runId), SampleLog.FILE_NAME));
+        assertNotNull(recovered);
+        assertEquals(30 * MINUTE_MS, recovered.getActualDuration());
+        assertEquals(150, recovered.getChargeConsumedMah(), 1);
+    }
+}